@@ -0,0 +1,135 @@
+/*
+ * This file is part of SerialPundit.
+ * 
+ * Copyright (C) 2014-2016, Rishi Gupta. All rights reserved.
+ *
+ * The SerialPundit is DUAL LICENSED. It is made available under the terms of the GNU Affero 
+ * General Public License (AGPL) v3.0 for non-commercial use and under the terms of a commercial 
+ * license for commercial use of this software. 
+ * 
+ * The SerialPundit is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+
+package comfilelogger;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.serialpundit.serial.SerialComManager;
+import com.serialpundit.serial.SerialComManager.BAUDRATE;
+import com.serialpundit.serial.SerialComManager.DATABITS;
+import com.serialpundit.serial.SerialComManager.FLOWCONTROL;
+import com.serialpundit.serial.SerialComManager.PARITY;
+import com.serialpundit.serial.SerialComManager.STOPBITS;
+
+/*
+ * Entry point for logging without GUI, for example as a service which is always on. Ports are opened
+ * at given baud rate with 8N1 and no flow control and logged until the process is stopped.
+ *
+ * java comfilelogger.HeadlessLogger [-dir logs] [-baud 921600] [-size 64] [-rotate 60] [-timestamp] [-compress] port1 port2 ...
+ *
+ * -size is segment size in MB and -rotate is rotation interval in minutes (0 to rotate on size only).
+ *
+ * java comfilelogger.HeadlessLogger -unpack file.segz file.seg restores a compressed segment.
+ */
+public final class HeadlessLogger implements ILogErrorListener {
+
+	@Override
+	public void onLogError(String source, Exception e) {
+		System.err.println(source + " -> " + e.getMessage());
+	}
+
+	public static void main(String[] args) throws Exception {
+
+		if((args.length == 3) && args[0].equals("-unpack")) {
+			FileOutputStream fos = new FileOutputStream(args[2]);
+			try {
+				LogCompressor.decompress(new File(args[1]), fos);
+			} finally {
+				fos.close();
+			}
+			return;
+		}
+
+		File dir = new File("logs");
+		int baud = 921600;
+		int sizeMB = 64;
+		long rotateMinutes = 60;
+		boolean timestamp = false;
+		boolean compress = false;
+		final List<String> portNames = new ArrayList<String>();
+		for (int x = 0; x < args.length; x++) {
+			if(args[x].equals("-dir")) {
+				dir = new File(args[++x]);
+			}else if(args[x].equals("-baud")) {
+				baud = Integer.parseInt(args[++x]);
+			}else if(args[x].equals("-size")) {
+				sizeMB = Integer.parseInt(args[++x]);
+			}else if(args[x].equals("-rotate")) {
+				rotateMinutes = Long.parseLong(args[++x]);
+			}else if(args[x].equals("-timestamp")) {
+				timestamp = true;
+			}else if(args[x].equals("-compress")) {
+				compress = true;
+			}else {
+				portNames.add(args[x]);
+			}
+		}
+		if(portNames.isEmpty()) {
+			System.err.println("usage: HeadlessLogger [-dir logs] [-baud 921600] [-size 64] [-rotate 60] [-timestamp] [-compress] port1 port2 ...");
+			System.exit(1);
+		}
+
+		final SerialComManager scm = new SerialComManager();
+		final LogEngine engine = new LogEngine(scm, dir);
+		engine.setSegmentSize(sizeMB * 1024 * 1024);
+		engine.setRotationInterval(rotateMinutes * 60 * 1000);
+		engine.setTimestamped(timestamp);
+		engine.setCompression(compress);
+		engine.setErrorListener(new HeadlessLogger());
+		engine.start();
+
+		// Standard rates are set through their constants, others as custom baud rate.
+		BAUDRATE baudRate = BAUDRATE.BCUSTOM;
+		for (BAUDRATE b : BAUDRATE.values()) {
+			if((b != BAUDRATE.BCUSTOM) && (b.getValue() == baud)) {
+				baudRate = b;
+			}
+		}
+
+		final List<Long> handles = new ArrayList<Long>();
+		for (String portName : portNames) {
+			long handle = scm.openComPort(portName, true, false, true);
+			handles.add(handle);
+			scm.configureComPortData(handle, DATABITS.DB_8, STOPBITS.SB_1, PARITY.P_NONE, baudRate, (baudRate == BAUDRATE.BCUSTOM) ? baud : 0);
+			scm.configureComPortControl(handle, FLOWCONTROL.NONE, 'x', 'x', false, false);
+			engine.addPort(handle, portName);
+		}
+
+		// Seal segments and close ports when process is asked to stop (Ctrl+C, service stop etc).
+		Runtime.getRuntime().addShutdownHook(new Thread() {
+			@Override
+			public void run() {
+				try {
+					engine.stop();
+				} catch (Exception e) {
+					e.printStackTrace();
+				}
+				for (Long handle : handles) {
+					try {
+						scm.closeComPort(handle);
+					} catch (Exception e) {
+					}
+				}
+			}
+		});
+
+		while(true) {
+			Thread.sleep(60000);
+			System.out.println("logged " + engine.getBytesLogged() + " bytes from " + engine.getPortCount() + " ports, dropped " + engine.getBytesDropped());
+		}
+	}
+}
@@ -0,0 +1,27 @@
+/*
+ * This file is part of SerialPundit.
+ * 
+ * Copyright (C) 2014-2016, Rishi Gupta. All rights reserved.
+ *
+ * The SerialPundit is DUAL LICENSED. It is made available under the terms of the GNU Affero 
+ * General Public License (AGPL) v3.0 for non-commercial use and under the terms of a commercial 
+ * license for commercial use of this software. 
+ * 
+ * The SerialPundit is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+
+package comfilelogger;
+
+/*
+ * Implemented by application to be told about errors which log engine can not report by throwing
+ * an exception, because they happen on serial port looper threads or on background threads.
+ */
+public interface ILogErrorListener {
+
+	/*
+	 * source is name of the port whose data could not be logged, or name of the segment file which
+	 * could not be compressed.
+	 */
+	public abstract void onLogError(String source, Exception e);
+}
@@ -0,0 +1,197 @@
+/*
+ * This file is part of SerialPundit.
+ * 
+ * Copyright (C) 2014-2016, Rishi Gupta. All rights reserved.
+ *
+ * The SerialPundit is DUAL LICENSED. It is made available under the terms of the GNU Affero 
+ * General Public License (AGPL) v3.0 for non-commercial use and under the terms of a commercial 
+ * license for commercial use of this software. 
+ * 
+ * The SerialPundit is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+
+package comfilelogger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/*
+ * Compresses sealed segments on its own thread so that logging threads never wait for it. A segment
+ * is compressed in independent blocks of 1 MB using fastest deflate level; a damaged block therefore
+ * does not make rest of the file unreadable. Compressed file is written under a temporary name, synced
+ * and renamed, and only then the segment is deleted, so a crash at any point leaves either the segment
+ * or its complete compressed copy. A segment which can not be deleted is reported to error listener.
+ *
+ * Compressed file layout is magic, version and then blocks of [original length][compressed length][bytes].
+ */
+final class LogCompressor implements Runnable {
+
+	static final int MAGIC = 0x53504C5A; // "SPLZ"
+	static final int VERSION = 1;
+	static final String SUFFIX = ".segz";
+	static final String TEMP_SUFFIX = ".segz.tmp";
+
+	private static final int BLOCK_SIZE = 1024 * 1024;
+	private static final File STOP = new File("");
+
+	private final LinkedBlockingQueue<File> queue = new LinkedBlockingQueue<File>();
+	private final ILogErrorListener errorListener;
+	private final Thread thread;
+
+	LogCompressor(ILogErrorListener errorListener) {
+		this.errorListener = errorListener;
+		thread = new Thread(this, "SerialPundit log compressor");
+		thread.setDaemon(true);
+		thread.setPriority(Thread.MIN_PRIORITY);
+		thread.start();
+	}
+
+	void submit(File segment) {
+		queue.offer(segment);
+	}
+
+	/* Compresses segments already submitted and then stops. */
+	void shutdown() throws InterruptedException {
+		queue.offer(STOP);
+		thread.join();
+	}
+
+	@Override
+	public void run() {
+		byte[] in = new byte[BLOCK_SIZE];
+		byte[] out = new byte[BLOCK_SIZE + (BLOCK_SIZE / 16) + 64];
+		Deflater deflater = new Deflater(Deflater.BEST_SPEED, true);
+		try {
+			while(true) {
+				File segment = queue.take();
+				if(segment == STOP) {
+					return;
+				}
+				try {
+					compress(segment, deflater, in, out);
+				} catch (IOException e) {
+					if(errorListener != null) {
+						errorListener.onLogError(segment.getName(), e);
+					}
+				}
+			}
+		} catch (InterruptedException e) {
+		} finally {
+			deflater.end();
+		}
+	}
+
+	private static void compress(File segment, Deflater deflater, byte[] in, byte[] out) throws IOException {
+		String name = segment.getName();
+		String base = name.substring(0, name.length() - LogSegment.SUFFIX.length());
+		File temp = new File(segment.getParentFile(), base + TEMP_SUFFIX);
+		File target = new File(segment.getParentFile(), base + SUFFIX);
+
+		InputStream is = new FileInputStream(segment);
+		FileOutputStream fos = new FileOutputStream(temp);
+		try {
+			DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(fos, 65536));
+			dos.writeInt(MAGIC);
+			dos.writeInt(VERSION);
+			int n;
+			while((n = readFully(is, in)) > 0) {
+				deflater.reset();
+				deflater.setInput(in, 0, n);
+				deflater.finish();
+				int length = 0;
+				while(!deflater.finished()) {
+					length += deflater.deflate(out, length, out.length - length);
+				}
+				dos.writeInt(n);
+				dos.writeInt(length);
+				dos.write(out, 0, length);
+			}
+			dos.flush();
+			fos.getFD().sync();
+		} finally {
+			is.close();
+			fos.close();
+		}
+		if(!temp.renameTo(target)) {
+			temp.delete();
+			throw new IOException("Could not rename " + temp.getName() + " to " + target.getName() + " !");
+		}
+		if(!segment.delete()) {
+			throw new IOException("Compressed " + segment.getName() + " to " + target.getName() + " but could not delete it !");
+		}
+	}
+
+	private static int readFully(InputStream is, byte[] buffer) throws IOException {
+		int total = 0;
+		while(total < buffer.length) {
+			int n = is.read(buffer, total, buffer.length - total);
+			if(n < 0) {
+				break;
+			}
+			total += n;
+		}
+		return total;
+	}
+
+	/* Restores original segment from its compressed file. */
+	static void decompress(File compressed, OutputStream os) throws IOException {
+		DataInputStream dis = new DataInputStream(new BufferedInputStream(new FileInputStream(compressed), 65536));
+		Inflater inflater = new Inflater(true);
+		try {
+			if((dis.readInt() != MAGIC) || (dis.readInt() != VERSION)) {
+				throw new IOException("Given file is not a compressed log segment !");
+			}
+			byte[] in = new byte[0];
+			byte[] out = new byte[BLOCK_SIZE];
+			while(true) {
+				int originalLength;
+				try {
+					originalLength = dis.readInt();
+				} catch (EOFException e) {
+					break;
+				}
+				int length = dis.readInt();
+				if((originalLength < 0) || (originalLength > BLOCK_SIZE) || (length < 0)) {
+					throw new IOException("Corrupted block in " + compressed.getName() + " !");
+				}
+				if(in.length < length) {
+					in = new byte[length];
+				}
+				dis.readFully(in, 0, length);
+				inflater.reset();
+				inflater.setInput(in, 0, length);
+				int n = 0;
+				while((n < originalLength) && !inflater.finished()) {
+					int ret = inflater.inflate(out, n, originalLength - n);
+					if((ret == 0) && inflater.needsInput()) {
+						break;
+					}
+					n += ret;
+				}
+				if(n != originalLength) {
+					throw new IOException("Corrupted block in " + compressed.getName() + " !");
+				}
+				os.write(out, 0, n);
+			}
+		} catch (DataFormatException e) {
+			throw new IOException("Corrupted block in " + compressed.getName() + " !");
+		} finally {
+			inflater.end();
+			dis.close();
+		}
+	}
+}
@@ -0,0 +1,367 @@
+/*
+ * This file is part of SerialPundit.
+ * 
+ * Copyright (C) 2014-2016, Rishi Gupta. All rights reserved.
+ *
+ * The SerialPundit is DUAL LICENSED. It is made available under the terms of the GNU Affero 
+ * General Public License (AGPL) v3.0 for non-commercial use and under the terms of a commercial 
+ * license for commercial use of this software. 
+ * 
+ * The SerialPundit is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+
+package comfilelogger;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import com.serialpundit.core.SerialComException;
+import com.serialpundit.serial.ISerialComDataListener;
+import com.serialpundit.serial.SerialComManager;
+
+/*
+ * Logging engine which does not need GUI. It logs data from any number of ports, each into its own
+ * series of segment files in the given directory.
+ *
+ * 1. Data is delivered by data listener of every port and appended to a memory mapped segment file
+ *    (see LogSegment), so logging a chunk costs a memory copy on looper thread of that port. Ports
+ *    never wait for each other. 64 ports at 921600 baud are about 6 MB/s in total which is far below
+ *    what copying into page cache sustains.
+ *
+ * 2. Segment is sealed and next one started when it is full or when rotation interval has elapsed.
+ *    Once a second dirty segments are forced to storage device and rotation of idle ports is checked.
+ *
+ * 3. If compression is enabled, sealed segments are compressed on a background thread (see LogCompressor).
+ *
+ * 4. On start, segments left unsealed by a previous run that did not stop cleanly are sealed using
+ *    length committed in their header, and compressed if compression is enabled.
+ *
+ * Application opens and configures ports itself and then calls addPort. Settings must be made before
+ * start is called.
+ */
+public final class LogEngine {
+
+	private static final int MIN_SEGMENT_SIZE = 64 * 1024;
+	private static final int MAX_SEGMENT_SIZE = 1024 * 1024 * 1024;
+	private static final long HOUSEKEEPING_PERIOD = 1000;
+
+	private final SerialComManager scm;
+	private final File directory;
+	private final ConcurrentHashMap<Long, PortLog> ports = new ConcurrentHashMap<Long, PortLog>();
+	private int segmentSize = 64 * 1024 * 1024;
+	private long rotationInterval = 60 * 60 * 1000;
+	private boolean timestamped = false;
+	private boolean compression = false;
+	private ILogErrorListener errorListener;
+	private ScheduledExecutorService housekeeper;
+	private LogCompressor compressor;
+	private volatile boolean started = false;
+
+	/*
+	 * One port being logged. Its data listener is called only from looper thread of the port, lock is
+	 * shared with housekeeping thread only.
+	 */
+	private final class PortLog implements ISerialComDataListener {
+
+		private final String portName;
+		private final String filePrefix;
+		private LogSegment segment;
+		private boolean dirty;
+		private boolean failing;
+		private long bytesLogged;
+		private long bytesDropped;
+
+		PortLog(String portName) {
+			this.portName = portName;
+			String prefix = portName.replaceAll("[^A-Za-z0-9._-]", "_").replaceAll("^_+", "");
+			filePrefix = (prefix.length() == 0) ? "port" : prefix;
+		}
+
+		@Override
+		public void onNewSerialDataAvailable(byte[] data) {
+			long now = System.currentTimeMillis();
+			synchronized(this) {
+				int offset = 0;
+				try {
+					while(offset < data.length) {
+						if(segment == null) {
+							segment = LogSegment.create(nextFile(filePrefix), portName, segmentSize, timestamped);
+							failing = false;
+						}
+						int count = segment.append(data, offset, data.length - offset, now);
+						offset += count;
+						if(offset < data.length) {
+							rotate();
+						}
+					}
+					bytesLogged += data.length;
+					dirty = true;
+				} catch (IOException e) {
+					bytesDropped += data.length - offset;
+					segment = null;
+					if(!failing) {
+						failing = true;
+						reportError(portName, e);
+					}
+				}
+			}
+		}
+
+		@Override
+		public void onDataListenerError(int errorNum) {
+			reportError(portName, new SerialComException("Data listener error " + errorNum + " !"));
+		}
+
+		private void rotate() throws IOException {
+			LogSegment sealing = segment;
+			segment = null;
+			sealing.seal();
+			if(compressor != null) {
+				compressor.submit(sealing.getFile());
+			}
+		}
+
+		synchronized void housekeeping(long now) {
+			if(segment == null) {
+				return;
+			}
+			try {
+				if((rotationInterval > 0) && ((now - segment.getCreationTime()) >= rotationInterval)) {
+					rotate();
+				}else if(dirty) {
+					segment.force();
+				}
+				dirty = false;
+			} catch (IOException e) {
+				reportError(portName, e);
+			}
+		}
+
+		synchronized void close() throws IOException {
+			if(segment != null) {
+				rotate();
+			}
+		}
+
+		synchronized long getBytesLogged() {
+			return bytesLogged;
+		}
+
+		synchronized long getBytesDropped() {
+			return bytesDropped;
+		}
+	}
+
+	public LogEngine(SerialComManager scm, File directory) {
+		if((scm == null) || (directory == null)) {
+			throw new IllegalArgumentException("Argument scm and directory can not be null !");
+		}
+		this.scm = scm;
+		this.directory = directory;
+	}
+
+	/* Maximum number of data bytes in one segment, 64 MB by default. */
+	public void setSegmentSize(int segmentSize) {
+		checkNotStarted();
+		if((segmentSize < MIN_SEGMENT_SIZE) || (segmentSize > MAX_SEGMENT_SIZE)) {
+			throw new IllegalArgumentException("Segment size must be between 64 KB and 1 GB !");
+		}
+		this.segmentSize = segmentSize;
+	}
+
+	/* Time after which segment is rotated even if it is not full, 1 hour by default, 0 to rotate on size only. */
+	public void setRotationInterval(long millis) {
+		checkNotStarted();
+		if(millis < 0) {
+			throw new IllegalArgumentException("Rotation interval can not be negative !");
+		}
+		rotationInterval = millis;
+	}
+
+	/* If true every chunk of data is prefixed by time at which it was received, otherwise raw data is logged. */
+	public void setTimestamped(boolean timestamped) {
+		checkNotStarted();
+		this.timestamped = timestamped;
+	}
+
+	/* If true sealed segments are compressed on a background thread. */
+	public void setCompression(boolean compression) {
+		checkNotStarted();
+		this.compression = compression;
+	}
+
+	public void setErrorListener(ILogErrorListener errorListener) {
+		checkNotStarted();
+		this.errorListener = errorListener;
+	}
+
+	private void checkNotStarted() {
+		if(started) {
+			throw new IllegalStateException("Settings can not be changed after log engine has been started !");
+		}
+	}
+
+	/* Prepares directory, recovers segments of previous run and starts background threads. */
+	public synchronized void start() throws IOException {
+		if(started) {
+			return;
+		}
+		if(!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Could not create directory " + directory + " !");
+		}
+		if(compression) {
+			compressor = new LogCompressor(errorListener);
+		}
+		recoverPreviousRun();
+
+		housekeeper = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "SerialPundit log housekeeping");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		housekeeper.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				long now = System.currentTimeMillis();
+				for (PortLog log : ports.values()) {
+					log.housekeeping(now);
+				}
+			}
+		}, HOUSEKEEPING_PERIOD, HOUSEKEEPING_PERIOD, TimeUnit.MILLISECONDS);
+		started = true;
+	}
+
+	private void recoverPreviousRun() {
+		File[] files = directory.listFiles();
+		if(files == null) {
+			return;
+		}
+		for (File file : files) {
+			String name = file.getName();
+			if(name.endsWith(LogCompressor.TEMP_SUFFIX)) {
+				file.delete();
+			}else if(name.endsWith(LogSegment.SUFFIX)) {
+				try {
+					LogSegment.recover(file);
+					if(compressor != null) {
+						compressor.submit(file);
+					}
+				} catch (IOException e) {
+					reportError(name, e);
+				}
+			}
+		}
+	}
+
+	/* Starts logging data of an opened and configured port. Data listener is registered on given handle. */
+	public void addPort(long handle, String portName) throws SerialComException {
+		if(!started) {
+			throw new IllegalStateException("Log engine has not been started !");
+		}
+		if(portName == null) {
+			throw new IllegalArgumentException("Argument portName can not be null !");
+		}
+		PortLog log = new PortLog(portName);
+		if(ports.putIfAbsent(handle, log) != null) {
+			throw new IllegalStateException("Given handle is already being logged !");
+		}
+		try {
+			scm.registerDataListener(handle, log);
+		} catch (SerialComException e) {
+			ports.remove(handle);
+			throw e;
+		}
+	}
+
+	/* Stops logging given handle and seals its current segment. Returns false if handle was not being logged. */
+	public boolean removePort(long handle) throws IOException {
+		PortLog log = ports.remove(handle);
+		if(log == null) {
+			return false;
+		}
+		try {
+			scm.unregisterDataListener(handle, log);
+		} finally {
+			log.close();
+		}
+		return true;
+	}
+
+	/* Stops logging all ports, seals their segments and waits until pending compression has finished. */
+	public synchronized void stop() throws IOException {
+		if(!started) {
+			return;
+		}
+		IOException error = null;
+		for (Long handle : ports.keySet()) {
+			try {
+				removePort(handle);
+			} catch (IOException e) {
+				error = e;
+			}
+		}
+		housekeeper.shutdown();
+		if(compressor != null) {
+			try {
+				compressor.shutdown();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			compressor = null;
+		}
+		started = false;
+		if(error != null) {
+			throw error;
+		}
+	}
+
+	/* Total number of bytes logged from all ports currently being logged. */
+	public long getBytesLogged() {
+		long total = 0;
+		for (PortLog log : ports.values()) {
+			total += log.getBytesLogged();
+		}
+		return total;
+	}
+
+	/* Total number of bytes which could not be logged due to I/O errors. */
+	public long getBytesDropped() {
+		long total = 0;
+		for (PortLog log : ports.values()) {
+			total += log.getBytesDropped();
+		}
+		return total;
+	}
+
+	/* Number of ports currently being logged. */
+	public int getPortCount() {
+		return ports.size();
+	}
+
+	private File nextFile(String prefix) {
+		String base = prefix + "-" + new SimpleDateFormat("yyyyMMdd-HHmmss-SSS").format(new Date());
+		String name = base;
+		for (int x = 1; new File(directory, name + LogSegment.SUFFIX).exists() || new File(directory, name + LogCompressor.SUFFIX).exists(); x++) {
+			name = base + "~" + x;
+		}
+		return new File(directory, name + LogSegment.SUFFIX);
+	}
+
+	private void reportError(String source, Exception e) {
+		ILogErrorListener listener = errorListener;
+		if(listener != null) {
+			listener.onLogError(source, e);
+		}
+	}
+}
@@ -0,0 +1,274 @@
+/*
+ * This file is part of SerialPundit.
+ * 
+ * Copyright (C) 2014-2016, Rishi Gupta. All rights reserved.
+ *
+ * The SerialPundit is DUAL LICENSED. It is made available under the terms of the GNU Affero 
+ * General Public License (AGPL) v3.0 for non-commercial use and under the terms of a commercial 
+ * license for commercial use of this software. 
+ * 
+ * The SerialPundit is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+
+package comfilelogger;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.zip.CRC32;
+
+/*
+ * A segment file holding data logged from one port. It is memory mapped in full when created, so
+ * appending data is a memory copy. Layout is:
+ *
+ * header (128 bytes) : magic, version, flags, creation time, committed data length, committed number
+ *                      of chunks, time of last write, sealed flag, port name.
+ * data               : raw bytes, or records of [time in milliseconds][length][bytes] if timestamped.
+ * footer (32 bytes)  : magic, data length, number of chunks, time of last write, CRC32 of data.
+ *
+ * Committed length in header is updated after every append. Mapped pages belong to operating system,
+ * so if the process dies the header still tells how much data is complete. On start up recover()
+ * writes the missing footer of such segments using header. Footer is always found at header size
+ * plus data length, file may be longer where truncating a mapped file is not permitted.
+ *
+ * Sealing releases the mapping right away where Java runtime permits it, so that segment can be
+ * truncated and later deleted even on platforms which refuse both for a mapped file.
+ */
+final class LogSegment {
+
+	static final int MAGIC = 0x53504C47;        // "SPLG"
+	static final int FOOTER_MAGIC = 0x53504C46; // "SPLF"
+	static final int VERSION = 1;
+	static final int FLAG_TIMESTAMPED = 0x01;
+	static final int HEADER_SIZE = 128;
+	static final int FOOTER_SIZE = 32;
+	static final int RECORD_HEADER_SIZE = 12;
+	static final String SUFFIX = ".seg";
+
+	private static final int OFFSET_DATA_LENGTH = 16;
+	private static final int OFFSET_CHUNKS = 24;
+	private static final int OFFSET_LAST_WRITE = 32;
+	private static final int OFFSET_SEALED = 40;
+	private static final int OFFSET_NAME = 44;
+	private static final int MAX_NAME_LENGTH = HEADER_SIZE - OFFSET_NAME - 2;
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private final File file;
+	private final RandomAccessFile raf;
+	private final MappedByteBuffer map;
+	private final boolean timestamped;
+	private final long creationTime;
+	private final int capacity;
+	private final CRC32 crc = new CRC32();
+	private final byte[] recordHeader = new byte[RECORD_HEADER_SIZE];
+	private int dataLength;
+	private long chunks;
+	private long lastWrite;
+
+	private LogSegment(File file, RandomAccessFile raf, MappedByteBuffer map, int capacity, boolean timestamped, long creationTime) {
+		this.file = file;
+		this.raf = raf;
+		this.map = map;
+		this.capacity = capacity;
+		this.timestamped = timestamped;
+		this.creationTime = creationTime;
+		this.lastWrite = creationTime;
+	}
+
+	/* Creates a new segment file able to hold capacity bytes of data. */
+	static LogSegment create(File file, String portName, int capacity, boolean timestamped) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			raf.setLength(0);
+			MappedByteBuffer map = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + capacity + FOOTER_SIZE);
+			long now = System.currentTimeMillis();
+			byte[] name = portName.getBytes(UTF8);
+			int nameLength = Math.min(name.length, MAX_NAME_LENGTH);
+			map.putInt(0, MAGIC);
+			map.putShort(4, (short) VERSION);
+			map.putShort(6, (short) (timestamped ? FLAG_TIMESTAMPED : 0));
+			map.putLong(8, now);
+			map.putLong(OFFSET_LAST_WRITE, now);
+			map.putShort(OFFSET_NAME, (short) nameLength);
+			map.position(OFFSET_NAME + 2);
+			map.put(name, 0, nameLength);
+			map.position(HEADER_SIZE);
+			return new LogSegment(file, raf, map, capacity, timestamped, now);
+		} catch (IOException e) {
+			raf.close();
+			throw e;
+		}
+	}
+
+	File getFile() {
+		return file;
+	}
+
+	long getCreationTime() {
+		return creationTime;
+	}
+
+	/*
+	 * Appends as much of the given data as fits and returns number of bytes consumed. In timestamped mode
+	 * data that does not fit is left for a record in next segment carrying the same time.
+	 */
+	int append(byte[] data, int offset, int length, long time) {
+		int room = capacity - dataLength;
+		if(timestamped) {
+			room -= RECORD_HEADER_SIZE;
+			if(room <= 0) {
+				return 0;
+			}
+			int count = Math.min(room, length);
+			putLong(recordHeader, 0, time);
+			putInt(recordHeader, 8, count);
+			map.put(recordHeader);
+			map.put(data, offset, count);
+			crc.update(recordHeader);
+			crc.update(data, offset, count);
+			commit(RECORD_HEADER_SIZE + count, time);
+			return count;
+		}
+		int count = Math.min(room, length);
+		if(count > 0) {
+			map.put(data, offset, count);
+			crc.update(data, offset, count);
+			commit(count, time);
+		}
+		return count;
+	}
+
+	private void commit(int count, long time) {
+		dataLength += count;
+		chunks++;
+		lastWrite = time;
+		map.putLong(OFFSET_DATA_LENGTH, dataLength);
+		map.putLong(OFFSET_CHUNKS, chunks);
+		map.putLong(OFFSET_LAST_WRITE, time);
+	}
+
+	/* Writes dirty pages to storage device, needed only to survive crash of operating system. */
+	void force() {
+		map.force();
+	}
+
+	/* Writes footer, marks segment sealed and closes file. Segment must not be used afterwards. */
+	void seal() throws IOException {
+		map.position(HEADER_SIZE + dataLength);
+		map.putInt(FOOTER_MAGIC);
+		map.putLong(dataLength);
+		map.putLong(chunks);
+		map.putLong(lastWrite);
+		map.putInt((int) crc.getValue());
+		map.force();
+		map.putInt(OFFSET_SEALED, 1);
+		map.force();
+		unmap(map);
+		try {
+			raf.getChannel().truncate(HEADER_SIZE + dataLength + FOOTER_SIZE);
+		} catch (IOException e) {
+			// not permitted while file is mapped on some platforms, footer is located through header.
+		}
+		raf.close();
+	}
+
+	/*
+	 * Releases the mapping now instead of when buffer is garbage collected. Returns false if this Java
+	 * runtime offers no way to do so. Buffer must not be accessed afterwards.
+	 */
+	private static boolean unmap(MappedByteBuffer buffer) {
+		try {
+			// Java 9 and later.
+			Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+			Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+			theUnsafe.setAccessible(true);
+			invokeCleaner.invoke(theUnsafe.get(null), buffer);
+			return true;
+		} catch (Exception e) {
+		}
+		try {
+			// Java 8 and earlier.
+			Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+			cleanerMethod.setAccessible(true);
+			Object cleaner = cleanerMethod.invoke(buffer);
+			if(cleaner != null) {
+				cleaner.getClass().getMethod("clean").invoke(cleaner);
+				return true;
+			}
+		} catch (Exception e) {
+		}
+		return false;
+	}
+
+	/*
+	 * Seals a segment left behind unsealed by a process that did not stop cleanly. Returns false if file
+	 * is not a segment or is already sealed.
+	 */
+	static boolean recover(File file) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			long size = raf.length();
+			if((size < HEADER_SIZE) || (raf.readInt() != MAGIC)) {
+				return false;
+			}
+			raf.seek(OFFSET_SEALED);
+			if(raf.readInt() != 0) {
+				return false;
+			}
+			raf.seek(OFFSET_DATA_LENGTH);
+			long dataLength = Math.max(0, Math.min(raf.readLong(), size - HEADER_SIZE));
+			long chunks = raf.readLong();
+			long lastWrite = raf.readLong();
+
+			CRC32 crc = new CRC32();
+			byte[] buffer = new byte[65536];
+			raf.seek(HEADER_SIZE);
+			long remaining = dataLength;
+			while(remaining > 0) {
+				int n = raf.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+				if(n < 0) {
+					break;
+				}
+				crc.update(buffer, 0, n);
+				remaining -= n;
+			}
+
+			raf.seek(HEADER_SIZE + dataLength);
+			raf.writeInt(FOOTER_MAGIC);
+			raf.writeLong(dataLength);
+			raf.writeLong(chunks);
+			raf.writeLong(lastWrite);
+			raf.writeInt((int) crc.getValue());
+			raf.setLength(HEADER_SIZE + dataLength + FOOTER_SIZE);
+			raf.getFD().sync();
+			raf.seek(OFFSET_SEALED);
+			raf.writeInt(1);
+			raf.getFD().sync();
+			return true;
+		} finally {
+			raf.close();
+		}
+	}
+
+	private static void putLong(byte[] b, int offset, long value) {
+		for(int x = 7; x >= 0; x--) {
+			b[offset + x] = (byte) value;
+			value >>>= 8;
+		}
+	}
+
+	private static void putInt(byte[] b, int offset, int value) {
+		for(int x = 3; x >= 0; x--) {
+			b[offset + x] = (byte) value;
+			value >>>= 8;
+		}
+	}
+}
@@ -0,0 +1,195 @@
+/*
+ * This file is part of SerialPundit.
+ * 
+ * Copyright (C) 2014-2016, Rishi Gupta. All rights reserved.
+ *
+ * The SerialPundit is DUAL LICENSED. It is made available under the terms of the GNU Affero 
+ * General Public License (AGPL) v3.0 for non-commercial use and under the terms of a commercial 
+ * license for commercial use of this software. 
+ * 
+ * The SerialPundit is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+
+package com.serialpundit.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>Accounts calls made from Java into native libraries of SerialPundit. For every native method it 
+ * counts calls and time spent, and for read/write methods bytes requested versus transferred, so that 
+ * short reads/writes (fewer bytes than asked for) can be spotted. The report lists methods which cost 
+ * most, which helps in tuning read sizes and deciding where calls should be batched.</p>
+ * 
+ * <p>Profiling is off by default and has no cost then. It is turned on by calling setEnabled(true) or by 
+ * setting system property <code>serialpundit.profilejni</code> to true, in either case before creating 
+ * SerialComManager, SerialComRawHID or SerialComUSB instances; these pick an instrumented JNI bridge 
+ * when they are created and keep it.</p>
+ * 
+ * @author Rishi Gupta
+ */
+public final class SerialComJNIProfiler {
+
+    private static final class MethodStats {
+        final String name;
+        final AtomicLong calls = new AtomicLong();
+        final AtomicLong totalNanos = new AtomicLong();
+        final AtomicLong maxNanos = new AtomicLong();
+        final AtomicLong bytesRequested = new AtomicLong();
+        final AtomicLong bytesTransferred = new AtomicLong();
+        final AtomicLong shortCalls = new AtomicLong();
+        final AtomicLong failedCalls = new AtomicLong();
+
+        MethodStats(String name) {
+            this.name = name;
+        }
+    }
+
+    private static volatile boolean enabled = Boolean.getBoolean("serialpundit.profilejni");
+    private static final List<MethodStats> methods = new ArrayList<MethodStats>();
+    private static volatile MethodStats[] stats = new MethodStats[0];
+
+    private SerialComJNIProfiler() {
+    }
+
+    /**
+     * <p>Turns profiling on or off for instances created afterwards.</p>
+     * 
+     * @param enable true to use instrumented JNI bridges.
+     */
+    public static void setEnabled(boolean enable) {
+        enabled = enable;
+    }
+
+    /**
+     * <p>Tells whether newly created instances will be profiled.</p>
+     * 
+     * @return true if profiling is enabled.
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * <p>Registers a native method to be accounted. Called once per method by instrumented bridges 
+     * when they are loaded.</p>
+     * 
+     * @param name name of native method, prefixed with its class name.
+     * @return identifier to be passed to record methods.
+     */
+    public static int register(String name) {
+        synchronized(methods) {
+            methods.add(new MethodStats(name));
+            stats = methods.toArray(new MethodStats[methods.size()]);
+            return methods.size() - 1;
+        }
+    }
+
+    /**
+     * <p>Records a call to a native method.</p>
+     * 
+     * @param id identifier returned by register method.
+     * @param startNanos value of System.nanoTime() taken just before the call.
+     */
+    public static void record(int id, long startNanos) {
+        long nanos = System.nanoTime() - startNanos;
+        MethodStats s = stats[id];
+        s.calls.incrementAndGet();
+        s.totalNanos.addAndGet(nanos);
+        long max = s.maxNanos.get();
+        while ((nanos > max) && !s.maxNanos.compareAndSet(max, nanos)) {
+            max = s.maxNanos.get();
+        }
+    }
+
+    /**
+     * <p>Records a call to a native read/write method.</p>
+     * 
+     * @param id identifier returned by register method.
+     * @param startNanos value of System.nanoTime() taken just before the call.
+     * @param requested number of bytes asked to be read/written.
+     * @param transferred number of bytes actually read/written, negative if call failed.
+     */
+    public static void record(int id, long startNanos, int requested, int transferred) {
+        record(id, startNanos);
+        MethodStats s = stats[id];
+        s.bytesRequested.addAndGet(requested);
+        if(transferred < 0) {
+            s.failedCalls.incrementAndGet();
+        }else {
+            s.bytesTransferred.addAndGet(transferred);
+            if(transferred < requested) {
+                s.shortCalls.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * <p>Sets all accounted values to 0.</p>
+     */
+    public static void reset() {
+        for (MethodStats s : stats) {
+            s.calls.set(0);
+            s.totalNanos.set(0);
+            s.maxNanos.set(0);
+            s.bytesRequested.set(0);
+            s.bytesTransferred.set(0);
+            s.shortCalls.set(0);
+            s.failedCalls.set(0);
+        }
+    }
+
+    /**
+     * <p>Gives a text report of native methods which took most time in total, one line per method with 
+     * number of calls, total, average and maximum time, and for read/write methods number of short and 
+     * failed calls and average bytes transferred per call. Methods never called are left out.</p>
+     * 
+     * @param topN maximum number of methods to list.
+     * @return report as multi line string.
+     */
+    public static String getReport(int topN) {
+        List<MethodStats> called = new ArrayList<MethodStats>();
+        for (MethodStats s : stats) {
+            if(s.calls.get() > 0) {
+                called.add(s);
+            }
+        }
+        Collections.sort(called, new Comparator<MethodStats>() {
+            @Override
+            public int compare(MethodStats a, MethodStats b) {
+                long x = a.totalNanos.get();
+                long y = b.totalNanos.get();
+                return (x < y) ? 1 : ((x == y) ? 0 : -1);
+            }
+        });
+
+        long total = 0;
+        for (MethodStats s : called) {
+            total += s.calls.get();
+        }
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.ENGLISH, "JNI transitions: %d%n", total));
+        sb.append(String.format(Locale.ENGLISH, "%-55s %10s %12s %10s %10s %8s %8s %10s%n", "method", "calls", 
+                "total(ms)", "avg(us)", "max(us)", "short", "failed", "avg bytes"));
+        int count = Math.min(topN, called.size());
+        for(int x = 0; x < count; x++) {
+            MethodStats s = called.get(x);
+            long calls = s.calls.get();
+            long requested = s.bytesRequested.get();
+            sb.append(String.format(Locale.ENGLISH, "%-55s %10d %12.3f %10.1f %10.1f", s.name, calls, 
+                    s.totalNanos.get() / 1e6, (s.totalNanos.get() / 1e3) / calls, s.maxNanos.get() / 1e3));
+            if(requested > 0) {
+                sb.append(String.format(Locale.ENGLISH, " %8d %8d %10.1f%n", s.shortCalls.get(), s.failedCalls.get(), 
+                        (double) s.bytesTransferred.get() / calls));
+            }else {
+                sb.append(String.format(Locale.ENGLISH, " %8s %8s %10s%n", "-", "-", "-"));
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -13,6 +13,11 @@
 
 package com.serialpundit.core.util;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.zip.CRC32;
+import java.util.zip.Checksum;
+
 /**
  * <p>Utility class to calculate and generate CRC values for a given message. This can be used 
  * in X/Y/Z modem etc protocol implementations and in developing custom protocols for transmitting 
@@ -22,6 +27,64 @@ package com.serialpundit.core.util;
  */
 public final class SerialComCRCUtil {
 
+    // Number of 8 byte words after which 16 bit lanes of SWAR sum must be folded before they overflow.
+    private static final int SWAR_FOLD_INTERVAL = 128;
+    private static final long SWAR_LANE_MASK = 0x00FF00FF00FF00FFL;
+
+    /* java.util.zip.CRC32C is available from Java 9 onwards where it is intrinsified using SSE4.2/ARMv8 
+     * CRC32 instructions. On older JVM table driven software implementation is used. */
+    private static final Class<?> CRC32C_CLASS;
+    static {
+        Class<?> c = null;
+        try {
+            c = Class.forName("java.util.zip.CRC32C");
+        } catch (Exception e) {
+        }
+        CRC32C_CLASS = c;
+    }
+
+    private static final int[] crc32cTable = new int[256];
+    static {
+        for (int i = 0; i < 256; i++) {
+            int crc = i;
+            for (int j = 0; j < 8; j++) {
+                crc = ((crc & 1) != 0) ? ((crc >>> 1) ^ 0x82F63B78) : (crc >>> 1);
+            }
+            crc32cTable[i] = crc;
+        }
+    }
+
+    private static final int[] crc32Table = new int[256];
+    static {
+        for (int i = 0; i < 256; i++) {
+            int crc = i;
+            for (int j = 0; j < 8; j++) {
+                crc = ((crc & 1) != 0) ? ((crc >>> 1) ^ 0xEDB88320) : (crc >>> 1);
+            }
+            crc32Table[i] = crc;
+        }
+    }
+
+    // Checksum objects are not thread safe, so each thread gets its own re-usable instance.
+    private static final ThreadLocal<Checksum> crc32Holder = new ThreadLocal<Checksum>() {
+        @Override
+        protected Checksum initialValue() {
+            return new CRC32();
+        }
+    };
+    private static final ThreadLocal<Checksum> crc32cHolder = new ThreadLocal<Checksum>() {
+        @Override
+        protected Checksum initialValue() {
+            if(CRC32C_CLASS != null) {
+                try {
+                    return (Checksum) CRC32C_CLASS.getDeclaredConstructor().newInstance();
+                } catch (Exception e) {
+                }
+            }
+            return null;
+        }
+    };
+
     private int[] crc8wire1Table = { 
             0x00, 0x5e, 0xbc, 0xe2, 0x61, 0x3f, 0xdd, 0x83, 0xc2, 0x9c, 0x7e, 
             0x20, 0xa3, 0xfd, 0x1f, 0x41, 0x9d, 0xc3, 0x21, 0x7f, 0xfc, 0xa2, 
@@ -200,6 +263,9 @@ public final class SerialComCRCUtil {
      * end index are included in calculation. The checksum returned is the sum of all bytes in 
      * the data packet modulo 256.</p>
      * 
+     * <p>Bytes are summed in independent accumulators 8 at a time so that the loop is not serialized 
+     * on a single add chain and may be vectorized by the JIT compiler.</p>
+     * 
      * @param data byte type buffer for whom checksum is to be calculated.
      * @param start offset in supplied data buffer from where checksum calculation should start.
      * @param end offset in data buffer till which checksum should be calculated.
@@ -207,12 +273,65 @@ public final class SerialComCRCUtil {
      */
     public byte getChecksumValue(byte[] data, int start, int end) {
         int x = start;
-        int checksum = 0x00;
+        int s0 = 0;
+        int s1 = 0;
+        int s2 = 0;
+        int s3 = 0;
+        int last = end - 7;
+        while (x <= last) {
+            s0 += data[x]     + data[x + 4];
+            s1 += data[x + 1] + data[x + 5];
+            s2 += data[x + 2] + data[x + 6];
+            s3 += data[x + 3] + data[x + 7];
+            x += 8;
+        }
         while (x <= end) {
-            checksum = checksum + data[x];
+            s0 += data[x];
             x++;
         }
-        return (byte) (checksum % 256);
+        return (byte) (s0 + s1 + s2 + s3);
+    }
+
+    /** 
+     * <p>Calculates 8 bit checksum value i.e. sum of all bytes modulo 256 for the bytes between 
+     * position and limit of the given buffer. The position, limit, mark and byte order of the buffer 
+     * are not modified.</p>
+     * 
+     * <p>Data is consumed 8 bytes at a time as a long word and bytes are added in 16 bit lanes 
+     * (SIMD within a register). This is specially fast for direct byte buffers used with 
+     * readBytesDirect/writeBytesDirect methods.</p>
+     * 
+     * @param data buffer for whom checksum is to be calculated.
+     * @return checksum value for the given data bytes.
+     * @throws NullPointerException if data is null.
+     */
+    public byte getChecksumValue(ByteBuffer data) {
+        int x = data.position();
+        int end = data.limit();
+        long lanes = 0;
+        int sum = 0;
+        int words = 0;
+
+        // byte order does not affect sum, little endian (native on common platforms) gives fastest getLong. 
+        // A view is used so that byte order of caller's buffer is never changed, even temporarily.
+        ByteBuffer view = data.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        while ((end - x) >= 8) {
+            long v = view.getLong(x);
+            lanes += (v & SWAR_LANE_MASK) + ((v >>> 8) & SWAR_LANE_MASK);
+            x += 8;
+            words++;
+            if(words == SWAR_FOLD_INTERVAL) {
+                sum += foldLanes(lanes);
+                lanes = 0;
+                words = 0;
+            }
+        }
+        sum += foldLanes(lanes);
+        while (x < end) {
+            sum += data.get(x);
+            x++;
+        }
+        return (byte) sum;
     }
 
     /**
@@ -225,26 +344,146 @@ public final class SerialComCRCUtil {
      * @throws NullPointerException if <code>data</code> is <code>null</code>.
      * @throws IndexOutOfBoundsException if offset is negative, length is negative, or length is 
      *          greater than data.length - offset.
-     * @throws IllegalArgumentException if data is not a byte type array.
      */
     public byte getLRCCheckSum(final byte[] data, int offset, int length) {
-        byte checkSum = 0;
-
         if(data == null) {
             throw new NullPointerException("Argument data can not be null !");
         }
         if((offset < 0) || (length < 0) || (length > (data.length - offset))) {
             throw new IndexOutOfBoundsException("Index violation detected !");
         }
-        if(!(data instanceof byte[])) {
-            throw new IllegalArgumentException("Argument data is not byte type array !");
+
+        // XOR is associative, so 4 independent accumulators give same result as a single one.
+        int x0 = 0;
+        int x1 = 0;
+        int x2 = 0;
+        int x3 = 0;
+        int i = offset;
+        int end = offset + length;
+        int last = end - 4;
+        while (i <= last) {
+            x0 ^= data[i];
+            x1 ^= data[i + 1];
+            x2 ^= data[i + 2];
+            x3 ^= data[i + 3];
+            i += 4;
+        }
+        while (i < end) {
+            x0 ^= data[i];
+            i++;
+        }
+
+        return (byte) (x0 ^ x1 ^ x2 ^ x3);
+    }
+
+    /**
+     * <p>Calculates longitudinal redundancy checksum value for the bytes between position and limit 
+     * of the given buffer. The position, limit, mark and byte order of the buffer are not modified.</p>
+     * 
+     * <p>Data is XORed 8 bytes at a time as a long word and the 8 bytes of the result are folded 
+     * at the end (SIMD within a register).</p>
+     * 
+     * @param data buffer for whom LRC checksum is to be calculated.
+     * @return LRC checksum value for the given data bytes.
+     * @throws NullPointerException if data is null.
+     */
+    public byte getLRCCheckSum(ByteBuffer data) {
+        int x = data.position();
+        int end = data.limit();
+        long acc = 0;
+
+        ByteBuffer view = data.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        while ((end - x) >= 8) {
+            acc ^= view.getLong(x);
+            x += 8;
+        }
+        acc ^= acc >>> 32;
+        acc ^= acc >>> 16;
+        acc ^= acc >>> 8;
+        int lrc = (int) acc;
+        while (x < end) {
+            lrc ^= data.get(x);
+            x++;
         }
+        return (byte) lrc;
+    }
+
+    /** 
+     * <p>Calculates CRC-32 (IEEE 802.3, as used in ZMODEM, Ethernet, zip etc) value for the data bytes 
+     * given. The data bytes at start and end index are included in calculation.</p>
+     * 
+     * <p>This uses java.util.zip.CRC32 which is replaced by the JVM with hardware accelerated 
+     * (carry-less multiplication) implementation on platforms supporting it.</p>
+     * 
+     * @param data byte type buffer for whom CRC is to be calculated.
+     * @param start offset in supplied data buffer from where CRC calculation should start.
+     * @param end offset in data buffer till which CRC should be calculated.
+     * @return CRC value of specified data bytes in the lower 32 bits of returned value.
+     */
+    public long getCRC32Value(byte[] data, int start, int end) {
+        Checksum crc = crc32Holder.get();
+        crc.reset();
+        crc.update(data, start, end - start + 1);
+        return crc.getValue();
+    }
 
-        for (int i = offset; i < offset + length; i++) {
-            checkSum ^= data[i];
+    /** 
+     * <p>Continues CRC-32 (IEEE 802.3) calculation from a previously calculated value, so that CRC of 
+     * a long stream can be maintained across blocks and even across program runs. Starting with 0 and 
+     * feeding all data bytes gives the same value as getCRC32Value. The data bytes at start and end 
+     * index are included in calculation.</p>
+     * 
+     * @param crc CRC-32 value of all data bytes preceding these data bytes, 0 if there are none.
+     * @param data byte type buffer for whom CRC is to be calculated.
+     * @param start offset in supplied data buffer from where CRC calculation should start.
+     * @param end offset in data buffer till which CRC should be calculated.
+     * @return CRC value of preceding and specified data bytes in the lower 32 bits of returned value.
+     */
+    public long updateCRC32Value(long crc, byte[] data, int start, int end) {
+        int x = start;
+        int crcVal = ~((int) crc);
+        while (x <= end) {
+            crcVal = (crcVal >>> 8) ^ crc32Table[(crcVal ^ data[x]) & 0xFF];
+            x++;
         }
+        return (~crcVal) & 0xFFFFFFFFL;
+    }
 
-        return checkSum;
+    /** 
+     * <p>Calculates CRC-32C (Castagnoli, as used in iSCSI, SCTP, ext4 etc) value for the data bytes 
+     * given. The data bytes at start and end index are included in calculation.</p>
+     * 
+     * <p>On Java 9 and above this delegates to java.util.zip.CRC32C which uses dedicated CRC32 CPU 
+     * instructions. On older JVM pre-defined table is used.</p>
+     * 
+     * @param data byte type buffer for whom CRC is to be calculated.
+     * @param start offset in supplied data buffer from where CRC calculation should start.
+     * @param end offset in data buffer till which CRC should be calculated.
+     * @return CRC value of specified data bytes in the lower 32 bits of returned value.
+     */
+    public long getCRC32CValue(byte[] data, int start, int end) {
+        Checksum crc = crc32cHolder.get();
+        if(crc != null) {
+            crc.reset();
+            crc.update(data, start, end - start + 1);
+            return crc.getValue();
+        }
+
+        int x = start;
+        int crcVal = 0xFFFFFFFF;
+        while (x <= end) {
+            crcVal = (crcVal >>> 8) ^ crc32cTable[(crcVal ^ data[x]) & 0xFF];
+            x++;
+        }
+        return (~crcVal) & 0xFFFFFFFFL;
+    }
+
+    /*
+     * Adds the four 16 bit lanes of SWAR accumulator. Only lower 8 bits of result are meaningful 
+     * to caller.
+     */
+    private static int foldLanes(long lanes) {
+        return (int) ((lanes & 0xFFFF) + ((lanes >>> 16) & 0xFFFF) + ((lanes >>> 32) & 0xFFFF) + ((lanes >>> 48) & 0xFFFF));
     }
 
     /** 
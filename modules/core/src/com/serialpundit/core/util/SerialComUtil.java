@@ -17,6 +17,8 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.ArrayList;
 
 /**
@@ -28,6 +30,36 @@ public final class SerialComUtil {
 
     private static final String HEXNUM = "0123456789ABCDEF";
 
+    /* Pre-computed 2 character hex representation of every byte value, so that a byte is converted 
+     * with a single table lookup instead of 2 shifts, 2 masks and 2 charAt calls. */
+    private static final char[] HEXPAIRCHARS = new char[512];
+    private static final byte[] HEXPAIRBYTES = new byte[512];
+
+    // Value of ASCII hex digit or -1 if the character is not a hex digit.
+    private static final byte[] HEXVALUES = new byte[128];
+
+    static {
+        for (int x = 0; x < 256; x++) {
+            HEXPAIRCHARS[2 * x] = HEXNUM.charAt(x >>> 4);
+            HEXPAIRCHARS[(2 * x) + 1] = HEXNUM.charAt(x & 0x0F);
+            HEXPAIRBYTES[2 * x] = (byte) HEXPAIRCHARS[2 * x];
+            HEXPAIRBYTES[(2 * x) + 1] = (byte) HEXPAIRCHARS[(2 * x) + 1];
+        }
+        for (int x = 0; x < 128; x++) {
+            HEXVALUES[x] = -1;
+        }
+        for (int x = 0; x < 10; x++) {
+            HEXVALUES['0' + x] = (byte) x;
+        }
+        for (int x = 0; x < 6; x++) {
+            HEXVALUES['A' + x] = (byte) (10 + x);
+            HEXVALUES['a' + x] = (byte) (10 + x);
+        }
+    }
+
+    private static final long SWAR_ONES = 0x0101010101010101L;
+    private static final long SWAR_HIGHS = 0x8080808080808080L;
+
     /**
      * <p>Allocates a new SerialComUtil object.</p>
      */
@@ -80,26 +112,143 @@ public final class SerialComUtil {
         int length = data.length - 1;
 
         if(data.length > 0) {
-            sBuilder = new StringBuilder(2 * data.length);
             if(separator != null) {
+                sBuilder = new StringBuilder((2 + separator.length()) * data.length);
                 for (final byte b : data) {
-                    sBuilder.append(HEXNUM.charAt((b & 0xF0) >> 4)).append(HEXNUM.charAt((b & 0x0F)));
+                    sBuilder.append(HEXPAIRCHARS, 2 * (b & 0xFF), 2);
                     if(x < length) {
                         sBuilder.append(separator);
                     }
                     x++;
                 }
+                return sBuilder.toString();
             }else {
-                for (final byte b : data) {
-                    sBuilder.append(HEXNUM.charAt((b & 0xF0) >> 4)).append(HEXNUM.charAt((b & 0x0F)));
-                }
+                char[] hex = new char[2 * data.length];
+                byteArrayToHexChars(data, 0, data.length, hex, 0);
+                return new String(hex);
             }
-            return sBuilder.toString();
         }
 
         return new String();
     }
 
+    /**
+     * <p>Converts given bytes into upper case hex characters and place them in the given character 
+     * array. Nothing is allocated, so this can be used for hex dumping every frame in logging and 
+     * diagnostic paths with a re-used destination array.</p>
+     * 
+     * @param data byte array to be converted.
+     * @param offset index of first byte to convert.
+     * @param length number of bytes to convert.
+     * @param dest array in which 2 * length characters will be saved.
+     * @param destOffset index in dest at which first character will be saved.
+     * @return number of characters saved in dest.
+     * @throws NullPointerException if data or dest is null.
+     * @throws IndexOutOfBoundsException if offset, length or destOffset is negative, or if data or dest 
+     *          does not have enough space.
+     */
+    public static int byteArrayToHexChars(final byte[] data, int offset, int length, char[] dest, int destOffset) {
+        if((data == null) || (dest == null)) {
+            throw new NullPointerException("Argument data and dest can not be null !");
+        }
+        if((offset < 0) || (length < 0) || (destOffset < 0) || (length > (data.length - offset)) || 
+                ((2 * length) > (dest.length - destOffset))) {
+            throw new IndexOutOfBoundsException("Index violation detected !");
+        }
+
+        int end = offset + length;
+        int y = destOffset;
+        for (int x = offset; x < end; x++) {
+            int i = (data[x] & 0xFF) << 1;
+            dest[y] = HEXPAIRCHARS[i];
+            dest[y + 1] = HEXPAIRCHARS[i + 1];
+            y += 2;
+        }
+        return 2 * length;
+    }
+
+    /**
+     * <p>Converts given bytes into upper case hex characters encoded as ASCII bytes and place them in the 
+     * given byte array. This is useful when hex dump is to be written directly to a file or socket 
+     * without character encoding step.</p>
+     * 
+     * @param data byte array to be converted.
+     * @param offset index of first byte to convert.
+     * @param length number of bytes to convert.
+     * @param dest array in which 2 * length ASCII bytes will be saved.
+     * @param destOffset index in dest at which first ASCII byte will be saved.
+     * @return number of bytes saved in dest.
+     * @throws NullPointerException if data or dest is null.
+     * @throws IndexOutOfBoundsException if offset, length or destOffset is negative, or if data or dest 
+     *          does not have enough space.
+     */
+    public static int byteArrayToHexBytes(final byte[] data, int offset, int length, byte[] dest, int destOffset) {
+        if((data == null) || (dest == null)) {
+            throw new NullPointerException("Argument data and dest can not be null !");
+        }
+        if((offset < 0) || (length < 0) || (destOffset < 0) || (length > (data.length - offset)) || 
+                ((2 * length) > (dest.length - destOffset))) {
+            throw new IndexOutOfBoundsException("Index violation detected !");
+        }
+
+        int end = offset + length;
+        int y = destOffset;
+        for (int x = offset; x < end; x++) {
+            int i = (data[x] & 0xFF) << 1;
+            dest[y] = HEXPAIRBYTES[i];
+            dest[y + 1] = HEXPAIRBYTES[i + 1];
+            y += 2;
+        }
+        return 2 * length;
+    }
+
+    /**
+     * <p>Converts given bytes into upper case hex characters encoded as ASCII bytes and put them in the 
+     * given byte buffer at its current position. The position is advanced by number of bytes put. Both 
+     * heap and direct byte buffers are supported.</p>
+     * 
+     * @param data byte array to be converted.
+     * @param offset index of first byte to convert.
+     * @param length number of bytes to convert.
+     * @param dest byte buffer in which 2 * length ASCII bytes will be put.
+     * @return number of bytes put in dest.
+     * @throws NullPointerException if data or dest is null.
+     * @throws IndexOutOfBoundsException if offset or length is negative, or if data does not contain 
+     *          length bytes from offset.
+     * @throws java.nio.BufferOverflowException if dest does not have enough remaining space.
+     */
+    public static int byteArrayToHex(final byte[] data, int offset, int length, ByteBuffer dest) {
+        if((data == null) || (dest == null)) {
+            throw new NullPointerException("Argument data and dest can not be null !");
+        }
+        if((offset < 0) || (length < 0) || (length > (data.length - offset))) {
+            throw new IndexOutOfBoundsException("Index violation detected !");
+        }
+        if((2 * length) > dest.remaining()) {
+            throw new java.nio.BufferOverflowException();
+        }
+
+        if(dest.hasArray()) {
+            int pos = dest.position();
+            byteArrayToHexBytes(data, offset, length, dest.array(), dest.arrayOffset() + pos);
+            dest.position(pos + (2 * length));
+            return 2 * length;
+        }
+
+        int end = offset + length;
+        boolean bigEndian = (dest.order() == ByteOrder.BIG_ENDIAN);
+        for (int x = offset; x < end; x++) {
+            int i = (data[x] & 0xFF) << 1;
+            // put both characters as one 16 bit store.
+            if(bigEndian) {
+                dest.putShort((short) ((HEXPAIRBYTES[i] << 8) | HEXPAIRBYTES[i + 1]));
+            }else {
+                dest.putShort((short) ((HEXPAIRBYTES[i + 1] << 8) | HEXPAIRBYTES[i]));
+            }
+        }
+        return 2 * length;
+    }
+
     /**
      * <p>Converts given string in hexa-decimal representation to equivalent byte array.</p>
      * 
@@ -127,6 +276,132 @@ public final class SerialComUtil {
         return data;
     }
 
+    /**
+     * <p>Decodes hex digits from the given character sequence into the given byte array. Every 2 hex 
+     * digits give one byte. Both upper and lower case digits are accepted. Unlike hexStringToByteArray 
+     * method, this does not create any intermediate string or array; it is expected that the caller 
+     * has already removed prefix and separators if any.</p>
+     * 
+     * @param hexData characters (String, StringBuilder, CharBuffer etc) containing hex digits.
+     * @param offset index of first hex digit to decode.
+     * @param length number of hex digits to decode, must be even.
+     * @param dest array in which length / 2 decoded bytes will be saved.
+     * @param destOffset index in dest at which first decoded byte will be saved.
+     * @return number of bytes saved in dest.
+     * @throws NullPointerException if hexData or dest is null.
+     * @throws IndexOutOfBoundsException if offset, length or destOffset is negative, or if hexData or 
+     *          dest does not have enough space.
+     * @throws IllegalArgumentException if length is odd or a character is not a hex digit.
+     */
+    public static int hexToByteArray(final CharSequence hexData, int offset, int length, byte[] dest, int destOffset) {
+        if((hexData == null) || (dest == null)) {
+            throw new NullPointerException("Argument hexData and dest can not be null !");
+        }
+        if((offset < 0) || (length < 0) || (destOffset < 0) || (length > (hexData.length() - offset)) || 
+                ((length / 2) > (dest.length - destOffset))) {
+            throw new IndexOutOfBoundsException("Index violation detected !");
+        }
+        if((length & 1) != 0) {
+            throw new IllegalArgumentException("Argument length must be even !");
+        }
+
+        int end = offset + length;
+        int y = destOffset;
+        for (int x = offset; x < end; x += 2) {
+            char c0 = hexData.charAt(x);
+            char c1 = hexData.charAt(x + 1);
+            int hi = (c0 < 128) ? HEXVALUES[c0] : -1;
+            int lo = (c1 < 128) ? HEXVALUES[c1] : -1;
+            if((hi | lo) < 0) {
+                throw new IllegalArgumentException("Invalid hex digit at index " + ((hi < 0) ? x : (x + 1)) + " !");
+            }
+            dest[y] = (byte) ((hi << 4) | lo);
+            y++;
+        }
+        return length / 2;
+    }
+
+    /**
+     * <p>Finds the first occurrence of the given pattern (for example a frame delimiter like CR LF) in 
+     * the given region of byte array.</p>
+     * 
+     * @param data byte array to search in.
+     * @param offset index from where searching should start.
+     * @param length number of bytes to search in.
+     * @param pattern bytes to find.
+     * @return index in data at which pattern starts or -1 if pattern is not found.
+     * @throws NullPointerException if data or pattern is null.
+     * @throws IndexOutOfBoundsException if offset or length is negative or greater than data.length - offset.
+     * @throws IllegalArgumentException if pattern is empty.
+     */
+    public static int indexOf(final byte[] data, int offset, int length, final byte[] pattern) {
+        if((data == null) || (pattern == null)) {
+            throw new NullPointerException("Argument data and pattern can not be null !");
+        }
+        if((offset < 0) || (length < 0) || (length > (data.length - offset))) {
+            throw new IndexOutOfBoundsException("Index violation detected !");
+        }
+        if(pattern.length == 0) {
+            throw new IllegalArgumentException("Argument pattern can not be empty !");
+        }
+
+        byte first = pattern[0];
+        int last = offset + length - pattern.length;
+        for (int x = offset; x <= last; x++) {
+            // tight scan for first byte, full compare only on candidate positions.
+            if(data[x] != first) {
+                continue;
+            }
+            int y = 1;
+            while ((y < pattern.length) && (data[x + y] == pattern[y])) {
+                y++;
+            }
+            if(y == pattern.length) {
+                return x;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * <p>Finds the first occurrence of the given delimiter byte between position and limit of the given 
+     * byte buffer. The position, limit, mark and byte order of the buffer are not modified.</p>
+     * 
+     * <p>Buffer is scanned 8 bytes at a time by loading a long word and testing all of its bytes for 
+     * the delimiter at once (SIMD within a register), which is considerably faster than testing byte by 
+     * byte for large direct buffers used with readBytesDirect method.</p>
+     * 
+     * @param data byte buffer to search in.
+     * @param delimiter byte to find.
+     * @return absolute index in buffer at which delimiter is found or -1 if it is not found.
+     * @throws NullPointerException if data is null.
+     */
+    public static int indexOf(final ByteBuffer data, byte delimiter) {
+        int x = data.position();
+        int end = data.limit();
+        long pattern = SWAR_ONES * (delimiter & 0xFF);
+
+        // little endian load makes lowest address byte the least significant byte of the word. A view 
+        // is used so that byte order of caller's buffer is never changed, even temporarily.
+        ByteBuffer view = data.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        while ((end - x) >= 8) {
+            long v = view.getLong(x) ^ pattern;
+            // classic has-zero-byte test; non zero if any byte of v is zero i.e. matched.
+            long found = (v - SWAR_ONES) & ~v & SWAR_HIGHS;
+            if(found != 0) {
+                return x + (Long.numberOfTrailingZeros(found) >>> 3);
+            }
+            x += 8;
+        }
+        while (x < end) {
+            if(data.get(x) == delimiter) {
+                return x;
+            }
+            x++;
+        }
+        return -1;
+    }
+
     /**
      * <p>Converts a binary-coded decimal number into decimal number string. The decimal point 
      * will be placed between 2nd and third digit of the result returned. This can be used for 
@@ -316,6 +591,28 @@ public final class SerialComUtil {
         return result;
     }
 
+    /**
+     * <p>Copies given byte arrays one after the other into the given destination array. This avoids 
+     * allocating a new array for every concatenation when destination can be re-used.</p>
+     * 
+     * @param dataA array that will be copied first.
+     * @param dataB array that will be copied immediately after dataA.
+     * @param dest array in which dataA and dataB will be copied.
+     * @param destOffset index in dest at which first byte of dataA will be saved.
+     * @return total number of bytes copied i.e. dataA.length + dataB.length.
+     * @throws NullPointerException if dataA, dataB or dest is null.
+     * @throws IndexOutOfBoundsException if destOffset is negative or dest does not have enough space.
+     */
+    public static int concat(byte[] dataA, byte[] dataB, byte[] dest, int destOffset) {
+        int total = dataA.length + dataB.length;
+        if((destOffset < 0) || (total > (dest.length - destOffset))) {
+            throw new IndexOutOfBoundsException("Index violation detected !");
+        }
+        System.arraycopy(dataA, 0, dest, destOffset, dataA.length);
+        System.arraycopy(dataB, 0, dest, destOffset + dataA.length, dataB.length);
+        return total;
+    }
+
     /**
      * <p>Finds whether any of the given target strings matches the source string.</p>
      * 
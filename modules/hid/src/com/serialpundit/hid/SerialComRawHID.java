@@ -18,11 +18,13 @@ import java.util.HashMap;
 import java.util.TreeMap;
 
 import com.serialpundit.core.SerialComException;
+import com.serialpundit.core.SerialComJNIProfiler;
 import com.serialpundit.core.SerialComPlatform;
 import com.serialpundit.core.SerialComSystemProperty;
 import com.serialpundit.core.util.SerialComUtil;
 import com.serialpundit.hid.internal.HIDdevHandleInfo;
 import com.serialpundit.hid.internal.SerialComHIDJNIBridge;
+import com.serialpundit.hid.internal.SerialComProfiledHIDJNIBridge;
 
 /* Executes as a worker thread waiting for input reports, reading whenever available and delivering 
  * them to the registered listener. */
@@ -161,7 +163,7 @@ public final class SerialComRawHID extends SerialComHID {
 				}
 			}
 			if(mHIDJNIBridge == null) {
-				mHIDJNIBridge = new SerialComHIDJNIBridge();
+				mHIDJNIBridge = SerialComJNIProfiler.isEnabled() ? new SerialComProfiledHIDJNIBridge() : new SerialComHIDJNIBridge();
 				SerialComHIDJNIBridge.loadNativeLibrary(libDirectory, loadedLibName, mSerialComSystemProperty, osType, cpuArch, abiType);
 				int ret = mHIDJNIBridge.initNativeLib();
 				if(ret < 0) {
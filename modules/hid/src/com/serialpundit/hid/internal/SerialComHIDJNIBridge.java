@@ -29,7 +29,7 @@ import com.serialpundit.core.SerialComSystemProperty;
  * 
  * @author Rishi Gupta
  */
-public final class SerialComHIDJNIBridge {
+public class SerialComHIDJNIBridge {
 
 	/**
 	 * <p>Allocates a new SerialComHIDJNIBridge object.</p>
@@ -0,0 +1,288 @@
+/*
+ * This file is part of SerialPundit.
+ * 
+ * Copyright (C) 2014-2016, Rishi Gupta. All rights reserved.
+ *
+ * The SerialPundit is DUAL LICENSED. It is made available under the terms of the GNU Affero 
+ * General Public License (AGPL) v3.0 for non-commercial use and under the terms of a commercial 
+ * license for commercial use of this software. 
+ * 
+ * The SerialPundit is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+
+package com.serialpundit.hid.internal;
+
+import com.serialpundit.core.SerialComJNIProfiler;
+
+/**
+ * <p>Instrumented SerialComHIDJNIBridge which accounts every native call with SerialComJNIProfiler. 
+ * Used instead of SerialComHIDJNIBridge when JNI profiling is enabled.</p>
+ * 
+ * @author Rishi Gupta
+ */
+public final class SerialComProfiledHIDJNIBridge extends SerialComHIDJNIBridge {
+
+	private static final int INIT_NATIVE_LIB = SerialComJNIProfiler.register("SerialComHIDJNIBridge.initNativeLib");
+	private static final int OPEN_HID_DEVICE_BY_PATH_R = SerialComJNIProfiler.register("SerialComHIDJNIBridge.openHidDeviceByPathR");
+	private static final int CLOSE_HID_DEVICE_R = SerialComJNIProfiler.register("SerialComHIDJNIBridge.closeHidDeviceR");
+	private static final int CREATE_BLOCKING_HIDIOCONTEXT_R = SerialComJNIProfiler.register("SerialComHIDJNIBridge.createBlockingHIDIOContextR");
+	private static final int UNBLOCK_BLOCKING_HIDIOOPERATION_R = SerialComJNIProfiler.register("SerialComHIDJNIBridge.unblockBlockingHIDIOOperationR");
+	private static final int DESTROY_BLOCKING_IOCONTEXT_R = SerialComJNIProfiler.register("SerialComHIDJNIBridge.destroyBlockingIOContextR");
+	private static final int WRITE_OUTPUT_REPORT_R = SerialComJNIProfiler.register("SerialComHIDJNIBridge.writeOutputReportR");
+	private static final int READ_INPUT_REPORT_R = SerialComJNIProfiler.register("SerialComHIDJNIBridge.readInputReportR");
+	private static final int READ_INPUT_REPORT_WITH_TIMEOUT_R = SerialComJNIProfiler.register("SerialComHIDJNIBridge.readInputReportWithTimeoutR");
+	private static final int READ_PLATFORM_SPECIFIC_INPUT_REPORT_R = SerialComJNIProfiler.register("SerialComHIDJNIBridge.readPlatformSpecificInputReportR");
+	private static final int WRITE_PLATFORM_SPECIFIC_OUTPUT_REPORT_R = SerialComJNIProfiler.register("SerialComHIDJNIBridge.writePlatformSpecificOutputReportR");
+	private static final int SEND_FEATURE_REPORT_R = SerialComJNIProfiler.register("SerialComHIDJNIBridge.sendFeatureReportR");
+	private static final int GET_FEATURE_REPORT_R = SerialComJNIProfiler.register("SerialComHIDJNIBridge.getFeatureReportR");
+	private static final int LIST_HIDDEVICES_WITH_INFO_R = SerialComJNIProfiler.register("SerialComHIDJNIBridge.listHIDdevicesWithInfoR");
+	private static final int GET_MANUFACTURER_STRING_R = SerialComJNIProfiler.register("SerialComHIDJNIBridge.getManufacturerStringR");
+	private static final int GET_PRODUCT_STRING_R = SerialComJNIProfiler.register("SerialComHIDJNIBridge.getProductStringR");
+	private static final int GET_SERIAL_NUMBER_STRING_R = SerialComJNIProfiler.register("SerialComHIDJNIBridge.getSerialNumberStringR");
+	private static final int GET_INDEXED_STRING_R = SerialComJNIProfiler.register("SerialComHIDJNIBridge.getIndexedStringR");
+	private static final int FIND_DRIVER_SERVING_HIDDEVICE_R = SerialComJNIProfiler.register("SerialComHIDJNIBridge.findDriverServingHIDDeviceR");
+	private static final int FLUSH_INPUT_REPORT_QUEUE_R = SerialComJNIProfiler.register("SerialComHIDJNIBridge.flushInputReportQueueR");
+	private static final int GET_REPORT_DESCRIPTOR_R = SerialComJNIProfiler.register("SerialComHIDJNIBridge.getReportDescriptorR");
+	private static final int GET_PHYSICAL_DESCRIPTOR_R = SerialComJNIProfiler.register("SerialComHIDJNIBridge.getPhysicalDescriptorR");
+
+	/**
+	 * <p>Allocates a new SerialComProfiledHIDJNIBridge object.</p>
+	 */
+	public SerialComProfiledHIDJNIBridge() {
+	}
+
+	@Override
+	public int initNativeLib() {
+		long start = System.nanoTime();
+		try {
+			return super.initNativeLib();
+		} finally {
+			SerialComJNIProfiler.record(INIT_NATIVE_LIB, start);
+		}
+	}
+
+	@Override
+	public long openHidDeviceByPathR(String pathNameVal, boolean shared) {
+		long start = System.nanoTime();
+		try {
+			return super.openHidDeviceByPathR(pathNameVal, shared);
+		} finally {
+			SerialComJNIProfiler.record(OPEN_HID_DEVICE_BY_PATH_R, start);
+		}
+	}
+
+	@Override
+	public int closeHidDeviceR(long handle) {
+		long start = System.nanoTime();
+		try {
+			return super.closeHidDeviceR(handle);
+		} finally {
+			SerialComJNIProfiler.record(CLOSE_HID_DEVICE_R, start);
+		}
+	}
+
+	@Override
+	public long createBlockingHIDIOContextR() {
+		long start = System.nanoTime();
+		try {
+			return super.createBlockingHIDIOContextR();
+		} finally {
+			SerialComJNIProfiler.record(CREATE_BLOCKING_HIDIOCONTEXT_R, start);
+		}
+	}
+
+	@Override
+	public int unblockBlockingHIDIOOperationR(long context) {
+		long start = System.nanoTime();
+		try {
+			return super.unblockBlockingHIDIOOperationR(context);
+		} finally {
+			SerialComJNIProfiler.record(UNBLOCK_BLOCKING_HIDIOOPERATION_R, start);
+		}
+	}
+
+	@Override
+	public int destroyBlockingIOContextR(long context) {
+		long start = System.nanoTime();
+		try {
+			return super.destroyBlockingIOContextR(context);
+		} finally {
+			SerialComJNIProfiler.record(DESTROY_BLOCKING_IOCONTEXT_R, start);
+		}
+	}
+
+	@Override
+	public int writeOutputReportR(long handle, byte reportId, byte[] report, int length) {
+		long start = System.nanoTime();
+		int ret = -1;
+		try {
+			ret = super.writeOutputReportR(handle, reportId, report, length);
+			return ret;
+		} finally {
+			SerialComJNIProfiler.record(WRITE_OUTPUT_REPORT_R, start, length, ret);
+		}
+	}
+
+	@Override
+	public int readInputReportR(long handle, byte[] reportBuffer, int length, long context) {
+		long start = System.nanoTime();
+		int ret = -1;
+		try {
+			ret = super.readInputReportR(handle, reportBuffer, length, context);
+			return ret;
+		} finally {
+			SerialComJNIProfiler.record(READ_INPUT_REPORT_R, start, length, ret);
+		}
+	}
+
+	@Override
+	public int readInputReportWithTimeoutR(long handle, byte[] reportBuffer, int length, int timeoutValue) {
+		long start = System.nanoTime();
+		int ret = -1;
+		try {
+			ret = super.readInputReportWithTimeoutR(handle, reportBuffer, length, timeoutValue);
+			return ret;
+		} finally {
+			SerialComJNIProfiler.record(READ_INPUT_REPORT_WITH_TIMEOUT_R, start, length, ret);
+		}
+	}
+
+	@Override
+	public int readPlatformSpecificInputReportR(long handle, byte reportId, byte[] reportBuffer, int length) {
+		long start = System.nanoTime();
+		int ret = -1;
+		try {
+			ret = super.readPlatformSpecificInputReportR(handle, reportId, reportBuffer, length);
+			return ret;
+		} finally {
+			SerialComJNIProfiler.record(READ_PLATFORM_SPECIFIC_INPUT_REPORT_R, start, length, ret);
+		}
+	}
+
+	@Override
+	public int writePlatformSpecificOutputReportR(long handle, byte reportId, byte[] reportBuffer, int length) {
+		long start = System.nanoTime();
+		int ret = -1;
+		try {
+			ret = super.writePlatformSpecificOutputReportR(handle, reportId, reportBuffer, length);
+			return ret;
+		} finally {
+			SerialComJNIProfiler.record(WRITE_PLATFORM_SPECIFIC_OUTPUT_REPORT_R, start, length, ret);
+		}
+	}
+
+	@Override
+	public int sendFeatureReportR(long handle, byte reportId, byte[] report, int length) {
+		long start = System.nanoTime();
+		int ret = -1;
+		try {
+			ret = super.sendFeatureReportR(handle, reportId, report, length);
+			return ret;
+		} finally {
+			SerialComJNIProfiler.record(SEND_FEATURE_REPORT_R, start, length, ret);
+		}
+	}
+
+	@Override
+	public int getFeatureReportR(long handle, byte reportId, byte[] report, int length) {
+		long start = System.nanoTime();
+		int ret = -1;
+		try {
+			ret = super.getFeatureReportR(handle, reportId, report, length);
+			return ret;
+		} finally {
+			SerialComJNIProfiler.record(GET_FEATURE_REPORT_R, start, length, ret);
+		}
+	}
+
+	@Override
+	public String[] listHIDdevicesWithInfoR() {
+		long start = System.nanoTime();
+		try {
+			return super.listHIDdevicesWithInfoR();
+		} finally {
+			SerialComJNIProfiler.record(LIST_HIDDEVICES_WITH_INFO_R, start);
+		}
+	}
+
+	@Override
+	public String getManufacturerStringR(long handle) {
+		long start = System.nanoTime();
+		try {
+			return super.getManufacturerStringR(handle);
+		} finally {
+			SerialComJNIProfiler.record(GET_MANUFACTURER_STRING_R, start);
+		}
+	}
+
+	@Override
+	public String getProductStringR(long handle) {
+		long start = System.nanoTime();
+		try {
+			return super.getProductStringR(handle);
+		} finally {
+			SerialComJNIProfiler.record(GET_PRODUCT_STRING_R, start);
+		}
+	}
+
+	@Override
+	public String getSerialNumberStringR(long handle) {
+		long start = System.nanoTime();
+		try {
+			return super.getSerialNumberStringR(handle);
+		} finally {
+			SerialComJNIProfiler.record(GET_SERIAL_NUMBER_STRING_R, start);
+		}
+	}
+
+	@Override
+	public String getIndexedStringR(long handle, int index) {
+		long start = System.nanoTime();
+		try {
+			return super.getIndexedStringR(handle, index);
+		} finally {
+			SerialComJNIProfiler.record(GET_INDEXED_STRING_R, start);
+		}
+	}
+
+	@Override
+	public String findDriverServingHIDDeviceR(String hidDeviceNode) {
+		long start = System.nanoTime();
+		try {
+			return super.findDriverServingHIDDeviceR(hidDeviceNode);
+		} finally {
+			SerialComJNIProfiler.record(FIND_DRIVER_SERVING_HIDDEVICE_R, start);
+		}
+	}
+
+	@Override
+	public int flushInputReportQueueR(long handle) {
+		long start = System.nanoTime();
+		try {
+			return super.flushInputReportQueueR(handle);
+		} finally {
+			SerialComJNIProfiler.record(FLUSH_INPUT_REPORT_QUEUE_R, start);
+		}
+	}
+
+	@Override
+	public byte[] getReportDescriptorR(long handle) {
+		long start = System.nanoTime();
+		try {
+			return super.getReportDescriptorR(handle);
+		} finally {
+			SerialComJNIProfiler.record(GET_REPORT_DESCRIPTOR_R, start);
+		}
+	}
+
+	@Override
+	public byte[] getPhysicalDescriptorR(long handle) {
+		long start = System.nanoTime();
+		try {
+			return super.getPhysicalDescriptorR(handle);
+		} finally {
+			SerialComJNIProfiler.record(GET_PHYSICAL_DESCRIPTOR_R, start);
+		}
+	}
+}
@@ -0,0 +1,272 @@
+/*
+ * This file is part of SerialPundit.
+ * 
+ * Copyright (C) 2014-2016, Rishi Gupta. All rights reserved.
+ *
+ * The SerialPundit is DUAL LICENSED. It is made available under the terms of the GNU Affero 
+ * General Public License (AGPL) v3.0 for non-commercial use and under the terms of a commercial 
+ * license for commercial use of this software. 
+ * 
+ * The SerialPundit is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+
+package com.serialpundit.serial;
+
+import javax.management.MXBean;
+
+/**
+ * <p>Gives running totals of input/output activity on an opened serial port handle. An instance 
+ * exists for every opened handle and is obtained using getPortMetrics method of SerialComManager 
+ * class. It is also registered with platform MBean server under object name 
+ * <code>com.serialpundit:type=SerialPort,name=&lt;port name&gt;,handle=&lt;handle&gt;</code> for 
+ * as long as the handle is open, so that monitoring tools can read and alert on it.</p>
+ * 
+ * <p>Counters start at 0 when port is opened and are updated without locking, so values read while 
+ * input/output is in progress may be off by the operations in flight.</p>
+ * 
+ * @author Rishi Gupta
+ */
+@MXBean
+public interface ISerialComPortMetrics {
+
+    /**
+     * <p>Gives name of the port these metrics belong to.</p>
+     * 
+     * @return name of the opened port.
+     */
+    public abstract String getPortName();
+
+    /**
+     * <p>Gives handle of the port these metrics belong to.</p>
+     * 
+     * @return handle of the opened port.
+     */
+    public abstract long getHandle();
+
+    /**
+     * <p>Gives number of bytes read from serial port using read methods of SerialComManager class.</p>
+     * 
+     * @return total number of bytes read.
+     */
+    public abstract long getBytesRead();
+
+    /**
+     * <p>Gives number of read calls made to native layer including those which found no data.</p>
+     * 
+     * @return total number of native read calls.
+     */
+    public abstract long getReadCalls();
+
+    /**
+     * <p>Gives average time taken by native read call.</p>
+     * 
+     * @return average read latency in nanoseconds or 0 if no read has been made.
+     */
+    public abstract long getAverageReadLatencyNanos();
+
+    /**
+     * <p>Gives longest time taken by a native read call. Blocking reads include the time spent 
+     * waiting for data.</p>
+     * 
+     * @return maximum read latency in nanoseconds.
+     */
+    public abstract long getMaxReadLatencyNanos();
+
+    /**
+     * <p>Gives number of bytes written to serial port.</p>
+     * 
+     * @return total number of bytes written.
+     */
+    public abstract long getBytesWritten();
+
+    /**
+     * <p>Gives number of write calls made to native layer.</p>
+     * 
+     * @return total number of native write calls.
+     */
+    public abstract long getWriteCalls();
+
+    /**
+     * <p>Gives average time taken by native write call.</p>
+     * 
+     * @return average write latency in nanoseconds or 0 if no write has been made.
+     */
+    public abstract long getAverageWriteLatencyNanos();
+
+    /**
+     * <p>Gives longest time taken by a native write call.</p>
+     * 
+     * @return maximum write latency in nanoseconds.
+     */
+    public abstract long getMaxWriteLatencyNanos();
+
+    /**
+     * <p>Gives number of read and write calls which failed in native layer.</p>
+     * 
+     * @return total number of failed input/output calls.
+     */
+    public abstract long getIOErrors();
+
+    /**
+     * <p>Gives number of bytes delivered to registered data listener.</p>
+     * 
+     * @return total number of bytes passed to data looper by native layer.
+     */
+    public abstract long getListenerBytes();
+
+    /**
+     * <p>Gives number of data chunks delivered to registered data listener.</p>
+     * 
+     * @return total number of chunks passed to data looper by native layer.
+     */
+    public abstract long getListenerChunks();
+
+    /**
+     * <p>Gives number of data chunks waiting in data looper queue for listener to consume them.</p>
+     * 
+     * @return current depth of data queue or 0 if no data listener is registered.
+     */
+    public abstract int getDataQueueDepth();
+
+    /**
+     * <p>Gives largest depth data looper queue has reached. A value close to queue capacity means 
+     * data listener is not keeping up with incoming data.</p>
+     * 
+     * @return maximum depth of data queue since port was opened or metrics were reset.
+     */
+    public abstract int getMaxDataQueueDepth();
+
+    /**
+     * <p>Gives number of data chunks discarded because data looper queue was full. Oldest chunk is 
+     * discarded to make room for newest one, so any non zero value means data was lost.</p>
+     * 
+     * @return total number of data chunks dropped.
+     */
+    public abstract long getDroppedDataChunks();
+
+    /**
+     * <p>Gives number of line events discarded because event looper queue was full.</p>
+     * 
+     * @return total number of line events dropped.
+     */
+    public abstract long getDroppedLineEvents();
+
+    /**
+     * <p>Gives number of errors reported by native layer to data listener.</p>
+     * 
+     * @return total number of data listener errors.
+     */
+    public abstract long getListenerErrors();
+
+    /**
+     * <p>Gives number of data listener errors discarded because error queue was full.</p>
+     * 
+     * @return total number of data listener errors dropped.
+     */
+    public abstract long getDroppedListenerErrors();
+
+    /**
+     * <p>Gives number of data and line event listener calls which listener watchdog found to be taking 
+     * longer than its threshold. Always 0 if watchdog has not been set up.</p>
+     * 
+     * @return total number of slow listener calls.
+     */
+    public abstract long getSlowListenerCalls();
+
+    /**
+     * <p>Gives time within which given percentage of data chunks reached data listener, measured from 
+     * the moment native layer handed them to data looper until listener was called. High values with low 
+     * listener service time mean hand-off through looper queue is the bottleneck, while high values 
+     * along with high service time mean listener is too slow and data is piling up behind it.</p>
+     * 
+     * @param percentile percentage between 0 and 100, 100 gives the maximum.
+     * @return latency in nanoseconds, 0 if no data has been delivered.
+     * @throws IllegalArgumentException if percentile is not between 0 and 100.
+     */
+    public abstract long getDeliveryLatencyNanos(double percentile);
+
+    /**
+     * <p>Gives median time from data being handed to data looper until data listener was called.</p>
+     * 
+     * @return median delivery latency in nanoseconds.
+     */
+    public abstract long getMedianDeliveryLatencyNanos();
+
+    /**
+     * <p>Gives 99th percentile of time from data being handed to data looper until data listener was called.</p>
+     * 
+     * @return 99th percentile delivery latency in nanoseconds.
+     */
+    public abstract long getP99DeliveryLatencyNanos();
+
+    /**
+     * <p>Gives longest time from data being handed to data looper until data listener was called.</p>
+     * 
+     * @return maximum delivery latency in nanoseconds.
+     */
+    public abstract long getMaxDeliveryLatencyNanos();
+
+    /**
+     * <p>Gives time within which data listener returned from given percentage of its calls.</p>
+     * 
+     * @param percentile percentage between 0 and 100, 100 gives the maximum.
+     * @return listener service time in nanoseconds, 0 if no data has been delivered.
+     * @throws IllegalArgumentException if percentile is not between 0 and 100.
+     */
+    public abstract long getListenerServiceNanos(double percentile);
+
+    /**
+     * <p>Gives median time taken by data listener to return.</p>
+     * 
+     * @return median listener service time in nanoseconds.
+     */
+    public abstract long getMedianListenerServiceNanos();
+
+    /**
+     * <p>Gives 99th percentile of time taken by data listener to return.</p>
+     * 
+     * @return 99th percentile listener service time in nanoseconds.
+     */
+    public abstract long getP99ListenerServiceNanos();
+
+    /**
+     * <p>Gives longest time taken by data listener to return.</p>
+     * 
+     * @return maximum listener service time in nanoseconds.
+     */
+    public abstract long getMaxListenerServiceNanos();
+
+    /**
+     * <p>Gives number of reads which reported parity error.</p>
+     * 
+     * @return total number of parity errors.
+     */
+    public abstract long getParityErrors();
+
+    /**
+     * <p>Gives number of reads which reported framing error.</p>
+     * 
+     * @return total number of framing errors.
+     */
+    public abstract long getFramingErrors();
+
+    /**
+     * <p>Gives number of reads which reported overrun error.</p>
+     * 
+     * @return total number of overrun errors.
+     */
+    public abstract long getOverrunErrors();
+
+    /**
+     * <p>Gives number of reads which reported break condition.</p>
+     * 
+     * @return total number of breaks received.
+     */
+    public abstract long getBreaksReceived();
+
+    /**
+     * <p>Sets all counters, maximums and latency histograms to 0. Queue depth is not affected.</p>
+     */
+    public abstract void reset();
+}
@@ -0,0 +1,48 @@
+/*
+ * This file is part of SerialPundit.
+ * 
+ * Copyright (C) 2014-2016, Rishi Gupta. All rights reserved.
+ *
+ * The SerialPundit is DUAL LICENSED. It is made available under the terms of the GNU Affero 
+ * General Public License (AGPL) v3.0 for non-commercial use and under the terms of a commercial 
+ * license for commercial use of this software. 
+ * 
+ * The SerialPundit is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+
+package com.serialpundit.serial;
+
+/**
+ * <p>The interface ISerialComSlowListenerHandler should be implemented by class who wish to be told 
+ * when a registered data or line event listener takes longer than allowed to return. It is set using 
+ * setListenerWatchdog method of SerialComManager class.</p>
+ * 
+ * <p>While a data listener is blocked, data keeps arriving and once looper queue is full oldest data 
+ * is discarded. Being told early gives application a chance to log, alert or recover before that 
+ * happens.</p>
+ * 
+ * <p>Methods are called from watchdog thread, once for every listener call found to be slow, while that 
+ * call is still in progress.</p>
+ * 
+ * @author Rishi Gupta
+ */
+public interface ISerialComSlowListenerHandler {
+
+    /**
+     * <p>Called when data listener has not returned from onNewSerialDataAvailable within threshold.</p>
+     * 
+     * @param handle handle of the port whose data listener is slow.
+     * @param elapsedNanos time listener has spent in the call so far.
+     * @param handedOff true if delivery of further data has been moved to hand off executor.
+     */
+    public abstract void onSlowDataListener(long handle, long elapsedNanos, boolean handedOff);
+
+    /**
+     * <p>Called when line event listener has not returned from onNewSerialEvent within threshold.</p>
+     * 
+     * @param handle handle of the port whose event listener is slow.
+     * @param elapsedNanos time listener has spent in the call so far.
+     */
+    public abstract void onSlowEventListener(long handle, long elapsedNanos);
+}
@@ -0,0 +1,113 @@
+/*
+ * This file is part of SerialPundit.
+ * 
+ * Copyright (C) 2014-2016, Rishi Gupta. All rights reserved.
+ *
+ * The SerialPundit is DUAL LICENSED. It is made available under the terms of the GNU Affero 
+ * General Public License (AGPL) v3.0 for non-commercial use and under the terms of a commercial 
+ * license for commercial use of this software. 
+ * 
+ * The SerialPundit is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+
+package com.serialpundit.serial;
+
+/**
+ * <p>The interface ISerialComTraceListener should be implemented by class who wish to observe timing 
+ * of individual serial port operations, for example to record them as profiler events. On Java 11 and 
+ * later an implementation can commit jdk.jfr.Event subclasses from these methods, so that serial 
+ * stalls can be correlated with garbage collection and safepoint pauses in a flight recording.</p>
+ * 
+ * <p>Tracing is disabled by default. It is enabled for whole library by passing an instance of this 
+ * interface to setTraceListener method of SerialComManager class. While disabled, cost on input/output 
+ * paths is a single volatile read.</p>
+ * 
+ * <p>Methods are called synchronously from the thread doing the operation, which may be an application 
+ * thread, a looper thread or a file transfer thread. They must return quickly and must not throw 
+ * exception.</p>
+ * 
+ * @author Rishi Gupta
+ */
+public interface ISerialComTraceListener {
+
+    /**
+     * <p>Called after a serial port has been opened.</p>
+     * 
+     * @param portName name of the port opened.
+     * @param handle handle of the opened port.
+     * @param durationNanos time taken by openComPort method.
+     */
+    public abstract void onPortOpened(String portName, long handle, long durationNanos);
+
+    /**
+     * <p>Called after a serial port has been closed.</p>
+     * 
+     * @param handle handle of the closed port.
+     * @param durationNanos time taken by closeComPort method.
+     */
+    public abstract void onPortClosed(long handle, long durationNanos);
+
+    /**
+     * <p>Called after every native read call.</p>
+     * 
+     * @param handle handle of the port read.
+     * @param numBytes number of bytes read, 0 if there was no data, -1 if read failed.
+     * @param durationNanos time taken by native call.
+     */
+    public abstract void onNativeRead(long handle, int numBytes, long durationNanos);
+
+    /**
+     * <p>Called after every native write call.</p>
+     * 
+     * @param handle handle of the port written.
+     * @param numBytes number of bytes written, -1 if write failed.
+     * @param durationNanos time taken by native call.
+     */
+    public abstract void onNativeWrite(long handle, int numBytes, long durationNanos);
+
+    /**
+     * <p>Called after registered data listener has returned from onNewSerialDataAvailable method.</p>
+     * 
+     * @param handle handle of the port data came from.
+     * @param numBytes number of bytes passed to listener.
+     * @param durationNanos time spent in listener.
+     */
+    public abstract void onDataListenerCalled(long handle, int numBytes, long durationNanos);
+
+    /**
+     * <p>Called after registered line event listener has returned from onNewSerialEvent method.</p>
+     * 
+     * @param handle handle of the port event came from.
+     * @param lineState new state of lines passed to listener.
+     * @param durationNanos time spent in listener.
+     */
+    public abstract void onEventListenerCalled(long handle, int lineState, long durationNanos);
+
+    /**
+     * <p>Called after an XMODEM/YMODEM block has been written to serial port.</p>
+     * 
+     * @param handle handle of the port file is being sent through.
+     * @param blockNumber block number as sent in block header.
+     * @param length number of bytes in block including header and checksum/CRC.
+     * @param durationNanos time taken to write block.
+     */
+    public abstract void onBlockSent(long handle, int blockNumber, int length, long durationNanos);
+
+    /**
+     * <p>Called when an XMODEM/YMODEM block is about to be sent again or is expected again from sender.</p>
+     * 
+     * @param handle handle of the port file is being transferred through.
+     * @param blockNumber number of block retried.
+     */
+    public abstract void onBlockRetried(long handle, int blockNumber);
+
+    /**
+     * <p>Called when an XMODEM/YMODEM block has been negatively acknowledged, either received from or 
+     * sent to the other end.</p>
+     * 
+     * @param handle handle of the port file is being transferred through.
+     * @param blockNumber number of block rejected.
+     */
+    public abstract void onBlockNakd(long handle, int blockNumber);
+}
@@ -85,7 +85,7 @@ public final class SerialComInByteStream extends InputStream implements ISerialI
             throw new IOException("The byte stream has been closed !");
         }
 
-        int[] numBytesAvailable = new int[2];
+        int[] numBytesAvailable = null;
         try {
             numBytesAvailable = scm.getByteCountInPortIOBuffer(handle);
         } catch (SerialComException e) {
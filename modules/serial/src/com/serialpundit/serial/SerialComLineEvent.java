@@ -111,4 +111,14 @@ public final class SerialComLineEvent {
             return 0;     											               // RI is not changed
         }
     }
+
+    /**
+     * <p>Gives new state of all lines as bit mask of SerialComManager.CTS, DSR, DCD and RI constants 
+     * whose bit is set if corresponding line is asserted.</p>
+     * 
+     * @return bit mask of asserted lines after this event.
+     */
+    public int getLineState() {
+        return mNewLineEvent;
+    }
 }
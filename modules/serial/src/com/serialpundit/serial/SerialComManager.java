@@ -19,33 +19,46 @@ import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
+import java.util.HashSet;
 import java.util.Map;
-import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 
+import com.serialpundit.core.SerialComJNIProfiler;
 import com.serialpundit.core.SerialComPlatform;
 import com.serialpundit.core.SerialComSystemProperty;
 import com.serialpundit.core.SerialComException;
+import com.serialpundit.serial.capture.SerialComCaptureReader;
+import com.serialpundit.serial.capture.SerialComCaptureWriter;
 import com.serialpundit.serial.comdb.SerialComDBRelease;
 import com.serialpundit.serial.ftp.ISerialComXmodemProgress;
 import com.serialpundit.serial.ftp.ISerialComYmodemProgress;
+import com.serialpundit.serial.ftp.ISerialComZmodemProgress;
 import com.serialpundit.serial.ftp.SerialComFTPCMDAbort;
+import com.serialpundit.serial.ftp.SerialComFTPProgressMonitor;
 import com.serialpundit.serial.ftp.SerialComXModem;
 import com.serialpundit.serial.ftp.SerialComXModem1K;
 import com.serialpundit.serial.ftp.SerialComXModemCRC;
 import com.serialpundit.serial.ftp.SerialComYModem1K;
 import com.serialpundit.serial.ftp.SerialComYModemCRC;
 import com.serialpundit.serial.ftp.SerialComYModemG;
+import com.serialpundit.serial.ftp.SerialComZModem;
+import com.serialpundit.serial.inventory.SerialComPortInventory;
 import com.serialpundit.serial.mapper.SerialComPortMapper;
 import com.serialpundit.serial.nullmodem.SerialComNullModem;
 import com.serialpundit.serial.vendor.SerialComVendorLib;
 import com.serialpundit.serial.internal.ISerialIOStream;
 import com.serialpundit.serial.internal.SerialComCompletionDispatcher;
 import com.serialpundit.serial.internal.SerialComDBReleaseJNIBridge;
+import com.serialpundit.serial.internal.SerialComListenerWatchdog;
 import com.serialpundit.serial.internal.SerialComLooper;
 import com.serialpundit.serial.internal.SerialComPortHandleInfo;
 import com.serialpundit.serial.internal.SerialComPortJNIBridge;
+import com.serialpundit.serial.internal.SerialComPortMetrics;
 import com.serialpundit.serial.internal.SerialComPortMapperJNIBridge;
 import com.serialpundit.serial.internal.SerialComPortsList;
+import com.serialpundit.serial.internal.SerialComProfiledPortJNIBridge;
+import com.serialpundit.serial.internal.SerialComTrace;
 import com.serialpundit.serial.internal.ISerialComFTPProgress;
 
 
@@ -218,7 +231,7 @@ public final class SerialComManager {
         XMODEM(1),
         /** <p>YMODEM protocol with two variants CRC and 1k.</p>*/
         YMODEM(2),
-        /** <p>coming soon</p>*/
+        /** <p>ZMODEM protocol with streaming, CRC-32 and crash recovery.</p>*/
         ZMODEM(3);
         private int value;
         private FTPPROTO(int value) {
@@ -299,10 +312,14 @@ public final class SerialComManager {
      * and made to return to caller explicitly (irrespective there was data to read or not). </p>*/
     public static final String EXP_UNBLOCKIO  = "I/O operation unblocked !";
 
-    // This provides guaranteed log(n) time cost for the containsKey, get, put and remove operations.
-    // It maps opened handle of serial device to its information object. This map may be accessed in 
-    // locked state for maintaining integrity and consistency whenever required.
-    private final TreeMap<Long, SerialComPortHandleInfo> mPortHandleInfo = new TreeMap<Long, SerialComPortHandleInfo>();
+    // It maps opened handle of serial device to its information object. Lookups (get, containsKey and 
+    // iteration) do not take any lock, so ports opened in parallel do not wait for each other here. Entries 
+    // are put and removed only while holding lockB, which keeps check-then-act sequences consistent.
+    private final ConcurrentHashMap<Long, SerialComPortHandleInfo> mPortHandleInfo = new ConcurrentHashMap<Long, SerialComPortHandleInfo>();
+
+    // Metrics of opened handles. Read/write methods look up here without taking lockB.
+    private final ConcurrentHashMap<Long, SerialComPortMetrics> mPortMetrics = new ConcurrentHashMap<Long, SerialComPortMetrics>();
+    private SerialComListenerWatchdog mListenerWatchdog = null;
 
     private int osType = SerialComPlatform.OS_UNKNOWN;
     private int cpuArch = SerialComPlatform.ARCH_UNKNOWN;
@@ -314,11 +331,14 @@ public final class SerialComManager {
     private final SerialComCompletionDispatcher mEventCompletionDispatcher;
     private final SerialComPortsList mSerialComPortsList;
     private final Object lockB = new Object();
+    // Ports whose native open is in progress, guarded by lockB.
+    private final HashSet<String> mPortsBeingOpened = new HashSet<String>();
 
     private static final Object lockA = new Object();
     private static boolean nativeLibLoadAndInitAlready = false;
     private static SerialComVendorLib mSerialComVendorLib;
     private static SerialComNullModem mSerialComNullModem;
+    private static SerialComPortInventory mSerialComPortInventory;
     private static SerialComPortMapperJNIBridge mSerialComPortMapperJNIBridge;
     private static SerialComDBReleaseJNIBridge mSerialComDBReleaseJNIBridge;
 
@@ -375,7 +395,7 @@ public final class SerialComManager {
         }
 
         synchronized(SerialComManager.lockA) {
-            mComPortJNIBridge = new SerialComPortJNIBridge();
+            mComPortJNIBridge = SerialComJNIProfiler.isEnabled() ? new SerialComProfiledPortJNIBridge() : new SerialComPortJNIBridge();
             if(nativeLibLoadAndInitAlready == false) {
                 SerialComPortJNIBridge.loadNativeLibrary(null, null, mSerialComSystemProperty, osType, cpuArch, abiType, false);
                 mComPortJNIBridge.initNativeLib();
@@ -473,7 +493,7 @@ public final class SerialComManager {
         }
 
         synchronized(SerialComManager.lockA) {
-            mComPortJNIBridge = new SerialComPortJNIBridge();
+            mComPortJNIBridge = SerialComJNIProfiler.isEnabled() ? new SerialComProfiledPortJNIBridge() : new SerialComPortJNIBridge();
             if(nativeLibLoadAndInitAlready == false) {
                 SerialComPortJNIBridge.loadNativeLibrary(directoryPath, loadedLibName, mSerialComSystemProperty, osType, cpuArch, abiType, hotDeploy);
                 mComPortJNIBridge.initNativeLib();
@@ -592,6 +612,7 @@ public final class SerialComManager {
         if((enableRead == false) && (enableWrite == false)) {
             throw new IllegalArgumentException("Arguments enableRead and enableWrite both can not be set to false !");
         }
+        long start = System.nanoTime();
 
         if(osType == SerialComPlatform.OS_WINDOWS) {
             // For windows COM port can not be shared, so throw exception
@@ -600,7 +621,21 @@ public final class SerialComManager {
             }
         }
 
+        /* Native open may take long (for example while USB device settles), so lockB is not held during it and 
+         * different ports can be opened concurrently. Opens of the same port are still done one after other. */
         synchronized(lockB) {
+            boolean interrupted = false;
+            while(mPortsBeingOpened.contains(portNameVal)) {
+                try {
+                    lockB.wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if(interrupted) {
+                Thread.currentThread().interrupt();
+            }
+
             /* Try to reduce transitions from java to JNI layer as it is possible here by performing check in java layer itself. */
             if(exclusiveOwnerShip == true) {
                 for (Map.Entry<Long, SerialComPortHandleInfo> entry : mPortHandleInfo.entrySet()) {
@@ -612,16 +647,35 @@ public final class SerialComManager {
                     }
                 }
             }
+            mPortsBeingOpened.add(portNameVal);
+        }
 
+        try {
             handle = mComPortJNIBridge.openComPort(portNameVal, enableRead, enableWrite, exclusiveOwnerShip);
             if(handle < 0) {
                 /* JNI should have already thrown exception, this is an extra check to increase reliability of program. */
                 throw new SerialComException("Could not open the port " + portNameVal + ". Please retry !");
             }
 
-            mPortHandleInfo.put(handle, new SerialComPortHandleInfo(portNameVal, handle, null, null, null));
+            synchronized(lockB) {
+                handleInfo = new SerialComPortHandleInfo(portNameVal, handle, null, null, null);
+                SerialComPortMetrics metrics = new SerialComPortMetrics(portNameVal, handle);
+                handleInfo.setMetrics(metrics);
+                mPortHandleInfo.put(handle, handleInfo);
+                mPortMetrics.put(handle, metrics);
+                metrics.registerMBean();
+            }
+        } finally {
+            synchronized(lockB) {
+                mPortsBeingOpened.remove(portNameVal);
+                lockB.notifyAll();
+            }
         }
 
+        ISerialComTraceListener tracer = SerialComTrace.getListener();
+        if(tracer != null) {
+            tracer.onPortOpened(portNameVal, handle, System.nanoTime() - start);
+        }
         return handle;
     }
 
@@ -645,6 +699,7 @@ public final class SerialComManager {
     public boolean closeComPort(long handle) throws SerialComException {
 
         SerialComPortHandleInfo handleInfo = null;
+        long start = System.nanoTime();
 
         synchronized(lockB) {
             handleInfo = mPortHandleInfo.get(handle);
@@ -673,8 +728,25 @@ public final class SerialComManager {
 
             /* delete info about this port/handle from global information object. */
             mPortHandleInfo.remove(handle);
+            SerialComPortMetrics metrics = mPortMetrics.remove(handle);
+            if(metrics != null) {
+                metrics.unregisterMBean();
+                SerialComCaptureWriter capture = metrics.getCapture();
+                if(capture != null) {
+                    metrics.setCapture(null);
+                    try {
+                        capture.close();
+                    } catch (IOException e) {
+                        // port is closed anyway, records written so far remain readable.
+                    }
+                }
+            }
         }
 
+        ISerialComTraceListener tracer = SerialComTrace.getListener();
+        if(tracer != null) {
+            tracer.onPortClosed(handle, System.nanoTime() - start);
+        }
         return true;
     }
 
@@ -712,10 +784,18 @@ public final class SerialComManager {
             throw new IllegalArgumentException("Argument delay can not be negative !");
         }
 
-        int ret = mComPortJNIBridge.writeBytes(handle, buffer, delay);
+        SerialComPortMetrics metrics = mPortMetrics.get(handle);
+        long start = System.nanoTime();
+        int ret = -1;
+        try {
+            ret = mComPortJNIBridge.writeBytes(handle, buffer, delay);
+        } finally {
+            recordWrite(metrics, handle, ret, start);
+        }
         if(ret < 0) {
             throw new SerialComException("Could not write data to serial port. Please retry !");
         }
+        capture(metrics, SerialComCaptureReader.TX, buffer, 0, ret);
         return ret;
     }
 
@@ -745,11 +825,21 @@ public final class SerialComManager {
      * @throws SerialComException if an I/O error occurs.
      */
     public int writeSingleByte(long handle, byte dataByte) throws SerialComException {
-        int ret = mComPortJNIBridge.writeSingleByte(handle, dataByte);
+        SerialComPortMetrics metrics = mPortMetrics.get(handle);
+        long start = System.nanoTime();
+        int ret = -1;
+        try {
+            ret = mComPortJNIBridge.writeSingleByte(handle, dataByte);
+        } finally {
+            recordWrite(metrics, handle, ret, start);
+        }
         if(ret < 0) {
             /* extra check */
             throw new SerialComException("Could not write given byte to serial port. Please retry !");
         }
+        if((ret > 0) && (metrics != null) && (metrics.getCapture() != null)) {
+            capture(metrics, SerialComCaptureReader.TX, new byte[] { dataByte }, 0, 1);
+        }
         return ret;
     }
 
@@ -977,10 +1067,18 @@ public final class SerialComManager {
             return 0;
         }
 
-        int ret = mComPortJNIBridge.writeBytesDirect(handle, buffer, offset, length);
+        SerialComPortMetrics metrics = mPortMetrics.get(handle);
+        long start = System.nanoTime();
+        int ret = -1;
+        try {
+            ret = mComPortJNIBridge.writeBytesDirect(handle, buffer, offset, length);
+        } finally {
+            recordWrite(metrics, handle, ret, start);
+        }
         if(ret < 0) {
             throw new SerialComException("Could not write given data to serial port. Please retry !");
         }
+        capture(metrics, SerialComCaptureReader.TX, buffer, offset, ret);
         return ret;
     }
 
@@ -1008,10 +1106,18 @@ public final class SerialComManager {
             return 0;
         }
 
-        int ret = mComPortJNIBridge.writeBytesBlocking(handle, buffer, context);
+        SerialComPortMetrics metrics = mPortMetrics.get(handle);
+        long start = System.nanoTime();
+        int ret = -1;
+        try {
+            ret = mComPortJNIBridge.writeBytesBlocking(handle, buffer, context);
+        } finally {
+            recordWrite(metrics, handle, ret, start);
+        }
         if(ret < 0) {
             throw new SerialComException("Could not write data to serial port. Please retry !");
         }
+        capture(metrics, SerialComCaptureReader.TX, buffer, 0, ret);
         return ret;
     }
 
@@ -1048,10 +1154,18 @@ public final class SerialComManager {
             return 0;
         }
 
-        int ret = mComPortJNIBridge.readBytesDirect(handle, buffer, offset, length);
+        SerialComPortMetrics metrics = mPortMetrics.get(handle);
+        long start = System.nanoTime();
+        int ret = -1;
+        try {
+            ret = mComPortJNIBridge.readBytesDirect(handle, buffer, offset, length);
+        } finally {
+            recordRead(metrics, handle, ret, start);
+        }
         if(ret < 0) {
             throw new SerialComException("Could not read data from serial port and place into direct byte buffer. Please retry !");
         }
+        capture(metrics, SerialComCaptureReader.RX, buffer, offset, ret);
         return ret;
     }
 
@@ -1139,7 +1253,16 @@ public final class SerialComManager {
             throw new SerialComException("Number of bytes to read can not be greater than 2048 !");
         }
         byte[] buffer = null;
-        buffer = mComPortJNIBridge.readBytesBlocking(handle, byteCount, context);
+        SerialComPortMetrics metrics = mPortMetrics.get(handle);
+        long start = System.nanoTime();
+        int numRead = -1;
+        try {
+            buffer = mComPortJNIBridge.readBytesBlocking(handle, byteCount, context);
+            numRead = (buffer != null) ? buffer.length : 0;
+        } finally {
+            recordRead(metrics, handle, numRead, start);
+        }
+        capture(metrics, SerialComCaptureReader.RX, buffer, 0, numRead);
 
         if(buffer != null) {
             // data read from serial port, pass to application
@@ -1173,7 +1296,17 @@ public final class SerialComManager {
         if(byteCount > 2048) {
             throw new SerialComException("Number of bytes to read can not be greater than 2048 !");
         }
-        byte[] buffer = mComPortJNIBridge.readBytes(handle, byteCount);
+        byte[] buffer = null;
+        SerialComPortMetrics metrics = mPortMetrics.get(handle);
+        long start = System.nanoTime();
+        int numRead = -1;
+        try {
+            buffer = mComPortJNIBridge.readBytes(handle, byteCount);
+            numRead = (buffer != null) ? buffer.length : 0;
+        } finally {
+            recordRead(metrics, handle, numRead, start);
+        }
+        capture(metrics, SerialComCaptureReader.RX, buffer, 0, numRead);
         if(buffer != null) {
             return buffer; // data read from serial port, pass it the to application
         }else {
@@ -1297,10 +1430,21 @@ public final class SerialComManager {
             return 0;
         }
 
-        int numberOfBytesRead = mComPortJNIBridge.readBytesP(handle, buffer, offset, length, context, lineErr);
+        SerialComPortMetrics metrics = mPortMetrics.get(handle);
+        long start = System.nanoTime();
+        int numberOfBytesRead = -1;
+        try {
+            numberOfBytesRead = mComPortJNIBridge.readBytesP(handle, buffer, offset, length, context, lineErr);
+        } finally {
+            recordRead(metrics, handle, numberOfBytesRead, start);
+            if(metrics != null) {
+                metrics.recordLineErrors(lineErr);
+            }
+        }
         if(numberOfBytesRead < 0) {
             throw new SerialComException("Could not read data from serial port. Please retry !");
         }
+        capture(metrics, SerialComCaptureReader.RX, buffer, offset, numberOfBytesRead);
         return numberOfBytesRead;
     }
 
@@ -1369,6 +1513,7 @@ public final class SerialComManager {
         }
 
         int ret = mComPortJNIBridge.configureComPortData(handle, dataBits.getValue(), stopBits.getValue(), parity.getValue(), baudRateTranslated, custBaudTranslated);
+        invalidateConfiguration(handle);
         if(ret < 0) {
             /* extra check */
             throw new SerialComException("Could not configure the serial port. Please retry !");
@@ -1416,6 +1561,7 @@ public final class SerialComManager {
         int xoffCh = (int) xoff;
 
         int ret = mComPortJNIBridge.configureComPortControl(handle, flowctrl.getValue(), ((byte) xonCh), ((byte) xoffCh), ParFraError, overFlowErr);
+        invalidateConfiguration(handle);
         if(ret < 0) {
             /* extra check */
             throw new SerialComException("Could not configure serial port. Please retry !");
@@ -1437,20 +1583,34 @@ public final class SerialComManager {
      * wReserved, XonLim, XoffLim, ByteSize, Parity, StopBits, XonChar, XoffChar, ErrorChar, StopBits, EvtChar,
      * wReserved1.</p>
      * 
+     * <p>Configuration is read from operating system once and cached until it is changed through 
+     * configureComPortData, configureComPortControl or fineTuneReadBehaviour on any handle of the same 
+     * port, so calling this method repeatedly, for example for health checks, does not call native layer. 
+     * Changes made to port settings outside of this library are not noticed. Every call returns a new 
+     * array which the caller may modify.</p>
+     * 
      * @param handle of the opened port.
      * @return array of string giving configuration.
      * @throws SerialComException if invalid handle is passed or an error occurs while reading current settings.
      */
     public String[] getCurrentConfiguration(long handle) throws SerialComException {
 
-        if(mPortHandleInfo.get(handle) == null) {
+        SerialComPortHandleInfo handleInfo = mPortHandleInfo.get(handle);
+        if(handleInfo == null) {
             throw new SerialComException("Given handle is alien to me !");
         }
 
+        // every caller gets its own copy, so that changing returned array does not corrupt cache.
+        String[] configuration = handleInfo.getCachedConfiguration();
+        if(configuration != null) {
+            return configuration.clone();
+        }
+        long version = handleInfo.getConfigurationVersion();
+
         if(osType != SerialComPlatform.OS_WINDOWS) {
             // for unix-like os
             int[] config = mComPortJNIBridge.getCurrentConfigurationU(handle);
-            String[] configuration = new String[config.length];
+            configuration = new String[config.length];
             if(config[0] < 0) {
                 throw new SerialComException("Could not determine current configuration. Please retry !");
             }
@@ -1458,11 +1618,52 @@ public final class SerialComManager {
             for(int x=0; x<config.length; x++) {
                 configuration[x] = "" + config[x];
             }
-            return configuration;
         }else {
             // for windows os
-            String[] configuration = mComPortJNIBridge.getCurrentConfigurationW(handle);
-            return configuration;
+            configuration = mComPortJNIBridge.getCurrentConfigurationW(handle);
+            if(configuration == null) {
+                return null;
+            }
+        }
+
+        handleInfo.cacheConfiguration(configuration, version);
+        return configuration.clone();
+    }
+
+    /*
+     * Settings belong to port and not to handle, so cached configuration of every handle of the port is dropped.
+     */
+    private void invalidateConfiguration(long handle) {
+        synchronized(lockB) {
+            SerialComPortHandleInfo handleInfo = mPortHandleInfo.get(handle);
+            if(handleInfo == null) {
+                return;
+            }
+            String portName = handleInfo.getOpenedPortName();
+            for (SerialComPortHandleInfo info : mPortHandleInfo.values()) {
+                if(info.containsPort(portName)) {
+                    info.invalidateConfiguration();
+                }
+            }
+        }
+    }
+
+    /*
+     * RTS/DTR state is part of snapshot taken by event looper of every handle of the port, drop them.
+     */
+    private void invalidateLinesSnapshot(long handle) {
+        synchronized(lockB) {
+            SerialComPortHandleInfo handleInfo = mPortHandleInfo.get(handle);
+            if(handleInfo == null) {
+                return;
+            }
+            String portName = handleInfo.getOpenedPortName();
+            for (SerialComPortHandleInfo info : mPortHandleInfo.values()) {
+                SerialComLooper looper = info.getLooper();
+                if((looper != null) && info.containsPort(portName)) {
+                    looper.invalidateLinesSnapshot();
+                }
+            }
         }
     }
 
@@ -1494,6 +1695,7 @@ public final class SerialComManager {
      */
     public boolean setRTS(long handle, boolean enabled) throws SerialComException {
         int ret = mComPortJNIBridge.setRTS(handle, enabled);
+        invalidateLinesSnapshot(handle);
         if(ret < 0) {
             throw new SerialComException("Could not set RTS line to desired state. Please retry !");
         }
@@ -1525,6 +1727,7 @@ public final class SerialComManager {
      */
     public boolean setDTR(long handle, boolean enabled) throws SerialComException {
         int ret = mComPortJNIBridge.setDTR(handle, enabled);
+        invalidateLinesSnapshot(handle);
         if(ret < 0) {
             throw new SerialComException("Could not set DTR line to desired state. Please retry !");
         }
@@ -1767,6 +1970,7 @@ public final class SerialComManager {
         }
 
         ret = mComPortJNIBridge.fineTuneRead(handle, vmin, vtime, rit, rttm, rttc);
+        invalidateConfiguration(handle);
         if(ret < 0) {
             throw new SerialComException("Could not set the given parameters. Please retry !");
         }
@@ -1976,6 +2180,10 @@ public final class SerialComManager {
      * <p>MAC OS X &nbsp;&nbsp;:       CTS, DSR, DCD, RI, 0,    RTS, DTR respectively.</p>
      * <p>Windows OS :                 CTS, DSR, DCD, RI, 0,    0,   0   respectively.</p>
      * 
+     * <p>While an event listener is registered on the handle, state of CTS, DSR, DCD and RI is maintained 
+     * from line events delivered by native layer and the remaining entries are taken from a snapshot which 
+     * is refreshed after RTS or DTR is changed, so this method does not call native layer.</p>
+     * 
      * @param handle of the port whose status is to be read.
      * @return status of UART port control lines.
      * @throws SerialComException if invalid handle is passed or operation can not be completed successfully.
@@ -1984,18 +2192,80 @@ public final class SerialComManager {
 
         int[] status = null;
 
-        if(mPortHandleInfo.get(handle) == null) {
+        SerialComPortHandleInfo handleInfo = mPortHandleInfo.get(handle);
+        if(handleInfo == null) {
             throw new SerialComException("Given handle is alien to me !");
         }
 
+        SerialComLooper looper = handleInfo.getLooper();
+        if(looper != null) {
+            status = looper.getLinesStatus();
+            if(status != null) {
+                return status;
+            }
+        }
+
         status = mComPortJNIBridge.getLinesStatus(handle);
         if(status == null) {
             throw new SerialComException("Failed to get line status for the given handle. Please retry !");
         }
+        if(looper != null) {
+            looper.setLinesSnapshot(status);
+        }
 
         return status;
     }
 
+    /**
+     * <p>Same as getLinesStatus(handle) but places status into the given array. While an event listener 
+     * is registered on the handle and snapshot is valid, this method neither calls native layer nor 
+     * allocates memory.</p>
+     * 
+     * @param handle of the port whose status is to be read.
+     * @param status array of at least 7 elements into which status will be placed.
+     * @throws SerialComException if invalid handle is passed or operation can not be completed successfully.
+     * @throws IllegalArgumentException if status is null or has less than 7 elements.
+     */
+    public void getLinesStatus(long handle, int[] status) throws SerialComException {
+        if((status == null) || (status.length < 7)) {
+            throw new IllegalArgumentException("Argument status must have at least 7 elements !");
+        }
+        SerialComPortHandleInfo handleInfo = mPortHandleInfo.get(handle);
+        if(handleInfo == null) {
+            throw new SerialComException("Given handle is alien to me !");
+        }
+        SerialComLooper looper = handleInfo.getLooper();
+        if((looper != null) && looper.getLinesStatus(status)) {
+            return;
+        }
+        int[] current = getLinesStatus(handle);
+        System.arraycopy(current, 0, status, 0, Math.min(current.length, status.length));
+    }
+
+    /**
+     * <p>Gives state of CTS, DSR, DCD and RI lines as bit mask of SerialComManager.CTS, DSR, DCD and RI. 
+     * While an event listener is registered on the handle this is maintained from line events and 
+     * this method neither calls native layer nor allocates memory.</p>
+     * 
+     * @param handle of the port whose line state is to be read.
+     * @return bit mask of asserted lines.
+     * @throws SerialComException if invalid handle is passed or operation can not be completed successfully.
+     */
+    public int getLineState(long handle) throws SerialComException {
+        SerialComPortHandleInfo handleInfo = mPortHandleInfo.get(handle);
+        if(handleInfo == null) {
+            throw new SerialComException("Given handle is alien to me !");
+        }
+        SerialComLooper looper = handleInfo.getLooper();
+        if(looper != null) {
+            int state = looper.getLineState();
+            if(state >= 0) {
+                return state;
+            }
+        }
+        return SerialComLooper.toLineState(getLinesStatus(handle));
+    }
+
     /**
      * <p>Gives the name of the driver who is driving the given serial port. The use case scenarios are: </p>
      * 
@@ -2105,6 +2375,190 @@ public final class SerialComManager {
         return handleInfo.getOpenedPortName();
     }
 
+    /**
+     * <p>Gives input/output metrics of the given handle. These include bytes and calls read and written, 
+     * native read/write latency, depth of data looper queue, data chunks and line events dropped because 
+     * listener did not keep up, line errors reported by read calls and latency histograms of data delivery 
+     * to data listener and of time listener takes to return. The same metrics are available 
+     * through JMX as MXBean named after port for as long as the handle is open.</p>
+     * 
+     * <p>Returned object reflects live values and remains valid until the port is closed.</p>
+     * 
+     * @param handle of the opened port whose metrics are required.
+     * @return metrics of given handle.
+     * @throws SerialComException if invalid handle is passed.
+     */
+    public ISerialComPortMetrics getPortMetrics(long handle) throws SerialComException {
+        SerialComPortMetrics metrics = mPortMetrics.get(handle);
+        if(metrics == null) {
+            throw new SerialComException("Given handle is alien to me !");
+        }
+        return metrics;
+    }
+
+    /*
+     * Updates metrics and trace listener after a native read. Takes time only once for both.
+     */
+    private static void recordRead(SerialComPortMetrics metrics, long handle, int numBytes, long start) {
+        ISerialComTraceListener tracer = SerialComTrace.getListener();
+        if((metrics == null) && (tracer == null)) {
+            return;
+        }
+        long nanos = System.nanoTime() - start;
+        if(metrics != null) {
+            metrics.recordRead(numBytes, nanos);
+        }
+        if(tracer != null) {
+            tracer.onNativeRead(handle, numBytes, nanos);
+        }
+    }
+
+    /*
+     * Updates metrics and trace listener after a native write.
+     */
+    private static void recordWrite(SerialComPortMetrics metrics, long handle, int numBytes, long start) {
+        ISerialComTraceListener tracer = SerialComTrace.getListener();
+        if((metrics == null) && (tracer == null)) {
+            return;
+        }
+        long nanos = System.nanoTime() - start;
+        if(metrics != null) {
+            metrics.recordWrite(numBytes, nanos);
+        }
+        if(tracer != null) {
+            tracer.onNativeWrite(handle, numBytes, nanos);
+        }
+    }
+
+    /*
+     * Appends data just read or written to capture file if this handle is being captured.
+     */
+    private static void capture(SerialComPortMetrics metrics, int direction, byte[] data, int offset, int length) {
+        if((metrics == null) || (length <= 0)) {
+            return;
+        }
+        SerialComCaptureWriter capture = metrics.getCapture();
+        if(capture != null) {
+            capture.record(direction, data, offset, length, System.nanoTime());
+        }
+    }
+
+    private static void capture(SerialComPortMetrics metrics, int direction, ByteBuffer data, int offset, int length) {
+        if((metrics == null) || (length <= 0)) {
+            return;
+        }
+        SerialComCaptureWriter capture = metrics.getCapture();
+        if(capture != null) {
+            capture.record(direction, data, offset, length, System.nanoTime());
+        }
+    }
+
+    /**
+     * <p>Starts capturing all data read from and written to the given handle, including data delivered 
+     * to data listener, into given file together with time at which it was read or written. Data is 
+     * appended to a memory mapped file, so capturing costs a memory copy per read/write and can be left 
+     * enabled in field without changing timing noticeably. Capture files are read by SerialComCaptureReader 
+     * and can be played back into a port, for example one end of a null modem pair, by 
+     * SerialComCaptureReplay.</p>
+     * 
+     * <p>If the handle is already being captured, previous capture is stopped. Capture is stopped 
+     * automatically when port is closed.</p>
+     * 
+     * @param handle of the opened port to capture.
+     * @param captureFile file to write, it is replaced if it exists.
+     * @throws SerialComException if invalid handle is passed.
+     * @throws IOException if capture file can not be created.
+     * @throws IllegalArgumentException if captureFile is null.
+     */
+    public void startCapture(long handle, File captureFile) throws IOException {
+        SerialComPortMetrics metrics = mPortMetrics.get(handle);
+        if(metrics == null) {
+            throw new SerialComException("Given handle is alien to me !");
+        }
+        SerialComCaptureWriter previous;
+        synchronized(metrics) {
+            previous = metrics.getCapture();
+            metrics.setCapture(new SerialComCaptureWriter(captureFile, metrics.getPortName()));
+        }
+        if(previous != null) {
+            previous.close();
+        }
+    }
+
+    /**
+     * <p>Stops capturing data of the given handle and closes capture file.</p>
+     * 
+     * @param handle of the port being captured.
+     * @return true if capture was stopped, false if the handle was not being captured.
+     * @throws SerialComException if invalid handle is passed.
+     * @throws IOException if capture had failed due to an I/O error, for example storage device became 
+     *          full, or capture file could not be closed.
+     */
+    public boolean stopCapture(long handle) throws IOException {
+        SerialComPortMetrics metrics = mPortMetrics.get(handle);
+        if(metrics == null) {
+            throw new SerialComException("Given handle is alien to me !");
+        }
+        SerialComCaptureWriter capture;
+        synchronized(metrics) {
+            capture = metrics.getCapture();
+            metrics.setCapture(null);
+        }
+        if(capture == null) {
+            return false;
+        }
+        capture.close();
+        return true;
+    }
+
+    /**
+     * <p>Sets listener which is told about timing of port open/close, every native read/write, data and 
+     * line event listener callbacks and XMODEM/YMODEM blocks sent, retried and negatively acknowledged. 
+     * It applies to all instances of SerialComManager class. Tracing is disabled by default and costs 
+     * a single volatile read per operation while disabled.</p>
+     * 
+     * <p>This is intended to feed profilers, for example by committing Java Flight Recorder events from 
+     * listener methods on Java versions which provide them.</p>
+     * 
+     * @param traceListener listener to be called or null to disable tracing.
+     */
+    public static void setTraceListener(ISerialComTraceListener traceListener) {
+        SerialComTrace.setListener(traceListener);
+    }
+
+    /**
+     * <p>Starts watching data and line event listeners of all handles opened through this instance. 
+     * A listener call which has not returned within threshold is counted in port metrics and reported 
+     * to the given handler while it is still in progress.</p>
+     * 
+     * <p>If handOffExecutor is given and a data listener is found stuck, draining of looper queue for 
+     * that listener is moved to a thread of this executor so that data is not discarded when the queue 
+     * gets full. While the stuck call is in progress that thread only moves data into its own buffer in 
+     * memory. This buffer is bounded to the capacity of looper queue; once it is full oldest data is 
+     * dropped and counted in port metrics as with looper queue itself. Once the stuck call returns, buffered data 
+     * is delivered in order and delivery continues on that thread. Listener is never called concurrently 
+     * and data order is kept; listener must only cope with being called from a different thread after 
+     * hand off. Hand off happens at most once per registered data listener.</p>
+     * 
+     * <p>Calling this method again replaces previous watchdog.</p>
+     * 
+     * @param thresholdMillis time in milliseconds after which listener call is considered slow, 0 or 
+     *         negative stops watching.
+     * @param handler handler to be told about slow calls or null if only metrics are wanted.
+     * @param handOffExecutor executor to move data delivery to when data listener is stuck or null.
+     */
+    public void setListenerWatchdog(long thresholdMillis, ISerialComSlowListenerHandler handler, Executor handOffExecutor) {
+        synchronized(lockB) {
+            if(mListenerWatchdog != null) {
+                mListenerWatchdog.stop();
+                mListenerWatchdog = null;
+            }
+            if(thresholdMillis > 0) {
+                mListenerWatchdog = new SerialComListenerWatchdog(mPortMetrics, thresholdMillis, handler, handOffExecutor);
+            }
+        }
+    }
+
     /**
      * <p>Send given file(s) using specified file transfer protocol.</p>
      * 
@@ -2114,6 +2568,13 @@ public final class SerialComManager {
      * <p>For Ymodem transfer, the fileToSend array should contain all the files to be transffered to 
      * receiver end where all the elements in fileToSend array represent regular files.</p>
      * 
+     * <p>For Zmodem transfer all the elements in fileToSend array must represent regular files. The ftpVariant 
+     * is not used for Zmodem; CRC-32 is used whenever receiver supports it. If receiver finds a partially received 
+     * file from an earlier interrupted session, sending resumes from where it was interrupted. Replies from 
+     * receiver are collected through a data listener registered for the duration of the transfer, so 
+     * application must not have registered its own data listener on this handle. File offsets in Zmodem are 
+     * 32 bit, so files larger than 4 GB can not be sent.</p>
+     * 
      * <p>Xmodem protocol is widely used for flashing executable images in microcontroller via UART. For 
      * example the secondary bootloader in LPC2000 can update the user application code in on chip flash 
      * via UART with 1K XMODEM protocol. Xmodem protocol is also used for taling to network routers.</p>
@@ -2146,6 +2607,62 @@ public final class SerialComManager {
      */
     public boolean sendFile(long handle, final File[] fileToSend, FTPPROTO ftpProto, FTPVAR ftpVariant, 
             boolean textMode, ISerialComFTPProgress progressListener, SerialComFTPCMDAbort transferState) throws IOException {
+        return sendFile(handle, fileToSend, ftpProto, ftpVariant, textMode, progressListener, transferState, null);
+    }
+
+    /**
+     * <p>Send given file(s) using specified file transfer protocol.</p>
+     * 
+     * <p>For Xmodem trasnfer the element at 0th index of fileToSend array must represent a regular file. 
+     * If the length of fileToSend array is more than one, only 1st file will be sent.</p>
+     * 
+     * <p>For Ymodem transfer, the fileToSend array should contain all the files to be transffered to 
+     * receiver end where all the elements in fileToSend array represent regular files.</p>
+     * 
+     * <p>For Zmodem transfer all the elements in fileToSend array must represent regular files. The ftpVariant 
+     * is not used for Zmodem; CRC-32 is used whenever receiver supports it. If receiver finds a partially received 
+     * file from an earlier interrupted session, sending resumes from where it was interrupted. Replies from 
+     * receiver are collected through a data listener registered for the duration of the transfer, so 
+     * application must not have registered its own data listener on this handle. File offsets in Zmodem are 
+     * 32 bit, so files larger than 4 GB can not be sent.</p>
+     * 
+     * <p>Xmodem protocol is widely used for flashing executable images in microcontroller via UART. For 
+     * example the secondary bootloader in LPC2000 can update the user application code in on chip flash 
+     * via UART with 1K XMODEM protocol. Xmodem protocol is also used for taling to network routers.</p>
+     * 
+     * <p>If you want to make user defined firmware, consider creating an IDE where end user can place widget, 
+     * define layout etc. graphically and then when he clicks on save button a firmware hex file gets generated. 
+     * This file is then flashed into end product as firmware.</p>
+     * 
+     * <p>If monitor is not null, throughput, estimated time remaining, retries and NAKs of the transfer are 
+     * reported to its listener at a bounded rate, from monitor's own thread.</p>
+     * 
+     * @param handle of the port on which file is to be sent.
+     * @param fileToSend File instance representing file to be sent.
+     * @param ftpProto file transfer protocol to use for communication over serial port.
+     * @param ftpVariant variant of file transfer protocol to use.
+     * @param textMode if true file will be sent as text file (ASCII mode), if false file will be sent as 
+     *         binary file. The text file must contain only valid ASCII characters.
+     * @param progressListener object of class which implements ISerialComXmodemProgress interface and is 
+     *        interested in knowing how many blocks have been sent to file receiver till now. If progressListener 
+     *        is null, update will not be delivered to application.
+     * @param transferState if application wish to abort sending file at instant of time due to any reason, it can 
+     *        call abortTransfer method on this object. If the application does not wishes to abort sending file 
+     *        explicitly transferState can be null.
+     * @param monitor progress monitor or null if not wanted.
+     * @return true on success, false if application instructed to abort.
+     * @throws SerialComException if invalid handle is passed, if receiver sent abort command.
+     * @throws SecurityException If a security manager exists and its SecurityManager.checkRead(java.lang.String) 
+     *         method denies read access to the file.
+     * @throws FileNotFoundException if the file does not exist, is a directory rather than a regular file, or 
+     *         for some other reason cannot be opened for reading.
+     * @throws SerialComTimeOutException if timeout occurs as per file transfer protocol.
+     * @throws IOException if error occurs while reading data from file to be sent.
+     * @throws IllegalArgumentException if fileToSend or ftpProto or ftpVariant or ftpMode argument is null.
+     */
+    public boolean sendFile(long handle, final File[] fileToSend, FTPPROTO ftpProto, FTPVAR ftpVariant, 
+            boolean textMode, ISerialComFTPProgress progressListener, SerialComFTPCMDAbort transferState, 
+            SerialComFTPProgressMonitor monitor) throws IOException {
 
         if((fileToSend == null) || (fileToSend.length == 0)) {
             throw new IllegalArgumentException("Argument fileToSend can not be null or of zero length !");
@@ -2176,12 +2693,15 @@ public final class SerialComManager {
             switch(variant) {
             case 1:
                 SerialComXModem xmodem = new SerialComXModem(this, handle, fileToSend[0], textMode, (ISerialComXmodemProgress)progressListener, transferState, osType);
+                xmodem.setProgressMonitor(monitor);
                 return xmodem.sendFileX();
             case 2:
                 SerialComXModemCRC xmodemc = new SerialComXModemCRC(this, handle, fileToSend[0], textMode, (ISerialComXmodemProgress)progressListener, transferState, osType);
+                xmodemc.setProgressMonitor(monitor);
                 return xmodemc.sendFileX();
             case 3:
                 SerialComXModem1K xmodemk = new SerialComXModem1K(this, handle, fileToSend[0], textMode, (ISerialComXmodemProgress)progressListener, transferState, osType);
+                xmodemk.setProgressMonitor(monitor);
                 return xmodemk.sendFileX();
             default:
                 throw new IllegalArgumentException("This variant is not applicable for Xmodem transfer !");
@@ -2191,18 +2711,34 @@ public final class SerialComManager {
             switch(variant) {
             case 2:
                 SerialComYModemCRC ymodemc = new SerialComYModemCRC(this, handle, fileToSend, textMode, (ISerialComYmodemProgress)progressListener, transferState, osType);
+                ymodemc.setProgressMonitor(monitor);
                 return ymodemc.sendFileY();
             case 3:
                 SerialComYModem1K ymodemk = new SerialComYModem1K(this, handle, fileToSend, textMode, (ISerialComYmodemProgress)progressListener, transferState, osType);
+                ymodemk.setProgressMonitor(monitor);
                 return ymodemk.sendFileY();
             case 4:
                 SerialComYModemG ymodemg = new SerialComYModemG(this, handle, fileToSend, textMode, (ISerialComYmodemProgress)progressListener, transferState, osType);
+                ymodemg.setProgressMonitor(monitor);
                 return ymodemg.sendFileY();
             default:
                 throw new IllegalArgumentException("This variant is not applicable for Ymodem transfer !");
             }
         }
         else if(protocol == 3) {
+            for(int x=0; x < fileToSend.length; x++) {
+                if(!fileToSend[x].isFile()) {
+                    throw new IllegalArgumentException("For Zmodem all elements in fileToSend must be existing regular files !");
+                }
+            }
+            if(progressListener != null) {
+                if(!(progressListener instanceof ISerialComZmodemProgress)) {
+                    throw new IllegalArgumentException("Implement ISerialComZmodemProgress for non-null progressListener !");
+                }
+            }
+            SerialComZModem zmodem = new SerialComZModem(this, handle, fileToSend, textMode, (ISerialComZmodemProgress)progressListener, transferState, osType);
+            zmodem.setProgressMonitor(monitor);
+            return zmodem.sendFileZ();
         }
         else {
         }
@@ -2214,7 +2750,13 @@ public final class SerialComManager {
      * <p>Receives file using specified file transfer protocol.</p>
      * 
      * <p>For Xmodem transfer the fileToReceive must represent a regular file. For Ymodem transfer fileToReceive 
-     * must represent a directory in which received files will be saved.</p>
+     * must represent a directory in which received files will be saved. For Zmodem transfer fileToReceive must 
+     * represent a directory. If a file with same name exists in it, its content is compared with the beginning 
+     * of the file being sent using ZCRC; if it matches, reception continues from its end (or the file is skipped 
+     * when it is already complete), otherwise the file is received again from start. Management options sent by 
+     * Zmodem sender (protect, clobber, append, newer, skip if not present) are honoured. Ymodem-G and Zmodem 
+     * always collect received data through a data listener registered for the duration of the transfer, so 
+     * application must not have registered its own data listener on this handle.</p>
      * 
      * @param handle of the serial port on which file is to be sent.
      * @param fileToReceive File instance representing file/folder to be sent.
@@ -2240,6 +2782,166 @@ public final class SerialComManager {
      */
     public boolean receiveFile(long handle, final File fileToReceive, FTPPROTO ftpProto, FTPVAR ftpVariant, 
             boolean textMode, ISerialComFTPProgress progressListener, SerialComFTPCMDAbort transferState) throws IOException {
+        return receiveFile(handle, fileToReceive, ftpProto, ftpVariant, textMode, progressListener, transferState, false);
+    }
+
+    /**
+     * <p>Receives file using specified file transfer protocol.</p>
+     * 
+     * <p>If eventDriven is true, a data listener is registered on this handle for the duration of the transfer, 
+     * so application must not have registered its own data listener on this handle.</p>
+     * 
+     * <p>For Xmodem transfer the fileToReceive must represent a regular file. For Ymodem transfer fileToReceive 
+     * must represent a directory in which received files will be saved. For Zmodem transfer fileToReceive must 
+     * represent a directory. If a file with same name exists in it, its content is compared with the beginning 
+     * of the file being sent using ZCRC; if it matches, reception continues from its end (or the file is skipped 
+     * when it is already complete), otherwise the file is received again from start. Management options sent by 
+     * Zmodem sender (protect, clobber, append, newer, skip if not present) are honoured. Ymodem-G and Zmodem 
+     * always collect received data through a data listener registered for the duration of the transfer, so 
+     * application must not have registered its own data listener on this handle.</p>
+     * 
+     * @param handle of the serial port on which file is to be sent.
+     * @param fileToReceive File instance representing file/folder to be sent.
+     * @param ftpProto file transfer protocol (FTPPROTO_XXX) to use for communication over serial port.
+     * @param ftpVariant variant of file transfer protocol (FTPVAR_XXX) to use.
+     * @param textMode if true file will be received as text file (ASCII mode), if false file will be received 
+     *        as binary file.
+     * @param progressListener object of class which implements ISerialComXmodemProgress interface and is interested 
+     *        in knowing how many blocks have been received from file sender till now. If progressListener is null, 
+     *        update will not be delivered to application.
+     * @param transferState if application wish to abort receiving file at instant of time due to any reason, it can 
+     *        call abortTransfer method on this object. If the application does not wishes to abort receiving file 
+     *        explicitly transferState can be null.
+     * @param eventDriven if true, data listener notifications are used to wake up the receiver as soon as a block 
+     *        has arrived instead of polling serial port after fixed sleep. Applicable to Xmodem and to Ymodem-CRC, 
+     *        Ymodem-1K variants; ignored for others.
+     * @return true on success, false if application instructed to abort.
+     * @throws SerialComException if invalid handle is passed, if sender sent abort command.
+     * @throws SecurityException If a security manager exists and its SecurityManager.checkRead(java.lang.String) method 
+     *         denies read access to the file.
+     * @throws FileNotFoundException if the file does not exist, is a directory rather than a regular file, or for some 
+     *         other reason cannot be opened for reading.
+     * @throws SerialComTimeOutException if timeout occurs as per file transfer protocol.
+     * @throws IOException if error occurs while reading data from file to be sent.
+     * @throws IllegalArgumentException if fileToReceive or ftpProto or ftpVariant or ftpMode argument is null.
+     */
+    public boolean receiveFile(long handle, final File fileToReceive, FTPPROTO ftpProto, FTPVAR ftpVariant, 
+            boolean textMode, ISerialComFTPProgress progressListener, SerialComFTPCMDAbort transferState, 
+            boolean eventDriven) throws IOException {
+        return receiveFile(handle, fileToReceive, ftpProto, ftpVariant, textMode, progressListener, transferState, eventDriven, false);
+    }
+
+    /**
+     * <p>Receives file using specified file transfer protocol.</p>
+     * 
+     * <p>If eventDriven is true, a data listener is registered on this handle for the duration of the transfer, 
+     * so application must not have registered its own data listener on this handle.</p>
+     * 
+     * <p>If resumable is true and a checkpoint journal left by an earlier interrupted reception exists, a 
+     * SerialPundit sender is asked to continue from last checkpoint; it does so only if its data till there has 
+     * the CRC recorded in journal. Other senders, or a sender with different data, send whole file again, data 
+     * which is already on disk is then verified against CRC recorded in journal and is not written again.</p>
+     * 
+     * <p>For Xmodem transfer the fileToReceive must represent a regular file. For Ymodem transfer fileToReceive 
+     * must represent a directory in which received files will be saved. For Zmodem transfer fileToReceive must 
+     * represent a directory. If a file with same name exists in it, its content is compared with the beginning 
+     * of the file being sent using ZCRC; if it matches, reception continues from its end (or the file is skipped 
+     * when it is already complete), otherwise the file is received again from start. Management options sent by 
+     * Zmodem sender (protect, clobber, append, newer, skip if not present) are honoured. Ymodem-G and Zmodem 
+     * always collect received data through a data listener registered for the duration of the transfer, so 
+     * application must not have registered its own data listener on this handle.</p>
+     * 
+     * @param handle of the serial port on which file is to be sent.
+     * @param fileToReceive File instance representing file/folder to be sent.
+     * @param ftpProto file transfer protocol (FTPPROTO_XXX) to use for communication over serial port.
+     * @param ftpVariant variant of file transfer protocol (FTPVAR_XXX) to use.
+     * @param textMode if true file will be received as text file (ASCII mode), if false file will be received 
+     *        as binary file.
+     * @param progressListener object of class which implements ISerialComXmodemProgress interface and is interested 
+     *        in knowing how many blocks have been received from file sender till now. If progressListener is null, 
+     *        update will not be delivered to application.
+     * @param transferState if application wish to abort receiving file at instant of time due to any reason, it can 
+     *        call abortTransfer method on this object. If the application does not wishes to abort receiving file 
+     *        explicitly transferState can be null.
+     * @param eventDriven if true, data listener notifications are used to wake up the receiver as soon as a block 
+     *        has arrived instead of polling serial port after fixed sleep. Applicable to Xmodem and to Ymodem-CRC, 
+     *        Ymodem-1K variants; ignored for others.
+     * @param resumable if true, binary mode reception keeps a checkpoint journal (file name with suffix .spjournal) 
+     *        next to the received file and an interrupted reception continues from last checkpoint when the 
+     *        same file is received again. Applicable to Xmodem and to Ymodem-CRC, Ymodem-1K variants; ignored 
+     *        for others.
+     * @return true on success, false if application instructed to abort.
+     * @throws SerialComException if invalid handle is passed, if sender sent abort command.
+     * @throws SecurityException If a security manager exists and its SecurityManager.checkRead(java.lang.String) method 
+     *         denies read access to the file.
+     * @throws FileNotFoundException if the file does not exist, is a directory rather than a regular file, or for some 
+     *         other reason cannot be opened for reading.
+     * @throws SerialComTimeOutException if timeout occurs as per file transfer protocol.
+     * @throws IOException if error occurs while reading data from file to be sent.
+     * @throws IllegalArgumentException if fileToReceive or ftpProto or ftpVariant or ftpMode argument is null.
+     */
+    public boolean receiveFile(long handle, final File fileToReceive, FTPPROTO ftpProto, FTPVAR ftpVariant, 
+            boolean textMode, ISerialComFTPProgress progressListener, SerialComFTPCMDAbort transferState, 
+            boolean eventDriven, boolean resumable) throws IOException {
+        return receiveFile(handle, fileToReceive, ftpProto, ftpVariant, textMode, progressListener, transferState, eventDriven, resumable, null);
+    }
+
+    /**
+     * <p>Receives file using specified file transfer protocol.</p>
+     * 
+     * <p>If eventDriven is true, a data listener is registered on this handle for the duration of the transfer, 
+     * so application must not have registered its own data listener on this handle.</p>
+     * 
+     * <p>If resumable is true and a checkpoint journal left by an earlier interrupted reception exists, a 
+     * SerialPundit sender is asked to continue from last checkpoint; it does so only if its data till there has 
+     * the CRC recorded in journal. Other senders, or a sender with different data, send whole file again, data 
+     * which is already on disk is then verified against CRC recorded in journal and is not written again.</p>
+     * 
+     * <p>For Xmodem transfer the fileToReceive must represent a regular file. For Ymodem transfer fileToReceive 
+     * must represent a directory in which received files will be saved. For Zmodem transfer fileToReceive must 
+     * represent a directory. If a file with same name exists in it, its content is compared with the beginning 
+     * of the file being sent using ZCRC; if it matches, reception continues from its end (or the file is skipped 
+     * when it is already complete), otherwise the file is received again from start. Management options sent by 
+     * Zmodem sender (protect, clobber, append, newer, skip if not present) are honoured. Ymodem-G and Zmodem 
+     * always collect received data through a data listener registered for the duration of the transfer, so 
+     * application must not have registered its own data listener on this handle.</p>
+     * 
+     * <p>If monitor is not null, throughput, estimated time remaining, retries and NAKs of the transfer are 
+     * reported to its listener at a bounded rate, from monitor's own thread.</p>
+     * 
+     * @param handle of the serial port on which file is to be sent.
+     * @param fileToReceive File instance representing file/folder to be sent.
+     * @param ftpProto file transfer protocol (FTPPROTO_XXX) to use for communication over serial port.
+     * @param ftpVariant variant of file transfer protocol (FTPVAR_XXX) to use.
+     * @param textMode if true file will be received as text file (ASCII mode), if false file will be received 
+     *        as binary file.
+     * @param progressListener object of class which implements ISerialComXmodemProgress interface and is interested 
+     *        in knowing how many blocks have been received from file sender till now. If progressListener is null, 
+     *        update will not be delivered to application.
+     * @param transferState if application wish to abort receiving file at instant of time due to any reason, it can 
+     *        call abortTransfer method on this object. If the application does not wishes to abort receiving file 
+     *        explicitly transferState can be null.
+     * @param eventDriven if true, data listener notifications are used to wake up the receiver as soon as a block 
+     *        has arrived instead of polling serial port after fixed sleep. Applicable to Xmodem and to Ymodem-CRC, 
+     *        Ymodem-1K variants; ignored for others.
+     * @param resumable if true, binary mode reception keeps a checkpoint journal (file name with suffix .spjournal) 
+     *        next to the received file and an interrupted reception continues from last checkpoint when the 
+     *        same file is received again. Applicable to Xmodem and to Ymodem-CRC, Ymodem-1K variants; ignored 
+     *        for others.
+     * @param monitor progress monitor or null if not wanted.
+     * @return true on success, false if application instructed to abort.
+     * @throws SerialComException if invalid handle is passed, if sender sent abort command.
+     * @throws SecurityException If a security manager exists and its SecurityManager.checkRead(java.lang.String) method 
+     *         denies read access to the file.
+     * @throws FileNotFoundException if the file does not exist, is a directory rather than a regular file, or for some 
+     *         other reason cannot be opened for reading.
+     * @throws SerialComTimeOutException if timeout occurs as per file transfer protocol.
+     * @throws IOException if error occurs while reading data from file to be sent.
+     * @throws IllegalArgumentException if fileToReceive or ftpProto or ftpVariant or ftpMode argument is null.
+     */
+    public boolean receiveFile(long handle, final File fileToReceive, FTPPROTO ftpProto, FTPVAR ftpVariant, 
+            boolean textMode, ISerialComFTPProgress progressListener, SerialComFTPCMDAbort transferState, 
+            boolean eventDriven, boolean resumable, SerialComFTPProgressMonitor monitor) throws IOException {
 
         if(fileToReceive == null) {
             throw new IllegalArgumentException("Argument fileToReceive can not be null !");
@@ -2270,12 +2972,21 @@ public final class SerialComManager {
             switch(variant) {
             case 1:
                 SerialComXModem xmodem = new SerialComXModem(this, handle, fileToReceive, textMode, (ISerialComXmodemProgress)progressListener, transferState, osType);
+                xmodem.setEventDrivenReception(eventDriven);
+                xmodem.setResumableReception(resumable);
+                xmodem.setProgressMonitor(monitor);
                 return xmodem.receiveFileX();
             case 2:
                 SerialComXModemCRC xmodemc = new SerialComXModemCRC(this, handle, fileToReceive, textMode, (ISerialComXmodemProgress)progressListener, transferState, osType);
+                xmodemc.setEventDrivenReception(eventDriven);
+                xmodemc.setResumableReception(resumable);
+                xmodemc.setProgressMonitor(monitor);
                 return xmodemc.receiveFileX();
             case 3:
                 SerialComXModem1K xmodemk = new SerialComXModem1K(this, handle, fileToReceive, textMode, (ISerialComXmodemProgress)progressListener, transferState, osType);
+                xmodemk.setEventDrivenReception(eventDriven);
+                xmodemk.setResumableReception(resumable);
+                xmodemk.setProgressMonitor(monitor);
                 return xmodemk.receiveFileX();
             default:
                 throw new IllegalArgumentException("This variant is not applicable for Xmodem transfer !");
@@ -2288,19 +2999,36 @@ public final class SerialComManager {
             switch(variant) {
             case 2:
                 SerialComYModemCRC ymodemc = new SerialComYModemCRC(this, handle, fileToReceive, textMode, (ISerialComYmodemProgress)progressListener, transferState, osType);
+                ymodemc.setEventDrivenReception(eventDriven);
+                ymodemc.setResumableReception(resumable);
+                ymodemc.setProgressMonitor(monitor);
                 return ymodemc.receiveFileY();
             case 3:
                 SerialComYModem1K ymodemk = new SerialComYModem1K(this, handle, fileToReceive, textMode, (ISerialComYmodemProgress)progressListener, transferState, osType);
+                ymodemk.setEventDrivenReception(eventDriven);
+                ymodemk.setResumableReception(resumable);
+                ymodemk.setProgressMonitor(monitor);
                 return ymodemk.receiveFileY();
             case 4:
                 SerialComYModemG ymodemg = new SerialComYModemG(this, handle, fileToReceive, textMode, (ISerialComYmodemProgress)progressListener, transferState, osType);
+                ymodemg.setProgressMonitor(monitor);
                 return ymodemg.receiveFileY();
             default:
                 throw new IllegalArgumentException("This variant is not applicable for Ymodem transfer !");
             }
         }
         else if(protocol == 3) {
-
+            if(!fileToReceive.isDirectory() || !fileToReceive.canWrite()) {
+                throw new IllegalArgumentException("The fileToReceive must be a writable directory for Zmodem transfer !");
+            }
+            if(progressListener != null) {
+                if(!(progressListener instanceof ISerialComZmodemProgress)) {
+                    throw new IllegalArgumentException("Implement ISerialComZmodemProgress for non-null progressListener !");
+                }
+            }
+            SerialComZModem zmodem = new SerialComZModem(this, handle, fileToReceive, textMode, (ISerialComZmodemProgress)progressListener, transferState, osType);
+            zmodem.setProgressMonitor(monitor);
+            return zmodem.receiveFileZ();
         }
         else {
         }
@@ -2490,4 +3218,21 @@ public final class SerialComManager {
 
         return mSerialComNullModem;
     }
+
+    /**
+     * <p>Provides an instance of SerialComPortInventory class which caches list of serial ports present 
+     * in system and enumerates them again only when they may have changed. It also gives versioned 
+     * snapshots and ports added or removed between them. The instance is shared by all SerialComManager 
+     * objects; if it has been closed a new one is created.</p>
+     * 
+     * @return an instance of SerialComPortInventory class.
+     */
+    public SerialComPortInventory getSerialComPortInventoryInstance() {
+        synchronized(SerialComManager.lockA) {
+            if((mSerialComPortInventory == null) || mSerialComPortInventory.isClosed()) {
+                mSerialComPortInventory = new SerialComPortInventory(mSerialComPortsList, osType);
+            }
+            return mSerialComPortInventory;
+        }
+    }
 }
@@ -0,0 +1,274 @@
+/*
+ * This file is part of SerialPundit.
+ * 
+ * Copyright (C) 2014-2016, Rishi Gupta. All rights reserved.
+ *
+ * The SerialPundit is DUAL LICENSED. It is made available under the terms of the GNU Affero 
+ * General Public License (AGPL) v3.0 for non-commercial use and under the terms of a commercial 
+ * license for commercial use of this software. 
+ * 
+ * The SerialPundit is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+
+package com.serialpundit.serial.batch;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.serialpundit.core.SerialComException;
+import com.serialpundit.serial.SerialComManager;
+
+/**
+ * <p>Opens and configures many serial ports concurrently. Bringing up ports one after other is
+ * dominated by time spent in operating system opening and setting up each device, which for a
+ * serial concentrator with hundreds of ports adds up to a long start up time.</p>
+ * 
+ * <p>Each port is opened with openComPort and configured with configureComPortData,
+ * configureComPortControl and, if its profile says so, fineTuneReadBehaviour. Ports are processed
+ * in parallel using at most the given number of threads. Outcome of every port is reported
+ * separately; failure of one port does not affect others, and a port that fails to be configured
+ * is closed again.</p>
+ * 
+ * <p>Several batches may be run at the same time from different threads; each has its own abort 
+ * state.</p>
+ * 
+ * @author Rishi Gupta
+ */
+public final class SerialComBatchOpener {
+
+    private final SerialComManager scm;
+    private final int parallelism;
+    // abort flags of batches being run, a batch never sees abort meant for an earlier or later one.
+    private final Set<AtomicBoolean> runningBatches = Collections.newSetFromMap(new ConcurrentHashMap<AtomicBoolean, Boolean>());
+
+    /**
+     * <p>Allocates a new SerialComBatchOpener object.</p>
+     * 
+     * @param scm SerialComManager instance with which ports are opened.
+     * @param parallelism maximum number of ports opened and configured at the same time.
+     * @throws IllegalArgumentException if scm is null or parallelism is not positive.
+     */
+    public SerialComBatchOpener(SerialComManager scm, int parallelism) {
+        if(scm == null) {
+            throw new IllegalArgumentException("Argument scm can not be null !");
+        }
+        if(parallelism <= 0) {
+            throw new IllegalArgumentException("Argument parallelism must be positive !");
+        }
+        this.scm = scm;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * <p>Opens and configures all the given ports with the same profile.</p>
+     * 
+     * @param portNames names of ports to be opened.
+     * @param profile settings with which every port is opened and configured.
+     * @return results in the same order as portNames.
+     * @throws IllegalArgumentException if portNames, any of its elements or profile is null.
+     */
+    public List<SerialComBatchResult> openComPorts(String[] portNames, SerialComPortProfile profile) {
+        if((portNames == null) || (profile == null)) {
+            throw new IllegalArgumentException("Argument portNames and profile can not be null !");
+        }
+        List<SerialComPortSpec> specs = new ArrayList<SerialComPortSpec>(portNames.length);
+        for(String portName : portNames) {
+            specs.add(new SerialComPortSpec(portName, profile));
+        }
+        return openComPorts(specs);
+    }
+
+    /**
+     * <p>Opens and configures all the given ports and waits till every one of them has either
+     * succeeded or failed.</p>
+     * 
+     * <p>If calling thread is interrupted, ports not yet tried are reported as failed at step
+     * STEP_OPEN, ports being opened are let finish so that their handles are reported, and the
+     * interrupt status of the thread is set again before this method returns.</p>
+     * 
+     * @param specs ports to be opened and their profiles.
+     * @return results in the same order as specs.
+     * @throws IllegalArgumentException if specs or any of its elements is null.
+     */
+    public List<SerialComBatchResult> openComPorts(List<SerialComPortSpec> specs) {
+        if(specs == null) {
+            throw new IllegalArgumentException("Argument specs can not be null !");
+        }
+        final int count = specs.size();
+        final SerialComPortSpec[] toOpen = new SerialComPortSpec[count];
+        for(int x = 0; x < count; x++) {
+            SerialComPortSpec spec = specs.get(x);
+            if(spec == null) {
+                throw new IllegalArgumentException("Argument specs can not contain null !");
+            }
+            toOpen[x] = spec;
+        }
+        final SerialComBatchResult[] results = new SerialComBatchResult[count];
+        final AtomicBoolean abort = new AtomicBoolean(false);
+
+        // profiles are copied as application may change them while batch is running.
+        final SerialComPortProfile[] profiles = new SerialComPortProfile[count];
+        for(int x = 0; x < count; x++) {
+            profiles[x] = new SerialComPortProfile(toOpen[x].getProfile());
+        }
+
+        boolean interrupted = false;
+        if(count > 0) {
+            runningBatches.add(abort);
+            try {
+                ExecutorService threadpool = Executors.newFixedThreadPool(Math.min(parallelism, count));
+                for(int x = 0; x < count; x++) {
+                    final int index = x;
+                    threadpool.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            try {
+                                results[index] = openAndConfigure(toOpen[index], profiles[index], abort);
+                            } catch (Throwable t) {
+                                // every port must have a result even if something unexpected went wrong.
+                                results[index] = new SerialComBatchResult(toOpen[index], -1, SerialComBatchResult.STEP_OPEN, 
+                                        toException(t), 0);
+                            }
+                        }
+                    });
+                }
+                threadpool.shutdown();
+                while(true) {
+                    try {
+                        if(threadpool.awaitTermination(1, TimeUnit.SECONDS)) {
+                            break;
+                        }
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                        abort.set(true);
+                    }
+                }
+            } finally {
+                runningBatches.remove(abort);
+            }
+        }
+
+        List<SerialComBatchResult> list = new ArrayList<SerialComBatchResult>(count);
+        for(int x = 0; x < count; x++) {
+            list.add(results[x]);
+        }
+        if(interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        return list;
+    }
+
+    /**
+     * <p>Makes batches in progress skip ports not yet tried. Ports already being opened are finished. 
+     * Batches started afterwards are not affected.</p>
+     */
+    public void abort() {
+        for(AtomicBoolean abort : runningBatches) {
+            abort.set(true);
+        }
+    }
+
+    /**
+     * <p>Configures an already opened port as given in profile. Open mode in profile is not used.</p>
+     * 
+     * @param handle of the opened port.
+     * @param profile settings to be applied.
+     * @throws SerialComException if invalid handle is passed or port can not be configured.
+     * @throws IllegalArgumentException if profile is null or has invalid read behaviour.
+     */
+    public void configure(long handle, SerialComPortProfile profile) throws SerialComException {
+        if(profile == null) {
+            throw new IllegalArgumentException("Argument profile can not be null !");
+        }
+        configure(handle, profile, new int[1]);
+    }
+
+    /*
+     * Applies profile to opened port; step[0] tells which step was being done if an exception is thrown.
+     */
+    private void configure(long handle, SerialComPortProfile profile, int[] step) throws SerialComException {
+        step[0] = SerialComBatchResult.STEP_DATA;
+        scm.configureComPortData(handle, profile.getDataBits(), profile.getStopBits(), profile.getParity(),
+                profile.getBaudRate(), profile.getCustBaud());
+        step[0] = SerialComBatchResult.STEP_CONTROL;
+        scm.configureComPortControl(handle, profile.getFlowControl(), profile.getXon(), profile.getXoff(),
+                profile.isParFraError(), profile.isOverFlowErr());
+        if(profile.hasReadBehaviour()) {
+            step[0] = SerialComBatchResult.STEP_READ_BEHAVIOUR;
+            scm.fineTuneReadBehaviour(handle, profile.getVmin(), profile.getVtime(), profile.getRit(),
+                    profile.getRttm(), profile.getRttc());
+        }
+    }
+
+    /**
+     * <p>Closes all the ports which were opened successfully in a batch. Failure to close one port
+     * does not prevent others from being closed.</p>
+     * 
+     * @param results results returned by openComPorts.
+     * @return number of ports closed.
+     */
+    public int closeComPorts(List<SerialComBatchResult> results) {
+        int closed = 0;
+        if(results == null) {
+            return 0;
+        }
+        for(SerialComBatchResult result : results) {
+            if((result != null) && result.isSuccess()) {
+                try {
+                    scm.closeComPort(result.getHandle());
+                    closed++;
+                } catch (Exception e) {
+                    // port may already have been closed by application, continue with others.
+                }
+            }
+        }
+        return closed;
+    }
+
+    private SerialComBatchResult openAndConfigure(SerialComPortSpec spec, SerialComPortProfile profile, AtomicBoolean abort) {
+        long start = System.nanoTime();
+        if(abort.get()) {
+            return new SerialComBatchResult(spec, -1, SerialComBatchResult.STEP_OPEN,
+                    new SerialComException("Batch was aborted before port " + spec.getPortName() + " was opened !"), 0);
+        }
+
+        long handle;
+        try {
+            handle = scm.openComPort(spec.getPortName(), profile.isEnableRead(), profile.isEnableWrite(),
+                    profile.isExclusiveOwnerShip());
+        } catch (Throwable e) {
+            return new SerialComBatchResult(spec, -1, SerialComBatchResult.STEP_OPEN, toException(e), System.nanoTime() - start);
+        }
+
+        int[] step = new int[1];
+        try {
+            configure(handle, profile, step);
+        } catch (Throwable e) {
+            try {
+                scm.closeComPort(handle);
+            } catch (Throwable e1) {
+            }
+            return new SerialComBatchResult(spec, -1, step[0], toException(e), System.nanoTime() - start);
+        }
+
+        return new SerialComBatchResult(spec, handle, SerialComBatchResult.STEP_NONE, null, System.nanoTime() - start);
+    }
+
+    /*
+     * Errors (for example a missing native library) are reported as failure of the port like exceptions.
+     */
+    private static Exception toException(Throwable t) {
+        if(t instanceof Exception) {
+            return (Exception) t;
+        }
+        return (SerialComException) new SerialComException(String.valueOf(t)).initCause(t);
+    }
+}
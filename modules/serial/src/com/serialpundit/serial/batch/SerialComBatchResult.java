@@ -0,0 +1,118 @@
+/*
+ * This file is part of SerialPundit.
+ * 
+ * Copyright (C) 2014-2016, Rishi Gupta. All rights reserved.
+ *
+ * The SerialPundit is DUAL LICENSED. It is made available under the terms of the GNU Affero 
+ * General Public License (AGPL) v3.0 for non-commercial use and under the terms of a commercial 
+ * license for commercial use of this software. 
+ * 
+ * The SerialPundit is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+
+package com.serialpundit.serial.batch;
+
+/**
+ * <p>Outcome of opening and configuring one port in a batch. If any step fails, port is closed 
+ * again, so a failed port never leaves an open handle behind.</p>
+ * 
+ * @author Rishi Gupta
+ */
+public final class SerialComBatchResult {
+
+    /**<p> No step failed. Constant with value 0x00. </p>*/
+    public static final int STEP_NONE = 0x00;
+
+    /**<p> Port could not be opened, or batch was interrupted before it was tried. Constant with value 0x01. </p>*/
+    public static final int STEP_OPEN = 0x01;
+
+    /**<p> configureComPortData failed. Constant with value 0x02. </p>*/
+    public static final int STEP_DATA = 0x02;
+
+    /**<p> configureComPortControl failed. Constant with value 0x03. </p>*/
+    public static final int STEP_CONTROL = 0x03;
+
+    /**<p> fineTuneReadBehaviour failed. Constant with value 0x04. </p>*/
+    public static final int STEP_READ_BEHAVIOUR = 0x04;
+
+    private final SerialComPortSpec spec;
+    private final long handle;
+    private final int failedStep;
+    private final Exception failure;
+    private final long elapsedNanos;
+
+    SerialComBatchResult(SerialComPortSpec spec, long handle, int failedStep, Exception failure, long elapsedNanos) {
+        this.spec = spec;
+        this.handle = handle;
+        this.failedStep = failedStep;
+        this.failure = failure;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * <p>Gives specification this result is for.</p>
+     * 
+     * @return port specification passed to batch.
+     */
+    public SerialComPortSpec getSpec() {
+        return spec;
+    }
+
+    public String getPortName() {
+        return spec.getPortName();
+    }
+
+    /**
+     * <p>Tells whether port has been opened and configured successfully.</p>
+     * 
+     * @return true on success.
+     */
+    public boolean isSuccess() {
+        return failure == null;
+    }
+
+    /**
+     * <p>Gives handle of opened and configured port.</p>
+     * 
+     * @return handle or -1 if port could not be opened and configured.
+     */
+    public long getHandle() {
+        return handle;
+    }
+
+    /**
+     * <p>Gives step which failed.</p>
+     * 
+     * @return one of the STEP_XXX constants.
+     */
+    public int getFailedStep() {
+        return failedStep;
+    }
+
+    /**
+     * <p>Gives exception due to which port could not be opened and configured.</p>
+     * 
+     * @return exception or null on success.
+     */
+    public Exception getFailure() {
+        return failure;
+    }
+
+    /**
+     * <p>Gives time taken to open and configure this port.</p>
+     * 
+     * @return time in nanoseconds.
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        if(failure == null) {
+            return spec.getPortName() + " : opened, handle " + handle;
+        }
+        return spec.getPortName() + " : failed at step " + failedStep + ", " + failure.getMessage();
+    }
+}
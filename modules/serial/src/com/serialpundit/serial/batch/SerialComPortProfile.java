@@ -0,0 +1,262 @@
+/*
+ * This file is part of SerialPundit.
+ * 
+ * Copyright (C) 2014-2016, Rishi Gupta. All rights reserved.
+ *
+ * The SerialPundit is DUAL LICENSED. It is made available under the terms of the GNU Affero 
+ * General Public License (AGPL) v3.0 for non-commercial use and under the terms of a commercial 
+ * license for commercial use of this software. 
+ * 
+ * The SerialPundit is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+
+package com.serialpundit.serial.batch;
+
+import com.serialpundit.serial.SerialComManager.BAUDRATE;
+import com.serialpundit.serial.SerialComManager.DATABITS;
+import com.serialpundit.serial.SerialComManager.FLOWCONTROL;
+import com.serialpundit.serial.SerialComManager.PARITY;
+import com.serialpundit.serial.SerialComManager.STOPBITS;
+
+/**
+ * <p>Settings with which a port is opened and configured. One profile can be used for any number 
+ * of ports. Values have same meaning as arguments of openComPort, configureComPortData, 
+ * configureComPortControl and fineTuneReadBehaviour methods in SerialComManager class.</p>
+ * 
+ * <p>By default port is opened for reading and writing with exclusive ownership and configured for 
+ * 115200 baud, 8 data bits, 1 stop bit, no parity and no flow control. Read behaviour is left as 
+ * it is unless setReadBehaviour is called.</p>
+ * 
+ * <p>This class is not thread safe. SerialComBatchOpener copies profiles when a batch is started, so 
+ * a profile may be modified afterwards without affecting ports being opened.</p>
+ * 
+ * @author Rishi Gupta
+ */
+public final class SerialComPortProfile {
+
+    private boolean enableRead = true;
+    private boolean enableWrite = true;
+    private boolean exclusiveOwnerShip = true;
+
+    private DATABITS dataBits = DATABITS.DB_8;
+    private STOPBITS stopBits = STOPBITS.SB_1;
+    private PARITY parity = PARITY.P_NONE;
+    private BAUDRATE baudRate = BAUDRATE.B115200;
+    private int custBaud = 0;
+
+    private FLOWCONTROL flowctrl = FLOWCONTROL.NONE;
+    private char xon = (char) 0x11;
+    private char xoff = (char) 0x13;
+    private boolean parFraError = false;
+    private boolean overFlowErr = false;
+
+    private boolean readBehaviour = false;
+    private int vmin;
+    private int vtime;
+    private int rit;
+    private int rttm;
+    private int rttc;
+
+    /**
+     * <p>Allocates a new SerialComPortProfile object with default settings.</p>
+     */
+    public SerialComPortProfile() {
+    }
+
+    /**
+     * <p>Allocates a new SerialComPortProfile object with same settings as the given profile.</p>
+     * 
+     * @param other profile to copy.
+     * @throws IllegalArgumentException if other is null.
+     */
+    public SerialComPortProfile(SerialComPortProfile other) {
+        if(other == null) {
+            throw new IllegalArgumentException("Argument other can not be null !");
+        }
+        enableRead = other.enableRead;
+        enableWrite = other.enableWrite;
+        exclusiveOwnerShip = other.exclusiveOwnerShip;
+        dataBits = other.dataBits;
+        stopBits = other.stopBits;
+        parity = other.parity;
+        baudRate = other.baudRate;
+        custBaud = other.custBaud;
+        flowctrl = other.flowctrl;
+        xon = other.xon;
+        xoff = other.xoff;
+        parFraError = other.parFraError;
+        overFlowErr = other.overFlowErr;
+        readBehaviour = other.readBehaviour;
+        vmin = other.vmin;
+        vtime = other.vtime;
+        rit = other.rit;
+        rttm = other.rttm;
+        rttc = other.rttc;
+    }
+
+    /**
+     * <p>Sets arguments passed to openComPort.</p>
+     * 
+     * @param enableRead allows application to read bytes from this port.
+     * @param enableWrite allows application to write bytes to this port.
+     * @param exclusiveOwnerShip application wants to become exclusive owner of this port or not.
+     * @throws IllegalArgumentException if both enableRead and enableWrite are false.
+     */
+    public void setOpenMode(boolean enableRead, boolean enableWrite, boolean exclusiveOwnerShip) {
+        if((enableRead == false) && (enableWrite == false)) {
+            throw new IllegalArgumentException("Arguments enableRead and enableWrite both can not be set to false !");
+        }
+        this.enableRead = enableRead;
+        this.enableWrite = enableWrite;
+        this.exclusiveOwnerShip = exclusiveOwnerShip;
+    }
+
+    /**
+     * <p>Sets arguments passed to configureComPortData.</p>
+     * 
+     * @param dataBits number of data bits in one frame.
+     * @param stopBits number of stop bits in one frame.
+     * @param parity of the frame.
+     * @param baudRate of the frame.
+     * @param custBaud custom baudrate if the desired rate is not included in BAUDRATE enum.
+     * @throws IllegalArgumentException if dataBits, stopBits, parity or baudRate is null or custBaud 
+     *          is not positive when baudRate is BCUSTOM.
+     */
+    public void setDataFormat(DATABITS dataBits, STOPBITS stopBits, PARITY parity, BAUDRATE baudRate, int custBaud) {
+        if((dataBits == null) || (stopBits == null) || (parity == null) || (baudRate == null)) {
+            throw new IllegalArgumentException("Argument dataBits, stopBits, parity and baudRate can not be null !");
+        }
+        if((baudRate == BAUDRATE.BCUSTOM) && (custBaud <= 0)) {
+            throw new IllegalArgumentException("Argument custBaud must be positive for custom baud rate !");
+        }
+        this.dataBits = dataBits;
+        this.stopBits = stopBits;
+        this.parity = parity;
+        this.baudRate = baudRate;
+        this.custBaud = custBaud;
+    }
+
+    /**
+     * <p>Sets arguments passed to configureComPortControl.</p>
+     * 
+     * @param flowctrl flow control.
+     * @param xon character representing on condition if software flow control is used.
+     * @param xoff character representing off condition if software flow control is used.
+     * @param parFraError true if parity and frame errors are to be checked false otherwise.
+     * @param overFlowErr true if overflow error is to be detected false otherwise.
+     * @throws IllegalArgumentException if flowctrl is null.
+     */
+    public void setFlowControl(FLOWCONTROL flowctrl, char xon, char xoff, boolean parFraError, boolean overFlowErr) {
+        if(flowctrl == null) {
+            throw new IllegalArgumentException("Argument flowctrl can not be null !");
+        }
+        this.flowctrl = flowctrl;
+        this.xon = xon;
+        this.xoff = xoff;
+        this.parFraError = parFraError;
+        this.overFlowErr = overFlowErr;
+    }
+
+    /**
+     * <p>Sets arguments passed to fineTuneReadBehaviour. Unless this method is called, 
+     * fineTuneReadBehaviour is not called for ports opened with this profile.</p>
+     * 
+     * @param vmin c_cc[VMIN] field of termios structure (applicable for unix like OS only).
+     * @param vtime c_cc[VTIME] field of termios structure (applicable for unix like OS only).
+     * @param rit ReadIntervalTimeout field of COMMTIMEOUTS structure (applicable for windows OS only).
+     * @param rttm ReadTotalTimeoutMultiplier field of COMMTIMEOUTS structure (applicable for windows OS only).
+     * @param rttc ReadTotalTimeoutConstant field of COMMTIMEOUTS structure (applicable for windows OS only).
+     */
+    public void setReadBehaviour(int vmin, int vtime, int rit, int rttm, int rttc) {
+        this.vmin = vmin;
+        this.vtime = vtime;
+        this.rit = rit;
+        this.rttm = rttm;
+        this.rttc = rttc;
+        readBehaviour = true;
+    }
+
+    /**
+     * <p>Makes read behaviour of ports opened with this profile to be left as it is.</p>
+     */
+    public void clearReadBehaviour() {
+        readBehaviour = false;
+    }
+
+    public boolean isEnableRead() {
+        return enableRead;
+    }
+
+    public boolean isEnableWrite() {
+        return enableWrite;
+    }
+
+    public boolean isExclusiveOwnerShip() {
+        return exclusiveOwnerShip;
+    }
+
+    public DATABITS getDataBits() {
+        return dataBits;
+    }
+
+    public STOPBITS getStopBits() {
+        return stopBits;
+    }
+
+    public PARITY getParity() {
+        return parity;
+    }
+
+    public BAUDRATE getBaudRate() {
+        return baudRate;
+    }
+
+    public int getCustBaud() {
+        return custBaud;
+    }
+
+    public FLOWCONTROL getFlowControl() {
+        return flowctrl;
+    }
+
+    public char getXon() {
+        return xon;
+    }
+
+    public char getXoff() {
+        return xoff;
+    }
+
+    public boolean isParFraError() {
+        return parFraError;
+    }
+
+    public boolean isOverFlowErr() {
+        return overFlowErr;
+    }
+
+    public boolean hasReadBehaviour() {
+        return readBehaviour;
+    }
+
+    public int getVmin() {
+        return vmin;
+    }
+
+    public int getVtime() {
+        return vtime;
+    }
+
+    public int getRit() {
+        return rit;
+    }
+
+    public int getRttm() {
+        return rttm;
+    }
+
+    public int getRttc() {
+        return rttc;
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * This file is part of SerialPundit.
+ * 
+ * Copyright (C) 2014-2016, Rishi Gupta. All rights reserved.
+ *
+ * The SerialPundit is DUAL LICENSED. It is made available under the terms of the GNU Affero 
+ * General Public License (AGPL) v3.0 for non-commercial use and under the terms of a commercial 
+ * license for commercial use of this software. 
+ * 
+ * The SerialPundit is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+
+package com.serialpundit.serial.batch;
+
+/**
+ * <p>A port to be opened by SerialComBatchOpener together with profile it is to be configured with.</p>
+ * 
+ * @author Rishi Gupta
+ */
+public final class SerialComPortSpec {
+
+    private final String portName;
+    private final SerialComPortProfile profile;
+
+    /**
+     * <p>Allocates a new SerialComPortSpec object.</p>
+     * 
+     * @param portName name of the port to be opened.
+     * @param profile settings with which port is opened and configured.
+     * @throws IllegalArgumentException if portName or profile is null.
+     */
+    public SerialComPortSpec(String portName, SerialComPortProfile profile) {
+        if((portName == null) || (profile == null)) {
+            throw new IllegalArgumentException("Argument portName and profile can not be null !");
+        }
+        this.portName = portName;
+        this.profile = profile;
+    }
+
+    public String getPortName() {
+        return portName;
+    }
+
+    public SerialComPortProfile getProfile() {
+        return profile;
+    }
+}
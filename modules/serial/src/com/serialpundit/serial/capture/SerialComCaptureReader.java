@@ -0,0 +1,178 @@
+/*
+ * This file is part of SerialPundit.
+ * 
+ * Copyright (C) 2014-2016, Rishi Gupta. All rights reserved.
+ *
+ * The SerialPundit is DUAL LICENSED. It is made available under the terms of the GNU Affero 
+ * General Public License (AGPL) v3.0 for non-commercial use and under the terms of a commercial 
+ * license for commercial use of this software. 
+ * 
+ * The SerialPundit is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+
+package com.serialpundit.serial.capture;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+/**
+ * <p>Reads records from a capture file written by SerialComCaptureWriter, one after the other.
+ * Reading stops at the first incomplete record, so files of a capture that was not stopped cleanly
+ * can be read as well.</p>
+ * 
+ * <p>Payload of current record is kept in an array owned by this reader which is reused for the
+ * next record, so records can be fed to a parser without producing garbage.</p>
+ * 
+ * <p>This class is not thread safe.</p>
+ * 
+ * @author Rishi Gupta
+ */
+public final class SerialComCaptureReader {
+
+    /** <p>Record contains data read from serial port.</p>*/
+    public static final int RX = 1;
+
+    /** <p>Record contains data written to serial port.</p>*/
+    public static final int TX = 2;
+
+    private final DataInputStream in;
+    private final long startTimeMillis;
+    private final String portName;
+    private byte[] data = new byte[4096];
+    private int direction;
+    private long timestamp;
+    private int length;
+
+    /**
+     * <p>Opens given capture file and reads its header.</p>
+     * 
+     * @param captureFile file to read.
+     * @throws IOException if file can not be read or is not a capture file.
+     * @throws IllegalArgumentException if captureFile is null.
+     */
+    public SerialComCaptureReader(File captureFile) throws IOException {
+        if(captureFile == null) {
+            throw new IllegalArgumentException("Argument captureFile can not be null !");
+        }
+        in = new DataInputStream(new BufferedInputStream(new FileInputStream(captureFile), 65536));
+        try {
+            if(in.readInt() != SerialComCaptureWriter.MAGIC) {
+                throw new IOException("Given file is not a capture file !");
+            }
+            if(in.readUnsignedShort() != SerialComCaptureWriter.VERSION) {
+                throw new IOException("Unsupported version of capture file !");
+            }
+            int headerLength = in.readUnsignedShort();
+            startTimeMillis = in.readLong();
+            byte[] name = new byte[in.readUnsignedShort()];
+            in.readFully(name);
+            portName = new String(name, SerialComCaptureWriter.NAME_CHARSET);
+            in.skipBytes(headerLength - 18 - name.length);
+        } catch (EOFException e) {
+            in.close();
+            throw new IOException("Given file is not a capture file !");
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    /**
+     * <p>Gives name of the port that was captured.</p>
+     * 
+     * @return port name.
+     */
+    public String getPortName() {
+        return portName;
+    }
+
+    /**
+     * <p>Gives wall clock time at which capture started.</p>
+     * 
+     * @return time in milliseconds since epoch.
+     */
+    public long getStartTimeMillis() {
+        return startTimeMillis;
+    }
+
+    /**
+     * <p>Moves to the next record.</p>
+     * 
+     * @return true if a record was read, false if there are no more complete records.
+     * @throws IOException if file can not be read.
+     */
+    public boolean next() throws IOException {
+        try {
+            int type = in.read();
+            if((type != RX) && (type != TX)) {
+                return false;
+            }
+            long ts = in.readLong();
+            int len = in.readInt();
+            if(len <= 0) {
+                return false;
+            }
+            if(len > data.length) {
+                data = new byte[Math.max(len, data.length * 2)];
+            }
+            in.readFully(data, 0, len);
+            direction = type;
+            timestamp = ts;
+            length = len;
+            return true;
+        } catch (EOFException e) {
+            return false;
+        }
+    }
+
+    /**
+     * <p>Gives direction of current record.</p>
+     * 
+     * @return RX or TX.
+     */
+    public int getDirection() {
+        return direction;
+    }
+
+    /**
+     * <p>Gives time at which data of current record was read or written.</p>
+     * 
+     * @return nanoseconds since capture started.
+     */
+    public long getTimestampNanos() {
+        return timestamp;
+    }
+
+    /**
+     * <p>Gives number of payload bytes in current record.</p>
+     * 
+     * @return payload length.
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * <p>Gives array holding payload of current record from index 0 to getLength() - 1. Array is
+     * overwritten when next record is read.</p>
+     * 
+     * @return payload array.
+     */
+    public byte[] getData() {
+        return data;
+    }
+
+    /**
+     * <p>Closes capture file.</p>
+     * 
+     * @throws IOException if file can not be closed.
+     */
+    public void close() throws IOException {
+        in.close();
+    }
+}
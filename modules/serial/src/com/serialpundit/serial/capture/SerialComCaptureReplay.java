@@ -0,0 +1,136 @@
+/*
+ * This file is part of SerialPundit.
+ * 
+ * Copyright (C) 2014-2016, Rishi Gupta. All rights reserved.
+ *
+ * The SerialPundit is DUAL LICENSED. It is made available under the terms of the GNU Affero 
+ * General Public License (AGPL) v3.0 for non-commercial use and under the terms of a commercial 
+ * license for commercial use of this software. 
+ * 
+ * The SerialPundit is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+
+package com.serialpundit.serial.capture;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.locks.LockSupport;
+
+import com.serialpundit.serial.SerialComManager;
+
+/**
+ * <p>Plays traffic recorded in a capture file back into serial ports. Typically data received in
+ * field is written into one end of a null modem pair (or loop back device) while the application
+ * under test reads from the other end, so it sees the same data with the same timing as the
+ * device sent it.</p>
+ * 
+ * <p>Records are written at time offsets they were captured at, scaled by given speed factor,
+ * relative to the first record played. Writing uses a reused direct buffer, so replay itself
+ * does not produce garbage that could disturb timing of the application under test.</p>
+ * 
+ * @author Rishi Gupta
+ */
+public final class SerialComCaptureReplay {
+
+    private final SerialComManager scm;
+    private final File captureFile;
+    private volatile boolean abort;
+    private ByteBuffer buffer;
+
+    /**
+     * <p>Allocates a new SerialComCaptureReplay object for given capture file.</p>
+     * 
+     * @param scm SerialComManager instance through which ports are written.
+     * @param captureFile file written by SerialComCaptureWriter.
+     * @throws IllegalArgumentException if scm or captureFile is null.
+     */
+    public SerialComCaptureReplay(SerialComManager scm, File captureFile) {
+        if((scm == null) || (captureFile == null)) {
+            throw new IllegalArgumentException("Argument scm and captureFile can not be null !");
+        }
+        this.scm = scm;
+        this.captureFile = captureFile;
+    }
+
+    /**
+     * <p>Plays capture file back. Data that was read from captured port is written to rxHandle and
+     * data that was written to captured port is written to txHandle. This method returns when all
+     * records have been played or abort has been called.</p>
+     * 
+     * @param rxHandle handle to write received data to or -1 to skip received data.
+     * @param txHandle handle to write transmitted data to or -1 to skip transmitted data.
+     * @param speed 1.0 for original timing, 10.0 for ten times faster etc. or 0 to write records
+     *         as fast as ports accept them.
+     * @return number of bytes written.
+     * @throws IOException if capture file can not be read or an I/O error occurs on serial port.
+     * @throws IllegalArgumentException if speed is negative.
+     */
+    public long replay(long rxHandle, long txHandle, double speed) throws IOException {
+        if(!(speed >= 0)) {
+            throw new IllegalArgumentException("Argument speed can not be negative !");
+        }
+
+        abort = false;
+        long bytesWritten = 0;
+        long firstTimestamp = -1;
+        long replayStart = 0;
+        SerialComCaptureReader reader = new SerialComCaptureReader(captureFile);
+        try {
+            while((abort == false) && reader.next()) {
+                long handle = (reader.getDirection() == SerialComCaptureReader.RX) ? rxHandle : txHandle;
+                if(handle == -1) {
+                    continue;
+                }
+                if(firstTimestamp < 0) {
+                    firstTimestamp = reader.getTimestampNanos();
+                    replayStart = System.nanoTime();
+                }else if(speed > 0) {
+                    waitUntil(replayStart + (long) ((reader.getTimestampNanos() - firstTimestamp) / speed));
+                }
+                bytesWritten += write(handle, reader.getData(), reader.getLength());
+            }
+        } finally {
+            reader.close();
+        }
+        return bytesWritten;
+    }
+
+    /**
+     * <p>Makes replay in progress return as soon as possible.</p>
+     */
+    public void abort() {
+        abort = true;
+    }
+
+    private void waitUntil(long deadline) {
+        long remaining = deadline - System.nanoTime();
+        while((remaining > 0) && (abort == false)) {
+            LockSupport.parkNanos(remaining);
+            remaining = deadline - System.nanoTime();
+        }
+    }
+
+    /*
+     * Writes whole payload, waiting while port does not accept data (flow control).
+     */
+    private int write(long handle, byte[] data, int length) throws IOException {
+        if((buffer == null) || (buffer.capacity() < length)) {
+            buffer = ByteBuffer.allocateDirect(Math.max(length, 4096));
+        }
+        buffer.clear();
+        buffer.put(data, 0, length);
+
+        int offset = 0;
+        while((offset < length) && (abort == false)) {
+            int ret = scm.writeBytesDirect(handle, buffer, offset, length - offset);
+            if(ret > 0) {
+                offset += ret;
+            }else {
+                LockSupport.parkNanos(1000000);
+            }
+        }
+        return offset;
+    }
+}
@@ -0,0 +1,237 @@
+/*
+ * This file is part of SerialPundit.
+ * 
+ * Copyright (C) 2014-2016, Rishi Gupta. All rights reserved.
+ *
+ * The SerialPundit is DUAL LICENSED. It is made available under the terms of the GNU Affero 
+ * General Public License (AGPL) v3.0 for non-commercial use and under the terms of a commercial 
+ * license for commercial use of this software. 
+ * 
+ * The SerialPundit is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+
+package com.serialpundit.serial.capture;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * <p>Appends timestamped data records to a capture file. File is written through memory mapped
+ * regions, so recording a chunk of data is a copy into memory and does not involve a system call
+ * except when next region has to be mapped.</p>
+ * 
+ * <p>File starts with a header carrying magic number, format version, wall clock time at which
+ * capture started and port name. It is followed by records each consisting of record type (direction),
+ * time in nanoseconds since capture started, payload length and payload. Type byte of a record is
+ * written after rest of the record, and unused part of the file is zero, so a file left behind by
+ * a process that crashed ends cleanly at the last complete record. Use SerialComCaptureReader to
+ * read capture files.</p>
+ * 
+ * <p>An I/O error while recording does not propagate to the caller which is usually in middle of
+ * serial port input/output. Capture is stopped instead and the error is thrown by close method.</p>
+ * 
+ * <p>This class is thread safe.</p>
+ * 
+ * @author Rishi Gupta
+ */
+public final class SerialComCaptureWriter {
+
+    static final int MAGIC = 0x53504350; // "SPCP"
+    static final int VERSION = 1;
+    static final int RECORD_HEADER_SIZE = 13;
+    static final Charset NAME_CHARSET = Charset.forName("UTF-8");
+
+    private static final int REGION_SIZE = 4 * 1024 * 1024;
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final long startNanos;
+    private MappedByteBuffer region;
+    private long regionStart;
+    private long records;
+    private long payloadBytes;
+    private IOException error;
+    private boolean closed;
+
+    /**
+     * <p>Creates the capture file, replacing it if it exists, and writes its header.</p>
+     * 
+     * @param captureFile file into which data will be captured.
+     * @param portName name of the port being captured, recorded in header for information.
+     * @throws IOException if file can not be created or written.
+     * @throws IllegalArgumentException if captureFile is null.
+     */
+    public SerialComCaptureWriter(File captureFile, String portName) throws IOException {
+        if(captureFile == null) {
+            throw new IllegalArgumentException("Argument captureFile can not be null !");
+        }
+        byte[] name = (portName == null) ? new byte[0] : portName.getBytes(NAME_CHARSET);
+        if(name.length > 255) {
+            name = Arrays.copyOf(name, 255);
+        }
+
+        file = new RandomAccessFile(captureFile, "rw");
+        channel = file.getChannel();
+        try {
+            file.setLength(0);
+            startNanos = System.nanoTime();
+            ByteBuffer header = ByteBuffer.allocate(18 + name.length);
+            header.putInt(MAGIC);
+            header.putShort((short) VERSION);
+            header.putShort((short) (18 + name.length));
+            header.putLong(System.currentTimeMillis());
+            header.putShort((short) name.length);
+            header.put(name);
+            header.flip();
+            region = channel.map(FileChannel.MapMode.READ_WRITE, 0, REGION_SIZE);
+            region.put(header);
+            regionStart = 0;
+        } catch (IOException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    /**
+     * <p>Appends a record with data taken from given array.</p>
+     * 
+     * @param direction SerialComCaptureReader.RX or SerialComCaptureReader.TX.
+     * @param data array containing payload.
+     * @param offset index in data of first byte of payload.
+     * @param length number of bytes in payload, nothing is recorded if it is 0 or negative.
+     * @param nanoTime value of System.nanoTime() when data was read or written.
+     */
+    public synchronized void record(int direction, byte[] data, int offset, int length, long nanoTime) {
+        if(closed || (length <= 0)) {
+            return;
+        }
+        MappedByteBuffer buf = reserve(length);
+        if(buf == null) {
+            return;
+        }
+        int at = beginRecord(buf, length, nanoTime);
+        buf.put(data, offset, length);
+        endRecord(buf, at, direction, length);
+    }
+
+    /**
+     * <p>Appends a record with data taken from given byte buffer. Position, limit and mark of the
+     * buffer are not modified.</p>
+     * 
+     * @param direction SerialComCaptureReader.RX or SerialComCaptureReader.TX.
+     * @param data buffer containing payload.
+     * @param offset index in data of first byte of payload.
+     * @param length number of bytes in payload, nothing is recorded if it is 0 or negative.
+     * @param nanoTime value of System.nanoTime() when data was read or written.
+     */
+    public synchronized void record(int direction, ByteBuffer data, int offset, int length, long nanoTime) {
+        if(closed || (length <= 0)) {
+            return;
+        }
+        MappedByteBuffer buf = reserve(length);
+        if(buf == null) {
+            return;
+        }
+        int at = beginRecord(buf, length, nanoTime);
+        ByteBuffer src = data.duplicate();
+        src.limit(offset + length);
+        src.position(offset);
+        buf.put(src);
+        endRecord(buf, at, direction, length);
+    }
+
+    /*
+     * Makes sure that current region has room for a record with given payload length, mapping next
+     * part of file if required. Returns null if capture has failed.
+     */
+    private MappedByteBuffer reserve(int length) {
+        int needed = RECORD_HEADER_SIZE + length;
+        if(region.remaining() >= needed) {
+            return region;
+        }
+        try {
+            regionStart += region.position();
+            region = channel.map(FileChannel.MapMode.READ_WRITE, regionStart, Math.max(REGION_SIZE, needed));
+            return region;
+        } catch (IOException e) {
+            error = e;
+            closed = true;
+            return null;
+        }
+    }
+
+    private int beginRecord(MappedByteBuffer buf, int length, long nanoTime) {
+        int at = buf.position();
+        buf.position(at + 1);
+        buf.putLong(Math.max(0, nanoTime - startNanos));
+        buf.putInt(length);
+        return at;
+    }
+
+    private void endRecord(MappedByteBuffer buf, int at, int direction, int length) {
+        buf.put(at, (byte) direction);
+        records++;
+        payloadBytes += length;
+    }
+
+    /**
+     * <p>Gives number of records written so far.</p>
+     * 
+     * @return number of records.
+     */
+    public synchronized long getRecordCount() {
+        return records;
+    }
+
+    /**
+     * <p>Gives number of payload bytes written so far.</p>
+     * 
+     * @return number of bytes.
+     */
+    public synchronized long getPayloadBytes() {
+        return payloadBytes;
+    }
+
+    /**
+     * <p>Forces records written so far to storage device. Records already survive crash of the
+     * process without this, it is needed only to survive crash of the operating system.</p>
+     */
+    public synchronized void flush() {
+        if(!closed) {
+            region.force();
+        }
+    }
+
+    /**
+     * <p>Stops capturing, trims unused mapped space from the end of file and closes it. Calling this
+     * method again has no effect.</p>
+     * 
+     * @throws IOException if capture had stopped because of an I/O error or file could not be closed.
+     */
+    public synchronized void close() throws IOException {
+        if(file.getChannel().isOpen()) {
+            long end = regionStart + region.position();
+            closed = true;
+            region.force();
+            region = null;
+            try {
+                channel.truncate(end);
+            } catch (IOException e) {
+                // some platforms refuse to truncate while a mapping exists, zero tail is valid anyway.
+            }
+            file.close();
+        }
+        if(error != null) {
+            IOException e = error;
+            error = null;
+            throw e;
+        }
+    }
+}
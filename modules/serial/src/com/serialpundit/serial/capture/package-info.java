@@ -0,0 +1,22 @@
+/*
+ * This file is part of SerialPundit.
+ * 
+ * Copyright (C) 2014-2016, Rishi Gupta. All rights reserved.
+ *
+ * The SerialPundit is DUAL LICENSED. It is made available under the terms of the GNU Affero 
+ * General Public License (AGPL) v3.0 for non-commercial use and under the terms of a commercial 
+ * license for commercial use of this software. 
+ * 
+ * The SerialPundit is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+
+/**
+ * <p>Captures data flowing through serial port handles into compact binary files and plays captured 
+ * traffic back into a port, for example one end of a null modem pair, at original or accelerated 
+ * speed. This makes timing sensitive problems seen in field reproducible and lets parsers be 
+ * benchmarked against real traffic.</p>
+ *
+ * @author Rishi Gupta
+ */
+package com.serialpundit.serial.capture;
@@ -0,0 +1,63 @@
+/*
+ * This file is part of SerialPundit.
+ * 
+ * Copyright (C) 2014-2016, Rishi Gupta. All rights reserved.
+ *
+ * The SerialPundit is DUAL LICENSED. It is made available under the terms of the GNU Affero 
+ * General Public License (AGPL) v3.0 for non-commercial use and under the terms of a commercial 
+ * license for commercial use of this software. 
+ * 
+ * The SerialPundit is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+
+package com.serialpundit.serial.ftp;
+
+/**
+ * <p>The interface ISerialComFTPSchedulerProgress should be implemented by class who wish to 
+ * know progress of file transfers run concurrently by SerialComFTPScheduler.</p>
+ * 
+ * <p>All the methods are called from threads of scheduler, but never concurrently, so 
+ * implementation need not synchronize itself. Methods should return as early as possible 
+ * as transfers on other ports wait meanwhile.</p>
+ * 
+ * @author Rishi Gupta
+ */
+public interface ISerialComFTPSchedulerProgress {
+
+    /**
+     * <p>Gets called whenever a block or data sub-packet of given job has been sent or received.</p>
+     * 
+     * @param job transfer job whose progress changed; its getter methods give bytes transferred, 
+     *         throughput and estimated time remaining.
+     */
+    public abstract void onJobProgressUpdate(SerialComFTPJob job);
+
+    /**
+     * <p>Gets called when given job failed and is about to be tried again.</p>
+     * 
+     * @param job transfer job which is being retried.
+     * @param attempt number of this retry, starting from 1.
+     * @param cause exception which made previous attempt fail.
+     */
+    public abstract void onJobRetry(SerialComFTPJob job, int attempt, Exception cause);
+
+    /**
+     * <p>Gets called when given job has finished successfully, has failed after exhausting all its 
+     * retries or has been aborted.</p>
+     * 
+     * @param job transfer job which finished; its getStatus method tells the outcome.
+     */
+    public abstract void onJobCompletion(SerialComFTPJob job);
+
+    /**
+     * <p>Gets called after every job progress update with totals over all the jobs being run.</p>
+     * 
+     * @param bytesTransferred bytes transferred by all jobs till now.
+     * @param totalBytes bytes to be transferred by all jobs or -1 if not known, which is the case 
+     *         when there are receive jobs.
+     * @param bytesPerSecond aggregate throughput since jobs were started.
+     * @param etaMillis estimated time in milliseconds to finish all jobs or -1 if not known.
+     */
+    public abstract void onAggregateProgressUpdate(long bytesTransferred, long totalBytes, long bytesPerSecond, long etaMillis);
+}
@@ -0,0 +1,36 @@
+/*
+ * This file is part of SerialPundit.
+ * 
+ * Copyright (C) 2014-2016, Rishi Gupta. All rights reserved.
+ *
+ * The SerialPundit is DUAL LICENSED. It is made available under the terms of the GNU Affero 
+ * General Public License (AGPL) v3.0 for non-commercial use and under the terms of a commercial 
+ * license for commercial use of this software. 
+ * 
+ * The SerialPundit is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+
+package com.serialpundit.serial.ftp;
+
+/**
+ * <p>The interface ISerialComFTPStatusListener should be implemented by class who wish to know 
+ * throughput, estimated time remaining and error counts of a file transfer at a bounded rate, 
+ * instead of being called on every block.</p>
+ * 
+ * @author Rishi Gupta
+ */
+public interface ISerialComFTPStatusListener {
+
+    /**
+     * <p>Gets called by SerialComFTPProgressMonitor once per its update interval while transfer
+     * runs, and once more when transfer ends.</p>
+     * 
+     * <p>This method is called from monitor's own thread and never from the thread running the 
+     * transfer, so taking time here does not slow down the transfer; updates are simply skipped 
+     * meanwhile.</p>
+     * 
+     * @param status snapshot of transfer progress.
+     */
+    public abstract void onTransferStatusUpdate(SerialComFTPTransferStatus status);
+}
@@ -0,0 +1,56 @@
+/*
+ * This file is part of SerialPundit.
+ * 
+ * Copyright (C) 2014-2016, Rishi Gupta. All rights reserved.
+ *
+ * The SerialPundit is DUAL LICENSED. It is made available under the terms of the GNU Affero 
+ * General Public License (AGPL) v3.0 for non-commercial use and under the terms of a commercial 
+ * license for commercial use of this software. 
+ * 
+ * The SerialPundit is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+
+package com.serialpundit.serial.ftp;
+
+import com.serialpundit.serial.internal.ISerialComFTPProgress;
+
+/**
+ * <p>The interface ISerialComZmodemProgress should be implemented by class who wish to 
+ * know how many bytes have been sent or received using Zmodem protocol.</p>
+ * 
+ * <p>Zmodem streams data in variable length sub-packets rather than fixed size blocks, 
+ * therefore progress is reported as file offset in bytes. After a crash recovery or error 
+ * recovery the offset may move backwards or start from a non-zero value.</p>
+ * 
+ * @author Rishi Gupta
+ */
+public interface ISerialComZmodemProgress extends ISerialComFTPProgress {
+
+    /**
+     * <p>The class implementing this interface is expected to override onZmodemSentProgressUpdate() 
+     * method. This method gets called whenever a data sub-packet is sent using Zmodem protocol.</p>
+     * 
+     * <p>This method should return as early as possible. Application might schedule GUI update 
+     * for future.</p>
+     * 
+     * @param fileName name of file that is currently getting sent.
+     * @param bytesSent offset in file up to which data has been sent.
+     * @param percentOfBytesSent update in terms of percentage.
+     */
+    public abstract void onZmodemSentProgressUpdate(String fileName, long bytesSent, int percentOfBytesSent);
+
+    /**
+     * <p>The class implementing this interface is expected to override onZmodemReceiveProgressUpdate() 
+     * method. This method gets called whenever a data sub-packet is received using Zmodem protocol.</p>
+     * 
+     * <p>This method should return as early as possible. Application might schedule GUI update 
+     * for future.</p>
+     * 
+     * @param fileName name of file currently being received from sender.
+     * @param bytesReceived offset in file up to which data has been received.
+     * @param percentOfBytesReceived update in terms of percentage or -1 if sender did not tell 
+     *         length of file.
+     */
+    public abstract void onZmodemReceiveProgressUpdate(String fileName, long bytesReceived, int percentOfBytesReceived);
+}
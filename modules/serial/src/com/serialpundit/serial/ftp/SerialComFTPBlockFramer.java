@@ -0,0 +1,810 @@
+/*
+ * This file is part of SerialPundit.
+ * 
+ * Copyright (C) 2014-2016, Rishi Gupta. All rights reserved.
+ *
+ * The SerialPundit is DUAL LICENSED. It is made available under the terms of the GNU Affero 
+ * General Public License (AGPL) v3.0 for non-commercial use and under the terms of a commercial 
+ * license for commercial use of this software. 
+ * 
+ * The SerialPundit is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+
+package com.serialpundit.serial.ftp;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import com.serialpundit.core.SerialComPlatform;
+import com.serialpundit.core.util.SerialComCRCUtil;
+
+/**
+ * <p>Builds and verifies xmodem/ymodem blocks. All the variants share this class, so the block 
+ * buffers, text mode translation and checksum/CRC calculation exist at exactly one place. Buffers 
+ * are allocated once per transfer and re-used for every block.</p>
+ * 
+ * <p>Block layout is [SOH/STX][blk #][255-blk #][128 or 1024 data bytes][1 byte checksum or 2 byte CRC].</p>
+ * 
+ * @author Rishi Gupta
+ */
+final class SerialComFTPBlockFramer {
+
+    /** <p>Block is protected by 1 byte arithmetic checksum. </p>*/
+    static final int CHECKSUM = 0x01;
+
+    /** <p>Block is protected by 2 byte CRC-16-CCITT. </p>*/
+    static final int CRC16 = 0x02;
+
+    private static final byte SOH   = 0x01;  // Start of header character
+    private static final byte STX   = 0x02;  // Start of text character
+    private static final byte SUB   = 0x1A;  // Substitute/CTRL+Z
+    private static final byte CR    = 0x0D;  // Carriage return
+    private static final byte LF    = 0x0A;  // Line feed
+    private static final byte SPACE = 0x20;  // Space
+
+    private final int dataSize;
+    private final int checkType;
+    private final boolean textMode;
+    private final int osType;
+    private final byte[] block;
+    private final byte[] receiveBlock;
+    private final SerialComCRCUtil crcCalculator = new SerialComCRCUtil();
+
+    // sending side text mode state.
+    private InputStream inStream;
+    private boolean noMoreData;
+    private boolean isFirstDataBytePending;
+    private boolean isSecondDataBytePending;
+    private boolean isThirdDataBytePending;
+    private boolean isLineFeedPending;
+    private boolean isCarriageReturnPending;
+    private byte firstPendingDataByte;
+    private byte secondPendingDataByte;
+    private byte thirdPendingDataByte;
+    private boolean alreadySentEOFchar;
+    private final byte[] tmpSendBuffer;
+    private int mark = -1;
+    private int limit = -1;
+    private byte data0;
+    private byte data1;
+
+    // receiving side text mode state.
+    private final byte[] tmpReceiveBuffer;
+    private boolean lastCharacterReceivedWasLF;
+    private boolean lastCharacterReceivedWasCR;
+    private boolean unprocessedByteInReceivedDataExist;
+    private byte unprocessedByteInLastReceivedBlock;
+
+    /**
+     * <p>Allocates a new SerialComFTPBlockFramer object.</p>
+     * 
+     * @param dataSize number of data bytes in a block; 128 or 1024.
+     * @param checkType CHECKSUM or CRC16.
+     * @param textMode true if file is to be transferred as text file.
+     * @param osType operating system on which this application is running.
+     */
+    SerialComFTPBlockFramer(int dataSize, int checkType, boolean textMode, int osType) {
+        this.dataSize = dataSize;
+        this.checkType = checkType;
+        this.textMode = textMode;
+        this.osType = osType;
+        block = new byte[3 + dataSize + ((checkType == CRC16) ? 2 : 1)];
+        receiveBlock = new byte[1029];
+        tmpSendBuffer = new byte[2 * dataSize];
+        tmpReceiveBuffer = new byte[(4 * 1024) + 8];
+    }
+
+    /**
+     * <p>Gives the re-used block buffer in which assembleBlock prepares data block. Its length is 
+     * exactly the length of data block so that it can be written to serial port as is.</p>
+     * 
+     * @return block buffer.
+     */
+    byte[] getBlock() {
+        return block;
+    }
+
+    /**
+     * <p>Gives the re-used buffer large enough to hold any block received from other end.</p>
+     * 
+     * @return receive block buffer.
+     */
+    byte[] getReceiveBlock() {
+        return receiveBlock;
+    }
+
+    /**
+     * <p>Gives total number of bytes in a data block including header and checksum/CRC.</p>
+     * 
+     * @return block length.
+     */
+    int getBlockLength() {
+        return 3 + dataSize + ((checkType == CRC16) ? 2 : 1);
+    }
+
+    /**
+     * <p>Gives number of data bytes in a data block.</p>
+     * 
+     * @return 128 or 1024.
+     */
+    int getDataSize() {
+        return dataSize;
+    }
+
+    /**
+     * <p>Gives the type of error detection used by this framer.</p>
+     * 
+     * @return CHECKSUM or CRC16.
+     */
+    int getCheckType() {
+        return checkType;
+    }
+
+    /**
+     * <p>Prepares this framer for sending a new file, resetting all text mode state.</p>
+     * 
+     * @param inStream stream from which data bytes to be sent will be read.
+     */
+    void beginSend(InputStream inStream) {
+        this.inStream = inStream;
+        noMoreData = false;
+        alreadySentEOFchar = false;
+        isFirstDataBytePending = false;
+        isSecondDataBytePending = false;
+        isThirdDataBytePending = false;
+        isLineFeedPending = false;
+        isCarriageReturnPending = false;
+        mark = -1;
+        limit = -1;
+        data0 = 0;
+        data1 = 0;
+    }
+
+    /**
+     * <p>Prepares this framer for receiving a new file, resetting all text mode state.</p>
+     */
+    void beginReceive() {
+        lastCharacterReceivedWasLF = false;
+        lastCharacterReceivedWasCR = false;
+        unprocessedByteInReceivedDataExist = false;
+    }
+
+    /**
+     * <p>Appends checksum or CRC of data bytes to the given block.</p>
+     * 
+     * @param buffer block with header and data bytes.
+     * @param numDataBytes number of data bytes in block.
+     */
+    void appendCheck(byte[] buffer, int numDataBytes) {
+        int end = numDataBytes + 2;
+        if(checkType == CRC16) {
+            int blockCRCval = crcCalculator.getCRC16CCITTValue(buffer, 3, end);
+            buffer[end + 1] = (byte) (blockCRCval >>> 8); // CRC high byte
+            buffer[end + 2] = (byte) blockCRCval;         // CRC low byte
+        }else {
+            buffer[end + 1] = crcCalculator.getChecksumValue(buffer, 3, end);
+        }
+    }
+
+    /**
+     * <p>Verifies checksum or CRC of the given block.</p>
+     * 
+     * @param buffer received block.
+     * @param numDataBytes number of data bytes in block.
+     * @return true if block is intact otherwise false.
+     */
+    boolean verifyCheck(byte[] buffer, int numDataBytes) {
+        int end = numDataBytes + 2;
+        if(checkType == CRC16) {
+            int blockCRCval = crcCalculator.getCRC16CCITTValue(buffer, 3, end);
+            return (buffer[end + 1] == (byte)(blockCRCval >>> 8)) && (buffer[end + 2] == (byte)blockCRCval);
+        }
+        return buffer[end + 1] == crcCalculator.getChecksumValue(buffer, 3, end);
+    }
+
+    /*
+     * Prepares ymodem/crc block 0 of 133/1029 bytes in total using CRC-16-CCITT as given below :
+     * [SOH/STX][0x00][0xFF][file name\0][file length][space][file modification info][space][file mode][space][padding][2 byte CRC]
+     */
+    byte[] assembleBlock0(File file) {
+        int g = 0;
+        int k = 0;
+        byte[] block0 = null;
+        byte[] lenfm = null;
+
+        // file name (null terminated)
+        byte[] nameb = file.getName().getBytes();
+
+        // file length in bytes
+        byte[] lenb = String.valueOf(file.length()).getBytes();
+
+        // file modification date information
+        byte[] lenfmd = Long.toOctalString(file.lastModified()).getBytes();
+
+        // file mode if os is unix-like
+        if(osType != SerialComPlatform.OS_WINDOWS) {
+            lenfm = Long.toOctalString(0x8000).getBytes();
+        }
+
+        if(lenfm == null) {
+            g = 3 + nameb.length + 1 + lenb.length + 1 + lenfmd.length + 2;
+        }else {
+            g = 3 + nameb.length + 1 + lenb.length + 1 + lenfmd.length + 1 + lenfm.length + 2;
+        }
+
+        // populate information gathered about file
+        if(g <= 133) {
+            block0 = new byte[133];
+            block0[0] = SOH;
+        }else {
+            block0 = new byte[1029];
+            block0[0] = STX;
+        }
+        block0[1] = (byte) 0x00;
+        block0[2] = (byte) 0xFF;
+
+        g = 3;
+        for(k=0; k < nameb.length; k++) {
+            block0[g] = nameb[k];
+            g++;
+        }
+        block0[g] = '\0';
+        g++;
+
+        for(k=0; k < lenb.length; k++) {
+            block0[g] = lenb[k];
+            g++;
+        }
+        block0[g] = SPACE;
+        g++;
+
+        for(k=0; k < lenfmd.length; k++) {
+            block0[g] = lenfmd[k];
+            g++;
+        }
+        block0[g] = SPACE;
+        g++;
+
+        if(lenfm != null) {
+            for(k=0; k < lenfm.length; k++) {
+                block0[g] = lenfm[k];
+                g++;
+            }
+        }else {
+            block0[g] = (byte) 0x00;
+            g++;
+        }
+        block0[g] = SPACE;
+        g++;
+
+        // padding is already there as array is newly allocated, append 2 byte CRC value.
+        int blockCRCval = crcCalculator.getCRC16CCITTValue(block0, 3, (block0.length - 3));
+        block0[block0.length - 2] = (byte) (blockCRCval >>> 8); // CRC high byte
+        block0[block0.length - 1] = (byte) blockCRCval;         // CRC low byte
+        return block0;
+    }
+
+    /*
+     * Prepares ymodem/crc block indicating that the sender has sent all the files.
+     * [SOH][0x00][0xFF][128 times 0x00][2 byte CRC]
+     */
+    byte[] assembleFinalBlock() {
+        byte[] finalBlock = new byte[133];
+        finalBlock[0] = SOH;
+        finalBlock[1] = (byte) 0x00;
+        finalBlock[2] = (byte) 0xFF;
+        int blockCRCval = crcCalculator.getCRC16CCITTValue(finalBlock, 3, 130);
+        finalBlock[131] = (byte) (blockCRCval >>> 8);
+        finalBlock[132] = (byte) blockCRCval;
+        return finalBlock;
+    }
+
+    /* 
+     * Prepares data block [SOH/STX][blk #][255-blk #][data bytes][checksum/CRC] in block buffer.
+     * 
+     * For text mode transfer, lines are terminated by CR+LF, EOF will be indicate
+     * by one or more ^Z. If the data ends exactly on a block boundary, i.e. CR in 
+     * second last and LF in last data byte, a subsequent sector containing the ^Z EOF 
+     * character(s) will be sent. This method handles text/ascii mode in operating 
+     * system independent way. 
+     * 
+     * This algorithm for processing assumes that a text file may contain following combinations
+     * of character sequence with the corresponding data bytes sent to receiving end. The X
+     * is a data byte other than CR and LF.
+     * 
+     * CR LF (send CR LF)
+     * CR CR (send CR LF CR LF)
+     * CR X  (send CR LF X)
+     * LF CR (send CR LF)
+     * LF LF (send CR LF CR LF)
+     * LF X  (send CR LF X)
+     * X  X  (send X X)
+     * X  LF (send X CR LF)
+     * X  CR (send X CR LF)
+     * 
+     * This algorithm algorithm takes 2 bytes at a time into consideration and check it against the 
+     * above combination. Based on cases above, it will add/remove CR and LF etc characters if 
+     * required.
+     * 
+     * For text mode data is first read into tmpSendBuffer and then parsed. 
+     * mark  - points to current byte which needs to be sent to other end
+     * limit - refers to number of bytes currently available in tmpSendBuffer
+     * 
+     * If we need to add extra LF or CR characters, it may be added in current block if there
+     * is space or it will be added in next block if current block is full.
+     * 
+     * Returns false if there is no more data to be sent.
+     */
+    boolean assembleBlock(int blockNumber) throws IOException {
+        int x = 0;
+        int numBytesRead = 0;
+        final int end = 3 + dataSize;
+
+        if(noMoreData == true) {
+            return false;
+        }
+
+        block[0] = (dataSize == 1024) ? STX : SOH;
+        block[1] = (byte) blockNumber;
+        block[2] = (byte) ~blockNumber;
+
+        if(textMode == true) {
+            /* file is to be send as a text file. */
+
+            // set index at which first data byte will be saved to send.
+            x = 3;
+
+            if(isFirstDataBytePending == true) {
+                block[x] = firstPendingDataByte;
+                x++;
+                isFirstDataBytePending = false; // reset
+                if(isSecondDataBytePending == true) {
+                    block[x] = secondPendingDataByte;
+                    x++;
+                    isSecondDataBytePending = false; // reset
+                    if(isThirdDataBytePending == true) {
+                        block[x] = thirdPendingDataByte;
+                        x++;
+                        isThirdDataBytePending = false; // reset
+                    }
+                }
+            }
+
+            while(x < end) {
+                // entering into this loop means that at-least one byte 
+                // of space exist in block[] array.
+
+                if((mark == limit) || (mark == -1)) {
+                    // indicates we need to read more data from file as all data bytes in
+                    // tmpSendBuffer has been sent to file receiver end.
+                    limit = inStream.read(tmpSendBuffer, 0, tmpSendBuffer.length);
+                    mark = 0; // reset mark.
+                    if(limit < 0) {
+                        // 0 bytes; EOF reached.
+                        if(isLineFeedPending == true) {
+                            data0 = LF;
+                            isLineFeedPending = false; // reset
+                            data1 = -1;
+                        }else if(isCarriageReturnPending == true) {
+                            data0 = CR;
+                            isCarriageReturnPending = false; // reset
+                            data1 = -1;
+                        }else {
+                            data0 = -1;
+                            data1 = -1;
+                        }
+                    }else if(limit == 1) {
+                        // 1 byte (last byte) of data in file.
+                        if(isLineFeedPending == true) {
+                            data0 = LF;
+                            isLineFeedPending = false; // reset
+                            data1 = tmpSendBuffer[mark];
+                            mark++;
+                        }else if(isCarriageReturnPending == true) {
+                            data0 = CR;
+                            isCarriageReturnPending = false; // reset
+                            data1 = tmpSendBuffer[mark];
+                            mark++;
+                        }else {
+                            data0 = tmpSendBuffer[mark];
+                            mark++;
+                            data1 = -1;
+                        }
+                    }else {
+                        // 2 or more data bytes are there in file.
+                        if(isLineFeedPending == true) {
+                            data0 = LF;
+                            isLineFeedPending = false; // reset
+                            data1 = tmpSendBuffer[mark];
+                            mark++;
+                        }else if(isCarriageReturnPending == true) {
+                            data0 = CR;
+                            isCarriageReturnPending = false; // reset
+                            data1 = tmpSendBuffer[mark];
+                            mark++;
+                        }else {
+                            data0 = tmpSendBuffer[mark];
+                            mark++;
+                            data1 = tmpSendBuffer[mark];
+                            mark++;
+                        }
+                    }
+                }else if(mark == (limit - 1)) {
+                    // indicates mark is at last byte of tmpSendBuffer and therefore
+                    // 1 more data byte is needed (to be placed in data1 variable).
+                    if(isLineFeedPending == true) {
+                        data0 = LF;
+                        isLineFeedPending = false; // reset
+                        data1 = tmpSendBuffer[mark];
+                        mark++;
+                    }else if(isCarriageReturnPending == true) {
+                        data0 = CR;
+                        isCarriageReturnPending = false; // reset
+                        data1 = tmpSendBuffer[mark];
+                        mark++;
+                    }else {
+                        data0 = tmpSendBuffer[mark];
+                        mark++;
+                        limit = inStream.read(tmpSendBuffer, 0, tmpSendBuffer.length);
+                        mark = 0; // reset mark.
+                        if(limit < 0) {
+                            data1 = -1;
+                        }else {
+                            data1 = tmpSendBuffer[mark];
+                            mark++;
+                        }
+                    }
+                }else if((mark == 0) && (limit == -1)) {
+                    // indicates there is no more data to be sent.
+                    if(isLineFeedPending == true) {
+                        data0 = LF;
+                        isLineFeedPending = false; // reset
+                        data1 = -1;
+                    }else if(isCarriageReturnPending == true) {
+                        data0 = CR;
+                        isCarriageReturnPending = false; // reset
+                        data1 = -1;
+                    }else {
+                        data0 = -1;
+                        data1 = -1;
+                    }
+                }else {
+                    // indicates mark is at position from where 2 bytes in tmpSendBuffer
+                    // are available to be analyzed.
+                    if(isLineFeedPending == true) {
+                        data0 = LF;
+                        isLineFeedPending = false; // reset
+                        data1 = tmpSendBuffer[mark];
+                        mark++;
+                    }else if(isCarriageReturnPending == true) {
+                        data0 = CR;
+                        isCarriageReturnPending = false; // reset
+                        data1 = tmpSendBuffer[mark];
+                        mark++;
+                    }else {
+                        data0 = tmpSendBuffer[mark];
+                        mark++;
+                        data1 = tmpSendBuffer[mark];
+                        mark++;
+                    }
+                }
+
+                // When control reached here, both data0 and data1 will have valid values.
+                // so algorithm will work with 2 given bytes. The data0/data1 may contain
+                // a printable character which can have negative value therefore allow data0 
+                // and data1 to contain anything other than -1.
+                if(data0 == -1) {
+                    // indicates EOF reached.
+                    if(alreadySentEOFchar == true) {
+                        // EOF have been sent already in last block.
+                        noMoreData = true;
+                        return false;
+                    }else {
+                        // assemble last block with ^Z padding. if x == 3,
+                        // whole block will contain ^Z only as data bytes.
+                        for(x = x + 0; x < end; x++) {
+                            block[x] = SUB;
+                        }
+                        alreadySentEOFchar = true;
+                    }
+                }else if((data0 != -1) && (data1 == -1)) {
+                    // indicates last byte of data in file.
+                    if((data0 == LF) || (data0 == CR)) {
+                        block[x] = CR;
+                        x++;
+                        if(x < end) {
+                            block[x] = LF;
+                            x++;
+                        }else {
+                            // now LF character will be sent in next block
+                            isFirstDataBytePending = true;
+                            firstPendingDataByte = LF;
+                        }
+                    }else {
+                        block[x] = data0;
+                        x++;
+                    }
+                }else {
+                    // indicates 2 bytes of data are there and need to be processed.
+                    if((data0 != LF) && (data0 != CR)) {
+                        if((data1 != LF) && (data1 != CR)) {
+                            // indicates XX case.
+                            block[x] = data0;
+                            x++;
+                            if(x < end) {
+                                block[x] = data1;
+                                x++;
+                            }else {
+                                isFirstDataBytePending = true;
+                                firstPendingDataByte = data1;
+                            }
+                        }else if(data1 == LF) {
+                            // indicates XLF case.
+                            block[x] = data0;
+                            x++;
+                            isLineFeedPending = true;
+                        }else {
+                            // indicates XCR case.
+                            block[x] = data0;
+                            x++;
+                            isCarriageReturnPending = true;
+                        }
+                    }else if(((data0 == CR) && (data1 == LF)) || ((data0 == LF) && (data1 == CR))) {
+                        // indicates LFCR or CRLF case.
+                        block[x] = CR;
+                        x++;
+                        if(x < end) {
+                            block[x] = LF;
+                            x++;
+                        }else {
+                            isFirstDataBytePending = true;
+                            firstPendingDataByte = LF;
+                        }
+                    }else if((data0 == LF) && (data1 != CR) && (data1 != LF)) {
+                        // indicates LFX case.
+                        block[x] = CR;
+                        x++;
+                        if(x < end) {
+                            block[x] = LF;
+                            x++;
+                            if(x < end) {
+                                block[x] = data1;
+                                x++;
+                            }else {
+                                isFirstDataBytePending = true;
+                                firstPendingDataByte = data1;
+                            }
+                        }else {
+                            isFirstDataBytePending = true;
+                            firstPendingDataByte = LF;
+                            isSecondDataBytePending = true;
+                            secondPendingDataByte = data1;
+                        }
+                    }else if((data0 == CR) && (data1 != CR) && (data1 != LF)) {
+                        // indicates CRX case.
+                        block[x] = CR;
+                        x++;
+                        if(x < end) {
+                            block[x] = LF;
+                            x++;
+                            if(x < end) {
+                                block[x] = data1;
+                                x++;
+                            }else {
+                                isFirstDataBytePending = true;
+                                firstPendingDataByte = data1;
+                            }
+                        }else {
+                            isFirstDataBytePending = true;
+                            firstPendingDataByte = LF;
+                            isSecondDataBytePending = true;
+                            secondPendingDataByte = data1;
+                        }
+                    }else if(((data0 == LF) && (data1 == LF)) || ((data0 == CR) && (data1 == CR))) {
+                        // indicates LFLF or CRCR case.
+                        block[x] = CR;
+                        x++;
+                        if(x < end) {
+                            block[x] = LF;
+                            x++;
+                            if(x < end) {
+                                block[x] = CR;
+                                x++;
+                                if(x < end) {
+                                    block[x] = LF;
+                                    x++;
+                                }else {
+                                    isFirstDataBytePending = true;
+                                    firstPendingDataByte = LF;
+                                }
+                            }else {
+                                isFirstDataBytePending = true;
+                                firstPendingDataByte = CR;
+                                isSecondDataBytePending = true;
+                                secondPendingDataByte = LF;
+                            }
+                        }else {
+                            isFirstDataBytePending = true;
+                            firstPendingDataByte = LF;
+                            isSecondDataBytePending = true;
+                            secondPendingDataByte = CR;
+                            isThirdDataBytePending = true;
+                            thirdPendingDataByte = LF;
+                        }
+                    }else {
+                    }
+                }
+            } // end while loop
+        }else {
+            /* file is to be send as a binary file. */
+
+            // read data from the file to be sent, a read may return less bytes than requested 
+            // even if file has more data so keep reading till block is full or EOF is reached.
+            x = 3;
+            while(x < end) {
+                numBytesRead = inStream.read(block, x, end - x);
+                if(numBytesRead < 0) {
+                    break;
+                }
+                x = x + numBytesRead;
+            }
+            if(x == 3) {
+                // EOF encountered.
+                noMoreData = true;
+                return false;
+            }
+            // assembling last block with padding.
+            for(x = x + 0; x < end; x++) {
+                block[x] = SUB;
+            }
+        }
+
+        appendCheck(block, dataSize);
+        return true;
+    }
+
+    /* 
+     * This algorithm strip all ^Z characters from received data. Further it will add or remove
+     * CR and LF characters as needed based on operating system this application is running on.
+     * It process 2 consecutive bytes at a time and handle the following cases (where X represent
+     * any byte other than CR, LF and ^Z) :
+     * 
+     * LF LF,
+     * LF CR,
+     * LF ^Z,
+     * LF X,
+     * CR CR,
+     * CR LF,
+     * CR ^Z,
+     * CR X,
+     * ^Z ^Z,
+     * ^Z CR,
+     * ^Z LF,
+     * ^Z X,
+     * X X,
+     * X CR,
+     * X LF,
+     * X ^Z
+     * 
+     * It is possible that last data byte (130th or 1026th byte) in current block can not be processed 
+     * because we have to analyze next data byte which will be available to us only in the next data 
+     * block received. So we save that last byte and process it next time this method is called.
+     */
+    void processAndWrite(byte[] buffer, int numDataBytes, OutputStream outStream) throws IOException {
+        int mark = 3;
+        int q = 0;
+        final int processTillIndex = numDataBytes + 1;
+        final byte[] out = tmpReceiveBuffer;
+        byte data0 = 0;
+        byte data1 = 0;
+        final boolean crlf = (osType == SerialComPlatform.OS_WINDOWS);
+        final boolean lf = (osType == SerialComPlatform.OS_MAC_OS_X) || (osType == SerialComPlatform.OS_LINUX);
+
+        while(mark <= processTillIndex) {
+            if(unprocessedByteInReceivedDataExist == false) {
+                if(lastCharacterReceivedWasLF) {
+                    data0 = LF;
+                    lastCharacterReceivedWasLF = false; // reset
+                }else if(lastCharacterReceivedWasCR) {
+                    data0 = CR;
+                    lastCharacterReceivedWasCR = false; // reset
+                }else {
+                    data0 = buffer[mark];
+                    mark++;
+                }
+                data1 = buffer[mark];
+                mark++;
+            }else {
+                // there was a pending byte from last block received to be tested against all cases.
+                data0 = unprocessedByteInLastReceivedBlock;
+                unprocessedByteInReceivedDataExist = false; // reset
+                data1 = buffer[mark];
+                mark++;
+            }
+
+            if((data0 == CR) || (data0 == LF)) {
+                // represent CRLF, LFCR, CRSUB, LFSUB, CRX, LFX, CRCR and LFLF cases; a line ends here.
+                if(crlf) {
+                    out[q] = CR;
+                    out[q + 1] = LF;
+                    q = q + 2;
+                }else if(lf) {
+                    out[q] = LF;
+                    q = q + 1;
+                }else {
+                }
+                if(data1 == data0) {
+                    // CRCR or LFLF, one more line ends here.
+                    if(crlf) {
+                        out[q] = CR;
+                        out[q + 1] = LF;
+                        q = q + 2;
+                    }else if(lf) {
+                        out[q] = LF;
+                        q = q + 1;
+                    }else {
+                    }
+                }else if((data1 != CR) && (data1 != LF) && (data1 != SUB)) {
+                    // CRX or LFX.
+                    if(crlf || lf) {
+                        out[q] = data1;
+                        q = q + 1;
+                    }
+                }else {
+                }
+            }else if(data0 == SUB) {
+                if(data1 == LF) {
+                    // represent SUBLF case.
+                    // we need to check that whether next character is CR or LF and then only
+                    // we can decide what to do with this LF. So make this LF as pending and
+                    // let it process with next character in next iteration of this loop.
+                    lastCharacterReceivedWasLF = true;
+                }else if(data1 == CR) {
+                    // represent SUBCR case.
+                    lastCharacterReceivedWasCR = true;
+                }else if(data1 == SUB) {
+                    // represent SUBSUB case.
+                    // do nothing, drop/strip this character.
+                }else {
+                    // represent SUBX case.
+                    out[q] = data1;
+                    q = q + 1;
+                }
+            }else {
+                if(data1 == LF) {
+                    // represent XLF case.
+                    out[q] = data0;
+                    q = q + 1;
+                    lastCharacterReceivedWasLF = true;
+                }else if(data1 == CR) {
+                    // represent XCR case.
+                    out[q] = data0;
+                    q = q + 1;
+                    lastCharacterReceivedWasCR = true;
+                }else if(data1 == SUB) {
+                    // represent XSUB case.
+                    out[q] = data0;
+                    q = q + 1;
+                }else {
+                    // represent XX case.
+                    out[q] = data0;
+                    out[q + 1] = data1;
+                    q = q + 2;
+                }
+            }
+        } // end while loop
+
+        // write processed data bytes to file in file system.
+        outStream.write(out, 0, q);
+
+        if(mark == (numDataBytes + 2)) {
+            // indicates last byte in block array could not be processed as one more bytes was needed 
+            // to test against all cases. so save this byte and process it next block of data received.
+            unprocessedByteInReceivedDataExist = true;
+            unprocessedByteInLastReceivedBlock = buffer[mark];
+        }
+    }
+}
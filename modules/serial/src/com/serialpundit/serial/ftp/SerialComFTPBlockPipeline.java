@@ -0,0 +1,224 @@
+/*
+ * This file is part of SerialPundit.
+ * 
+ * Copyright (C) 2014-2016, Rishi Gupta. All rights reserved.
+ *
+ * The SerialPundit is DUAL LICENSED. It is made available under the terms of the GNU Affero 
+ * General Public License (AGPL) v3.0 for non-commercial use and under the terms of a commercial 
+ * license for commercial use of this software. 
+ * 
+ * The SerialPundit is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+
+package com.serialpundit.serial.ftp;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import com.serialpundit.core.SerialComException;
+import com.serialpundit.serial.SerialComManager;
+
+/**
+ * <p>Two stage pipeline for streaming protocols (YMODEM-G) in which sender does not wait for 
+ * acknowledgement of each block. A preparer thread reads file and assembles blocks (text mode 
+ * translation and CRC) into a small ring of preallocated block sized slots, while the thread 
+ * running protocol state machine writes prepared blocks out of serial port back to back.</p>
+ * 
+ * <p>The ring is a single direct byte buffer, so all blocks which are ready and lie next to each 
+ * other in the ring are written with one native call, without copying them again.</p>
+ * 
+ * @author Rishi Gupta
+ */
+final class SerialComFTPBlockPipeline {
+
+    /** <p>Number of block slots in ring. </p>*/
+    static final int RINGSIZE = 8;
+
+    private final SerialComFTPBlockFramer framer;
+    private final int blockLength;
+    private final ByteBuffer ring;
+
+    // guarded by this
+    private long prepared;
+    private long written;
+    private boolean noMoreData;
+    private boolean stopRequested;
+    private IOException failure;
+    private Thread preparer;
+
+    /**
+     * <p>Allocates a new SerialComFTPBlockPipeline object.</p>
+     * 
+     * @param framer framer which assembles blocks of file being sent.
+     */
+    SerialComFTPBlockPipeline(SerialComFTPBlockFramer framer) {
+        this.framer = framer;
+        blockLength = framer.getBlockLength();
+        ring = ByteBuffer.allocateDirect(RINGSIZE * blockLength);
+    }
+
+    /**
+     * <p>Starts preparing data blocks of current file of framer, numbering them from given block 
+     * number. Framer must not be used by caller till blocks have been drained or stop is called.</p>
+     * 
+     * @param firstBlockNumber number of first data block.
+     */
+    void start(final int firstBlockNumber) {
+        stop();
+        synchronized(this) {
+            prepared = 0;
+            written = 0;
+            noMoreData = false;
+            stopRequested = false;
+            failure = null;
+
+            preparer = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    prepareBlocks(firstBlockNumber);
+                }
+            }, "SerialComFTPBlockPipeline");
+            preparer.setDaemon(true);
+            preparer.start();
+        }
+    }
+
+    /*
+     * Preparer stage, runs till whole file has been assembled or stop is requested.
+     */
+    private void prepareBlocks(int firstBlockNumber) {
+        final byte[] block = framer.getBlock();
+        int blockNumber = firstBlockNumber;
+        int slot = 0;
+
+        while(true) {
+            synchronized(this) {
+                while((prepared - written) >= RINGSIZE) {
+                    if(stopRequested == true) {
+                        return;
+                    }
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if(stopRequested == true) {
+                    return;
+                }
+                slot = (int) (prepared % RINGSIZE);
+            }
+
+            // slot is not visible to writer till prepared is incremented, so fill it without lock.
+            boolean assembled = false;
+            IOException exp = null;
+            try {
+                assembled = framer.assembleBlock(blockNumber);
+                if(assembled == true) {
+                    ByteBuffer slotBuffer = ring.duplicate();
+                    slotBuffer.position(slot * blockLength);
+                    slotBuffer.put(block, 0, blockLength);
+                }
+            } catch (IOException e) {
+                exp = e;
+            }
+
+            synchronized(this) {
+                if(exp != null) {
+                    failure = exp;
+                    noMoreData = true;
+                }else if(assembled == false) {
+                    noMoreData = true;
+                }else {
+                    prepared++;
+                }
+                notifyAll();
+                if(noMoreData == true) {
+                    return;
+                }
+            }
+
+            // starts at 01 increments by 1, and wraps 0FFH to 00H (not to 01).
+            blockNumber = (blockNumber + 1) & 0xFF;
+        }
+    }
+
+    /**
+     * <p>Writes all the prepared blocks which are next to each other in ring with one call. Waits up 
+     * to given time for preparer if no block is ready.</p>
+     * 
+     * @param scm SerialComManager instance associated with handle.
+     * @param handle of the port on which blocks are to be written.
+     * @param waitTime maximum time in milliseconds to wait for a block to become ready.
+     * @return number of blocks written (may be 0 if none got ready in time) or -1 if all blocks of 
+     *         file have been written.
+     * @throws IOException if reading file failed or blocks could not be written to serial port.
+     */
+    int writeBlocks(SerialComManager scm, long handle, long waitTime) throws IOException {
+        int slot = 0;
+        int count = 0;
+
+        synchronized(this) {
+            if((prepared == written) && (noMoreData == false)) {
+                try {
+                    wait(waitTime);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if(prepared == written) {
+                if(failure != null) {
+                    throw failure;
+                }
+                return (noMoreData == true) ? -1 : 0;
+            }
+            slot = (int) (written % RINGSIZE);
+            count = (int) Math.min(prepared - written, RINGSIZE - slot);
+        }
+
+        // gather all ready blocks lying next to each other in ring into one write.
+        int offset = slot * blockLength;
+        int remaining = count * blockLength;
+        while(remaining > 0) {
+            int num = scm.writeBytesDirect(handle, ring, offset, remaining);
+            if(num <= 0) {
+                throw new SerialComException("Could not write data block to serial port !");
+            }
+            offset = offset + num;
+            remaining = remaining - num;
+        }
+
+        synchronized(this) {
+            written = written + count;
+            notifyAll();
+        }
+        return count;
+    }
+
+    /**
+     * <p>Stops preparer and waits till it has exited, after which framer can be used again.</p>
+     */
+    void stop() {
+        Thread t;
+        synchronized(this) {
+            stopRequested = true;
+            notifyAll();
+            t = preparer;
+            preparer = null;
+        }
+        if((t != null) && (t != Thread.currentThread())) {
+            boolean interrupted = false;
+            while(t.isAlive()) {
+                try {
+                    t.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if(interrupted == true) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,222 @@
+/*
+ * This file is part of SerialPundit.
+ * 
+ * Copyright (C) 2014-2016, Rishi Gupta. All rights reserved.
+ *
+ * The SerialPundit is DUAL LICENSED. It is made available under the terms of the GNU Affero 
+ * General Public License (AGPL) v3.0 for non-commercial use and under the terms of a commercial 
+ * license for commercial use of this software. 
+ * 
+ * The SerialPundit is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+
+package com.serialpundit.serial.ftp;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import com.serialpundit.core.util.SerialComCRCUtil;
+
+/**
+ * <p>Maintains a checkpoint journal next to a file being received so that an interrupted xmodem/ymodem 
+ * transfer can be resumed instead of being received again from the beginning. The journal records how 
+ * many data bytes of file have been verified and forced to storage device along with CRC-32 of those 
+ * bytes. A checkpoint is recorded only after the data it covers has been forced, so journal never 
+ * claims more than what is actually on disk.</p>
+ * 
+ * <p>If the sender supports resuming and the CRC-32 of its first checkpoint offset bytes matches the 
+ * one recorded in journal, it continues from checkpoint offset. Otherwise file is received 
+ * from the beginning but data bytes below checkpoint offset are not written again; their CRC is compared 
+ * with the one recorded in journal, so that data on disk need not be read back for verification.</p>
+ * 
+ * <p>Journal is removed once file has been received completely.</p>
+ * 
+ * @author Rishi Gupta
+ */
+final class SerialComFTPCheckpointJournal {
+
+    /** <p>Appended to name of file being received to form name of its journal. </p>*/
+    static final String SUFFIX = ".spjournal";
+
+    /** <p>Number of data bytes written after which a checkpoint is recorded (64 KB). </p>*/
+    static final long CHECKPOINTINTERVAL = 64 * 1024;
+
+    private static final int MAGIC = 0x53504A31; // SPJ1
+
+    private final File fileToReceive;
+    private final File journalFile;
+    private final File tmpJournalFile;
+    private final SerialComCRCUtil crcCalculator = new SerialComCRCUtil();
+    private SerialComFTPFileSink sink;
+    private long fileLength = -1;
+    private long checkpointOffset;
+    private long checkpointCRC;
+    private long offset;
+    private long crc;
+    private long skipTill;
+
+    /**
+     * <p>Allocates a new SerialComFTPCheckpointJournal object for the given file.</p>
+     * 
+     * @param fileToReceive file being received.
+     */
+    SerialComFTPCheckpointJournal(File fileToReceive) {
+        this.fileToReceive = fileToReceive;
+        journalFile = new File(fileToReceive.getPath() + SUFFIX);
+        tmpJournalFile = new File(fileToReceive.getPath() + SUFFIX + ".tmp");
+    }
+
+    /**
+     * <p>Reads journal left by an earlier interrupted reception of this file.</p>
+     * 
+     * @param expectedLength length of file as announced by sender, -1 if not known.
+     * @return offset from which reception can be resumed, 0 if there is nothing to resume.
+     */
+    long load(long expectedLength) {
+        DataInputStream in = null;
+        fileLength = expectedLength;
+        checkpointOffset = 0;
+        checkpointCRC = 0;
+        if((journalFile.exists() == false) || (fileToReceive.exists() == false)) {
+            return 0;
+        }
+        try {
+            in = new DataInputStream(new FileInputStream(journalFile));
+            if(in.readInt() != MAGIC) {
+                return 0;
+            }
+            long length = in.readLong();
+            long journalOffset = in.readLong();
+            long journalCRC = in.readLong();
+            // sender is sending some other version of file or partial file has been modified since.
+            if(((expectedLength >= 0) && (length >= 0) && (expectedLength != length)) || 
+                    (journalOffset <= 0) || (journalOffset > fileToReceive.length())) {
+                return 0;
+            }
+            checkpointOffset = journalOffset;
+            checkpointCRC = journalCRC;
+        } catch (IOException e) {
+            return 0;
+        } finally {
+            if(in != null) {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                }
+            }
+        }
+        return checkpointOffset;
+    }
+
+    /**
+     * <p>Gives CRC-32 of data bytes till the offset returned by load, which sender compares with its own 
+     * data before resuming.</p>
+     * 
+     * @return CRC-32 recorded in journal, 0 if there is nothing to resume.
+     */
+    long getCheckpointCRC() {
+        return checkpointCRC;
+    }
+
+    /**
+     * <p>Starts journaling data written to the given sink.</p>
+     * 
+     * @param sink sink positioned at resumeOffset in file being received.
+     * @param resumeOffset offset returned by load, 0 if reception starts from beginning.
+     * @param senderResumed true if sender verified CRC of data till resumeOffset and continues from there, 
+     *         false if sender sends whole file.
+     */
+    void begin(SerialComFTPFileSink sink, long resumeOffset, boolean senderResumed) {
+        this.sink = sink;
+        if((resumeOffset > 0) && (senderResumed == true)) {
+            offset = resumeOffset;
+            crc = checkpointCRC;
+        }else {
+            offset = 0;
+            crc = 0;
+        }
+        skipTill = resumeOffset;
+        checkpointOffset = resumeOffset;
+    }
+
+    /**
+     * <p>Writes data bytes of a verified block. Data which is already on disk is only used to verify 
+     * that file being sent is same as the one partially received.</p>
+     * 
+     * @param data buffer containing data bytes.
+     * @param off index of first data byte.
+     * @param len number of data bytes.
+     * @return false if data already on disk differs from data being sent, true otherwise.
+     * @throws IOException if data can not be written to file or journal.
+     */
+    boolean write(byte[] data, int off, int len) throws IOException {
+        if(len <= 0) {
+            return true;
+        }
+        if(offset < skipTill) {
+            int num = (int) Math.min(len, skipTill - offset);
+            crc = crcCalculator.updateCRC32Value(crc, data, off, off + num - 1);
+            offset = offset + num;
+            off = off + num;
+            len = len - num;
+            if((offset == skipTill) && (crc != checkpointCRC)) {
+                return false;
+            }
+        }
+        if(len > 0) {
+            sink.write(data, off, len);
+            crc = crcCalculator.updateCRC32Value(crc, data, off, off + len - 1);
+            offset = offset + len;
+            if((offset - checkpointOffset) >= CHECKPOINTINTERVAL) {
+                checkpoint();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * <p>Forces data written till now to storage device and then records it in journal. Journal is 
+     * replaced atomically so an interruption while recording leaves previous checkpoint intact.</p>
+     * 
+     * @throws IOException if data can not be forced or journal can not be written.
+     */
+    void checkpoint() throws IOException {
+        if(offset < skipTill) {
+            return;
+        }
+        sink.force();
+        FileOutputStream fout = new FileOutputStream(tmpJournalFile);
+        DataOutputStream out = new DataOutputStream(fout);
+        try {
+            out.writeInt(MAGIC);
+            out.writeLong(fileLength);
+            out.writeLong(offset);
+            out.writeLong(crc);
+            out.flush();
+            fout.getFD().sync();
+        } finally {
+            out.close();
+        }
+        if(tmpJournalFile.renameTo(journalFile) == false) {
+            // some platforms do not replace existing file on rename.
+            journalFile.delete();
+            if(tmpJournalFile.renameTo(journalFile) == false) {
+                throw new IOException("Unable to record checkpoint in " + journalFile.getPath() + " !");
+            }
+        }
+        checkpointOffset = offset;
+    }
+
+    /**
+     * <p>Removes journal, called once file has been received completely or when it can not be resumed.</p>
+     */
+    void delete() {
+        journalFile.delete();
+        tmpJournalFile.delete();
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * This file is part of SerialPundit.
+ * 
+ * Copyright (C) 2014-2016, Rishi Gupta. All rights reserved.
+ *
+ * The SerialPundit is DUAL LICENSED. It is made available under the terms of the GNU Affero 
+ * General Public License (AGPL) v3.0 for non-commercial use and under the terms of a commercial 
+ * license for commercial use of this software. 
+ * 
+ * The SerialPundit is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+
+package com.serialpundit.serial.ftp;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * <p>Writes received file through a file channel using a direct buffer, so that data bytes are copied 
+ * once from block into native memory and then handed to operating system without any further copy. 
+ * Data written is periodically forced to storage device so that a power failure during a long transfer 
+ * loses at most the data received since last force.</p>
+ * 
+ * @author Rishi Gupta
+ */
+final class SerialComFTPFileSink extends OutputStream {
+
+    /** <p>Size of direct buffer in which data is collected before writing to file (64 KB). </p>*/
+    static final int BUFFERSIZE = 64 * 1024;
+
+    /** <p>Default number of bytes written after which data is forced to storage device (1 MB). </p>*/
+    static final long FORCEINTERVAL = 1024 * 1024;
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFERSIZE);
+    private final long forceInterval;
+    private long unforcedBytes;
+
+    /**
+     * <p>Allocates a new SerialComFTPFileSink object and opens the given file for writing.</p>
+     * 
+     * @param fileToReceive file in which received data will be saved.
+     * @param position offset at which first byte will be written; file is truncated at this offset, 0 to 
+     *         overwrite existing contents.
+     * @param forceInterval number of bytes after which data is forced to storage device, 0 to force 
+     *         only when closing file.
+     * @throws IOException if file can not be opened.
+     */
+    SerialComFTPFileSink(File fileToReceive, long position, long forceInterval) throws IOException {
+        file = new RandomAccessFile(fileToReceive, "rw");
+        channel = file.getChannel();
+        if(position > channel.size()) {
+            position = channel.size();
+        }
+        channel.truncate(position);
+        channel.position(position);
+        this.forceInterval = forceInterval;
+    }
+
+    /**
+     * <p>Allocates a new SerialComFTPFileSink object which truncates the given file and forces data 
+     * every FORCEINTERVAL bytes.</p>
+     * 
+     * @param fileToReceive file in which received data will be saved.
+     * @throws IOException if file can not be opened.
+     */
+    SerialComFTPFileSink(File fileToReceive) throws IOException {
+        this(fileToReceive, 0, FORCEINTERVAL);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if(buffer.hasRemaining() == false) {
+            drain();
+        }
+        buffer.put((byte) b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        int num = 0;
+        while(len > 0) {
+            if(buffer.hasRemaining() == false) {
+                drain();
+            }
+            num = Math.min(len, buffer.remaining());
+            buffer.put(b, off, num);
+            off = off + num;
+            len = len - num;
+        }
+    }
+
+    /*
+     * Writes buffered bytes to file and forces them to storage device if force interval has elapsed.
+     */
+    private void drain() throws IOException {
+        buffer.flip();
+        unforcedBytes = unforcedBytes + buffer.remaining();
+        while(buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+        if((forceInterval > 0) && (unforcedBytes >= forceInterval)) {
+            channel.force(false);
+            unforcedBytes = 0;
+        }
+    }
+
+    /**
+     * <p>Writes all buffered bytes to file.</p>
+     * 
+     * @throws IOException if an I/O error occurs.
+     */
+    @Override
+    public void flush() throws IOException {
+        if(buffer.position() > 0) {
+            drain();
+        }
+    }
+
+    /**
+     * <p>Writes all buffered bytes to file and forces them to storage device.</p>
+     * 
+     * @throws IOException if an I/O error occurs.
+     */
+    void force() throws IOException {
+        flush();
+        channel.force(false);
+        unforcedBytes = 0;
+    }
+
+    /**
+     * <p>Writes all buffered bytes, forces them to storage device and closes the file.</p>
+     * 
+     * @throws IOException if an I/O error occurs.
+     */
+    @Override
+    public void close() throws IOException {
+        if(channel.isOpen() == false) {
+            return;
+        }
+        try {
+            force();
+        } finally {
+            file.close();
+        }
+    }
+}
@@ -0,0 +1,221 @@
+/*
+ * This file is part of SerialPundit.
+ * 
+ * Copyright (C) 2014-2016, Rishi Gupta. All rights reserved.
+ *
+ * The SerialPundit is DUAL LICENSED. It is made available under the terms of the GNU Affero 
+ * General Public License (AGPL) v3.0 for non-commercial use and under the terms of a commercial 
+ * license for commercial use of this software. 
+ * 
+ * The SerialPundit is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+
+package com.serialpundit.serial.ftp;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * <p>Reads file to be sent directly from memory mapped into the file, so that data bytes are copied 
+ * only once from page cache into the block being assembled. The file is mapped in windows of fixed 
+ * size which are moved as reading proceeds, so files larger than address space can be sent.</p>
+ * 
+ * <p>Being an InputStream it can be given to SerialComFTPBlockFramer in place of a buffered file 
+ * stream. Protocols which need to re-send from an arbitrary offset can use position methods.</p>
+ * 
+ * <p>If a SerialComFTPMemoryBudget is attached to the thread creating this source, file is not mapped. 
+ * Instead a buffer, taken out of that budget and therefore possibly smaller than WINDOWSIZE, is 
+ * allocated once and refilled from file as reading proceeds. Mapped windows are freed only when 
+ * garbage collected, so they could not be accounted for; the buffer is held until this source is 
+ * closed and only then given back to budget.</p>
+ * 
+ * @author Rishi Gupta
+ */
+final class SerialComFTPFileSource extends InputStream {
+
+    /** <p>Maximum number of bytes of file mapped at a time (8 MB). </p>*/
+    static final long WINDOWSIZE = 8 * 1024 * 1024;
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final long length;
+    private final SerialComFTPMemoryBudget budget;
+    private long granted;
+    private MappedByteBuffer window;
+    private long windowStart;
+    private byte[] chunk;
+    private long chunkStart;
+    private int chunkLength;
+    private long position;
+
+    /**
+     * <p>Allocates a new SerialComFTPFileSource object and opens the given file for reading.</p>
+     * 
+     * @param fileToSend file whose contents are to be read.
+     * @throws IOException if file can not be opened.
+     */
+    SerialComFTPFileSource(File fileToSend) throws IOException {
+        file = new RandomAccessFile(fileToSend, "r");
+        channel = file.getChannel();
+        length = channel.size();
+        budget = SerialComFTPMemoryBudget.current();
+    }
+
+    /**
+     * <p>Gives length of the file in bytes as it was when this source was opened.</p>
+     * 
+     * @return length of file.
+     */
+    long length() {
+        return length;
+    }
+
+    /**
+     * <p>Gives offset in file from which next byte will be read.</p>
+     * 
+     * @return current position.
+     */
+    long position() {
+        return position;
+    }
+
+    /**
+     * <p>Sets offset in file from which next byte will be read.</p>
+     * 
+     * @param newPosition new offset, values beyond end of file make next read return end of file.
+     */
+    void position(long newPosition) {
+        position = (newPosition < 0) ? 0 : newPosition;
+    }
+
+    /*
+     * Makes sure that the byte at current position is mapped. Returns false at end of file.
+     */
+    private boolean mapWindow() throws IOException {
+        if(position >= length) {
+            return false;
+        }
+        if((window != null) && (position >= windowStart) && (position < (windowStart + window.capacity()))) {
+            return true;
+        }
+        windowStart = position - (position % WINDOWSIZE);
+        window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, Math.min(WINDOWSIZE, length - windowStart));
+        return true;
+    }
+
+    /*
+     * Makes sure that the byte at current position is in budgeted buffer, allocating buffer on first 
+     * use. Returns false at end of file.
+     */
+    private boolean fillChunk() throws IOException {
+        if(position >= length) {
+            return false;
+        }
+        if((chunk != null) && (position >= chunkStart) && (position < (chunkStart + chunkLength))) {
+            return true;
+        }
+        if(chunk == null) {
+            granted = budget.acquire(Math.min(WINDOWSIZE, length));
+            chunk = new byte[(int) granted];
+        }
+        int wanted = (int) Math.min(chunk.length, length - position);
+        int num = 0;
+        file.seek(position);
+        while(num < wanted) {
+            int ret = file.read(chunk, num, wanted - num);
+            if(ret < 0) {
+                break;
+            }
+            num = num + ret;
+        }
+        if(num == 0) {
+            // file has been truncated after this source was opened.
+            return false;
+        }
+        chunkStart = position;
+        chunkLength = num;
+        return true;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if(budget != null) {
+            if(fillChunk() == false) {
+                return -1;
+            }
+            int data = chunk[(int) (position - chunkStart)] & 0xFF;
+            position++;
+            return data;
+        }
+        if(mapWindow() == false) {
+            return -1;
+        }
+        int data = window.get((int) (position - windowStart)) & 0xFF;
+        position++;
+        return data;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int num = 0;
+        if(len == 0) {
+            return 0;
+        }
+        if(budget != null) {
+            if(fillChunk() == false) {
+                return -1;
+            }
+            int offset = (int) (position - chunkStart);
+            num = Math.min(len, chunkLength - offset);
+            System.arraycopy(chunk, offset, b, off, num);
+            position = position + num;
+            return num;
+        }
+        if(mapWindow() == false) {
+            return -1;
+        }
+        int offset = (int) (position - windowStart);
+        num = Math.min(len, window.capacity() - offset);
+        window.position(offset);
+        window.get(b, off, num);
+        position = position + num;
+        return num;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        if(n <= 0) {
+            return 0;
+        }
+        long num = Math.min(n, Math.max(0, length - position));
+        position = position + num;
+        return num;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return (int) Math.min(Integer.MAX_VALUE, Math.max(0, length - position));
+    }
+
+    /**
+     * <p>Closes the file and gives back memory budget if any. A mapped window, used when there is 
+     * no budget, is released when it is garbage collected.</p>
+     * 
+     * @throws IOException if file can not be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        window = null;
+        if(budget != null) {
+            chunk = null;
+            budget.release(granted);
+            granted = 0;
+        }
+        file.close();
+    }
+}
@@ -0,0 +1,328 @@
+/*
+ * This file is part of SerialPundit.
+ * 
+ * Copyright (C) 2014-2016, Rishi Gupta. All rights reserved.
+ *
+ * The SerialPundit is DUAL LICENSED. It is made available under the terms of the GNU Affero 
+ * General Public License (AGPL) v3.0 for non-commercial use and under the terms of a commercial 
+ * license for commercial use of this software. 
+ * 
+ * The SerialPundit is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+
+package com.serialpundit.serial.ftp;
+
+import java.io.File;
+import java.io.IOException;
+
+import com.serialpundit.serial.SerialComManager;
+import com.serialpundit.serial.SerialComManager.FTPPROTO;
+import com.serialpundit.serial.SerialComManager.FTPVAR;
+
+/**
+ * <p>Represents one file transfer (sending files or receiving files on one port) run by 
+ * SerialComFTPScheduler, and gives its state and progress while it runs and after it has finished.</p>
+ * 
+ * <p>Objects of this class are created using addSendJob and addReceiveJob methods of the scheduler.</p>
+ * 
+ * @author Rishi Gupta
+ */
+public final class SerialComFTPJob {
+
+    /** <p>Job has not been started yet. </p>*/
+    public static final int PENDING = 0;
+
+    /** <p>Job is being run. </p>*/
+    public static final int RUNNING = 1;
+
+    /** <p>All files have been transferred successfully. </p>*/
+    public static final int SUCCEEDED = 2;
+
+    /** <p>Transfer failed and all the retries have been exhausted. </p>*/
+    public static final int FAILED = 3;
+
+    /** <p>Transfer was aborted by application. </p>*/
+    public static final int ABORTED = 4;
+
+    private final SerialComFTPScheduler scheduler;
+    private final long handle;
+    private final File[] filesToSend;
+    private final File fileToReceive;
+    private final FTPPROTO ftpProto;
+    private final FTPVAR ftpVariant;
+    private final boolean textMode;
+    private final int maxRetries;
+    private final int blockSize;
+    private final long totalBytes;
+    private final SerialComFTPCMDAbort transferState;
+
+    private volatile int status;
+    private volatile int retries;
+    private volatile long bytesTransferred;
+    private volatile long startTime;
+    private volatile long endTime;
+    private volatile Exception failureCause;
+
+    // bytes of files completed earlier in current attempt, and name of file being transferred
+    private long bytesOfPreviousFiles;
+    private long bytesOfCurrentFile;
+    private String currentFileName;
+
+    /* Translates protocol specific progress updates into bytes transferred. */
+    private final class ProgressAdapter implements ISerialComXmodemProgress, ISerialComYmodemProgress, 
+    ISerialComZmodemProgress {
+
+        @Override
+        public void onXmodemSentProgressUpdate(long numBlock, int percentOfBlocksSent) {
+            update(null, numBlock * blockSize);
+        }
+
+        @Override
+        public void onXmodemReceiveProgressUpdate(long numBlock) {
+            update(null, numBlock * blockSize);
+        }
+
+        @Override
+        public void onYmodemSentProgressUpdate(String fileName, long numBlock, int percentOfBlocksSent) {
+            update(fileName, numBlock * blockSize);
+        }
+
+        @Override
+        public void onYmodemReceiveProgressUpdate(String fileName, long numBlock, int percentOfBlocksReceived) {
+            update(fileName, numBlock * blockSize);
+        }
+
+        @Override
+        public void onZmodemSentProgressUpdate(String fileName, long bytesSent, int percentOfBytesSent) {
+            update(fileName, bytesSent);
+        }
+
+        @Override
+        public void onZmodemReceiveProgressUpdate(String fileName, long bytesReceived, int percentOfBytesReceived) {
+            update(fileName, bytesReceived);
+        }
+    }
+
+    SerialComFTPJob(SerialComFTPScheduler scheduler, long handle, File[] filesToSend, File fileToReceive, 
+            FTPPROTO ftpProto, FTPVAR ftpVariant, boolean textMode, int maxRetries) {
+        this.scheduler = scheduler;
+        this.handle = handle;
+        this.filesToSend = filesToSend;
+        this.fileToReceive = fileToReceive;
+        this.ftpProto = ftpProto;
+        this.ftpVariant = ftpVariant;
+        this.textMode = textMode;
+        this.maxRetries = maxRetries;
+        transferState = new SerialComFTPCMDAbort();
+        status = PENDING;
+
+        if((ftpProto == FTPPROTO.ZMODEM) || (ftpVariant == FTPVAR.CHKSUM) || (ftpVariant == FTPVAR.CRC)) {
+            blockSize = 128;
+        }else {
+            blockSize = 1024;
+        }
+
+        if(filesToSend != null) {
+            long total = 0;
+            int count = (ftpProto == FTPPROTO.XMODEM) ? 1 : filesToSend.length;
+            for(int x=0; x < count; x++) {
+                total = total + filesToSend[x].length();
+            }
+            totalBytes = total;
+        }else {
+            totalBytes = -1;
+        }
+    }
+
+    /*
+     * Records progress reported by protocol. Length reported for a file never exceeds its length 
+     * when sending and is never allowed to go backwards within a file.
+     */
+    private void update(String fileName, long bytesOfFile) {
+        if((fileName != null) && !fileName.equals(currentFileName)) {
+            if(currentFileName != null) {
+                bytesOfPreviousFiles = bytesOfPreviousFiles + bytesOfCurrentFile;
+            }
+            currentFileName = fileName;
+            bytesOfCurrentFile = 0;
+        }
+        if(bytesOfFile > bytesOfCurrentFile) {
+            bytesOfCurrentFile = bytesOfFile;
+        }
+        long bytes = bytesOfPreviousFiles + bytesOfCurrentFile;
+        if((totalBytes >= 0) && (bytes > totalBytes)) {
+            bytes = totalBytes;
+        }
+        bytesTransferred = bytes;
+        scheduler.progressUpdate(this);
+    }
+
+    /*
+     * Runs transfer, trying again after failure until it succeeds or retries are exhausted. Never 
+     * throws, outcome is recorded in status and failure cause.
+     */
+    void execute(SerialComManager scm) {
+        ProgressAdapter progress = new ProgressAdapter();
+        startTime = System.currentTimeMillis();
+        status = RUNNING;
+
+        while(true) {
+            bytesOfPreviousFiles = 0;
+            bytesOfCurrentFile = 0;
+            currentFileName = null;
+            bytesTransferred = 0;
+            try {
+                boolean result;
+                if(filesToSend != null) {
+                    result = scm.sendFile(handle, filesToSend, ftpProto, ftpVariant, textMode, progress, transferState);
+                }else {
+                    result = scm.receiveFile(handle, fileToReceive, ftpProto, ftpVariant, textMode, progress, transferState);
+                }
+                if(result == true) {
+                    if(totalBytes >= 0) {
+                        bytesTransferred = totalBytes;
+                    }
+                    status = SUCCEEDED;
+                }else {
+                    status = ABORTED;
+                }
+                break;
+            } catch (RuntimeException e) {
+                // invalid arguments or state, trying again will not help
+                failureCause = e;
+                status = FAILED;
+                break;
+            } catch (IOException e) {
+                failureCause = e;
+                if(transferState.isTransferToBeAborted()) {
+                    status = ABORTED;
+                    break;
+                }
+                if(retries >= maxRetries) {
+                    status = FAILED;
+                    break;
+                }
+                retries++;
+                scheduler.retrying(this, retries, e);
+                try {
+                    scm.clearPortIOBuffers(handle, true, true);
+                } catch (IOException e1) {
+                    // next attempt will report if port is unusable
+                }
+            }
+        }
+
+        endTime = System.currentTimeMillis();
+    }
+
+    /**
+     * <p>Asks this job to stop. If it has not been started it will not be started.</p>
+     */
+    public void abort() {
+        transferState.abortTransfer();
+    }
+
+    boolean isAbortRequested() {
+        return transferState.isTransferToBeAborted();
+    }
+
+    void markAborted() {
+        status = ABORTED;
+    }
+
+    /**
+     * <p>Gives handle of port on which this job transfers files.</p>
+     * 
+     * @return handle of serial port.
+     */
+    public long getHandle() {
+        return handle;
+    }
+
+    /**
+     * <p>Tells whether this job sends or receives files.</p>
+     * 
+     * @return true if files are sent, false if received.
+     */
+    public boolean isSendJob() {
+        return filesToSend != null;
+    }
+
+    /**
+     * <p>Gives current state of this job.</p>
+     * 
+     * @return one of PENDING, RUNNING, SUCCEEDED, FAILED or ABORTED.
+     */
+    public int getStatus() {
+        return status;
+    }
+
+    /**
+     * <p>Gives number of times this job has been retried after a failure.</p>
+     * 
+     * @return number of retries till now.
+     */
+    public int getRetryCount() {
+        return retries;
+    }
+
+    /**
+     * <p>Gives exception due to which most recent attempt failed.</p>
+     * 
+     * @return cause of last failure or null if no attempt has failed.
+     */
+    public Exception getFailureCause() {
+        return failureCause;
+    }
+
+    /**
+     * <p>Gives number of bytes of file data transferred in current (or last) attempt. For receive jobs 
+     * this is counted in blocks and may exceed file length by padding of last block.</p>
+     * 
+     * @return bytes transferred.
+     */
+    public long getBytesTransferred() {
+        return bytesTransferred;
+    }
+
+    /**
+     * <p>Gives number of bytes this job has to transfer.</p>
+     * 
+     * @return total length of files to send or -1 for receive jobs.
+     */
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    /**
+     * <p>Gives average throughput of this job since it was started.</p>
+     * 
+     * @return bytes per second or 0 if job has not been started.
+     */
+    public long getBytesPerSecond() {
+        long start = startTime;
+        if(start == 0) {
+            return 0;
+        }
+        long end = (endTime != 0) ? endTime : System.currentTimeMillis();
+        long elapsed = Math.max(1, end - start);
+        return (bytesTransferred * 1000) / elapsed;
+    }
+
+    /**
+     * <p>Estimates time needed to finish this job at its average throughput.</p>
+     * 
+     * @return milliseconds remaining, 0 if finished, or -1 if not known.
+     */
+    public long getEstimatedTimeRemaining() {
+        if(status > RUNNING) {
+            return 0;
+        }
+        long rate = getBytesPerSecond();
+        if((totalBytes < 0) || (rate <= 0)) {
+            return -1;
+        }
+        return ((totalBytes - bytesTransferred) * 1000) / rate;
+    }
+}
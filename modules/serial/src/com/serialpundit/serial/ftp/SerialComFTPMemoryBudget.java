@@ -0,0 +1,115 @@
+/*
+ * This file is part of SerialPundit.
+ * 
+ * Copyright (C) 2014-2016, Rishi Gupta. All rights reserved.
+ *
+ * The SerialPundit is DUAL LICENSED. It is made available under the terms of the GNU Affero 
+ * General Public License (AGPL) v3.0 for non-commercial use and under the terms of a commercial 
+ * license for commercial use of this software. 
+ * 
+ * The SerialPundit is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+
+package com.serialpundit.serial.ftp;
+
+import java.io.InterruptedIOException;
+
+/**
+ * <p>Bounds the number of bytes of file read buffers which may be allocated at a time by all the 
+ * transfers sharing this budget. A budget is attached to the thread which runs a transfer; 
+ * SerialComFTPFileSource objects created by that thread then read through a buffer taken out of 
+ * the budget, instead of mapping file, and give it back when the source is closed.</p>
+ * 
+ * <p>Every source holds at most one buffer, allocated once and reused for the whole file, so 
+ * transfers waiting for budget make progress once another transfer closes its file. Buffers are 
+ * limited in size so that one transfer can not take whole budget while others wait for it.</p>
+ * 
+ * @author Rishi Gupta
+ */
+final class SerialComFTPMemoryBudget {
+
+    /** <p>Smallest window granted unless budget itself is smaller (64 KB). </p>*/
+    static final long MINWINDOWSIZE = 64 * 1024;
+
+    private static final ThreadLocal<SerialComFTPMemoryBudget> attached = new ThreadLocal<SerialComFTPMemoryBudget>();
+
+    private final long capacity;
+    private final long windowLimit;
+    private long available;
+
+    /**
+     * <p>Allocates a new SerialComFTPMemoryBudget object.</p>
+     * 
+     * @param capacity total number of bytes which may be allocated at a time.
+     * @param windowLimit maximum number of bytes granted to one window.
+     * @throws IllegalArgumentException if capacity is not positive.
+     */
+    SerialComFTPMemoryBudget(long capacity, long windowLimit) {
+        if(capacity <= 0) {
+            throw new IllegalArgumentException("Argument capacity must be positive !");
+        }
+        this.capacity = capacity;
+        this.windowLimit = Math.max(1, windowLimit);
+        this.available = capacity;
+    }
+
+    /**
+     * <p>Makes this budget apply to file sources created by calling thread until detach is called.</p>
+     */
+    void attach() {
+        attached.set(this);
+    }
+
+    /**
+     * <p>Removes budget, if any, attached to calling thread.</p>
+     */
+    static void detach() {
+        attached.remove();
+    }
+
+    /**
+     * <p>Gives budget attached to calling thread.</p>
+     * 
+     * @return attached budget or null if reads by this thread are not bounded.
+     */
+    static SerialComFTPMemoryBudget current() {
+        return attached.get();
+    }
+
+    /**
+     * <p>Takes up to wanted bytes, but not more than window limit, out of budget. Blocks until at least MINWINDOWSIZE bytes (or the 
+     * whole capacity if it is smaller, or wanted if that is smaller) are available.</p>
+     * 
+     * @param wanted number of bytes caller would like to allocate.
+     * @return number of bytes granted, to be given back using release method.
+     * @throws InterruptedIOException if calling thread is interrupted while waiting.
+     */
+    synchronized long acquire(long wanted) throws InterruptedIOException {
+        long minimum = Math.min(wanted, Math.min(MINWINDOWSIZE, capacity));
+        while(available < minimum) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for memory budget !");
+            }
+        }
+        long granted = Math.min(Math.min(wanted, windowLimit), available);
+        available = available - granted;
+        return granted;
+    }
+
+    /**
+     * <p>Gives back bytes taken using acquire method.</p>
+     * 
+     * @param granted number of bytes returned by acquire.
+     */
+    synchronized void release(long granted) {
+        if(granted <= 0) {
+            return;
+        }
+        available = Math.min(capacity, available + granted);
+        notifyAll();
+    }
+}
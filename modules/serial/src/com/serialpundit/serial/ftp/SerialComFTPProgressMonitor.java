@@ -0,0 +1,197 @@
+/*
+ * This file is part of SerialPundit.
+ * 
+ * Copyright (C) 2014-2016, Rishi Gupta. All rights reserved.
+ *
+ * The SerialPundit is DUAL LICENSED. It is made available under the terms of the GNU Affero 
+ * General Public License (AGPL) v3.0 for non-commercial use and under the terms of a commercial 
+ * license for commercial use of this software. 
+ * 
+ * The SerialPundit is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+
+package com.serialpundit.serial.ftp;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Reports progress of a file transfer to an ISerialComFTPStatusListener at a bounded rate. The 
+ * thread running the protocol state machine only updates a few counters; a separate thread samples 
+ * them once per update interval, computes throughput and estimated time remaining and calls the 
+ * listener. A slow listener therefore never slows down the transfer, it just gets fewer updates.</p>
+ * 
+ * <p>Throughput is smoothed using exponentially weighted moving average with a time constant of 
+ * 3 seconds, independent of update interval. The same monitor can be used for many transfers one 
+ * after another but not for two transfers at the same time.</p>
+ * 
+ * <p>A monitor is given to a transfer using setProgressMonitor method of SerialComXModem, 
+ * SerialComXModemCRC, SerialComXModem1K, SerialComYModemCRC, SerialComYModem1K, SerialComYModemG or 
+ * SerialComZModem classes, or passed to sendFile/receiveFile methods of SerialComManager. It can 
+ * be used together with the per block progress listeners.</p>
+ * 
+ * @author Rishi Gupta
+ */
+public final class SerialComFTPProgressMonitor {
+
+    /** <p>Time constant of throughput moving average in milliseconds. </p>*/
+    private static final double RATETIMECONSTANT = 3000.0;
+
+    private final ISerialComFTPStatusListener listener;
+    private final long updateInterval;
+    private ScheduledExecutorService sampler;
+
+    // written only by thread running transfer, read by sampler.
+    private volatile String fileName;
+    private volatile long fileLength;
+    private volatile long fileBytes;
+    private volatile long sessionBytes;
+    private volatile long retries;
+    private volatile long naks;
+
+    // accessed only by sampler thread.
+    private long lastSampleTime;
+    private long lastSessionBytes;
+    private double bytesPerSecond;
+
+    /**
+     * <p>Allocates a new SerialComFTPProgressMonitor object.</p>
+     * 
+     * @param listener object which will receive status updates.
+     * @param updateInterval minimum time in milliseconds between two updates, for example 250 for 
+     *         four updates per second.
+     * @throws IllegalArgumentException if listener is null or updateInterval is not positive.
+     */
+    public SerialComFTPProgressMonitor(ISerialComFTPStatusListener listener, long updateInterval) {
+        if(listener == null) {
+            throw new IllegalArgumentException("Argument listener can not be null !");
+        }
+        if(updateInterval <= 0) {
+            throw new IllegalArgumentException("Argument updateInterval must be positive !");
+        }
+        this.listener = listener;
+        this.updateInterval = updateInterval;
+    }
+
+    /*
+     * Called when transfer starts, starts sampling thread.
+     */
+    synchronized void begin() {
+        fileName = null;
+        fileLength = -1;
+        fileBytes = 0;
+        sessionBytes = 0;
+        retries = 0;
+        naks = 0;
+        lastSampleTime = System.currentTimeMillis();
+        lastSessionBytes = 0;
+        bytesPerSecond = 0;
+
+        sampler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "SerialComFTPProgressMonitor");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        sampler.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                report(false);
+            }
+        }, updateInterval, updateInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /*
+     * Called when transfer of a file starts. Offset is number of bytes already present at receiver 
+     * when transfer is resumed; they count towards progress but not towards throughput.
+     */
+    void beginFile(String name, long length, long offset) {
+        fileName = name;
+        fileLength = length;
+        fileBytes = offset;
+    }
+
+    /*
+     * Called when a data block has been acknowledged by receiver or written by receiver.
+     */
+    void transferred(long numBytes) {
+        fileBytes = fileBytes + numBytes;
+        sessionBytes = sessionBytes + numBytes;
+    }
+
+    /*
+     * Called when a block is sent again or a duplicate block is received.
+     */
+    void retried() {
+        retries++;
+    }
+
+    /*
+     * Called when a negative acknowledgement is sent or received.
+     */
+    void nakd() {
+        naks++;
+    }
+
+    /*
+     * Called when transfer ends for any reason. Final status is delivered from sampling thread, 
+     * after which it exits.
+     */
+    synchronized void end() {
+        if(sampler == null) {
+            return;
+        }
+        sampler.execute(new Runnable() {
+            @Override
+            public void run() {
+                report(true);
+            }
+        });
+        sampler.shutdown();
+        sampler = null;
+    }
+
+    private void report(boolean finished) {
+        long now = System.currentTimeMillis();
+        long bytes = sessionBytes;
+        long elapsed = now - lastSampleTime;
+        if(elapsed > 0) {
+            double instantaneous = ((bytes - lastSessionBytes) * 1000.0) / elapsed;
+            if((lastSessionBytes == 0) && (bytesPerSecond == 0)) {
+                // first sample with data, start average from it instead of from zero.
+                bytesPerSecond = instantaneous;
+            }else {
+                double alpha = 1.0 - Math.exp(-elapsed / RATETIMECONSTANT);
+                bytesPerSecond = bytesPerSecond + (alpha * (instantaneous - bytesPerSecond));
+            }
+            lastSampleTime = now;
+            lastSessionBytes = bytes;
+        }
+
+        long length = fileLength;
+        long done = fileBytes;
+        if((length >= 0) && (done > length)) {
+            // last block is padded.
+            done = length;
+        }
+        long rate = (long) bytesPerSecond;
+        long eta = -1;
+        if(finished == true) {
+            eta = 0;
+        }else if((length >= 0) && (rate > 0)) {
+            eta = ((length - done) * 1000) / rate;
+        }
+
+        try {
+            listener.onTransferStatusUpdate(new SerialComFTPTransferStatus(fileName, done, length, rate, eta, 
+                    retries, naks, finished));
+        } catch (RuntimeException e) {
+            // a faulty listener must not stop further updates.
+        }
+    }
+}
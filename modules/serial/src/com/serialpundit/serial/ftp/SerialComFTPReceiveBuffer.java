@@ -0,0 +1,286 @@
+/*
+ * This file is part of SerialPundit.
+ * 
+ * Copyright (C) 2014-2016, Rishi Gupta. All rights reserved.
+ *
+ * The SerialPundit is DUAL LICENSED. It is made available under the terms of the GNU Affero 
+ * General Public License (AGPL) v3.0 for non-commercial use and under the terms of a commercial 
+ * license for commercial use of this software. 
+ * 
+ * The SerialPundit is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+
+package com.serialpundit.serial.ftp;
+
+import com.serialpundit.core.SerialComException;
+import com.serialpundit.serial.ISerialComDataListener;
+import com.serialpundit.serial.ISerialComPortMetrics;
+import com.serialpundit.serial.SerialComManager;
+
+/**
+ * <p>Collects data delivered by data looper into a ring buffer so that file transfer receivers can 
+ * wait for a complete block with a deadline instead of sleeping for a fixed time and then polling 
+ * the serial port. A waiting receiver is woken up as soon as the requested number of bytes has 
+ * arrived.</p>
+ * 
+ * <p>For streaming protocols which can not ask for a block again (YMODEM-G), the buffer can be made 
+ * lossless. The data listener then waits for space instead of dropping bytes. This does not throttle 
+ * the sender; native layer keeps reading and data looper queue fills up, dropping oldest chunks once 
+ * it is full. A lossless buffer therefore watches dropped data chunks count of the port metrics and 
+ * makes reader fail as soon as any chunk has been lost, instead of handing out a stream with a gap.</p>
+ * 
+ * @author Rishi Gupta
+ */
+final class SerialComFTPReceiveBuffer implements ISerialComDataListener {
+
+    private final byte[] ring;
+    private final boolean lossless;
+    private int head;
+    private int count;
+    private int errorNum;
+    private boolean closed;
+    private ISerialComPortMetrics metrics;
+    private long droppedAtStart;
+
+    /**
+     * <p>Allocates a new SerialComFTPReceiveBuffer object which drops newest bytes when full.</p>
+     * 
+     * @param capacity maximum number of bytes which can be buffered.
+     */
+    SerialComFTPReceiveBuffer(int capacity) {
+        this(capacity, false);
+    }
+
+    /**
+     * <p>Allocates a new SerialComFTPReceiveBuffer object.</p>
+     * 
+     * @param capacity maximum number of bytes which can be buffered.
+     * @param lossless if true data listener waits for space when buffer is full instead of 
+     *         dropping bytes and reader fails if data looper had to drop data.
+     */
+    SerialComFTPReceiveBuffer(int capacity, boolean lossless) {
+        ring = new byte[capacity];
+        this.lossless = lossless;
+    }
+
+    /**
+     * <p>Registers this buffer as data listener of the given handle.</p>
+     * 
+     * @param scm instance of SerialComManager class with which port was opened.
+     * @param handle handle of the opened port.
+     * @throws SerialComException if data listener can not be registered.
+     */
+    void register(SerialComManager scm, long handle) throws SerialComException {
+        synchronized(this) {
+            closed = false;
+            if(lossless == true) {
+                metrics = scm.getPortMetrics(handle);
+                droppedAtStart = metrics.getDroppedDataChunks();
+            }
+        }
+        scm.registerDataListener(handle, this);
+    }
+
+    /**
+     * <p>Unregisters this buffer from the given handle.</p>
+     * 
+     * @param scm instance of SerialComManager class with which port was opened.
+     * @param handle handle of the opened port.
+     * @throws SerialComException if data listener can not be unregistered.
+     */
+    void unregister(SerialComManager scm, long handle) throws SerialComException {
+        // release data listener if it is waiting for space, otherwise unregistering would wait for it.
+        synchronized(this) {
+            closed = true;
+            notifyAll();
+        }
+        scm.unregisterDataListener(handle, this);
+    }
+
+    @Override
+    public synchronized void onNewSerialDataAvailable(byte[] data) {
+        int x = 0;
+        int tail = 0;
+        int length = data.length;
+
+        if(lossless == true) {
+            storeAll(data);
+            return;
+        }
+        if(length > (ring.length - count)) {
+            // receiver is not keeping up, newest bytes are dropped and protocol will recover through NAK.
+            length = ring.length - count;
+        }
+        tail = (head + count) % ring.length;
+        for (x = 0; x < length; x++) {
+            ring[tail] = data[x];
+            tail++;
+            if(tail == ring.length) {
+                tail = 0;
+            }
+        }
+        count = count + length;
+        notifyAll();
+    }
+
+    /*
+     * Stores all the given bytes, waiting for reader to make space whenever ring is full. Must be 
+     * called holding lock.
+     */
+    private void storeAll(byte[] data) {
+        int offset = 0;
+        while(offset < data.length) {
+            while((count == ring.length) && (closed == false)) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+            if(closed == true) {
+                return;
+            }
+            int tail = (head + count) % ring.length;
+            int length = Math.min(data.length - offset, Math.min(ring.length - count, ring.length - tail));
+            System.arraycopy(data, offset, ring, tail, length);
+            offset = offset + length;
+            count = count + length;
+            notifyAll();
+        }
+    }
+
+    @Override
+    public synchronized void onDataListenerError(int errorNum) {
+        this.errorNum = errorNum;
+        notifyAll();
+    }
+
+    /**
+     * <p>Waits until at least byteCount bytes are available or waitTime milliseconds have elapsed, 
+     * whichever happens first, and then gives the available bytes (at most byteCount).</p>
+     * 
+     * @param byteCount number of bytes caller expects.
+     * @param waitTime maximum time in milliseconds to wait.
+     * @return bytes read or null if no byte arrived within waitTime.
+     * @throws SerialComException if data listener mechanism reported an error.
+     */
+    synchronized byte[] readBytes(int byteCount, long waitTime) throws SerialComException {
+        long remaining = waitTime;
+        long deadline = System.currentTimeMillis() + waitTime;
+
+        while ((count < byteCount) && (remaining > 0) && (errorNum == 0)) {
+            try {
+                wait(remaining);
+            } catch (InterruptedException e) {
+            }
+            remaining = deadline - System.currentTimeMillis();
+        }
+        if(errorNum != 0) {
+            throw new SerialComException("Could not read data from serial port (error " + errorNum + "). Please retry !");
+        }
+        checkDataLoss();
+        if(count == 0) {
+            return null;
+        }
+
+        int length = Math.min(byteCount, count);
+        byte[] data = new byte[length];
+        for (int x = 0; x < length; x++) {
+            data[x] = ring[head];
+            head++;
+            if(head == ring.length) {
+                head = 0;
+            }
+        }
+        count = count - length;
+        notifyAll();
+        return data;
+    }
+
+    /**
+     * <p>Waits until length bytes are available or waitTime milliseconds have elapsed, whichever 
+     * happens first, and then copies the available bytes (at most length) directly into the given 
+     * buffer, so that caller can assemble a block in place without intermediate arrays.</p>
+     * 
+     * @param buffer buffer in which bytes will be copied.
+     * @param offset index in buffer at which first byte will be copied.
+     * @param length number of bytes caller expects.
+     * @param waitTime maximum time in milliseconds to wait.
+     * @return number of bytes copied, 0 if no byte arrived within waitTime.
+     * @throws SerialComException if data listener mechanism reported an error.
+     */
+    synchronized int read(byte[] buffer, int offset, int length, long waitTime) throws SerialComException {
+        return take(buffer, offset, length, length, waitTime);
+    }
+
+    /**
+     * <p>Waits until at least one byte is available or waitTime milliseconds have elapsed, whichever 
+     * happens first, and then copies the available bytes (at most length) into the given buffer. This 
+     * suits protocols which parse received data byte by byte (ZMODEM). With waitTime 0 it does not 
+     * wait at all.</p>
+     * 
+     * @param buffer buffer in which bytes will be copied.
+     * @param offset index in buffer at which first byte will be copied.
+     * @param length maximum number of bytes to copy.
+     * @param waitTime maximum time in milliseconds to wait.
+     * @return number of bytes copied, 0 if no byte arrived within waitTime.
+     * @throws SerialComException if data listener mechanism reported an error.
+     */
+    synchronized int readAvailable(byte[] buffer, int offset, int length, long waitTime) throws SerialComException {
+        return take(buffer, offset, length, 1, waitTime);
+    }
+
+    /*
+     * Waits till minimum bytes are buffered or waitTime elapses and copies at most length bytes. Must 
+     * be called holding lock.
+     */
+    private int take(byte[] buffer, int offset, int length, int minimum, long waitTime) throws SerialComException {
+        long remaining = waitTime;
+        long deadline = System.currentTimeMillis() + waitTime;
+
+        while ((count < minimum) && (remaining > 0) && (errorNum == 0)) {
+            try {
+                wait(remaining);
+            } catch (InterruptedException e) {
+            }
+            remaining = deadline - System.currentTimeMillis();
+        }
+        if(errorNum != 0) {
+            throw new SerialComException("Could not read data from serial port (error " + errorNum + "). Please retry !");
+        }
+        checkDataLoss();
+
+        int num = Math.min(length, count);
+        int first = Math.min(num, ring.length - head);
+        System.arraycopy(ring, head, buffer, offset, first);
+        System.arraycopy(ring, 0, buffer, offset + first, num - first);
+        head = (head + num) % ring.length;
+        count = count - num;
+        if(num > 0) {
+            // data listener may be waiting for space.
+            notifyAll();
+        }
+        return num;
+    }
+
+    /*
+     * Data looper drops oldest chunk when its queue is full. For a lossless buffer this means a gap 
+     * in the stream which no check value may catch, so the reader is failed.
+     */
+    private void checkDataLoss() throws SerialComException {
+        if((metrics != null) && (metrics.getDroppedDataChunks() != droppedAtStart)) {
+            throw new SerialComException("Data was lost as data looper queue overflowed while receiving !");
+        }
+    }
+
+    /**
+     * <p>Discards all the buffered bytes.</p>
+     */
+    synchronized void clear() {
+        head = 0;
+        count = 0;
+        notifyAll();
+    }
+}
@@ -0,0 +1,313 @@
+/*
+ * This file is part of SerialPundit.
+ * 
+ * Copyright (C) 2014-2016, Rishi Gupta. All rights reserved.
+ *
+ * The SerialPundit is DUAL LICENSED. It is made available under the terms of the GNU Affero 
+ * General Public License (AGPL) v3.0 for non-commercial use and under the terms of a commercial 
+ * license for commercial use of this software. 
+ * 
+ * The SerialPundit is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+
+package com.serialpundit.serial.ftp;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import com.serialpundit.serial.SerialComManager;
+import com.serialpundit.serial.SerialComManager.FTPPROTO;
+import com.serialpundit.serial.SerialComManager.FTPVAR;
+
+/**
+ * <p>Runs many file transfers on different serial ports concurrently, for example to flash firmware 
+ * into a rack of boards at once.</p>
+ * 
+ * <p>Jobs are added using addSendJob and addReceiveJob methods and run by runJobs method. Jobs on 
+ * different ports run in parallel using at most the given number of threads, jobs on same port run 
+ * one after other in the order they were added. A failed job is tried again up to its retry count 
+ * after clearing I/O buffers of its port.</p>
+ * 
+ * <p>Progress of each job and of all jobs together, including throughput, retries and estimated 
+ * time remaining, is delivered through a single ISerialComFTPSchedulerProgress listener.</p>
+ * 
+ * <p>Files being sent are read through a buffer allocated once per file. All the jobs share a memory 
+ * budget which bounds the number of bytes held in these buffers at a time. Each sender takes at most 
+ * budget divided by parallelism bytes, but not less than 64 KB, so the budget should be at least 64 KB 
+ * times number of ports sending at the same time for senders not to wait for each other.</p>
+ * 
+ * @author Rishi Gupta
+ */
+public final class SerialComFTPScheduler {
+
+    private final SerialComManager scm;
+    private final int parallelism;
+    private final SerialComFTPMemoryBudget budget;
+    private final ISerialComFTPSchedulerProgress progressListener;
+    private final Object lock = new Object();
+    private final List<SerialComFTPJob> jobs = new ArrayList<SerialComFTPJob>();
+    private List<SerialComFTPJob> runningJobs;
+    private long runStartTime;
+
+    /**
+     * <p>Allocates a new SerialComFTPScheduler object.</p>
+     * 
+     * @param scm SerialComManager instance with which all the ports have been opened.
+     * @param parallelism maximum number of ports on which files are transferred at the same time.
+     * @param memoryBudget maximum number of bytes of read buffers of files being sent allocated at a time.
+     * @param progressListener object interested in progress of jobs, can be null.
+     * @throws IllegalArgumentException if scm is null or parallelism or memoryBudget is not positive.
+     */
+    public SerialComFTPScheduler(SerialComManager scm, int parallelism, long memoryBudget, 
+            ISerialComFTPSchedulerProgress progressListener) {
+        if(scm == null) {
+            throw new IllegalArgumentException("Argument scm can not be null !");
+        }
+        if(parallelism <= 0) {
+            throw new IllegalArgumentException("Argument parallelism must be positive !");
+        }
+        if(memoryBudget <= 0) {
+            throw new IllegalArgumentException("Argument memoryBudget must be positive !");
+        }
+        this.scm = scm;
+        this.parallelism = parallelism;
+        this.budget = new SerialComFTPMemoryBudget(memoryBudget, 
+                Math.max(SerialComFTPMemoryBudget.MINWINDOWSIZE, memoryBudget / parallelism));
+        this.progressListener = progressListener;
+    }
+
+    /**
+     * <p>Adds a job which sends given files on given port. Arguments have same meaning as for 
+     * sendFile method in SerialComManager class.</p>
+     * 
+     * @param handle of the port on which files are to be sent.
+     * @param filesToSend files to be sent.
+     * @param ftpProto file transfer protocol to use.
+     * @param ftpVariant variant of file transfer protocol to use.
+     * @param textMode if true files are sent as text files, if false as binary files.
+     * @param maxRetries number of times transfer is tried again if it fails.
+     * @return job object through which state and progress of transfer can be obtained.
+     * @throws IllegalArgumentException if filesToSend is null or empty, ftpProto or ftpVariant is null, 
+     *         maxRetries is negative.
+     * @throws IllegalStateException if jobs are being run.
+     */
+    public SerialComFTPJob addSendJob(long handle, File[] filesToSend, FTPPROTO ftpProto, FTPVAR ftpVariant, 
+            boolean textMode, int maxRetries) {
+        if((filesToSend == null) || (filesToSend.length == 0)) {
+            throw new IllegalArgumentException("Argument filesToSend can not be null or of zero length !");
+        }
+        return addJob(new SerialComFTPJob(this, handle, filesToSend, null, checkProto(ftpProto), checkVariant(ftpVariant), 
+                textMode, checkRetries(maxRetries)));
+    }
+
+    /**
+     * <p>Adds a job which receives file(s) on given port. Arguments have same meaning as for 
+     * receiveFile method in SerialComManager class.</p>
+     * 
+     * @param handle of the port on which files are to be received.
+     * @param fileToReceive file (Xmodem) or directory (Ymodem, Zmodem) in which data is saved.
+     * @param ftpProto file transfer protocol to use.
+     * @param ftpVariant variant of file transfer protocol to use.
+     * @param textMode if true files are received as text files, if false as binary files.
+     * @param maxRetries number of times transfer is tried again if it fails.
+     * @return job object through which state and progress of transfer can be obtained.
+     * @throws IllegalArgumentException if fileToReceive, ftpProto or ftpVariant is null, maxRetries is 
+     *         negative.
+     * @throws IllegalStateException if jobs are being run.
+     */
+    public SerialComFTPJob addReceiveJob(long handle, File fileToReceive, FTPPROTO ftpProto, FTPVAR ftpVariant, 
+            boolean textMode, int maxRetries) {
+        if(fileToReceive == null) {
+            throw new IllegalArgumentException("Argument fileToReceive can not be null !");
+        }
+        return addJob(new SerialComFTPJob(this, handle, null, fileToReceive, checkProto(ftpProto), checkVariant(ftpVariant), 
+                textMode, checkRetries(maxRetries)));
+    }
+
+    private static FTPPROTO checkProto(FTPPROTO ftpProto) {
+        if(ftpProto == null) {
+            throw new IllegalArgumentException("Argument ftpProto can not be null !");
+        }
+        return ftpProto;
+    }
+
+    private static FTPVAR checkVariant(FTPVAR ftpVariant) {
+        if(ftpVariant == null) {
+            throw new IllegalArgumentException("Argument ftpVariant can not be null !");
+        }
+        return ftpVariant;
+    }
+
+    private static int checkRetries(int maxRetries) {
+        if(maxRetries < 0) {
+            throw new IllegalArgumentException("Argument maxRetries can not be negative !");
+        }
+        return maxRetries;
+    }
+
+    private SerialComFTPJob addJob(SerialComFTPJob job) {
+        synchronized(lock) {
+            if(runningJobs != null) {
+                throw new IllegalStateException("Jobs can not be added while jobs are being run !");
+            }
+            jobs.add(job);
+        }
+        return job;
+    }
+
+    /**
+     * <p>Runs all the jobs added since last call to this method and waits till all of them have 
+     * finished. Outcome of each job is available from its getStatus method.</p>
+     * 
+     * @return true if all jobs succeeded, false if any job failed or was aborted.
+     * @throws IllegalStateException if jobs are already being run.
+     * @throws InterruptedException if calling thread is interrupted while waiting; running jobs are 
+     *         aborted in this case and this method returns only after they have stopped.
+     */
+    public boolean runJobs() throws InterruptedException {
+        final List<SerialComFTPJob> toRun;
+        synchronized(lock) {
+            if(runningJobs != null) {
+                throw new IllegalStateException("Jobs are already being run !");
+            }
+            toRun = new ArrayList<SerialComFTPJob>(jobs);
+            jobs.clear();
+            runningJobs = toRun;
+            runStartTime = System.currentTimeMillis();
+        }
+
+        // jobs on same port run in sequence on one thread, ports run in parallel
+        Map<Long, List<SerialComFTPJob>> jobsPerPort = new LinkedHashMap<Long, List<SerialComFTPJob>>();
+        for(SerialComFTPJob job : toRun) {
+            List<SerialComFTPJob> portJobs = jobsPerPort.get(job.getHandle());
+            if(portJobs == null) {
+                portJobs = new ArrayList<SerialComFTPJob>();
+                jobsPerPort.put(job.getHandle(), portJobs);
+            }
+            portJobs.add(job);
+        }
+
+        ExecutorService threadpool = Executors.newFixedThreadPool(Math.max(1, Math.min(parallelism, jobsPerPort.size())));
+        try {
+            for(final List<SerialComFTPJob> portJobs : jobsPerPort.values()) {
+                threadpool.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        budget.attach();
+                        try {
+                            for(SerialComFTPJob job : portJobs) {
+                                if(job.isAbortRequested()) {
+                                    job.markAborted();
+                                }else {
+                                    job.execute(scm);
+                                }
+                                completed(job);
+                            }
+                        } finally {
+                            SerialComFTPMemoryBudget.detach();
+                        }
+                    }
+                });
+            }
+            threadpool.shutdown();
+            while(!threadpool.awaitTermination(1, TimeUnit.SECONDS)) {
+            }
+        } catch (InterruptedException e) {
+            abortJobs();
+            threadpool.shutdown();
+            // aborted transfers give up promptly, jobs must not outlive this call as they use the ports.
+            while(true) {
+                try {
+                    if(threadpool.awaitTermination(1, TimeUnit.SECONDS)) {
+                        break;
+                    }
+                } catch (InterruptedException exp) {
+                }
+            }
+            throw e;
+        } finally {
+            synchronized(lock) {
+                runningJobs = null;
+            }
+        }
+
+        for(SerialComFTPJob job : toRun) {
+            if(job.getStatus() != SerialComFTPJob.SUCCEEDED) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * <p>Aborts all the jobs which are being run and prevents pending ones from being started.</p>
+     */
+    public void abortJobs() {
+        synchronized(lock) {
+            List<SerialComFTPJob> all = (runningJobs != null) ? runningJobs : jobs;
+            for(SerialComFTPJob job : all) {
+                job.abort();
+            }
+        }
+    }
+
+    void progressUpdate(SerialComFTPJob job) {
+        if(progressListener == null) {
+            return;
+        }
+        synchronized(lock) {
+            progressListener.onJobProgressUpdate(job);
+            aggregateUpdate();
+        }
+    }
+
+    void retrying(SerialComFTPJob job, int attempt, Exception cause) {
+        if(progressListener == null) {
+            return;
+        }
+        synchronized(lock) {
+            progressListener.onJobRetry(job, attempt, cause);
+        }
+    }
+
+    private void completed(SerialComFTPJob job) {
+        if(progressListener == null) {
+            return;
+        }
+        synchronized(lock) {
+            progressListener.onJobCompletion(job);
+            aggregateUpdate();
+        }
+    }
+
+    /* Must be called holding lock. */
+    private void aggregateUpdate() {
+        if(runningJobs == null) {
+            return;
+        }
+        long done = 0;
+        long total = 0;
+        for(SerialComFTPJob job : runningJobs) {
+            done = done + job.getBytesTransferred();
+            if((total >= 0) && (job.getTotalBytes() >= 0)) {
+                total = total + job.getTotalBytes();
+            }else {
+                total = -1;
+            }
+        }
+        long elapsed = Math.max(1, System.currentTimeMillis() - runStartTime);
+        long rate = (done * 1000) / elapsed;
+        long eta = -1;
+        if((total >= 0) && (rate > 0)) {
+            eta = ((total - done) * 1000) / rate;
+        }
+        progressListener.onAggregateProgressUpdate(done, total, rate, eta);
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * This file is part of SerialPundit.
+ * 
+ * Copyright (C) 2014-2016, Rishi Gupta. All rights reserved.
+ *
+ * The SerialPundit is DUAL LICENSED. It is made available under the terms of the GNU Affero 
+ * General Public License (AGPL) v3.0 for non-commercial use and under the terms of a commercial 
+ * license for commercial use of this software. 
+ * 
+ * The SerialPundit is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+
+package com.serialpundit.serial.ftp;
+
+/**
+ * <p>Snapshot of progress of a file transfer delivered by SerialComFTPProgressMonitor. Objects of 
+ * this class are immutable, so they can be handed over to GUI thread as is.</p>
+ * 
+ * @author Rishi Gupta
+ */
+public final class SerialComFTPTransferStatus {
+
+    private final String fileName;
+    private final long bytesTransferred;
+    private final long fileLength;
+    private final long bytesPerSecond;
+    private final long etaMillis;
+    private final long retryCount;
+    private final long nakCount;
+    private final boolean finished;
+
+    SerialComFTPTransferStatus(String fileName, long bytesTransferred, long fileLength, long bytesPerSecond, 
+            long etaMillis, long retryCount, long nakCount, boolean finished) {
+        this.fileName = fileName;
+        this.bytesTransferred = bytesTransferred;
+        this.fileLength = fileLength;
+        this.bytesPerSecond = bytesPerSecond;
+        this.etaMillis = etaMillis;
+        this.retryCount = retryCount;
+        this.nakCount = nakCount;
+        this.finished = finished;
+    }
+
+    /**
+     * <p>Gives name of file being transferred.</p>
+     * 
+     * @return file name or null if transfer of first file has not begun yet.
+     */
+    public String getFileName() {
+        return fileName;
+    }
+
+    /**
+     * <p>Gives number of data bytes of current file transferred till now, including bytes received 
+     * in an earlier session if transfer was resumed.</p>
+     * 
+     * @return bytes transferred.
+     */
+    public long getBytesTransferred() {
+        return bytesTransferred;
+    }
+
+    /**
+     * <p>Gives length of current file.</p>
+     * 
+     * @return length in bytes or -1 if not known, as is the case for xmodem receiver.
+     */
+    public long getFileLength() {
+        return fileLength;
+    }
+
+    /**
+     * <p>Gives throughput smoothed by exponentially weighted moving average, so that it follows 
+     * changes in link speed without jumping on every block.</p>
+     * 
+     * @return data bytes per second.
+     */
+    public long getBytesPerSecond() {
+        return bytesPerSecond;
+    }
+
+    /**
+     * <p>Gives estimated time to finish current file at present throughput.</p>
+     * 
+     * @return milliseconds remaining, or -1 if file length or throughput is not known.
+     */
+    public long getEstimatedTimeRemaining() {
+        return etaMillis;
+    }
+
+    /**
+     * <p>Gives number of times a block has been sent again, or received again as duplicate, in 
+     * this transfer.</p>
+     * 
+     * @return retry count.
+     */
+    public long getRetryCount() {
+        return retryCount;
+    }
+
+    /**
+     * <p>Gives number of negative acknowledgements sent or received in this transfer.</p>
+     * 
+     * @return NAK count.
+     */
+    public long getNakCount() {
+        return nakCount;
+    }
+
+    /**
+     * <p>Tells whether this is the last status of the transfer, delivered after it has completed, 
+     * failed or has been aborted.</p>
+     * 
+     * @return true if transfer has ended.
+     */
+    public boolean isFinished() {
+        return finished;
+    }
+}
@@ -0,0 +1,1962 @@
+/*
+ * This file is part of SerialPundit.
+ * 
+ * Copyright (C) 2014-2016, Rishi Gupta. All rights reserved.
+ *
+ * The SerialPundit is DUAL LICENSED. It is made available under the terms of the GNU Affero 
+ * General Public License (AGPL) v3.0 for non-commercial use and under the terms of a commercial 
+ * license for commercial use of this software. 
+ * 
+ * The SerialPundit is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+
+package com.serialpundit.serial.ftp;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.zip.CRC32;
+
+import com.serialpundit.core.SerialComException;
+import com.serialpundit.core.SerialComTimeOutException;
+import com.serialpundit.serial.ISerialComTraceListener;
+import com.serialpundit.serial.SerialComManager;
+import com.serialpundit.serial.internal.ISerialComFTPProgress;
+import com.serialpundit.serial.internal.SerialComTrace;
+
+/**
+ * <p>Implements sending and receiving state machines for all xmodem and ymodem variants which 
+ * acknowledge every block. Block size, checksum/CRC, connection character and timings come from 
+ * the given SerialComXYModemVariant while framing, error detection and text mode translation are 
+ * delegated to SerialComFTPBlockFramer. The public classes SerialComXModem, SerialComXModemCRC, 
+ * SerialComXModem1K, SerialComYModemCRC and SerialComYModem1K are facades over this engine.</p>
+ * 
+ * @author Rishi Gupta
+ */
+final class SerialComXYModemEngine {
+
+    private static final byte SOH = 0x01;  // Start of header character
+    private static final byte STX = 0x02;  // Start of text character
+    private static final byte EOT = 0x04;  // End-of-transmission character
+    private static final byte ACK = 0x06;  // Acknowledge byte character
+    private static final byte NAK = 0x15;  // Negative-acknowledge character
+    private static final byte CAN = 0x18;  // Cancel
+    private static final byte C   = 0x43;  // ASCII capital C character
+    private static final byte R   = 0x52;  // ASCII capital R character, resume request
+    private static final byte CR  = 0x0D;  // Carriage return
+    private static final byte BS  = 0X08;  // Back space
+    private static final byte SPACE = 0x20;  // Space
+
+    private final SerialComManager scm;
+    private final long handle;
+    private final SerialComXYModemVariant variant;
+    private final boolean textMode;
+    private final ISerialComFTPProgress progressListener;
+    private final SerialComFTPCMDAbort transferState;
+    private final int osType;
+    private final SerialComFTPBlockFramer framer;
+    private final byte ABORT_CMD[] = new byte[] { CAN, CAN, CAN, CAN, CAN, BS, BS, BS, BS, BS };
+    private boolean eventDrivenReception = false;
+    private SerialComFTPReceiveBuffer receiveBuffer = null;
+    private boolean resumableReception = false;
+    private SerialComFTPProgressMonitor monitor = null;
+
+    /**
+     * <p>Allocates a new SerialComXYModemEngine object.</p>
+     * 
+     * @param scm SerialComManager instance associated with this handle.
+     * @param handle of the port on which file is to be communicated.
+     * @param variant xmodem/ymodem variant to run.
+     * @param textMode if true file will be transferred as text file (ASCII mode).
+     * @param progressListener ISerialComXmodemProgress for xmodem variants, ISerialComYmodemProgress for 
+     *         ymodem variants or null.
+     * @param transferState abort command object or null.
+     * @param osType operating system on which this application is running.
+     */
+    SerialComXYModemEngine(SerialComManager scm, long handle, SerialComXYModemVariant variant, boolean textMode, 
+            ISerialComFTPProgress progressListener, SerialComFTPCMDAbort transferState, int osType) {
+        this.scm = scm;
+        this.handle = handle;
+        this.variant = variant;
+        this.textMode = textMode;
+        this.progressListener = progressListener;
+        this.transferState = transferState;
+        this.osType = osType;
+        framer = new SerialComFTPBlockFramer(variant.dataSize, variant.checkType, textMode, osType);
+    }
+
+    /**
+     * <p>Selects whether receiving state machines collect data through data listener notifications 
+     * instead of polling serial port.</p>
+     * 
+     * @param enable true to use data listener notifications.
+     */
+    void setEventDrivenReception(boolean enable) {
+        eventDrivenReception = enable;
+    }
+
+    /**
+     * <p>Selects whether binary mode reception keeps a checkpoint journal so that an interrupted 
+     * reception can be resumed.</p>
+     * 
+     * @param enable true to journal reception and resume from last checkpoint if a journal exists.
+     */
+    void setResumableReception(boolean enable) {
+        resumableReception = enable;
+    }
+
+    /**
+     * <p>Sets monitor which is told about data transferred, retries and NAKs, and reports them to 
+     * application at a bounded rate.</p>
+     * 
+     * @param monitor progress monitor or null.
+     */
+    void setProgressMonitor(SerialComFTPProgressMonitor monitor) {
+        this.monitor = monitor;
+    }
+
+    /*
+     * Waits for data from file sender. In polling mode sleeps for waitTime and then reads whatever has 
+     * arrived. In event driven mode returns as soon as byteCount bytes have arrived or waitTime elapses.
+     */
+    private byte[] readBlock(int byteCount, int waitTime) throws SerialComException {
+        if(receiveBuffer != null) {
+            return receiveBuffer.readBytes(byteCount, waitTime);
+        }
+        try {
+            Thread.sleep(waitTime);
+        } catch (InterruptedException e) {
+        }
+        return scm.readBytes(handle, byteCount);
+    }
+
+    /*
+     * Clears data which arrived before receiver started, stale bytes would otherwise be taken as 
+     * beginning of a block.
+     */
+    private void clearReceivedData() throws SerialComException {
+        scm.clearPortIOBuffers(handle, true, false);
+        if(receiveBuffer != null) {
+            receiveBuffer.clear();
+        }
+    }
+
+    /*
+     * Writes a block and tells trace listener, if any, how long it took.
+     */
+    private void writeBlock(byte[] data, int blockNumber) throws SerialComException {
+        ISerialComTraceListener tracer = SerialComTrace.getListener();
+        if(tracer == null) {
+            scm.writeBytes(handle, data, 0);
+            return;
+        }
+        long start = System.nanoTime();
+        scm.writeBytes(handle, data, 0);
+        tracer.onBlockSent(handle, blockNumber, data.length, System.nanoTime() - start);
+    }
+
+    private void traceRetry(int blockNumber) {
+        ISerialComTraceListener tracer = SerialComTrace.getListener();
+        if(tracer != null) {
+            tracer.onBlockRetried(handle, blockNumber);
+        }
+    }
+
+    private void traceNak(int blockNumber) {
+        ISerialComTraceListener tracer = SerialComTrace.getListener();
+        if(tracer != null) {
+            tracer.onBlockNakd(handle, blockNumber);
+        }
+    }
+
+    /*
+     * Gives percentage of file sent after given number of blocks.
+     */
+    private int percentSent(long numberOfBlocksSent, long lengthOfFileToSend) {
+        int percent = 100;
+        if(lengthOfFileToSend != 0) {
+            // if the last block is not full, than percent will go > 100, so trim it.
+            percent = (int) ((variant.dataSize * 100L * numberOfBlocksSent) / lengthOfFileToSend);
+        }
+        if(percent >= 100) {
+            percent = 100;
+        }
+        return percent;
+    }
+
+    /*
+     * Looks for resume request [R][offset in decimal][,][CRC-32 of first offset bytes in decimal][CR] which 
+     * a resuming receiver sends before asking for the first data block. Returns {offset, CRC} or null if 
+     * data does not contain a request.
+     */
+    private static long[] findResumeRequest(byte[] data) {
+        int x = 0;
+        int y = 0;
+        int z = 0;
+        long offset = 0;
+        long crc = 0;
+        for(x=0; x < data.length; x++) {
+            if(data[x] != R) {
+                continue;
+            }
+            offset = 0;
+            for(y = x + 1; (y < data.length) && (y <= (x + 18)) && (data[y] >= '0') && (data[y] <= '9'); y++) {
+                offset = (offset * 10) + (data[y] - '0');
+            }
+            if((y == (x + 1)) || (y >= data.length) || (data[y] != ',')) {
+                continue;
+            }
+            crc = 0;
+            for(z = y + 1; (z < data.length) && (z <= (y + 10)) && (data[z] >= '0') && (data[z] <= '9'); z++) {
+                crc = (crc * 10) + (data[z] - '0');
+            }
+            if((z > (y + 1)) && (z < data.length) && (data[z] == CR)) {
+                return new long[] { offset, crc };
+            }
+        }
+        return null;
+    }
+
+    /*
+     * Positions file being sent at the offset requested by a resuming receiver and replies [ACK][number of 
+     * next block]. Returns that block number, or -1 without replying if offset can not be honoured (text 
+     * mode, not at a block boundary, beyond end of file or first offset bytes of file being sent do not 
+     * have the CRC receiver has on disk); receiver then gets whole file and verifies what it already has.
+     */
+    private int acceptResumeRequest(long offset, long crc, SerialComFTPFileSource inStream) throws IOException {
+        if((textMode == true) || (offset <= 0) || ((offset % variant.dataSize) != 0) || (offset > inStream.length())) {
+            return -1;
+        }
+        // receiver may have a different file or an older version of it with the same name.
+        if(prefixCRC32(inStream, offset) != crc) {
+            inStream.position(0);
+            framer.beginSend(inStream);
+            return -1;
+        }
+        inStream.position(offset);
+        framer.beginSend(inStream);
+        int nextBlockNumber = (int) (((offset / variant.dataSize) + 1) & 0xFF);
+        scm.writeBytes(handle, new byte[] { ACK, (byte) nextBlockNumber }, 0);
+        return nextBlockNumber;
+    }
+
+    /*
+     * CRC-32 of first length bytes of file being sent.
+     */
+    private static long prefixCRC32(SerialComFTPFileSource inStream, long length) throws IOException {
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[8192];
+        long remaining = length;
+        inStream.position(0);
+        while(remaining > 0) {
+            int numRead = inStream.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+            if(numRead <= 0) {
+                break;
+            }
+            crc.update(buffer, 0, numRead);
+            remaining = remaining - numRead;
+        }
+        return crc.getValue();
+    }
+
+    /*
+     * Asks sender to continue from given offset, telling it CRC-32 of the data received till there so that 
+     * sender can refuse if it has a different file. Returns number of the block sender will send next, or -1 
+     * if sender did not accept request; senders other than this engine ignore request. Sender reads offset 
+     * bytes to verify them, so it is given a second plus a second for every 32 MB.
+     */
+    private int requestResume(long offset, long crc) throws IOException {
+        byte[] data = null;
+        byte[] reply = new byte[2];
+        int numReceived = 0;
+        long deadline = System.currentTimeMillis() + 1000 + (offset / (32 * 1024 * 1024)) * 1000;
+
+        scm.writeBytes(handle, ("R" + offset + "," + crc + "\r").getBytes(), 0);
+        while((numReceived < 2) && (System.currentTimeMillis() < deadline)) {
+            data = readBlock(2 - numReceived, 100);
+            if((data != null) && (data.length > 0)) {
+                System.arraycopy(data, 0, reply, numReceived, data.length);
+                numReceived = numReceived + data.length;
+            }
+        }
+        if((numReceived == 2) && (reply[0] == ACK)) {
+            return reply[1] & 0xFF;
+        }
+        return -1;
+    }
+
+    /*
+     * Writes data bytes of a verified block to file, through checkpoint journal if reception is resumable. 
+     * If partially received file turns out to differ from file being sent, sender is told to abort.
+     */
+    private void writeData(SerialComFTPFileSink outStream, SerialComFTPCheckpointJournal journal, byte[] data, 
+            int off, int len) throws IOException {
+        if(journal == null) {
+            outStream.write(data, off, len);
+            return;
+        }
+        if(journal.write(data, off, len) == false) {
+            journal.delete();
+            scm.writeBytes(handle, ABORT_CMD, 0);
+            throw new SerialComException("Partially received file differs from file being sent, it can not be resumed !");
+        }
+    }
+
+    /**
+     * <p>Sends the given file using xmodem variant of this engine.</p>
+     * 
+     * @param fileToSend file to be sent.
+     * @return true on success, false if application instructed to abort.
+     * @throws IOException if any I/O error occurs.
+     */
+    boolean sendFileX(File fileToSend) throws IOException {
+        if(monitor != null) {
+            monitor.begin();
+        }
+        try {
+            return doSendFileX(fileToSend);
+        } finally {
+            if(monitor != null) {
+                monitor.end();
+            }
+        }
+    }
+
+    /*
+     * The xmodem sending state machine.
+     */
+    private boolean doSendFileX(File fileToSend) throws IOException {
+
+        // Finite state machine's states.
+        final int CONNECT   = 0X00;
+        final int BEGINSEND = 0X01;
+        final int WAITACK   = 0X02;
+        final int RESEND    = 0X03;
+        final int SENDNEXT  = 0X04;
+        final int ENDTX     = 0X05;
+        final int ABORT     = 0X06;
+
+        final byte[] block = framer.getBlock();
+        final ISerialComXmodemProgress xprogress = (ISerialComXmodemProgress) progressListener;
+        boolean connectCharReceived = false;
+        boolean eotAckReceptionTimerInitialized = false;
+        boolean lastCharacterReceivedWasCAN = false;
+        boolean noMoreData = false;
+        String errMsg = null;
+        int retryCount = 0;
+        int state = -1;
+        int blockNumber = 0;
+        byte[] data = null;
+        long responseWaitTimeOut = 0;
+        long eotAckWaitTimeOutValue = 0;
+        long numberOfBlocksSent = 0;
+        long resumeOffset = 0;
+        long[] resumeRequest = null;
+        int resumeBlockNumber = -1;
+        int firstBlockNumber = 1;
+
+        long lengthOfFileToSend = fileToSend.length();
+        SerialComFTPFileSource inStream = new SerialComFTPFileSource(fileToSend);
+        framer.beginSend(inStream);
+        if(monitor != null) {
+            monitor.beginFile(fileToSend.getName(), lengthOfFileToSend, 0);
+        }
+
+        state = CONNECT;
+        while(true) {
+            switch(state) {
+            case CONNECT:
+                responseWaitTimeOut = System.currentTimeMillis() + 60000;
+                while(connectCharReceived != true) {
+                    try {
+                        data = scm.readBytes(handle, 1024);
+                    } catch (SerialComException exp) {
+                        inStream.close();
+                        throw exp;
+                    }
+                    if((data != null) && (data.length > 0)) {
+                        // a resuming receiver asks where to continue from before asking for first block.
+                        resumeRequest = findResumeRequest(data);
+                        if((resumeRequest != null) && ((resumeBlockNumber = acceptResumeRequest(resumeRequest[0], resumeRequest[1], inStream)) >= 0)) {
+                            resumeOffset = resumeRequest[0];
+                            firstBlockNumber = resumeBlockNumber;
+                            numberOfBlocksSent = resumeOffset / variant.dataSize;
+                            if(monitor != null) {
+                                monitor.beginFile(fileToSend.getName(), lengthOfFileToSend, resumeOffset);
+                            }
+                        }
+                        /* Instead of purging receive buffer and then waiting for NAK/C, receive all data because
+                         * this approach might be faster. The other side might have opened first time and may 
+                         * have flushed garbage data. So receive buffer may contain garbage + NAK/C character. */
+                        for(int x=0; x < data.length; x++) {
+                            if(data[x] == variant.connectChar) {
+                                connectCharReceived = true;
+                                state = BEGINSEND;
+                                break;
+                            }
+                        }
+                    }else {
+                        try {
+                            Thread.sleep(100); // delay before next attempt to check NAK/C character reception.
+                        } catch (InterruptedException e) {
+                        }
+                        // abort if timed-out while waiting for NAK/C character.
+                        if((connectCharReceived != true) && (System.currentTimeMillis() >= responseWaitTimeOut)) {
+                            errMsg = "Timedout while waiting for file receiver to initiate connection setup !";
+                            state = ABORT;
+                            break;
+                        }
+                    }
+
+                    // check if application (file sender) wish to cancel sending file.
+                    if((transferState != null) && (transferState.isTransferToBeAborted() == true)) {
+                        inStream.close();
+                        scm.writeBytes(handle, ABORT_CMD, 0);
+                        return false;
+                    }
+                }
+                break;
+            case BEGINSEND:
+                blockNumber = firstBlockNumber; // Block numbering starts from 1 for the first block sent, not 0.
+                noMoreData = !framer.assembleBlock(blockNumber);
+
+                // if the file is empty goto ENDTX state.
+                if(noMoreData == true) {
+                    state = ENDTX;
+                    break;
+                }
+
+                try {
+                    writeBlock(block, blockNumber);
+                } catch (SerialComException exp) {
+                    inStream.close();
+                    throw exp;
+                }
+                state = WAITACK;
+                break;
+            case RESEND:
+                if(retryCount > 10) {
+                    errMsg = "Maximum number of retries reached while sending same data block !";
+                    state = ABORT;
+                    break;
+                }
+                if(monitor != null) {
+                    monitor.retried();
+                }
+                traceRetry(blockNumber);
+                try {
+                    writeBlock(block, blockNumber);
+                } catch (SerialComException exp) {
+                    inStream.close();
+                    throw exp;
+                }
+                state = WAITACK;
+                break;
+            case WAITACK:
+                responseWaitTimeOut = System.currentTimeMillis() + 60000; // 1 minute.
+
+                while(true) {
+                    // check if application (file sender) wish to cancel sending file.
+                    if((transferState != null) && (transferState.isTransferToBeAborted() == true)) {
+                        inStream.close();
+                        scm.writeBytes(handle, ABORT_CMD, 0);
+                        return false;
+                    }
+
+                    // delay before next attempt to read from serial port.
+                    try {
+                        if(noMoreData != true) {
+                            Thread.sleep(120);
+                        }else {
+                            Thread.sleep(1500);
+                        }
+                    } catch (InterruptedException e) {
+                    }
+
+                    // try to read data from serial port.
+                    try {
+                        data = scm.readBytes(handle, 1);
+                    } catch (SerialComException exp) {
+                        inStream.close();
+                        throw exp;
+                    }
+
+                    /* if data received process it. if long timeout occurred abort otherwise retry reading from serial port.
+                     * if nothing received at all abort. */
+                    if((data != null) && (data.length > 0)) {
+                        break;
+                    }else {
+                        if(noMoreData == true) {
+                            state = ENDTX;
+                            break;
+                        }
+                        if(System.currentTimeMillis() >= responseWaitTimeOut) {
+                            errMsg = "Timedout while waiting for block reception acknowledgement from file receiver !";
+                            state = ABORT;
+                            break;
+                        }
+                    }
+                }
+
+                if(state == WAITACK) {
+                    if(noMoreData != true) {
+                        if(data[0] == ACK) {
+                            if(lastCharacterReceivedWasCAN == true) {
+                                // <CAN> <ACK> is invalid sequence.
+                                retryCount++;
+                                state = RESEND;
+                                break;
+                            }
+                            state = SENDNEXT;
+                        }else if(data[0] == NAK) {
+                            // indicates both <NAK> only and <CAN> <NAK> sequence reception.
+                            retryCount++;
+                            if(monitor != null) {
+                                monitor.nakd();
+                            }
+                            traceNak(blockNumber);
+                            state = RESEND;
+                        }else if(data[0] == CAN) {
+                            if(lastCharacterReceivedWasCAN == true) {
+                                errMsg = "Received abort command from file receiving end !";
+                                state = ABORT;
+                                break;
+                            }
+                            lastCharacterReceivedWasCAN = true;
+                        }else {
+                            // reply got garbled on line, it may have been ACK or NAK; sending block again is
+                            // safe as receiver acknowledges a duplicate block without storing it again.
+                            retryCount++;
+                            lastCharacterReceivedWasCAN = false;
+                            state = RESEND;
+                        }
+
+                        if((monitor != null) && (state == SENDNEXT)) {
+                            monitor.transferred(variant.dataSize);
+                        }
+
+                        // update GUI that a block has been sent if application has provided a listener
+                        // for this purpose.
+                        if((xprogress != null) && (state == SENDNEXT)) {
+                            numberOfBlocksSent++;
+                            xprogress.onXmodemSentProgressUpdate(numberOfBlocksSent, percentSent(numberOfBlocksSent, lengthOfFileToSend));
+                        }
+                    }else {
+                        // successfully sent file, let's go back home happily.
+                        if(data[0] == ACK) {
+                            inStream.close();
+                            return true;
+                        }else {
+                            if(System.currentTimeMillis() >= eotAckWaitTimeOutValue) {
+                                errMsg = "Timedout while waiting for EOT reception acknowledgement from file receiver !";
+                                state = ABORT;
+                            }else {
+                                state = ENDTX;
+                            }
+                        }
+                    }
+                }
+                break;
+            case SENDNEXT:
+                retryCount = 0; // reset
+                lastCharacterReceivedWasCAN = false; // reset
+                blockNumber++;
+                noMoreData = !framer.assembleBlock(blockNumber);
+
+                // indicates there is no more data to be sent.
+                if(noMoreData == true) {
+                    state = ENDTX;
+                    break;
+                }
+
+                // reaching here means there is data to be sent to receiver.
+                try {
+                    writeBlock(block, blockNumber);
+                } catch (SerialComException exp) {
+                    inStream.close();
+                    throw exp;
+                }
+
+                state = WAITACK;
+                break;
+            case ENDTX:
+                if(eotAckReceptionTimerInitialized != true) {
+                    eotAckWaitTimeOutValue = System.currentTimeMillis() + 60000; // 1 minute
+                    eotAckReceptionTimerInitialized = true;
+                }
+                try {
+                    scm.writeSingleByte(handle, EOT);
+                } catch (SerialComException exp) {
+                    inStream.close();
+                    throw exp;
+                }
+                state = WAITACK;
+                break;
+            case ABORT:
+                /* if any exception occurs, control will not reach here instead exception would 
+                 * have been already thrown. This state is entered explicitly to abort executing 
+                 * actions in state machine. */
+                inStream.close();
+                throw new SerialComTimeOutException(errMsg);
+            default:
+                break;
+            }
+        }
+    }
+
+    /**
+     * <p>Receives a file using xmodem variant of this engine.</p>
+     * 
+     * @param fileToReceive file in which received data will be saved.
+     * @return true on success, false if application instructed to abort.
+     * @throws IOException if any I/O error occurs.
+     */
+    boolean receiveFileX(File fileToReceive) throws IOException {
+        if(monitor != null) {
+            monitor.begin();
+        }
+        try {
+            if(eventDrivenReception == false) {
+                return doReceiveFileX(fileToReceive);
+            }
+            receiveBuffer = new SerialComFTPReceiveBuffer(16384);
+            receiveBuffer.register(scm, handle);
+            try {
+                return doReceiveFileX(fileToReceive);
+            } finally {
+                try {
+                    receiveBuffer.unregister(scm, handle);
+                } catch (SerialComException e) {
+                }
+                receiveBuffer = null;
+            }
+        } finally {
+            if(monitor != null) {
+                monitor.end();
+            }
+        }
+    }
+
+    /*
+     * The xmodem receiving state machine, data is collected through readBlock method.
+     */
+    private boolean doReceiveFileX(File fileToReceive) throws IOException {
+
+        // Finite state machine's states.
+        final int CONNECT     = 0X00;
+        final int RECEIVEDATA = 0X01;
+        final int VERIFY      = 0X02;
+        final int REPLY       = 0X03;
+        final int ABORT       = 0X04;
+
+        final byte[] block = framer.getReceiveBlock();
+        final boolean largeBlockAllowed = (variant.checkType == SerialComFTPBlockFramer.CRC16);
+        final int smallBlockLength = (largeBlockAllowed == true) ? 133 : 132;
+        final ISerialComXmodemProgress xprogress = (ISerialComXmodemProgress) progressListener;
+        int k = 0;
+        int z = 0;
+        int delayVal = variant.receiveDelay;
+        int retryCount = 0;
+        int duplicateBlockRetryCount = 0;
+        int timeoutRetryCount = 0;
+        int state = -1;
+        int blockNumber = 1;
+        int bufferIndex = 0;
+        long connectTimeOut = 0;
+        long nextDataRecvTimeOut = 0;
+        long numberOfBlocksReceived = 0;
+        boolean rxDone = false;
+        boolean firstBlock = false;
+        boolean isCorrupted = false;
+        boolean isDuplicateBlock = false;
+        boolean handlingLargeBlock = false;
+        boolean partialReadInProgress = false;
+        boolean lastCharacterReceivedWasCAN = false;
+        byte[] data = null;
+        String errMsg = null;
+        boolean isFileOpen = true;
+        SerialComFTPCheckpointJournal journal = null;
+        long resumeOffset = 0;
+        int resumeBlockNumber = -1;
+
+        // continue from last checkpoint of an earlier interrupted reception if there is one.
+        if((resumableReception == true) && (textMode == false)) {
+            journal = new SerialComFTPCheckpointJournal(fileToReceive);
+            resumeOffset = journal.load(-1);
+        }
+
+        /* The data bytes are written to file system physically whenever sink's direct buffer gets full and 
+           forced to storage device periodically, so a long transfer interrupted midway is not lost entirely. */
+        SerialComFTPFileSink outStream = new SerialComFTPFileSink(fileToReceive, resumeOffset, SerialComFTPFileSink.FORCEINTERVAL);
+        framer.beginReceive();
+
+        // Clear receive buffer before start.
+        try {
+            clearReceivedData();
+            if(journal != null) {
+                resumeBlockNumber = (resumeOffset > 0) ? requestResume(resumeOffset, journal.getCheckpointCRC()) : -1;
+                if(resumeBlockNumber >= 0) {
+                    blockNumber = resumeBlockNumber;
+                }
+                journal.begin(outStream, resumeOffset, (resumeBlockNumber >= 0));
+            }
+        } catch (IOException exp) {
+            outStream.close();
+            throw exp;
+        }
+
+        if(monitor != null) {
+            monitor.beginFile(fileToReceive.getName(), -1, (resumeBlockNumber >= 0) ? resumeOffset : 0);
+        }
+
+        state = CONNECT; // entry point to state machine.
+        while(true) {
+            switch(state) {
+
+            case CONNECT:
+                if(retryCount >= variant.connectRetries) {
+                    if(variant.fallback != null) {
+                        // fall back to variant which every sender supports (xmodem-128 checksum mode).
+                        outStream.close();
+                        SerialComXYModemEngine engine = new SerialComXYModemEngine(scm, handle, variant.fallback, textMode, 
+                                progressListener, transferState, osType);
+                        engine.receiveBuffer = receiveBuffer;
+                        engine.resumableReception = resumableReception;
+                        return engine.doReceiveFileX(fileToReceive);
+                    }
+                    errMsg = "Timedout while trying to connect to file sender !";
+                    state = ABORT;
+                    break;
+                }
+                try {
+                    scm.writeSingleByte(handle, variant.connectChar);
+                    firstBlock = true;
+                    connectTimeOut = System.currentTimeMillis() + variant.connectTimeOut;
+                    state = RECEIVEDATA;
+                } catch (SerialComException exp) {
+                    outStream.close();
+                    throw exp;
+                }
+                break;
+
+            case RECEIVEDATA:
+                // when the receiver is waiting for next block of data following conditions might occur :
+                // case 1: sender sent data block only (132, 133 or 1029 length block).
+                // case 2: sender sent abort command only (consecutive CAN characters or may have back 
+                //         space totaling 2 to 16 characters).
+                // case 3: sender sent data block followed immediately by abort command (block + 2 to 16 total).
+                while(true) {
+                    // check if application (file receiver) wish to cancel receiving file.
+                    if((transferState != null) && (transferState.isTransferToBeAborted() == true)) {
+                        outStream.close();
+                        scm.writeBytes(handle, ABORT_CMD, 0);
+                        return false;
+                    }
+
+                    // let the data arrive from other end, also minimize JNI transitions.
+                    try {
+                        data = readBlock(framer.getBlockLength(), delayVal);
+                    } catch (SerialComException exp) {
+                        outStream.close();
+                        throw exp;
+                    }
+
+                    if((data != null) && (data.length > 0)) {
+                        firstBlock = false;
+                        timeoutRetryCount = 0;
+                        nextDataRecvTimeOut = System.currentTimeMillis() + 1000;
+
+                        if(data[0] == CAN) {
+                            if(lastCharacterReceivedWasCAN == true) {
+                                // (case 2) received 2nd consecutive CAN means sender wish to abort file transfer.
+                                try {
+                                    scm.writeSingleByte(handle, ACK);
+                                } catch (Exception e) {
+                                }
+                                errMsg = "Abort command received from file sending application !";
+                                state = ABORT;
+                                break;
+                            }
+                            if(data.length >= 2) {
+                                if(data[1] == CAN) {
+                                    // (case 2) received 2 consecutive CAN means sender wish to abort file transfer.
+                                    try {
+                                        scm.writeSingleByte(handle, ACK);
+                                    } catch (Exception e) {
+                                    }
+                                    errMsg = "Abort command received from file sending application !";
+                                    state = ABORT;
+                                    break;
+                                }else {
+                                    // this is not valid block as 1st character is CAN instead of SOH/STX.
+                                    // probably it is noise, so send NAK.
+                                    isCorrupted = true;
+                                    state = REPLY;
+                                    break;
+                                }
+                            }else {
+                                // this is 1st CAN character, wait to check next character; whether it is CAN or not.
+                                lastCharacterReceivedWasCAN = true;
+                            }
+                        }else if((data[0] == EOT) && (partialReadInProgress == false)) {
+                            if(lastCharacterReceivedWasCAN == true) {
+                                // EOT after CAN was not expected, probably line has noise; abort transfer.
+                                errMsg = "Invalid data sequence (<CAN> <EOT>) received from file sender !";
+                                state = ABORT;
+                                break;
+                            }
+
+                            // indicates that sender has sent the complete file.
+                            isCorrupted = false;
+                            rxDone = true;
+                            state = REPLY;
+                            break;
+                        }else {
+                            if((largeBlockAllowed == true) && (((partialReadInProgress == false) && (data[0] == STX)) || (handlingLargeBlock == true))) {
+                                k = 1029;
+                                /* At the beginning of block data[0] will be either STX or SOH but 
+                                 * when receiving partial data data[0] will not be STX/SOH. The 
+                                 * handlingLargeBlock check tells whether we are receiving small or 
+                                 * 1029 size block. */
+                                handlingLargeBlock = true;
+                            }else {
+                                k = smallBlockLength;
+                                handlingLargeBlock = false;
+                            }
+
+                            if(lastCharacterReceivedWasCAN == true) {
+                                // Probably line has noise; abort transfer.
+                                errMsg = "Invalid data sequence (<CAN> <" + data[0] + ">) received from file sender !";
+                                state = ABORT;
+                                break;
+                            }
+
+                            if((partialReadInProgress == false) && (data.length == k)) {
+                                // complete block read in one go.
+                                System.arraycopy(data, 0, block, 0, k);
+                                state = VERIFY;
+                                break;
+                            }else {
+                                // partial block read.
+                                partialReadInProgress = true;
+                                for(z=0; z < data.length; z++) {
+                                    if(bufferIndex >= k) {
+                                        // this indicates either file sender has sent abort command immediately
+                                        // after sending data block or line has noise; extraneous characters.
+                                        if((data.length - z) >= 2) {
+                                            // check if we received 2 consecutive CAN characters, if yes then abort.
+                                            if((data[z] == CAN) && (data[z+1] == CAN)) {
+                                                errMsg = "Abort command received from file sender !";
+                                                state = ABORT;
+                                                break;
+                                            }
+                                        }else {
+                                            // there is only 1 byte which may be CAN or unwanted noise character.
+                                            if(data[z] == CAN) {
+                                                // this is 1st CAN character, wait to check next character;
+                                                // whether it is CAN or not. this will be processed in next
+                                                // iteration of state machine loop.
+                                                lastCharacterReceivedWasCAN = true;
+                                            }
+                                        }
+                                        // extraneous characters, line has noise. go to verification state as we 
+                                        // have received full data block thereby discarding extraneous characters.
+                                        break;
+                                    }
+                                    block[bufferIndex] = data[z];
+                                    bufferIndex++;
+                                }
+                                if(state == ABORT) {
+                                    break;
+                                }
+                                if(bufferIndex >= k) {
+                                    delayVal = variant.receiveDelay; // reset
+                                    bufferIndex = 0; // reset
+                                    partialReadInProgress = false; // reset
+                                    state = VERIFY;
+                                    break;
+                                }else {
+                                    // next remaining data bytes should arrive early, 
+                                    // go back to read more data from port.
+                                    delayVal = 80;
+                                    continue;
+                                }
+                            }
+                        }
+                    }else {
+                        if(firstBlock == false) {
+                            // reaching here means that we are waiting for receiving next block from file sender.
+                            if(System.currentTimeMillis() > nextDataRecvTimeOut) {
+                                timeoutRetryCount++;
+                                if(timeoutRetryCount > 10) {
+                                    errMsg = "Timedout while trying to receive next data byte from file sender !";
+                                    state = ABORT;
+                                    break;
+                                }
+                                // part of block or our reply to previous block got lost on line, discard 
+                                // partial block and ask sender to send it again.
+                                delayVal = variant.receiveDelay;
+                                bufferIndex = 0;
+                                partialReadInProgress = false;
+                                lastCharacterReceivedWasCAN = false;
+                                isCorrupted = true;
+                                state = REPLY;
+                                break;
+                            }
+                        }else {
+                            // reaching here means that we are still waiting for 1st block from file sender.
+                            if(System.currentTimeMillis() > connectTimeOut) {
+                                retryCount++;
+                                state = CONNECT;
+                                break;
+                            }
+                        }
+                    }
+                }
+                break;
+
+            case VERIFY:
+                isCorrupted = false;      // reset
+                isDuplicateBlock = false; // reset
+                state = REPLY;
+                k = (handlingLargeBlock == true) ? 1024 : 128;
+
+                // verify block start.
+                if(block[0] != ((handlingLargeBlock == true) ? STX : SOH)) {
+                    isCorrupted = true;
+                    break;
+                }
+                // check duplicate block.
+                if(block[1] == (byte)(blockNumber - 1)) {
+                    isDuplicateBlock = true;
+                    duplicateBlockRetryCount++;
+                    if(monitor != null) {
+                        monitor.retried();
+                    }
+                    traceRetry(blockNumber);
+                    if(duplicateBlockRetryCount > 10) {
+                        errMsg = "Maximum number of retries reached while receiving same data block !";
+                        state = ABORT;
+                    }
+                    break;
+                }
+                // verify block number sequence and block number.
+                if((block[1] != (byte) blockNumber) || (block[2] != (byte) ~blockNumber)) {
+                    isCorrupted = true;
+                    break;
+                }
+                // verify checksum/CRC value.
+                if(framer.verifyCheck(block, k) == false) {
+                    isCorrupted = true;
+                }
+                break;
+
+            case REPLY:
+                k = (handlingLargeBlock == true) ? 1024 : 128;
+                try {
+                    if(rxDone == false) {
+                        if(isCorrupted == false) {
+                            scm.writeSingleByte(handle, ACK);
+                            if(isDuplicateBlock == false) {
+                                // Send ACK 1st, so that till the time ACK reaches other end, other end prepares
+                                // and send next block and it reaches to us, we perform IO operation (parse and
+                                // write received data bytes to file physically).
+                                if(textMode == true) {
+                                    // for ASCII mode, parse and then flush.
+                                    framer.processAndWrite(block, k, outStream);
+                                }else {
+                                    // for binary mode, just flush data as is to file physically.
+                                    writeData(outStream, journal, block, 3, k);
+                                }
+
+                                if(monitor != null) {
+                                    monitor.transferred(k);
+                                }
+
+                                // update GUI that a block has been received if application has provided 
+                                // a listener for this purpose.
+                                if(xprogress != null) {
+                                    numberOfBlocksReceived++;
+                                    xprogress.onXmodemReceiveProgressUpdate(numberOfBlocksReceived);
+                                }
+
+                                blockNumber++;
+                                if(blockNumber > 0xFF) {
+                                    blockNumber = 0x00;
+                                }
+                                duplicateBlockRetryCount = 0; // reset
+                            }
+                        }else {
+                            scm.writeSingleByte(handle, NAK);
+                            if(monitor != null) {
+                                monitor.nakd();
+                            }
+                            traceNak(blockNumber);
+                        }
+                        handlingLargeBlock = false; // reset
+                        state = RECEIVEDATA;
+                    }else {
+                        // file reception successfully finished, let us go back home.
+                        // sender might send EOT more than 1 time for any reason, so release resources only once.
+                        scm.writeSingleByte(handle, ACK);
+                        if(isFileOpen == true) {
+                            outStream.flush();
+                            outStream.close();
+                            isFileOpen = false;
+                            if(journal != null) {
+                                journal.delete();
+                            }
+                        }
+                        return true;
+                    }
+                } catch (IOException exp) {
+                    outStream.close();
+                    throw exp;
+                }
+                nextDataRecvTimeOut = System.currentTimeMillis() + 1000; // update timeout for next byte 1 second.
+                break;
+
+            case ABORT:
+                /* if an IOexception occurs, control will not reach here instead exception would have been
+                 * thrown already. */
+                outStream.close();
+                throw new SerialComTimeOutException(errMsg);
+
+            default:
+                break;
+            }
+        }
+    }
+
+    /**
+     * <p>Sends the given files using ymodem variant of this engine.</p>
+     * 
+     * @param filesToSend files to be sent.
+     * @return true on success, false if application instructed to abort.
+     * @throws IOException if any I/O error occurs.
+     */
+    boolean sendFileY(File[] filesToSend) throws IOException {
+        if(monitor != null) {
+            monitor.begin();
+        }
+        try {
+            return doSendFileY(filesToSend);
+        } finally {
+            if(monitor != null) {
+                monitor.end();
+            }
+        }
+    }
+
+    /*
+     * The ymodem sending state machine.
+     */
+    private boolean doSendFileY(File[] filesToSend) throws IOException {
+
+        // Finite state machine's states.
+        final int CONNECT    = 0x01;
+        final int BLOCK0SEND = 0x02;
+        final int BEGINSEND  = 0x03;
+        final int WAITACK    = 0x04;
+        final int RESEND     = 0x05;
+        final int SENDNEXT   = 0x06;
+        final int ENDTX      = 0x07;
+        final int ABORT      = 0x08;
+        final int FINISHTX   = 0x09;
+
+        final byte[] block = framer.getBlock();
+        final ISerialComYmodemProgress yprogress = (ISerialComYmodemProgress) progressListener;
+        byte[] block0 = null;
+        byte[] finalBlock = null;
+        boolean cReceived = false;
+        boolean eotAckReceptionTimerInitialized = false;
+        boolean needToSendBlock0 = true;
+        boolean waitForBlock0ACK = true;
+        boolean waitForFinalBlockACK = false;
+        boolean lastCharacterReceivedWasCAN = false;
+        boolean noMoreData = false;
+        String errMsg = null;
+        int retryCount = 0;
+        int state = -1;
+        int blockNumber = 0;
+        byte[] data = null;
+        long responseWaitTimeOut = 0;
+        long eotAckWaitTimeOutValue = 0;
+        boolean finAckReceptionTimerInitialized = false;
+        long finAckWaitTimeOutValue = 0;
+        boolean showSentProgress = false;
+        long numberOfBlocksSent = 0;
+        long resumeOffset = 0;
+        long[] resumeRequest = null;
+        int resumeBlockNumber = -1;
+        int firstBlockNumber = 1;
+        int currentlyProcessingFilenumber = 0;
+
+        String currentlySendingFileName = filesToSend[currentlyProcessingFilenumber].getName();
+        long lengthOfFileToSend = filesToSend[currentlyProcessingFilenumber].length();
+        SerialComFTPFileSource inStream = new SerialComFTPFileSource(filesToSend[currentlyProcessingFilenumber]);
+        framer.beginSend(inStream);
+
+        state = CONNECT;
+        while(true) {
+            switch(state) {
+
+            case CONNECT:
+                cReceived = false;
+                responseWaitTimeOut = System.currentTimeMillis() + 60000;
+                while(cReceived != true) {
+                    try {
+                        data = scm.readBytes(handle, 1024);
+                    } catch (SerialComException exp) {
+                        inStream.close();
+                        throw exp;
+                    }
+                    if((data != null) && (data.length > 0)) {
+                        // a resuming receiver asks where to continue from after acknowledging block 0.
+                        if(needToSendBlock0 == false) {
+                            resumeRequest = findResumeRequest(data);
+                            if((resumeRequest != null) && ((resumeBlockNumber = acceptResumeRequest(resumeRequest[0], resumeRequest[1], inStream)) >= 0)) {
+                                resumeOffset = resumeRequest[0];
+                                firstBlockNumber = resumeBlockNumber;
+                                numberOfBlocksSent = resumeOffset / variant.dataSize;
+                                if(monitor != null) {
+                                    monitor.beginFile(currentlySendingFileName, lengthOfFileToSend, resumeOffset);
+                                }
+                            }
+                        }
+                        /* Instead of purging receive buffer and then waiting for C, receive all data because
+                         * this approach might be faster. The other side might have opened first time and may 
+                         * have flushed garbage data. So receive buffer may contain garbage + C character. */
+                        for(int x=0; x < data.length; x++) {
+                            if(data[x] == C) {
+                                cReceived = true;
+                                if(needToSendBlock0 == true) {
+                                    state = BLOCK0SEND;
+                                }else {
+                                    state = BEGINSEND;
+                                }
+                                break;
+                            }
+                        }
+                    }else {
+                        try {
+                            Thread.sleep(100); // delay before next attempt to check C character reception.
+                        } catch (InterruptedException e) {
+                        }
+                        // abort if timed-out while waiting for C character.
+                        if((cReceived != true) && (System.currentTimeMillis() >= responseWaitTimeOut)) {
+                            errMsg = "Timedout while waiting for file receiver to initiate connection setup !";
+                            state = ABORT;
+                            break;
+                        }
+                    }
+
+                    // check if application (file sender) wish to cancel sending file.
+                    if((transferState != null) && (transferState.isTransferToBeAborted() == true)) {
+                        inStream.close();
+                        scm.writeBytes(handle, ABORT_CMD, 0);
+                        return false;
+                    }
+                }
+                break;
+
+            case BLOCK0SEND:
+                if(retryCount > 10) {
+                    errMsg = "Maximum number of retries reached while sending block 0 to receiver end !";
+                    state = ABORT;
+                    break;
+                }
+                currentlySendingFileName = filesToSend[currentlyProcessingFilenumber].getName();
+                block0 = framer.assembleBlock0(filesToSend[currentlyProcessingFilenumber]);
+                if(monitor != null) {
+                    monitor.beginFile(currentlySendingFileName, lengthOfFileToSend, 0);
+                }
+                try {
+                    writeBlock(block0, 0);
+                } catch (SerialComException exp) {
+                    inStream.close();
+                    throw exp;
+                }
+                needToSendBlock0 = false;
+                waitForBlock0ACK = true;
+                showSentProgress = false;
+                state = WAITACK;
+                break;
+
+            case BEGINSEND:
+                block0 = null;   // free memory
+                blockNumber = firstBlockNumber; // Block numbering starts from 1 for the first data block sent.
+                noMoreData = !framer.assembleBlock(blockNumber);
+
+                // if the file is empty goto ENDTX state.
+                if(noMoreData == true) {
+                    state = ENDTX;
+                    break;
+                }
+
+                try {
+                    writeBlock(block, blockNumber);
+                } catch (SerialComException exp) {
+                    inStream.close();
+                    throw exp;
+                }
+                showSentProgress = true;
+                state = WAITACK;
+                break;
+
+            case RESEND:
+                if(retryCount > 10) {
+                    errMsg = "Maximum number of retries reached while sending same data block !";
+                    state = ABORT;
+                    break;
+                }
+                if(monitor != null) {
+                    monitor.retried();
+                }
+                traceRetry(blockNumber);
+                try {
+                    writeBlock(block, blockNumber);
+                } catch (SerialComException exp) {
+                    inStream.close();
+                    throw exp;
+                }
+                showSentProgress = true;
+                state = WAITACK;
+                break;
+
+            case WAITACK:
+                responseWaitTimeOut = System.currentTimeMillis() + 60000; // 1 minute.
+
+                while(true) {
+                    // check if application (file sender) wish to cancel sending file.
+                    if((transferState != null) && (transferState.isTransferToBeAborted() == true)) {
+                        inStream.close();
+                        scm.writeBytes(handle, ABORT_CMD, 0);
+                        return false;
+                    }
+
+                    // delay before next attempt to read from serial port
+                    try {
+                        if(noMoreData != true) {
+                            Thread.sleep(120);
+                        }else {
+                            // give sufficient time to remote end to close file resources and be able to 
+                            // acknowledge us happily.
+                            Thread.sleep(250);
+                        }
+                    } catch (InterruptedException e) {
+                    }
+
+                    // try to read data from serial port
+                    try {
+                        data = scm.readBytes(handle, 1);
+                    } catch (SerialComException exp) {
+                        inStream.close();
+                        throw exp;
+                    }
+
+                    /* if data received process it. if long timeout occurred abort otherwise retry reading from serial port.
+                     * if nothing received at all abort. */
+                    if((data != null) && (data.length > 0)) {
+                        break;
+                    }else {
+                        if(noMoreData == true) {
+                            if(waitForFinalBlockACK == true) {
+                                state = FINISHTX;
+                            }else {
+                                state = ENDTX;
+                            }
+                            break;
+                        }
+                        if(System.currentTimeMillis() >= responseWaitTimeOut) {
+                            if(waitForBlock0ACK == true) {
+                                errMsg = "Timedout while waiting for block0 reception acknowledgement from file receiver !";
+                            }else {
+                                errMsg = "Timedout while waiting for block reception acknowledgement from file receiver !";
+                            }
+                            state = ABORT;
+                            break;
+                        }
+                    }
+                }
+
+                if(state == WAITACK) {
+                    if(noMoreData != true) {
+                        if(data[0] == ACK) {
+                            if(lastCharacterReceivedWasCAN == true) {
+                                // <CAN> <ACK> is invalid sequence.
+                                retryCount++;
+                                state = (waitForBlock0ACK != true) ? RESEND : BLOCK0SEND;
+                                lastCharacterReceivedWasCAN = false;
+                                break;
+                            }
+                            if(waitForBlock0ACK != true) {
+                                state = SENDNEXT;
+                            }else {
+                                state = CONNECT;
+                                waitForBlock0ACK = false;
+                                retryCount = 0;
+                            }
+                        }else if(data[0] == NAK) {
+                            // indicates both <NAK> only and <CAN> <NAK> sequence reception.
+                            retryCount++;
+                            if(monitor != null) {
+                                monitor.nakd();
+                            }
+                            traceNak(blockNumber);
+                            state = (waitForBlock0ACK != true) ? RESEND : BLOCK0SEND;
+                            lastCharacterReceivedWasCAN = false;
+                        }else if(data[0] == CAN) {
+                            if(lastCharacterReceivedWasCAN == true) {
+                                errMsg = "Received abort command from file receiving end !";
+                                state = ABORT;
+                                break;
+                            }
+                            lastCharacterReceivedWasCAN = true;
+                        }else if((data[0] == C) && (waitForBlock0ACK == true)) {
+                            // receiver did not get block 0 and is asking again.
+                            retryCount++;
+                            state = BLOCK0SEND;
+                        }else {
+                            // reply got garbled on line, it may have been ACK or NAK; sending block again is
+                            // safe as receiver acknowledges a duplicate block without storing it again.
+                            retryCount++;
+                            lastCharacterReceivedWasCAN = false;
+                            state = (waitForBlock0ACK != true) ? RESEND : BLOCK0SEND;
+                        }
+
+                        if((showSentProgress == true) && (state == SENDNEXT) && (monitor != null)) {
+                            monitor.transferred(variant.dataSize);
+                        }
+
+                        // update GUI that a block has been sent if application has provided a listener
+                        // for this purpose.
+                        if((showSentProgress == true) && (state == SENDNEXT) && (yprogress != null)) {
+                            numberOfBlocksSent++;
+                            yprogress.onYmodemSentProgressUpdate(currentlySendingFileName, numberOfBlocksSent, 
+                                    percentSent(numberOfBlocksSent, lengthOfFileToSend));
+                        }
+                    }else {
+                        // if there is no more data to be sent, we are looking for ACK after sending EOT.
+                        if(data[0] == ACK) {
+                            if(waitForFinalBlockACK == true) {
+                                // successfully sent all files, let's go back home happily.
+                                return true;
+                            }else {
+                                inStream.close();
+                                currentlyProcessingFilenumber++;
+
+                                if(currentlyProcessingFilenumber >= filesToSend.length) {
+                                    state = FINISHTX;
+                                    break;
+                                }
+
+                                // send next file, reset all stuff
+                                lengthOfFileToSend = filesToSend[currentlyProcessingFilenumber].length();
+                                inStream = new SerialComFTPFileSource(filesToSend[currentlyProcessingFilenumber]);
+                                framer.beginSend(inStream);
+                                firstBlockNumber = 1;
+                                cReceived = false;
+                                eotAckReceptionTimerInitialized = false;
+                                retryCount = 0;
+                                responseWaitTimeOut = 0;
+                                eotAckWaitTimeOutValue = 0;
+                                needToSendBlock0 = true;
+                                noMoreData = false;
+                                lastCharacterReceivedWasCAN = false;
+                                state = CONNECT;
+                            }
+                            break;
+                        }else if(data[0] == CAN) {
+                            // receiver might have sent us abort command while we were sending EOT to it.
+                            errMsg = "Received abort command from file receiving end !";
+                            state = ABORT;
+                            break;
+                        }else {
+                            if(waitForFinalBlockACK != true) {
+                                if(System.currentTimeMillis() >= eotAckWaitTimeOutValue) {
+                                    errMsg = "Timedout while waiting for EOT reception acknowledgement !";
+                                    state = ABORT;
+                                }else {
+                                    // re-send EOT (try more times), this also handles the NAK received case.
+                                    state = ENDTX;
+                                }
+                            }else {
+                                if(System.currentTimeMillis() >= finAckWaitTimeOutValue) {
+                                    errMsg = "Timedout while waiting for final ymodem null block reception acknowledgement !";
+                                    state = ABORT;
+                                }else {
+                                    // re-send ymodem final null block (try more times), this also handles the NAK received case.
+                                    state = FINISHTX;
+                                }
+                            }
+                        }
+                    }
+                }
+                break;
+
+            case SENDNEXT:
+                retryCount = 0; // reset
+                blockNumber++;
+                noMoreData = !framer.assembleBlock(blockNumber);
+
+                // indicates there is no more data to be sent.
+                if(noMoreData == true) {
+                    state = ENDTX;
+                    break;
+                }
+
+                // reaching here means there is data to be sent to receiver.
+                try {
+                    writeBlock(block, blockNumber);
+                } catch (SerialComException exp) {
+                    inStream.close();
+                    throw exp;
+                }
+                showSentProgress = true;
+                state = WAITACK;
+                break;
+
+            case ENDTX:
+                if(eotAckReceptionTimerInitialized != true) {
+                    eotAckWaitTimeOutValue = System.currentTimeMillis() + 60000; // 1 minute
+                    eotAckReceptionTimerInitialized = true;
+                }
+                try {
+                    scm.writeSingleByte(handle, EOT);
+                } catch (SerialComException exp) {
+                    inStream.close();
+                    throw exp;
+                }
+                numberOfBlocksSent = 0; // reset
+                showSentProgress = false;
+                state = WAITACK;
+                break;
+
+            case FINISHTX:
+                if(finAckReceptionTimerInitialized != true) {
+                    finAckWaitTimeOutValue = System.currentTimeMillis() + 60000; // 1 minute
+                    finAckReceptionTimerInitialized = true;
+                    finalBlock = framer.assembleFinalBlock();
+                }
+                try {
+                    scm.writeBytes(handle, finalBlock, 0);
+                } catch (SerialComException exp) {
+                    inStream.close();
+                    throw exp;
+                }
+                waitForFinalBlockACK = true;
+                noMoreData = true;
+                showSentProgress = false;
+                state = WAITACK;
+                break;
+
+            case ABORT:
+                /* if any exception occurs, control will not reach here instead exception would 
+                 * have been already thrown. This state is entered explicitly to abort executing 
+                 * actions in state machine. */
+                inStream.close();
+                throw new SerialComTimeOutException(errMsg);
+
+            default:
+                break;
+            }
+        }
+    }
+
+    /**
+     * <p>Receives files using ymodem variant of this engine.</p>
+     * 
+     * @param filesToReceive directory in which received files will be saved.
+     * @return true on success, false if application instructed to abort.
+     * @throws IOException if any I/O error occurs.
+     */
+    boolean receiveFileY(File filesToReceive) throws IOException {
+        if(monitor != null) {
+            monitor.begin();
+        }
+        try {
+            if(eventDrivenReception == false) {
+                return doReceiveFileY(filesToReceive);
+            }
+            receiveBuffer = new SerialComFTPReceiveBuffer(16384);
+            receiveBuffer.register(scm, handle);
+            try {
+                return doReceiveFileY(filesToReceive);
+            } finally {
+                try {
+                    receiveBuffer.unregister(scm, handle);
+                } catch (SerialComException e) {
+                }
+                receiveBuffer = null;
+            }
+        } finally {
+            if(monitor != null) {
+                monitor.end();
+            }
+        }
+    }
+
+    /*
+     * The ymodem receiving state machine, data is collected through readBlock method.
+     */
+    private boolean doReceiveFileY(File filesToReceive) throws IOException {
+
+        // Finite state machine's states.
+        final int CONNECT       = 0x01;
+        final int BLOCK0RCV     = 0x02;
+        final int PBLOCK0       = 0x03;
+        final int BEGINRCV      = 0x04;
+        final int DATABLOCKRCV  = 0x05;
+        final int VERIFY        = 0x06;
+        final int REPLY         = 0x07;
+        final int ABORT         = 0x08;
+
+        final byte[] block = framer.getReceiveBlock();
+        final byte[] block133 = new byte[133];
+        final ISerialComYmodemProgress yprogress = (ISerialComYmodemProgress) progressListener;
+        int i = 0;
+        int x = 0;
+        int crcl = 0;
+        int state = -1;
+        int blockNumber = 1;
+        int block0Index = 0;
+        int dataBlockIndex = 0;
+        byte[] data = null;
+        byte[] block0 = null;
+        String errMsg = null;
+        int spaceLeftInBlock0 = 0;
+        int spaceLeftInDataBlock = 0;
+        long currentlyProcessingFileLength = 0;
+        long currentlyProcessingFileModifyInfo = 0;
+        boolean isFileOpen = false;
+        SerialComFTPFileSink outStream = null;
+        SerialComFTPCheckpointJournal journal = null;
+        long resumeOffset = 0;
+        int resumeBlockNumber = -1;
+        String nameOfFileBeingReceived = null;
+        final String receiverDirAbsolutePath = filesToReceive.getAbsolutePath();
+        boolean isCorrupted = false;
+        boolean isDuplicateBlock = false;
+        int duplicateBlockRetryCount = 0;
+        int timeoutRetryCount = 0;
+        long totalNumberOfDataBytesReadTillNow = 0;
+        long numberOfBlocksReceived = 0;
+        int percentOfBlocksReceived = 0;
+
+        // Clear receive buffer before start. Ymodem is fully receiver driven by design.
+        clearReceivedData();
+
+        state = CONNECT; // entry point to state machine.
+        while(true) {
+            switch(state) {
+
+            case CONNECT:
+
+                // reset some globals
+                blockNumber = 1;
+                journal = null;
+                resumeOffset = 0;
+                numberOfBlocksReceived = 0;
+                totalNumberOfDataBytesReadTillNow = 0;
+                framer.beginReceive();
+
+                for(x=0; x < variant.connectRetries; x++) {
+                    scm.writeSingleByte(handle, C);
+                    data = readBlock(133, variant.receiveDelay);
+                    if((data != null) && (data.length > 0)) {
+                        if(data[0] == EOT) {
+                            // sender sent EOT again because he missed (noise) our acknowledgement of EOT previously sent.
+                            scm.writeSingleByte(handle, ACK);
+                            continue;
+                        }
+                        break;
+                    }
+                    if((transferState != null) && (transferState.isTransferToBeAborted() == true)) {
+                        scm.writeBytes(handle, ABORT_CMD, 0);
+                        return false;
+                    }
+                }
+                if(x >= variant.connectRetries) {
+                    throw new SerialComTimeOutException("Timed out while connecting with file sender !");
+                }
+                state = BLOCK0RCV;
+                break;
+
+            case BLOCK0RCV:
+
+                for(x=0; x < 3; x++) {
+                    if((data != null) && (data.length > 0)) {
+                        if(data[0] == SOH) {
+                            block0 = block133;
+                            spaceLeftInBlock0 = 133;
+                            crcl = 131;
+                            break;
+                        }else if(data[0] == STX) {
+                            block0 = block;
+                            spaceLeftInBlock0 = 1029;
+                            crcl = 1027;
+                            break;
+                        }else {
+                        }
+                    }
+                    // the sender might forget to flush his serial port buffers and therefore initial
+                    // data may be garbage + block0.
+                    scm.writeSingleByte(handle, NAK);
+                    data = readBlock(133, variant.receiveDelay);
+                }
+                if(x >= 3) {
+                    throw new SerialComTimeOutException("Timed out while waiting for block 0 from file sender !");
+                }
+
+                x = (data.length < spaceLeftInBlock0) ? data.length : spaceLeftInBlock0;
+                System.arraycopy(data, 0, block0, 0, x);
+                spaceLeftInBlock0 = spaceLeftInBlock0 - x;
+
+                i = 0;
+                if(spaceLeftInBlock0 > 0) {
+                    block0Index = block0.length - spaceLeftInBlock0;
+                    for(i = 0; i < 20; i++) {
+                        // check if application (file receiver) wish to cancel receiving file.
+                        if((transferState != null) && (transferState.isTransferToBeAborted() == true)) {
+                            scm.writeBytes(handle, ABORT_CMD, 0);
+                            return false;
+                        }
+                        // let the data arrive from other end, also minimize JNI transitions.
+                        data = readBlock(spaceLeftInBlock0, 100);
+                        if((data != null) && (data.length > 0)) {
+                            System.arraycopy(data, 0, block0, block0Index, data.length);
+                            block0Index = block0Index + data.length;
+                            spaceLeftInBlock0 = spaceLeftInBlock0 - data.length;
+                        }
+                        if(spaceLeftInBlock0 <= 0) {
+                            break;
+                        }
+                    }
+                }
+                if(i >= 20) {
+                    throw new SerialComTimeOutException("Timed out while receiving block 0 from file sender !");
+                }
+                state = PBLOCK0;
+                break;
+
+            case PBLOCK0:
+
+                if((block0[1] != (byte)0x00) || (block0[2] != (byte)0xFF)) {
+                    throw new SerialComException("Invalid information block 0 received !");
+                }
+
+                if(framer.verifyCheck(block0, crcl - 3) == false) {
+                    throw new SerialComException("Invalid CRC (corrupted block 0 or final block received) !");
+                }
+
+                // While we were expecting block 0 file information block, sender might indicate end of session 
+                // as there are no more files to be sent, so check it.
+                if(block0[3] == (byte)0x00) {
+                    // All files have been received, let's go back home happily.
+                    scm.writeSingleByte(handle, ACK);
+                    return true;
+                }
+
+                // file name:
+                // The data bytes are written to file system physically whenever sink's direct 
+                // buffer gets full and forced to storage device periodically.
+                for(x=3; x < block0.length; x++) {
+                    if(block0[x] == '\0') {
+                        break;
+                    }
+                }
+                nameOfFileBeingReceived = new String(block0, 3, x-3);
+                File namefile = new File(receiverDirAbsolutePath, nameOfFileBeingReceived);
+                if(!namefile.exists()) {
+                    namefile.createNewFile();
+                }
+
+                // file length (number of data bytes):
+                x++;
+                for(i=x; i < block0.length; i++) {
+                    if((block0[i] == SPACE) || (block0[i] == 0)) {
+                        break;
+                    }
+                }
+                currentlyProcessingFileLength = (i > x) ? Long.parseLong(new String(block0, x, i - x)) : 0;
+
+                // file modification info:
+                if((i < block0.length) && (block0[i] == SPACE)) {
+                    i++;
+                    for(x=i; x < block0.length; x++) {
+                        if((block0[x] == SPACE) || (block0[x] == 0)) {
+                            break;
+                        }
+                    }
+                    currentlyProcessingFileModifyInfo = (x > i) ? Long.parseLong(new String(block0, i, x - i), 8) : 0;
+                    if(currentlyProcessingFileModifyInfo != 0) {
+                        namefile.setLastModified(currentlyProcessingFileModifyInfo);
+                    }
+                }
+
+                // file mode is not used; our translation decision is based on text or binary mode.
+
+                // continue from last checkpoint of an earlier interrupted reception if there is one.
+                if((resumableReception == true) && (textMode == false)) {
+                    journal = new SerialComFTPCheckpointJournal(namefile);
+                    resumeOffset = journal.load(currentlyProcessingFileLength);
+                }
+                try {
+                    outStream = new SerialComFTPFileSink(namefile, resumeOffset, SerialComFTPFileSink.FORCEINTERVAL);
+                } catch (FileNotFoundException e) {
+                    throw e;
+                }
+                isFileOpen = true;
+
+                scm.writeSingleByte(handle, ACK);
+                if(journal != null) {
+                    resumeBlockNumber = (resumeOffset > 0) ? requestResume(resumeOffset, journal.getCheckpointCRC()) : -1;
+                    if(resumeBlockNumber >= 0) {
+                        blockNumber = resumeBlockNumber;
+                        totalNumberOfDataBytesReadTillNow = resumeOffset;
+                    }
+                    journal.begin(outStream, resumeOffset, (resumeBlockNumber >= 0));
+                }
+                if(monitor != null) {
+                    monitor.beginFile(nameOfFileBeingReceived, (currentlyProcessingFileLength > 0) ? currentlyProcessingFileLength : -1, 
+                            totalNumberOfDataBytesReadTillNow);
+                }
+                state = BEGINRCV;
+                break;
+
+            case BEGINRCV:
+
+                scm.writeSingleByte(handle, C);
+                state = DATABLOCKRCV;
+                break;
+
+            case DATABLOCKRCV:
+
+                dataBlockIndex = 0;         // reset
+                data = null;                // reset
+                state = VERIFY;
+
+                i = 0;
+                while(true) {
+                    data = readBlock(1, 200);
+                    if((data != null) && (data.length > 0)) {
+                        if(data[0] == SOH) {
+                            block[0] = SOH;
+                            dataBlockIndex++;
+                            spaceLeftInDataBlock = 132;
+                            crcl = 131;
+                            break;
+                        }else if(data[0] == STX) {
+                            block[0] = STX;
+                            dataBlockIndex++;
+                            spaceLeftInDataBlock = 1028;
+                            crcl = 1027;
+                            break;
+                        }else if(data[0] == EOT) {
+                            try {
+                                scm.writeSingleByte(handle, ACK);
+                                if(isFileOpen == true) {
+                                    outStream.flush();
+                                    outStream.close();
+                                    if(journal != null) {
+                                        journal.delete();
+                                    }
+                                }
+                                isFileOpen = false;
+                                state = CONNECT;
+                            } catch (IOException e) {
+                                errMsg = e.getMessage();
+                                state = ABORT;
+                            }
+                            break;
+                        }else if(data[0] == CAN) {
+                            data = readBlock(1, 200);
+                            if((data != null) && (data.length > 0) && (data[0] == CAN)) {
+                                errMsg = "Abort command received from file sending application !";
+                                state = ABORT;
+                                break;
+                            }
+                        }else {
+                        }
+                    }
+                    if((transferState != null) && (transferState.isTransferToBeAborted() == true)) {
+                        if(isFileOpen == true) {
+                            outStream.flush();
+                            outStream.close();
+                        }
+                        scm.writeBytes(handle, ABORT_CMD, 0);
+                        return false;
+                    }
+                    if(i > 5) {
+                        break;
+                    }
+                    i++;
+                }
+                if(i > 5) {
+                    timeoutRetryCount++;
+                    if(timeoutRetryCount > 10) {
+                        errMsg = "Timed out while receiving data block from file sender !";
+                        state = ABORT;
+                        break;
+                    }
+                    // our reply to previous block may have got lost on line, ask sender to send again.
+                    scm.writeSingleByte(handle, NAK);
+                    if(monitor != null) {
+                        monitor.nakd();
+                    }
+                    traceNak(blockNumber);
+                    state = DATABLOCKRCV;
+                    break;
+                }
+                timeoutRetryCount = 0;
+                if(state != VERIFY) {
+                    break;
+                }
+
+                for(i = 0; i < 10; i++) {
+                    // check if application (file receiver) wish to cancel receiving file.
+                    if((transferState != null) && (transferState.isTransferToBeAborted() == true)) {
+                        if(isFileOpen == true) {
+                            outStream.close();
+                        }
+                        scm.writeBytes(handle, ABORT_CMD, 0);
+                        return false;
+                    }
+                    // let the data arrive from other end, also minimize JNI transitions.
+                    data = readBlock(spaceLeftInDataBlock, 100);
+                    if((data != null) && (data.length > 0)) {
+                        System.arraycopy(data, 0, block, dataBlockIndex, data.length);
+                        dataBlockIndex = dataBlockIndex + data.length;
+                        spaceLeftInDataBlock = spaceLeftInDataBlock - data.length;
+                    }
+                    if(spaceLeftInDataBlock <= 0) {
+                        break;
+                    }
+                }
+                if(i >= 10) {
+                    // partial block, let sender re-send it.
+                    isCorrupted = true;
+                    state = REPLY;
+                    break;
+                }
+                break;
+
+            case VERIFY:
+
+                isCorrupted = false;      // reset
+                isDuplicateBlock = false; // reset
+                state = REPLY;
+
+                // check duplicate block.
+                if(block[1] == (byte)(blockNumber - 1)) {
+                    isDuplicateBlock = true;
+                    duplicateBlockRetryCount++;
+                    if(monitor != null) {
+                        monitor.retried();
+                    }
+                    traceRetry(blockNumber);
+                    if(duplicateBlockRetryCount > 10) {
+                        errMsg = "Maximum number of retries reached while receiving same data block !";
+                        state = ABORT;
+                    }
+                    break;
+                }
+                // verify block number sequence and block number itself.
+                if((block[1] != (byte) blockNumber) || (block[2] != (byte) ~blockNumber)) {
+                    isCorrupted = true;
+                    break;
+                }
+                // verify CRC value.
+                if(framer.verifyCheck(block, crcl - 3) == false) {
+                    isCorrupted = true;
+                }
+                break;
+
+            case REPLY:
+
+                if(isCorrupted == true) {
+                    // wait till sender finishes sending corrupted block, then ask for it again.
+                    while(true) {
+                        data = readBlock(1029, 100);
+                        if((data == null) || (data.length == 0)) {
+                            break;
+                        }
+                    }
+                    scm.writeSingleByte(handle, NAK);
+                    if(monitor != null) {
+                        monitor.nakd();
+                    }
+                    traceNak(blockNumber);
+                    state = DATABLOCKRCV;
+                    break;
+                }
+
+                // tell sender block has been successfully received
+                scm.writeSingleByte(handle, ACK);
+                if(isDuplicateBlock == true) {
+                    state = DATABLOCKRCV;
+                    break;
+                }
+
+                x = crcl - 3;
+                totalNumberOfDataBytesReadTillNow = totalNumberOfDataBytesReadTillNow + x;
+
+                if(textMode == true) {
+                    // for ASCII mode, parse and then flush.
+                    framer.processAndWrite(block, x, outStream);
+                }else {
+                    // for binary mode, just flush data as is to file physically.
+                    if(currentlyProcessingFileLength != 0) {
+                        if(totalNumberOfDataBytesReadTillNow <= currentlyProcessingFileLength) {
+                            writeData(outStream, journal, block, 3, x);
+                        }else if((totalNumberOfDataBytesReadTillNow - currentlyProcessingFileLength) < x) {
+                            writeData(outStream, journal, block, 3, (int)(x - (totalNumberOfDataBytesReadTillNow - currentlyProcessingFileLength)));
+                        }else {
+                        }
+                    }else {
+                        writeData(outStream, journal, block, 3, x);
+                    }
+                }
+
+                if(monitor != null) {
+                    monitor.transferred(x);
+                }
+
+                // update GUI that a block has been received if application has provided 
+                // a listener for this purpose.
+                if(yprogress != null) {
+                    numberOfBlocksReceived++;
+                    if(currentlyProcessingFileLength > 0) {
+                        percentOfBlocksReceived = (int) (((totalNumberOfDataBytesReadTillNow) * 100) / currentlyProcessingFileLength);
+                    }else {
+                        percentOfBlocksReceived = 100;
+                    }
+                    if(percentOfBlocksReceived >= 100) {
+                        percentOfBlocksReceived = 100;
+                    }
+                    yprogress.onYmodemReceiveProgressUpdate(nameOfFileBeingReceived, numberOfBlocksReceived, percentOfBlocksReceived);
+                }
+
+                blockNumber++;
+                if(blockNumber > 0xFF) {
+                    blockNumber = 0x00;
+                }
+                duplicateBlockRetryCount = 0; // reset
+                state = DATABLOCKRCV;
+                break;
+
+            case ABORT:
+                if(isFileOpen == true) {
+                    outStream.flush();
+                    outStream.close();
+                }
+                throw new SerialComException(errMsg);
+
+            default:
+                // never reached
+            }
+        }
+    }
+}
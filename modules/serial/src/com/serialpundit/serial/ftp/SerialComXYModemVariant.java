@@ -0,0 +1,83 @@
+/*
+ * This file is part of SerialPundit.
+ * 
+ * Copyright (C) 2014-2016, Rishi Gupta. All rights reserved.
+ *
+ * The SerialPundit is DUAL LICENSED. It is made available under the terms of the GNU Affero 
+ * General Public License (AGPL) v3.0 for non-commercial use and under the terms of a commercial 
+ * license for commercial use of this software. 
+ * 
+ * The SerialPundit is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+
+package com.serialpundit.serial.ftp;
+
+/**
+ * <p>Parameters which make one xmodem/ymodem variant different from other. The engine 
+ * SerialComXYModemEngine is driven by an instance of this class, so adding a variant or tuning 
+ * one requires only a new row in this table.</p>
+ * 
+ * @author Rishi Gupta
+ */
+final class SerialComXYModemVariant {
+
+    private static final byte NAK = 0x15;  // Negative-acknowledge character
+    private static final byte C   = 0x43;  // ASCII capital C character
+
+    /** <p>XMODEM-128 with 1 byte checksum. </p>*/
+    static final SerialComXYModemVariant XMODEM_CHKSUM = new SerialComXYModemVariant("xmodem", false, 128, 
+            SerialComFTPBlockFramer.CHECKSUM, NAK, 200, 10, 10000, null);
+
+    /** <p>XMODEM-128 with CRC-16-CCITT, falls back to XMODEM_CHKSUM if sender does not respond. </p>*/
+    static final SerialComXYModemVariant XMODEM_CRC = new SerialComXYModemVariant("xmodem-crc", false, 128, 
+            SerialComFTPBlockFramer.CRC16, C, 250, 3, 3000, XMODEM_CHKSUM);
+
+    /** <p>XMODEM-1K with CRC-16-CCITT, falls back to XMODEM_CHKSUM if sender does not respond. </p>*/
+    static final SerialComXYModemVariant XMODEM_1K = new SerialComXYModemVariant("xmodem-1k", false, 1024, 
+            SerialComFTPBlockFramer.CRC16, C, 300, 3, 3000, XMODEM_CHKSUM);
+
+    /** <p>YMODEM batch transfer with 128 byte blocks and CRC-16-CCITT. </p>*/
+    static final SerialComXYModemVariant YMODEM_CRC = new SerialComXYModemVariant("ymodem-crc", true, 128, 
+            SerialComFTPBlockFramer.CRC16, C, 300, 3, 3000, null);
+
+    /** <p>YMODEM batch transfer with 1024 byte blocks and CRC-16-CCITT. </p>*/
+    static final SerialComXYModemVariant YMODEM_1K = new SerialComXYModemVariant("ymodem-1k", true, 1024, 
+            SerialComFTPBlockFramer.CRC16, C, 300, 3, 3000, null);
+
+    final String name;
+    final boolean batch;
+    final int dataSize;
+    final int checkType;
+    final byte connectChar;
+    final int receiveDelay;
+    final int connectRetries;
+    final int connectTimeOut;
+    final SerialComXYModemVariant fallback;
+
+    /**
+     * <p>Allocates a new SerialComXYModemVariant object.</p>
+     * 
+     * @param name name of variant used in error messages.
+     * @param batch true for ymodem (block 0 with file information, multiple files).
+     * @param dataSize number of data bytes in blocks sent by this variant.
+     * @param checkType SerialComFTPBlockFramer.CHECKSUM or SerialComFTPBlockFramer.CRC16.
+     * @param connectChar character sent by receiver to start transfer.
+     * @param receiveDelay time in milliseconds receiver lets a block arrive before reading it.
+     * @param connectRetries number of times receiver tries to start transfer.
+     * @param connectTimeOut time in milliseconds receiver waits for first block after each try.
+     * @param fallback variant to use if sender never responds, null if none.
+     */
+    private SerialComXYModemVariant(String name, boolean batch, int dataSize, int checkType, byte connectChar, 
+            int receiveDelay, int connectRetries, int connectTimeOut, SerialComXYModemVariant fallback) {
+        this.name = name;
+        this.batch = batch;
+        this.dataSize = dataSize;
+        this.checkType = checkType;
+        this.connectChar = connectChar;
+        this.receiveDelay = receiveDelay;
+        this.connectRetries = connectRetries;
+        this.connectTimeOut = connectTimeOut;
+        this.fallback = fallback;
+    }
+}
@@ -0,0 +1,1435 @@
+/*
+ * This file is part of SerialPundit.
+ * 
+ * Copyright (C) 2014-2016, Rishi Gupta. All rights reserved.
+ *
+ * The SerialPundit is DUAL LICENSED. It is made available under the terms of the GNU Affero 
+ * General Public License (AGPL) v3.0 for non-commercial use and under the terms of a commercial 
+ * license for commercial use of this software. 
+ * 
+ * The SerialPundit is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+
+package com.serialpundit.serial.ftp;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+import com.serialpundit.core.util.SerialComCRCUtil;
+import com.serialpundit.core.SerialComPlatform;
+import com.serialpundit.core.SerialComTimeOutException;
+import com.serialpundit.core.SerialComException;
+import com.serialpundit.serial.SerialComManager;
+
+/**
+ * <p>Implements ZMODEM file transfer protocol state machine in Java.</p>
+ *
+ * <p>Data is streamed as ZDLE escaped sub-packets protected by CRC-32 (or CRC-16 if the other end
+ * does not support CRC-32) without waiting for acknowledgement of every block. The receiver
+ * acknowledges periodically (ZCRCQ) so that the sender never runs ahead more than a window. Any error
+ * detected by the receiver results in a ZRPOS header and the sender resumes from the given offset,
+ * which is also used for crash recovery: if a partially received file exists in destination folder,
+ * receiver asks sender to continue from its length instead of sending the whole file again.</p>
+ *
+ * <p>On noisy links sender halves the sub-packet length (down to 32 bytes) every time receiver asks
+ * for retransmission and doubles it again (up to 1024 bytes) as acknowledgements arrive.</p>
+ *
+ * <p>Data from the other end is collected by a data listener registered for the duration of transfer, 
+ * so that state machine wakes up as soon as bytes arrive instead of polling serial port. Application 
+ * must not have registered a data listener on this handle.</p>
+ *
+ * <p>Multiple files can be sent in one session (batch transfer). Remote command execution (ZCOMMAND)
+ * is not supported, such requests are refused by answering with a non zero completion status, so that 
+ * sender knows that command has not been executed.</p>
+ *
+ * @author Rishi Gupta
+ */
+public final class SerialComZModem {
+
+    private final int ZPAD    = 0x2A;  // '*' padding character begins frames
+    private final int ZDLE    = 0x18;  // ZMODEM escape character (same as CAN)
+    private final int ZDLEE   = 0x58;  // escaped ZDLE as transmitted
+    private final int ZBIN    = 0x41;  // 'A' binary frame indicator (CRC-16)
+    private final int ZHEX    = 0x42;  // 'B' hex frame indicator
+    private final int ZBIN32  = 0x43;  // 'C' binary frame indicator (CRC-32)
+    private final int XON     = 0x11;
+    private final int XOFF    = 0x13;
+    private final int DLE     = 0x10;
+    private final int CR      = 0x0D;
+    private final int LF      = 0x0A;
+    private final int CAN     = 0x18;
+    private final int BS      = 0x08;
+
+    // frame types
+    private final int ZRQINIT    = 0;
+    private final int ZRINIT     = 1;
+    private final int ZSINIT     = 2;
+    private final int ZACK       = 3;
+    private final int ZFILE      = 4;
+    private final int ZSKIP      = 5;
+    private final int ZNAK       = 6;
+    private final int ZABORT     = 7;
+    private final int ZFIN       = 8;
+    private final int ZRPOS      = 9;
+    private final int ZDATA      = 10;
+    private final int ZEOF       = 11;
+    private final int ZFERR      = 12;
+    private final int ZCRC       = 13;
+    private final int ZCHALLENGE = 14;
+    private final int ZCOMPL     = 15;
+    private final int ZCAN       = 16;
+    private final int ZFREECNT   = 17;
+    private final int ZCOMMAND   = 18;
+
+    // sub-packet frame end types
+    private final int ZCRCE = 0x68;  // CRC next, frame ends, header packet follows
+    private final int ZCRCG = 0x69;  // CRC next, frame continues nonstop
+    private final int ZCRCQ = 0x6A;  // CRC next, frame continues, ZACK expected
+    private final int ZCRCW = 0x6B;  // CRC next, ZACK expected, end of frame
+    private final int ZRUB0 = 0x6C;  // translate to rubout 0x7F
+    private final int ZRUB1 = 0x6D;  // translate to rubout 0xFF
+
+    // ZRINIT flags (ZF0)
+    private final int CANFDX  = 0x01;  // receiver can send and receive true full duplex
+    private final int CANOVIO = 0x02;  // receiver can receive data during disk I/O
+    private final int CANFC32 = 0x20;  // receiver can use 32 bit frame check
+    private final int ESCCTL  = 0x40;  // receiver expects control characters to be escaped
+
+    // ZFILE conversion options (ZF0)
+    private final int ZCBIN = 1;  // binary transfer, inhibit conversion
+    private final int ZCNL  = 2;  // convert NL to local end of line convention
+    private final int ZCRESUM = 3;  // resume interrupted file transfer
+
+    // ZFILE management options (ZF1)
+    private final int ZMMASK    = 0x1F;  // mask for the choices below
+    private final int ZMAPND    = 3;     // append contents to existing file
+    private final int ZMCLOB    = 4;     // replace existing file
+    private final int ZMNEW     = 5;     // transfer if source newer or longer
+    private final int ZMPROT    = 7;     // protect destination file
+    private final int ZMSKNOLOC = 0x80;  // skip file if not present at receiver
+
+    // return values of low level read routines
+    private final int GOTOR   = 0x100;  // flag set when frame end (ZCRCx) is received
+    private final int TIMEOUT = -1;
+    private final int ERROR   = -2;
+
+    private final int SUBPACKETSIZE = 1024;
+    private final int WINDOWSIZE = 16384;
+    private final int MAXRETRIES = 10;
+    private final int TIMEOUTVAL = 10000;
+    private final int ZCOMMANDREFUSED = 1;  // exit status reported in ZCOMPL for remote commands
+    private final long MAXFILELENGTH = 0xFFFFFFFFL;  // offsets in headers are 32 bit unsigned
+    private final int RCVBUFFERSIZE = 4 * WINDOWSIZE;  // a full window even if every byte is escaped
+    private final int ABORTCHECKINTERVAL = 100;  // longest wait before abort request is looked at
+
+    private final byte ABORT_CMD[] = new byte[] { CAN, CAN, CAN, CAN, CAN, CAN, CAN, CAN, CAN, CAN,
+            BS, BS, BS, BS, BS, BS, BS, BS, BS, BS };
+
+    private final SerialComManager scm;
+    private final long handle;
+    private File[] filesToSend;
+    private File filesToReceive;
+    private final boolean textMode;
+    private final ISerialComZmodemProgress progressListener;
+    private final SerialComFTPCMDAbort transferState;
+    private final int osType;
+    private final SerialComCRCUtil crcCalculator = new SerialComCRCUtil();
+    private SerialComFTPProgressMonitor monitor = null;
+
+    // receive side buffering
+    private SerialComFTPReceiveBuffer receiveBuffer;
+    private final byte[] rxBuf = new byte[2048];
+    private int rxPos;
+    private int rxLen;
+    private final byte[] rxData = new byte[8192 + 1];
+    private int rxDataLen;
+    private final byte[] rxHdr = new byte[4];
+    private final byte[] hdrRaw = new byte[5 + 4];
+    private int rxType;
+    private boolean rxFrameIs32;
+    private String remoteAbortMsg;
+
+    // transmit side buffering
+    private final ByteBuffer txBuf = ByteBuffer.allocateDirect((2 * (SUBPACKETSIZE + 1)) + 64);
+    private final byte[] txData = new byte[SUBPACKETSIZE + 1];
+    private final byte[] txHdr = new byte[5];
+    private final boolean[] escapeTable = new boolean[256];
+    private int lastSent;
+    private boolean use32;
+
+    /*
+     * Thrown from low level read routines when application asks to abort transfer, so that every
+     * state need not to check for it explicitly.
+     */
+    private static final class ApplicationAbortException extends IOException {
+        private static final long serialVersionUID = 1L;
+    }
+
+    /**
+     * <p>Allocates a new SerialComZModem object with given details and associate it with the given
+     * instance of SerialComManager class. This is used for sending files.</p>
+     *
+     * @param scm SerialComManager instance associated with this handle.
+     * @param handle of the port on which file is to be communicated.
+     * @param filesToSend all the files to be sent to the receiver end.
+     * @param textMode if true receiver is asked to convert end of line to its local convention, if
+     *         false files will be sent as binary files.
+     * @param progressListener object of class which implements ISerialComZmodemProgress interface and is
+     *         interested in knowing how many bytes have been sent/received till now.
+     * @param transferState if application wish to abort sending/receiving file at instant of time due to
+     *         any reason, it can call abortTransfer method on this object. It can be null if application
+     *         does not wish to abort sending/receiving file explicitly.
+     * @param osType operating system on which this application is running.
+     */
+    public SerialComZModem(SerialComManager scm, long handle, File[] filesToSend, boolean textMode,
+            ISerialComZmodemProgress progressListener, SerialComFTPCMDAbort transferState, int osType) {
+        this.scm = scm;
+        this.handle = handle;
+        this.filesToSend = filesToSend;
+        this.textMode = textMode;
+        this.progressListener = progressListener;
+        this.transferState = transferState;
+        this.osType = osType;
+        prepareEscapeTable(false);
+    }
+
+    /**
+     * <p>Allocates a new SerialComZModem object with given details and associate it with the given
+     * instance of SerialComManager class. This is used for receiving files.</p>
+     *
+     * @param scm SerialComManager instance associated with this handle.
+     * @param handle of the port on which file is to be communicated.
+     * @param filesToReceive folder in which all files received will be placed.
+     * @param textMode if true end of line in received files will be converted to local convention, if
+     *         false conversion is done only if sender asks for it.
+     * @param progressListener object of class which implements ISerialComZmodemProgress interface and is
+     *         interested in knowing how many bytes have been sent/received till now.
+     * @param transferState if application wish to abort sending/receiving file at instant of time due to
+     *         any reason, it can call abortTransfer method on this object. It can be null if application
+     *         does not wish to abort sending/receiving file explicitly.
+     * @param osType operating system on which this application is running.
+     */
+    public SerialComZModem(SerialComManager scm, long handle, File filesToReceive, boolean textMode,
+            ISerialComZmodemProgress progressListener, SerialComFTPCMDAbort transferState, int osType) {
+        this.scm = scm;
+        this.handle = handle;
+        this.filesToReceive = filesToReceive;
+        this.textMode = textMode;
+        this.progressListener = progressListener;
+        this.transferState = transferState;
+        this.osType = osType;
+        prepareEscapeTable(false);
+    }
+
+    /**
+     * <p>Sets monitor which reports throughput, estimated time remaining, retries and NAKs of 
+     * transfers made by this object to its listener at a bounded rate. Sent data is counted once 
+     * receiver has acknowledged it. Monitor does the reporting from its own thread so the transfer 
+     * itself is not slowed down.</p>
+     *
+     * @param monitor progress monitor or null to stop monitoring.
+     */
+    public void setProgressMonitor(SerialComFTPProgressMonitor monitor) {
+        this.monitor = monitor;
+    }
+
+    /**
+     * <p>Represents actions to execute in state machine to implement zmodem protocol for sending files.</p>
+     *
+     * <p>File offsets in zmodem headers are 32 bit, so files larger than 4 GB (4294967295 bytes) can 
+     * not be sent.</p>
+     *
+     * @return true on success, false if application instructed to abort.
+     * @throws IOException if any I/O error occurs.
+     * @throws SerialComException if any I/0 error on serial port communication occurs or a file is 
+     *         larger than 4 GB.
+     */
+    public boolean sendFileZ() throws IOException {
+        for (int x = 0; x < filesToSend.length; x++) {
+            if(filesToSend[x].length() > MAXFILELENGTH) {
+                throw new SerialComException("File " + filesToSend[x].getName() + " is larger than 4 GB, zmodem can not send it !");
+            }
+        }
+        remoteAbortMsg = "Received abort command from file receiving end !";
+        startReception();
+        if(monitor != null) {
+            monitor.begin();
+        }
+        try {
+            connectWithReceiver();
+            for (int x = 0; x < filesToSend.length; x++) {
+                sendOneFile(x);
+            }
+            finishSession();
+        } catch (ApplicationAbortException e) {
+            scm.writeBytes(handle, ABORT_CMD, 0);
+            return false;
+        } finally {
+            if(monitor != null) {
+                monitor.end();
+            }
+            stopReception();
+        }
+        return true;
+    }
+
+    /**
+     * <p>Represents actions to execute in state machine to implement zmodem protocol for receiving files.</p>
+     *
+     * @return true on success, false if application instructed to abort.
+     * @throws IOException if any I/O error occurs.
+     * @throws SerialComException if any I/0 error on serial port communication occurs.
+     */
+    public boolean receiveFileZ() throws IOException {
+        remoteAbortMsg = "Abort command received from file sending application !";
+        startReception();
+        if(monitor != null) {
+            monitor.begin();
+        }
+        try {
+            while (true) {
+                if(receiveNextFileInfo() == false) {
+                    return true;
+                }
+            }
+        } catch (ApplicationAbortException e) {
+            scm.writeBytes(handle, ABORT_CMD, 0);
+            return false;
+        } finally {
+            if(monitor != null) {
+                monitor.end();
+            }
+            stopReception();
+        }
+    }
+
+    /*
+     * Registers receive buffer as data listener. Bytes dropped because buffer is full are recovered 
+     * through ZRPOS like any other error.
+     */
+    private void startReception() throws SerialComException {
+        rxPos = 0;
+        rxLen = 0;
+        receiveBuffer = new SerialComFTPReceiveBuffer(RCVBUFFERSIZE);
+        receiveBuffer.register(scm, handle);
+    }
+
+    private void stopReception() {
+        try {
+            receiveBuffer.unregister(scm, handle);
+        } catch (SerialComException e) {
+        }
+        receiveBuffer = null;
+    }
+
+    /*
+     * Sends ZRQINIT and waits for receiver to tell its capabilities through ZRINIT.
+     */
+    private void connectWithReceiver() throws IOException {
+        int retryCount = 0;
+        int frameType = 0;
+
+        scm.writeBytes(handle, new byte[] { 'r', 'z', CR }, 0);
+        sendHexHeader(ZRQINIT, 0);
+
+        while (true) {
+            frameType = getHeader(System.currentTimeMillis() + TIMEOUTVAL);
+            if(frameType == ZRINIT) {
+                int flags = rxHdr[3] & 0xFF;
+                use32 = (flags & CANFC32) != 0;
+                prepareEscapeTable((flags & ESCCTL) != 0);
+                return;
+            }else if(frameType == ZCHALLENGE) {
+                sendHexHeader(ZACK, getPosition());
+            }else if((frameType == TIMEOUT) || (frameType == ZNAK)) {
+                retryCount++;
+                if(retryCount > MAXRETRIES) {
+                    throw new SerialComTimeOutException("Timedout while waiting for file receiver to initiate connection setup !");
+                }
+                sendHexHeader(ZRQINIT, 0);
+            }
+            // any other frame or garbage is ignored, receiver will send ZRINIT again.
+        }
+    }
+
+    /*
+     * Sends ZFILE header and file information, then streams file data from the offset asked by
+     * receiver till receiver acknowledges end of file with ZRINIT.
+     */
+    private void sendOneFile(int fileIndex) throws IOException {
+        final int SENDINFO = 0x01;
+        final int WAITPOS  = 0x02;
+        final int SENDDATA = 0x03;
+        final int SENDEOF  = 0x04;
+        final int WAITEOF  = 0x05;
+        final int DONE     = 0x06;
+
+        File file = filesToSend[fileIndex];
+        String fileName = file.getName();
+        long fileLength = file.length();
+        SerialComFTPFileSource inFile = new SerialComFTPFileSource(file);
+        int state = SENDINFO;
+        int retryCount = 0;
+        int frameType = 0;
+        long position = 0;
+        long ackedPosition = 0;
+        long reportedPosition = 0;
+        long lastQueryPosition = 0;
+        long lastErrorPosition = -1;
+        long errorPosition = 0;
+        int subpacketLength = SUBPACKETSIZE;
+        int numRead = 0;
+        int frameEnd = 0;
+
+        try {
+            while (state != DONE) {
+                switch(state) {
+
+                case SENDINFO:
+                    if(retryCount > MAXRETRIES) {
+                        throw new SerialComException("Maximum number of retries reached while sending file information to receiver end !");
+                    }
+                    sendFileInfo(fileIndex, fileName, fileLength, file.lastModified());
+                    state = WAITPOS;
+                    break;
+
+                case WAITPOS:
+                    frameType = getHeader(System.currentTimeMillis() + TIMEOUTVAL);
+                    if(frameType == ZRPOS) {
+                        position = getPosition();
+                        if(position > fileLength) {
+                            position = fileLength;
+                        }
+                        ackedPosition = position;
+                        reportedPosition = position;
+                        lastQueryPosition = position;
+                        retryCount = 0;
+                        if(monitor != null) {
+                            monitor.beginFile(fileName, fileLength, position);
+                        }
+                        state = SENDDATA;
+                    }else if(frameType == ZSKIP) {
+                        state = DONE;
+                    }else if(frameType == ZCRC) {
+                        // receiver wants to verify partially received file before resuming.
+                        sendHexHeader(ZCRC, fileCRC32(inFile, getPosition()));
+                    }else if((frameType == ZNAK) || (frameType == TIMEOUT) || (frameType == ERROR)) {
+                        if((monitor != null) && (frameType == ZNAK)) {
+                            monitor.nakd();
+                        }
+                        retryCount++;
+                        state = SENDINFO;
+                    }else if((frameType == ZABORT) || (frameType == ZFERR) || (frameType == ZFIN) || (frameType == ZCAN)) {
+                        throw new SerialComException(remoteAbortMsg);
+                    }
+                    break;
+
+                case SENDDATA:
+                    inFile.position(position);
+                    sendBinaryHeader(ZDATA, position);
+                    while (true) {
+                        numRead = inFile.read(txData, 0, subpacketLength);
+                        if(numRead < 0) {
+                            numRead = 0;
+                        }
+                        if((numRead == 0) || ((position + numRead) >= fileLength)) {
+                            frameEnd = ZCRCE;
+                        }else if((position + numRead - lastQueryPosition) >= (WINDOWSIZE / 2)) {
+                            frameEnd = ZCRCQ;
+                            lastQueryPosition = position + numRead;
+                        }else {
+                            frameEnd = ZCRCG;
+                        }
+                        sendDataSubpacket(txData, numRead, frameEnd);
+                        position = position + numRead;
+                        if(progressListener != null) {
+                            progressListener.onZmodemSentProgressUpdate(fileName, position, percentOf(position, fileLength));
+                        }
+                        if(frameEnd == ZCRCE) {
+                            state = SENDEOF;
+                            break;
+                        }
+
+                        // look for ZACK/ZRPOS without blocking, block only if receiver is a window behind.
+                        frameType = -3;
+                        while (isHeaderAvailable() || ((position - ackedPosition) > WINDOWSIZE)) {
+                            frameType = getHeader(System.currentTimeMillis() + TIMEOUTVAL);
+                            if(frameType == ZACK) {
+                                if(getPosition() > ackedPosition) {
+                                    ackedPosition = getPosition();
+                                    subpacketLength = Math.min(SUBPACKETSIZE, subpacketLength * 2);
+                                    reportedPosition = reportAcknowledged(ackedPosition, reportedPosition);
+                                }
+                            }else if((frameType == ZRPOS) || (frameType == TIMEOUT)) {
+                                break;
+                            }else if((frameType == ZABORT) || (frameType == ZFERR) || (frameType == ZCAN)) {
+                                throw new SerialComException(remoteAbortMsg);
+                            }
+                        }
+                        if(frameType == ZRPOS) {
+                            // retries are counted only while receiver keeps failing at same offset.
+                            errorPosition = collapseRepositionRequests();
+                            if(errorPosition > lastErrorPosition) {
+                                retryCount = 0;
+                            }
+                            lastErrorPosition = errorPosition;
+                            subpacketLength = Math.max(32, subpacketLength / 2);
+                            retryCount++;
+                            if(retryCount > MAXRETRIES) {
+                                throw new SerialComException("Maximum number of retries reached while sending same data block !");
+                            }
+                            position = errorPosition;
+                            ackedPosition = position;
+                            lastQueryPosition = position;
+                            reportedPosition = reportAcknowledged(ackedPosition, reportedPosition);
+                            if(monitor != null) {
+                                monitor.retried();
+                            }
+                            state = SENDDATA;
+                            break;
+                        }else if(frameType == TIMEOUT) {
+                            // acknowledgement lost, send again everything after last acknowledged offset.
+                            retryCount++;
+                            if(retryCount > MAXRETRIES) {
+                                throw new SerialComTimeOutException("Timedout while waiting for data reception acknowledgement from file receiver !");
+                            }
+                            position = ackedPosition;
+                            lastQueryPosition = position;
+                            if(monitor != null) {
+                                monitor.retried();
+                            }
+                            state = SENDDATA;
+                            break;
+                        }
+                    }
+                    break;
+
+                case SENDEOF:
+                    if(retryCount > MAXRETRIES) {
+                        throw new SerialComException("Maximum number of retries reached while sending end of file to receiver end !");
+                    }
+                    sendBinaryHeader(ZEOF, position);
+                    state = WAITEOF;
+                    break;
+
+                case WAITEOF:
+                    frameType = getHeader(System.currentTimeMillis() + TIMEOUTVAL);
+                    if(frameType == ZRINIT) {
+                        reportedPosition = reportAcknowledged(position, reportedPosition);
+                        state = DONE;
+                    }else if(frameType == ZRPOS) {
+                        errorPosition = collapseRepositionRequests();
+                        if(errorPosition > lastErrorPosition) {
+                            retryCount = 0;
+                        }
+                        lastErrorPosition = errorPosition;
+                        subpacketLength = Math.max(32, subpacketLength / 2);
+                        retryCount++;
+                        if(retryCount > MAXRETRIES) {
+                            throw new SerialComException("Maximum number of retries reached while sending same data block !");
+                        }
+                        position = errorPosition;
+                        ackedPosition = position;
+                        lastQueryPosition = position;
+                        reportedPosition = reportAcknowledged(ackedPosition, reportedPosition);
+                        if(monitor != null) {
+                            monitor.retried();
+                        }
+                        state = SENDDATA;
+                    }else if((frameType == TIMEOUT) || (frameType == ERROR)) {
+                        retryCount++;
+                        state = SENDEOF;
+                    }else if((frameType == ZABORT) || (frameType == ZFERR) || (frameType == ZCAN)) {
+                        throw new SerialComException(remoteAbortMsg);
+                    }
+                    // ZACK for last ZCRCQ sub-packet may still arrive, ignore it.
+                    break;
+
+                default:
+                    break;
+                }
+            }
+        } finally {
+            inFile.close();
+        }
+    }
+
+    /*
+     * Tells monitor about data acknowledged by receiver since last report. Returns offset reported till now.
+     */
+    private long reportAcknowledged(long ackedPosition, long reportedPosition) {
+        if((monitor == null) || (ackedPosition <= reportedPosition)) {
+            return reportedPosition;
+        }
+        monitor.transferred(ackedPosition - reportedPosition);
+        return ackedPosition;
+    }
+
+    /*
+     * Sends ZFILE header followed by sub-packet carrying file information as given below :
+     * [file name\0][length] [modification time octal] [mode octal] [serial number] [files remaining] [bytes remaining]\0
+     */
+    private void sendFileInfo(int fileIndex, String fileName, long fileLength, long lastModified) throws IOException {
+        long bytesRemaining = 0;
+        for (int x = fileIndex; x < filesToSend.length; x++) {
+            bytesRemaining = bytesRemaining + filesToSend[x].length();
+        }
+
+        StringBuilder sb = new StringBuilder();
+        sb.append(fileLength).append(' ');
+        sb.append(Long.toOctalString(lastModified / 1000)).append(' ');
+        if(osType != SerialComPlatform.OS_WINDOWS) {
+            sb.append(Integer.toOctalString(0100644)).append(' ');
+        }else {
+            sb.append('0').append(' ');
+        }
+        sb.append('0').append(' ');
+        sb.append(filesToSend.length - fileIndex).append(' ');
+        sb.append(bytesRemaining);
+
+        byte[] nameb = fileName.getBytes();
+        byte[] infob = sb.toString().getBytes();
+        byte[] info = new byte[nameb.length + 1 + infob.length + 1 + 1];
+        System.arraycopy(nameb, 0, info, 0, nameb.length);
+        System.arraycopy(infob, 0, info, nameb.length + 1, infob.length);
+
+        txHdr[0] = (byte) ZFILE;
+        txHdr[1] = 0;
+        txHdr[2] = 0;
+        txHdr[3] = 0;
+        txHdr[4] = (byte) (textMode ? ZCNL : ZCBIN);
+        sendBinaryHeader(txHdr);
+        sendDataSubpacket(info, info.length - 1, ZCRCW);
+    }
+
+    /*
+     * Ends batch session. Sends ZFIN, waits for ZFIN from receiver and then sends over and out.
+     */
+    private void finishSession() throws IOException {
+        int retryCount = 0;
+        int frameType = 0;
+
+        while (true) {
+            sendHexHeader(ZFIN, 0);
+            frameType = getHeader(System.currentTimeMillis() + TIMEOUTVAL);
+            if(frameType == ZFIN) {
+                scm.writeBytes(handle, new byte[] { 'O', 'O' }, 0);
+                return;
+            }
+            retryCount++;
+            if(retryCount > 3) {
+                // files have already been received successfully, missing ZFIN is not an error.
+                return;
+            }
+        }
+    }
+
+    /*
+     * Waits for ZFILE from sender and receives that file. Returns false when sender ends session.
+     */
+    private boolean receiveNextFileInfo() throws IOException {
+        int retryCount = 0;
+        int frameType = 0;
+        int ret = 0;
+
+        while (true) {
+            sendReceiverInit();
+            frameType = getHeader(System.currentTimeMillis() + TIMEOUTVAL);
+
+            if(frameType == ZFILE) {
+                int conversion = rxHdr[3] & 0xFF;
+                int management = rxHdr[2] & 0xFF;
+                ret = receiveDataSubpacket(System.currentTimeMillis() + TIMEOUTVAL);
+                if(ret == (ZCRCW | GOTOR)) {
+                    receiveOneFile(conversion, management);
+                    return true;
+                }
+                sendHexHeader(ZNAK, 0);
+            }else if(frameType == ZSINIT) {
+                // attention string is not needed as we never interrupt sender.
+                ret = receiveDataSubpacket(System.currentTimeMillis() + TIMEOUTVAL);
+                if(ret > 0) {
+                    sendHexHeader(ZACK, 1);
+                }else {
+                    sendHexHeader(ZNAK, 0);
+                }
+                continue;
+            }else if(frameType == ZFIN) {
+                sendHexHeader(ZFIN, 0);
+                // consume "OO" sent by sender, absence of it is not an error.
+                readByte(System.currentTimeMillis() + 1000);
+                readByte(System.currentTimeMillis() + 1000);
+                return false;
+            }else if(frameType == ZFREECNT) {
+                sendHexHeader(ZACK, Integer.MAX_VALUE);
+                continue;
+            }else if(frameType == ZCOMMAND) {
+                // command is never executed, non zero exit status tells sender so.
+                receiveDataSubpacket(System.currentTimeMillis() + TIMEOUTVAL);
+                sendHexHeader(ZCOMPL, ZCOMMANDREFUSED);
+                continue;
+            }else if((frameType == ZRQINIT) || (frameType == ZDATA) || (frameType == ZEOF)) {
+                // data or end of file of previous file sent again before our ZRINIT reached sender.
+                continue;
+            }
+
+            retryCount++;
+            if(retryCount > MAXRETRIES) {
+                throw new SerialComTimeOutException("Timed out while connecting with file sender !");
+            }
+        }
+    }
+
+    /*
+     * Parses file information received in ZFILE sub-packet, opens the file (resuming if a partial
+     * file exists and is verified) and receives data till ZEOF.
+     */
+    private void receiveOneFile(int conversion, int management) throws IOException {
+        final int WAITHDR  = 0x01;
+        final int RECVDATA = 0x02;
+        final int DONE     = 0x03;
+
+        int x = 0;
+        int state = WAITHDR;
+        int errorCount = 0;
+        int frameType = 0;
+        int ret = 0;
+        long fileLength = -1;
+        long modificationTime = 0;
+        long position = 0;
+        boolean convertEOL = textMode || (conversion == ZCNL);
+        boolean lastWasCR = false;
+
+        // file name is till first null character; only last component of path is used.
+        while ((x < rxDataLen) && (rxData[x] != 0)) {
+            x++;
+        }
+        String fileName = new String(rxData, 0, x);
+        int sep = Math.max(fileName.lastIndexOf('/'), fileName.lastIndexOf('\\'));
+        if(sep >= 0) {
+            fileName = fileName.substring(sep + 1);
+        }
+        if(fileName.length() == 0) {
+            throw new SerialComException("Sender did not sent file name !");
+        }
+
+        x++;
+        int end = x;
+        while ((end < rxDataLen) && (rxData[end] != 0)) {
+            end++;
+        }
+        if(x < end) {
+            String[] fields = new String(rxData, x, end - x).trim().split(" +");
+            try {
+                if(fields.length > 0) {
+                    fileLength = Long.parseLong(fields[0]);
+                }
+                if(fields.length > 1) {
+                    modificationTime = Long.parseLong(fields[1], 8);
+                }
+            } catch (NumberFormatException e) {
+                // optional fields, use whatever was parsed successfully.
+            }
+        }
+
+        File file = new File(filesToReceive, fileName);
+        if(fileLength > MAXFILELENGTH) {
+            // offsets would wrap around, such a file can not be received correctly.
+            sendHexHeader(ZSKIP, 0);
+            return;
+        }
+
+        long sinkOffset = 0;
+        int option = management & ZMMASK;
+        if(!file.exists()) {
+            if((management & ZMSKNOLOC) != 0) {
+                sendHexHeader(ZSKIP, 0);
+                return;
+            }
+        }else if(option == ZMPROT) {
+            sendHexHeader(ZSKIP, 0);
+            return;
+        }else if((conversion != ZCRESUM) && (option == ZMCLOB)) {
+            // received again from start.
+        }else if((conversion != ZCRESUM) && (option == ZMAPND)) {
+            sinkOffset = file.length();
+        }else if((conversion != ZCRESUM) && (option == ZMNEW)) {
+            if((modificationTime <= (file.lastModified() / 1000)) && (fileLength <= file.length())) {
+                sendHexHeader(ZSKIP, 0);
+                return;
+            }
+        }else {
+            // crash recovery, continue partially received file instead of receiving it again, but only 
+            // if sender confirms that what we have is the beginning of its file. Otherwise it is an 
+            // unrelated file with the same name and is overwritten.
+            long existing = file.length();
+            if(!convertEOL && (fileLength > 0) && (existing > 0) && (existing <= fileLength) 
+                    && isPrefixOfSenderFile(file, existing)) {
+                if(existing == fileLength) {
+                    sendHexHeader(ZSKIP, 0);
+                    return;
+                }
+                position = existing;
+                sinkOffset = existing;
+            }
+        }
+
+        SerialComFTPFileSink outStream = new SerialComFTPFileSink(file, sinkOffset, SerialComFTPFileSink.FORCEINTERVAL);
+        if(monitor != null) {
+            monitor.beginFile(fileName, fileLength, position);
+        }
+        try {
+            sendHexHeader(ZRPOS, position);
+            while (state != DONE) {
+                switch(state) {
+
+                case WAITHDR:
+                    frameType = getHeader(System.currentTimeMillis() + TIMEOUTVAL);
+                    // rest of the stream sent before our ZRPOS reached sender is skipped as garbage.
+                    if(frameType == ZDATA) {
+                        if(getPosition() == position) {
+                            state = RECVDATA;
+                        }else {
+                            // stale restart caused by an earlier ZRPOS, ask again for our offset.
+                            sendHexHeader(ZRPOS, position);
+                        }
+                    }else if(frameType == ZEOF) {
+                        if(getPosition() == position) {
+                            state = DONE;
+                        }else {
+                            // end of file reached by sender but some data did not reach us.
+                            sendHexHeader(ZRPOS, position);
+                        }
+                    }else if(frameType == ZFILE) {
+                        // our ZRPOS got lost, sender sent file information again.
+                        receiveDataSubpacket(System.currentTimeMillis() + TIMEOUTVAL);
+                        sendHexHeader(ZRPOS, position);
+                    }else if((frameType == TIMEOUT) || (frameType == ERROR)) {
+                        // header got corrupted or lost, ask again right away instead of letting sender 
+                        // stall for a full window.
+                        errorCount++;
+                        if(monitor != null) {
+                            monitor.retried();
+                        }
+                        sendHexHeader(ZRPOS, position);
+                    }else if((frameType == ZFIN) || (frameType == ZABORT) || (frameType == ZCAN)) {
+                        throw new SerialComException(remoteAbortMsg);
+                    }
+                    if(errorCount > MAXRETRIES) {
+                        throw new SerialComTimeOutException("Timed out while receiving data block from file sender !");
+                    }
+                    break;
+
+                case RECVDATA:
+                    ret = receiveDataSubpacket(System.currentTimeMillis() + TIMEOUTVAL);
+                    if(ret < 0) {
+                        // CRC error, bad escape or timeout; ask sender to go back to last good offset.
+                        errorCount++;
+                        if(errorCount > MAXRETRIES) {
+                            throw new SerialComException("Maximum number of retries reached while receiving same data block !");
+                        }
+                        if(monitor != null) {
+                            monitor.retried();
+                        }
+                        sendHexHeader(ZRPOS, position);
+                        state = WAITHDR;
+                        break;
+                    }
+
+                    if(convertEOL) {
+                        lastWasCR = writeConverted(outStream, lastWasCR);
+                    }else {
+                        outStream.write(rxData, 0, rxDataLen);
+                    }
+                    position = position + rxDataLen;
+                    errorCount = 0;
+                    if(monitor != null) {
+                        monitor.transferred(rxDataLen);
+                    }
+                    if(progressListener != null) {
+                        progressListener.onZmodemReceiveProgressUpdate(fileName, position, percentOf(position, fileLength));
+                    }
+
+                    ret = ret & 0xFF;
+                    if((ret == ZCRCW) || (ret == ZCRCQ)) {
+                        sendHexHeader(ZACK, position);
+                    }
+                    if((ret == ZCRCW) || (ret == ZCRCE)) {
+                        state = WAITHDR;
+                    }
+                    break;
+
+                default:
+                    break;
+                }
+            }
+            if(lastWasCR) {
+                if(osType == SerialComPlatform.OS_WINDOWS) {
+                    outStream.write(CR);
+                }
+                outStream.write(LF);
+            }
+        } finally {
+            outStream.close();
+        }
+
+        if(modificationTime > 0) {
+            file.setLastModified(modificationTime * 1000);
+        }
+    }
+
+    /*
+     * Asks sender for CRC-32 of first length bytes of the file being sent (ZCRC) and compares it with 
+     * CRC-32 of given local file. Returns false if they differ or sender does not answer.
+     */
+    private boolean isPrefixOfSenderFile(File file, long length) throws IOException {
+        java.util.zip.CRC32 crc = new java.util.zip.CRC32();
+        byte[] buffer = new byte[8192];
+        InputStream is = new FileInputStream(file);
+        try {
+            long remaining = length;
+            while (remaining > 0) {
+                int numRead = is.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                if(numRead < 0) {
+                    return false;
+                }
+                crc.update(buffer, 0, numRead);
+                remaining = remaining - numRead;
+            }
+        } finally {
+            is.close();
+        }
+
+        for (int retryCount = 0; retryCount <= MAXRETRIES; retryCount++) {
+            sendHexHeader(ZCRC, length);
+            int frameType = getHeader(System.currentTimeMillis() + TIMEOUTVAL);
+            if(frameType == ZCRC) {
+                return getPosition() == crc.getValue();
+            }else if(frameType == ZFILE) {
+                // our ZCRC got lost, sender sent file information again.
+                receiveDataSubpacket(System.currentTimeMillis() + TIMEOUTVAL);
+            }else if((frameType == ZFIN) || (frameType == ZABORT) || (frameType == ZCAN)) {
+                throw new SerialComException(remoteAbortMsg);
+            }
+        }
+        return false;
+    }
+
+    /*
+     * Writes received sub-packet data converting CR LF and lone LF into local end of line.
+     */
+    private boolean writeConverted(SerialComFTPFileSink outStream, boolean lastWasCR) throws IOException {
+        for (int x = 0; x < rxDataLen; x++) {
+            if(rxData[x] == CR) {
+                lastWasCR = true;
+                continue;
+            }
+            if(rxData[x] == LF) {
+                if(osType == SerialComPlatform.OS_WINDOWS) {
+                    outStream.write(CR);
+                }
+                outStream.write(LF);
+            }else {
+                if(lastWasCR) {
+                    // lone CR (old mac convention) is also end of line.
+                    if(osType == SerialComPlatform.OS_WINDOWS) {
+                        outStream.write(CR);
+                    }
+                    outStream.write(LF);
+                }
+                outStream.write(rxData[x]);
+            }
+            lastWasCR = false;
+        }
+        return lastWasCR;
+    }
+
+    private void sendReceiverInit() throws IOException {
+        txHdr[0] = (byte) ZRINIT;
+        txHdr[1] = 0;
+        txHdr[2] = 0;
+        txHdr[3] = 0;
+        txHdr[4] = (byte) (CANFDX | CANOVIO | CANFC32);
+        sendHexHeader(txHdr);
+    }
+
+    /*
+     * Reads a header. Skips garbage till ZPAD ZDLE sequence. Returns frame type, TIMEOUT or ERROR.
+     */
+    private int getHeader(long deadline) throws IOException {
+        int c = 0;
+        int canCount = 0;
+
+        while (true) {
+            c = readByte(deadline);
+            if(c < 0) {
+                return c;
+            }
+            if(c == CAN) {
+                canCount++;
+                if(canCount >= 5) {
+                    throw new SerialComException(remoteAbortMsg);
+                }
+                continue;
+            }
+            canCount = 0;
+            if((c & 0x7F) != ZPAD) {
+                continue;
+            }
+
+            // one or more ZPAD followed by ZDLE
+            do {
+                c = readByte(deadline);
+                if(c < 0) {
+                    return c;
+                }
+            } while ((c & 0x7F) == ZPAD);
+            if(c != ZDLE) {
+                continue;
+            }
+
+            c = readByte(deadline);
+            if(c < 0) {
+                return c;
+            }
+            c = c & 0x7F;
+            if(c == ZBIN) {
+                return getBinaryHeader(deadline, false);
+            }else if(c == ZBIN32) {
+                return getBinaryHeader(deadline, true);
+            }else if(c == ZHEX) {
+                return getHexHeader(deadline);
+            }else if(c == CAN) {
+                canCount = 2;
+                continue;
+            }
+        }
+    }
+
+    private int getBinaryHeader(long deadline, boolean is32) throws IOException {
+        int c = 0;
+        int length = is32 ? 9 : 7;
+
+        for (int x = 0; x < length; x++) {
+            c = zdlRead(deadline);
+            if(c < 0) {
+                return c;
+            }
+            if((c & GOTOR) != 0) {
+                return ERROR;
+            }
+            hdrRaw[x] = (byte) c;
+        }
+
+        if(is32) {
+            long crc = (hdrRaw[5] & 0xFFL) | ((hdrRaw[6] & 0xFFL) << 8) | ((hdrRaw[7] & 0xFFL) << 16) | ((hdrRaw[8] & 0xFFL) << 24);
+            if(crcCalculator.getCRC32Value(hdrRaw, 0, 4) != crc) {
+                return ERROR;
+            }
+        }else {
+            int crc = ((hdrRaw[5] & 0xFF) << 8) | (hdrRaw[6] & 0xFF);
+            if(crcCalculator.getCRC16CCITTValue(hdrRaw, 0, 4) != crc) {
+                return ERROR;
+            }
+        }
+        return acceptHeader(is32);
+    }
+
+    private int getHexHeader(long deadline) throws IOException {
+        int hi = 0;
+        int lo = 0;
+
+        for (int x = 0; x < 7; x++) {
+            hi = readByte(deadline);
+            if(hi < 0) {
+                return hi;
+            }
+            lo = readByte(deadline);
+            if(lo < 0) {
+                return lo;
+            }
+            hi = hexValue(hi & 0x7F);
+            lo = hexValue(lo & 0x7F);
+            if((hi | lo) < 0) {
+                return ERROR;
+            }
+            hdrRaw[x] = (byte) ((hi << 4) | lo);
+        }
+
+        int crc = ((hdrRaw[5] & 0xFF) << 8) | (hdrRaw[6] & 0xFF);
+        if(crcCalculator.getCRC16CCITTValue(hdrRaw, 0, 4) != crc) {
+            return ERROR;
+        }
+        // trailing CR, LF and XON are skipped as garbage when next header is searched.
+        return acceptHeader(false);
+    }
+
+    private int acceptHeader(boolean is32) {
+        rxType = hdrRaw[0] & 0xFF;
+        rxHdr[0] = hdrRaw[1];
+        rxHdr[1] = hdrRaw[2];
+        rxHdr[2] = hdrRaw[3];
+        rxHdr[3] = hdrRaw[4];
+        rxFrameIs32 = is32;
+        return rxType;
+    }
+
+    private static int hexValue(int c) {
+        if((c >= '0') && (c <= '9')) {
+            return c - '0';
+        }
+        if((c >= 'a') && (c <= 'f')) {
+            return c - 'a' + 10;
+        }
+        if((c >= 'A') && (c <= 'F')) {
+            return c - 'A' + 10;
+        }
+        return -1;
+    }
+
+    /*
+     * Receives a data sub-packet in rxData. Returns frame end type OR'ed with GOTOR on success,
+     * otherwise TIMEOUT or ERROR (CRC mismatch, too long sub-packet or bad escape sequence).
+     */
+    private int receiveDataSubpacket(long deadline) throws IOException {
+        int c = 0;
+        int crcLength = rxFrameIs32 ? 4 : 2;
+        rxDataLen = 0;
+
+        while (true) {
+            c = zdlRead(deadline);
+            if(c < 0) {
+                return c;
+            }
+            if((c & GOTOR) != 0) {
+                break;
+            }
+            if(rxDataLen >= (rxData.length - 1)) {
+                return ERROR;
+            }
+            rxData[rxDataLen] = (byte) c;
+            rxDataLen++;
+        }
+
+        int frameEnd = c & 0xFF;
+        rxData[rxDataLen] = (byte) frameEnd;
+        for (int x = 0; x < crcLength; x++) {
+            c = zdlRead(deadline);
+            if(c < 0) {
+                return c;
+            }
+            if((c & GOTOR) != 0) {
+                return ERROR;
+            }
+            hdrRaw[x] = (byte) c;
+        }
+
+        if(rxFrameIs32) {
+            long crc = (hdrRaw[0] & 0xFFL) | ((hdrRaw[1] & 0xFFL) << 8) | ((hdrRaw[2] & 0xFFL) << 16) | ((hdrRaw[3] & 0xFFL) << 24);
+            if(crcCalculator.getCRC32Value(rxData, 0, rxDataLen) != crc) {
+                return ERROR;
+            }
+        }else {
+            int crc = ((hdrRaw[0] & 0xFF) << 8) | (hdrRaw[1] & 0xFF);
+            if(crcCalculator.getCRC16CCITTValue(rxData, 0, rxDataLen) != crc) {
+                return ERROR;
+            }
+        }
+        return frameEnd | GOTOR;
+    }
+
+    /*
+     * Reads a byte decoding ZDLE escape sequence. Flow control characters are dropped. Returns
+     * frame end character OR'ed with GOTOR if ZDLE ZCRCx sequence is found.
+     */
+    private int zdlRead(long deadline) throws IOException {
+        int c = 0;
+        int canCount = 0;
+
+        while (true) {
+            c = readByte(deadline);
+            if(c < 0) {
+                return c;
+            }
+            if(c != ZDLE) {
+                if(((c & 0x7F) == XON) || ((c & 0x7F) == XOFF)) {
+                    continue;
+                }
+                return c;
+            }
+
+            // ZDLE received, decode next character
+            canCount = 1;
+            while (true) {
+                c = readByte(deadline);
+                if(c < 0) {
+                    return c;
+                }
+                if(c == CAN) {
+                    canCount++;
+                    if(canCount >= 5) {
+                        throw new SerialComException(remoteAbortMsg);
+                    }
+                    continue;
+                }
+                if(((c & 0x7F) == XON) || ((c & 0x7F) == XOFF)) {
+                    continue;
+                }
+                break;
+            }
+            if(canCount > 1) {
+                // ZDLE ZDLE is not a valid escape sequence.
+                return ERROR;
+            }
+            if((c >= ZCRCE) && (c <= ZCRCW)) {
+                return c | GOTOR;
+            }
+            if(c == ZRUB0) {
+                return 0x7F;
+            }
+            if(c == ZRUB1) {
+                return 0xFF;
+            }
+            if((c & 0x60) == 0x40) {
+                return c ^ 0x40;
+            }
+            return ERROR;
+        }
+    }
+
+    /*
+     * Gives next received byte (0 to 255) or TIMEOUT if nothing arrives before deadline.
+     */
+    private int readByte(long deadline) throws IOException {
+        while (rxPos >= rxLen) {
+            if((transferState != null) && (transferState.isTransferToBeAborted() == true)) {
+                throw new ApplicationAbortException();
+            }
+            long remaining = deadline - System.currentTimeMillis();
+            if(remaining <= 0) {
+                return TIMEOUT;
+            }
+            // woken up as soon as data arrives, wait is bounded only to look at abort request.
+            rxLen = receiveBuffer.readAvailable(rxBuf, 0, rxBuf.length, Math.min(remaining, ABORTCHECKINTERVAL));
+            rxPos = 0;
+        }
+        int c = rxBuf[rxPos] & 0xFF;
+        rxPos++;
+        return c;
+    }
+
+    /*
+     * Receiver sends ZRPOS for every data header it gets while it is out of sync, so a single error 
+     * often results in several ZRPOS queued one after the other. Consumes those already received and 
+     * returns offset of the most recent one, so that sender goes back only once for all of them.
+     */
+    private long collapseRepositionRequests() throws IOException {
+        long errorPosition = getPosition();
+        while (isHeaderAvailable()) {
+            int frameType = getHeader(System.currentTimeMillis() + TIMEOUTVAL);
+            if(frameType == ZRPOS) {
+                errorPosition = getPosition();
+            }else if((frameType == ZABORT) || (frameType == ZFERR) || (frameType == ZCAN)) {
+                throw new SerialComException(remoteAbortMsg);
+            }
+        }
+        return errorPosition;
+    }
+
+    /*
+     * Tells without blocking whether a header may have arrived. Bytes preceding ZPAD (trailing CR, LF 
+     * and XON of previous hex header etc) are discarded.
+     */
+    private boolean isHeaderAvailable() throws IOException {
+        while (true) {
+            if(rxPos >= rxLen) {
+                if((transferState != null) && (transferState.isTransferToBeAborted() == true)) {
+                    throw new ApplicationAbortException();
+                }
+                rxLen = receiveBuffer.readAvailable(rxBuf, 0, rxBuf.length, 0);
+                rxPos = 0;
+                if(rxLen <= 0) {
+                    return false;
+                }
+            }
+            int c = rxBuf[rxPos] & 0xFF;
+            if(((c & 0x7F) == ZPAD) || (c == CAN)) {
+                return true;
+            }
+            rxPos++;
+        }
+    }
+
+    private long getPosition() {
+        return (rxHdr[0] & 0xFFL) | ((rxHdr[1] & 0xFFL) << 8) | ((rxHdr[2] & 0xFFL) << 16) | ((rxHdr[3] & 0xFFL) << 24);
+    }
+
+    private void setHeader(int type, long position) {
+        txHdr[0] = (byte) type;
+        txHdr[1] = (byte) position;
+        txHdr[2] = (byte) (position >>> 8);
+        txHdr[3] = (byte) (position >>> 16);
+        txHdr[4] = (byte) (position >>> 24);
+    }
+
+    private void sendHexHeader(int type, long position) throws IOException {
+        setHeader(type, position);
+        sendHexHeader(txHdr);
+    }
+
+    /*
+     * [ZPAD][ZPAD][ZDLE][ZHEX][type][p0][p1][p2][p3][crc hi][crc lo][CR][LF|0x80][XON] with every
+     * byte after ZHEX as two lower case hex digits.
+     */
+    private void sendHexHeader(byte[] hdr) throws IOException {
+        txBuf.clear();
+        txBuf.put((byte) ZPAD);
+        txBuf.put((byte) ZPAD);
+        txBuf.put((byte) ZDLE);
+        txBuf.put((byte) ZHEX);
+        for (int x = 0; x < 5; x++) {
+            putHex(hdr[x]);
+        }
+        int crc = crcCalculator.getCRC16CCITTValue(hdr, 0, 4);
+        putHex((byte) (crc >>> 8));
+        putHex((byte) crc);
+        txBuf.put((byte) CR);
+        txBuf.put((byte) (LF | 0x80));
+        if((hdr[0] != ZFIN) && (hdr[0] != ZACK)) {
+            txBuf.put((byte) XON);
+        }
+        flushTx();
+    }
+
+    private void putHex(byte b) {
+        final String digits = "0123456789abcdef";
+        txBuf.put((byte) digits.charAt((b >>> 4) & 0x0F));
+        txBuf.put((byte) digits.charAt(b & 0x0F));
+    }
+
+    private void sendBinaryHeader(int type, long position) throws IOException {
+        setHeader(type, position);
+        sendBinaryHeader(txHdr);
+    }
+
+    /*
+     * [ZPAD][ZDLE][ZBIN or ZBIN32][type][p0][p1][p2][p3][CRC-16 or CRC-32] escaped.
+     */
+    private void sendBinaryHeader(byte[] hdr) throws IOException {
+        txBuf.clear();
+        lastSent = 0;
+        txBuf.put((byte) ZPAD);
+        txBuf.put((byte) ZDLE);
+        txBuf.put((byte) (use32 ? ZBIN32 : ZBIN));
+        for (int x = 0; x < 5; x++) {
+            putEscaped(hdr[x] & 0xFF);
+        }
+        if(use32) {
+            long crc = crcCalculator.getCRC32Value(hdr, 0, 4);
+            putEscaped((int) (crc & 0xFF));
+            putEscaped((int) ((crc >>> 8) & 0xFF));
+            putEscaped((int) ((crc >>> 16) & 0xFF));
+            putEscaped((int) ((crc >>> 24) & 0xFF));
+        }else {
+            int crc = crcCalculator.getCRC16CCITTValue(hdr, 0, 4);
+            putEscaped((crc >>> 8) & 0xFF);
+            putEscaped(crc & 0xFF);
+        }
+        flushTx();
+    }
+
+    /*
+     * Sends length bytes from data followed by ZDLE, frameEnd and CRC. The data array must have
+     * space for one more byte as frame end is included in CRC.
+     */
+    private void sendDataSubpacket(byte[] data, int length, int frameEnd) throws IOException {
+        txBuf.clear();
+        lastSent = 0;
+        for (int x = 0; x < length; x++) {
+            putEscaped(data[x] & 0xFF);
+        }
+        txBuf.put((byte) ZDLE);
+        txBuf.put((byte) frameEnd);
+        data[length] = (byte) frameEnd;
+        if(use32) {
+            long crc = crcCalculator.getCRC32Value(data, 0, length);
+            putEscaped((int) (crc & 0xFF));
+            putEscaped((int) ((crc >>> 8) & 0xFF));
+            putEscaped((int) ((crc >>> 16) & 0xFF));
+            putEscaped((int) ((crc >>> 24) & 0xFF));
+        }else {
+            int crc = crcCalculator.getCRC16CCITTValue(data, 0, length);
+            putEscaped((crc >>> 8) & 0xFF);
+            putEscaped(crc & 0xFF);
+        }
+        if(frameEnd == ZCRCW) {
+            txBuf.put((byte) XON);
+        }
+        flushTx();
+    }
+
+    private void putEscaped(int c) {
+        if(escapeTable[c] || ((c & 0x7F) == CR && (lastSent & 0x7F) == '@')) {
+            txBuf.put((byte) ZDLE);
+            c = c ^ 0x40;
+        }
+        txBuf.put((byte) c);
+        lastSent = c;
+    }
+
+    private void flushTx() throws IOException {
+        int offset = 0;
+        int length = txBuf.position();
+        while (offset < length) {
+            int ret = scm.writeBytesDirect(handle, txBuf, offset, length - offset);
+            if(ret <= 0) {
+                throw new SerialComException("Could not write data to serial port (" + offset + " of " + length + " bytes sent) !");
+            }
+            offset = offset + ret;
+        }
+    }
+
+    /*
+     * ZDLE, DLE, XON and XOFF (with and without parity bit) are always escaped. If receiver asked,
+     * all control characters are escaped.
+     */
+    private void prepareEscapeTable(boolean escapeControl) {
+        for (int x = 0; x < 256; x++) {
+            escapeTable[x] = escapeControl && ((x & 0x60) == 0);
+        }
+        int[] always = { ZDLE, DLE, XON, XOFF };
+        for (int x = 0; x < always.length; x++) {
+            escapeTable[always[x]] = true;
+            escapeTable[always[x] | 0x80] = true;
+        }
+    }
+
+    private long fileCRC32(SerialComFTPFileSource inFile, long length) throws IOException {
+        java.util.zip.CRC32 crc = new java.util.zip.CRC32();
+        long remaining = (length <= 0) ? inFile.length() : Math.min(length, inFile.length());
+        inFile.position(0);
+        while (remaining > 0) {
+            int numRead = inFile.read(txData, 0, (int) Math.min(SUBPACKETSIZE, remaining));
+            if(numRead <= 0) {
+                break;
+            }
+            crc.update(txData, 0, numRead);
+            remaining = remaining - numRead;
+        }
+        return crc.getValue();
+    }
+
+    private static int percentOf(long position, long length) {
+        if(length < 0) {
+            return -1;
+        }
+        if(length == 0) {
+            return 100;
+        }
+        return (int) ((position * 100) / length);
+    }
+}
@@ -13,7 +13,7 @@
 package com.serialpundit.serial.internal;
 
 import java.util.Map;
-import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.serialpundit.core.SerialComException;
 import com.serialpundit.serial.ISerialComDataListener;
@@ -39,7 +39,7 @@ import com.serialpundit.serial.ISerialComEventListener;
 public final class SerialComCompletionDispatcher {
 
     private SerialComPortJNIBridge mComPortJNIBridge = null;
-    private TreeMap<Long, SerialComPortHandleInfo> mPortHandleInfo = null;
+    private ConcurrentHashMap<Long, SerialComPortHandleInfo> mPortHandleInfo = null;
 
     /**
      * <p>Allocates a new SerialComCompletionDispatcher object.</p>
@@ -47,7 +47,7 @@ public final class SerialComCompletionDispatcher {
      * @param mComPortJNIBridge interface used to invoke appropriate native function
      * @param portHandleInfo reference to portHandleInfo object to get/set information about handle/port
      */
-    public SerialComCompletionDispatcher(SerialComPortJNIBridge mComPortJNIBridge, TreeMap<Long, SerialComPortHandleInfo> portHandleInfo) {
+    public SerialComCompletionDispatcher(SerialComPortJNIBridge mComPortJNIBridge, ConcurrentHashMap<Long, SerialComPortHandleInfo> portHandleInfo) {
         this.mComPortJNIBridge = mComPortJNIBridge;
         this.mPortHandleInfo = portHandleInfo;
     }
@@ -68,7 +68,7 @@ public final class SerialComCompletionDispatcher {
 
         // Create looper for this handle and listener, if it does not exist.
         if(looper == null) {
-            looper = new SerialComLooper(mComPortJNIBridge);
+            looper = new SerialComLooper(mComPortJNIBridge, mHandleInfo.getMetrics());
             mHandleInfo.setLooper(looper);
         }
 
@@ -145,7 +145,7 @@ public final class SerialComCompletionDispatcher {
 
         // Create looper for this handle and listener, if it does not exist.
         if(looper == null) {
-            looper = new SerialComLooper(mComPortJNIBridge);
+            looper = new SerialComLooper(mComPortJNIBridge, mHandleInfo.getMetrics());
             mHandleInfo.setLooper(looper);
         }
 
@@ -0,0 +1,147 @@
+/*
+ * This file is part of SerialPundit.
+ * 
+ * Copyright (C) 2014-2016, Rishi Gupta. All rights reserved.
+ *
+ * The SerialPundit is DUAL LICENSED. It is made available under the terms of the GNU Affero 
+ * General Public License (AGPL) v3.0 for non-commercial use and under the terms of a commercial 
+ * license for commercial use of this software. 
+ * 
+ * The SerialPundit is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+
+package com.serialpundit.serial.internal;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <p>Fixed size histogram of latencies in nanoseconds with log-linear buckets, in the manner of 
+ * HdrHistogram. Values below 64 are counted exactly; above that every power of two range is split into 
+ * 32 buckets, which keeps relative error of reported values below about 3% all the way up to 2^40 
+ * nanoseconds (about 18 minutes). Larger values are counted in the last bucket.</p>
+ * 
+ * <p>Recording does not allocate or lock and may be done by many threads; reading percentiles walks 
+ * the buckets and may run concurrently with recording.</p>
+ * 
+ * @author Rishi Gupta
+ */
+public final class SerialComLatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;  // buckets per power of two
+    private static final int LINEAR_LIMIT = SUB_BUCKETS << 1;     // values below this are exact
+    private static final int MAX_BITS = 40;
+    private static final long MAX_TRACKABLE = (1L << MAX_BITS) - 1;
+    private static final int NUM_BUCKETS = LINEAR_LIMIT + ((MAX_BITS - SUB_BUCKET_BITS - 1) * SUB_BUCKETS);
+
+    private final AtomicLongArray counts = new AtomicLongArray(NUM_BUCKETS);
+    private final AtomicLong totalCount = new AtomicLong();
+    private final AtomicLong maxValue = new AtomicLong();
+
+    /**
+     * <p>Allocates a new empty SerialComLatencyHistogram object.</p>
+     */
+    public SerialComLatencyHistogram() {
+    }
+
+    private static int bucketIndex(long value) {
+        if(value < LINEAR_LIMIT) {
+            return (int) value;
+        }
+        int msb = 63 - Long.numberOfLeadingZeros(value);
+        int shift = msb - SUB_BUCKET_BITS;
+        return LINEAR_LIMIT + ((shift - 1) * SUB_BUCKETS) + (int) ((value >>> shift) - SUB_BUCKETS);
+    }
+
+    // largest value which falls in given bucket.
+    private static long highestValueInBucket(int index) {
+        if(index < LINEAR_LIMIT) {
+            return index;
+        }
+        int k = index - LINEAR_LIMIT;
+        int shift = (k / SUB_BUCKETS) + 1;
+        long sub = (k % SUB_BUCKETS) + SUB_BUCKETS;
+        return ((sub + 1) << shift) - 1;
+    }
+
+    /**
+     * <p>Records one occurrence of given latency.</p>
+     * 
+     * @param nanos latency in nanoseconds, negative values are recorded as 0.
+     */
+    public void record(long nanos) {
+        long value = nanos;
+        if(value < 0) {
+            value = 0;
+        }else if(value > MAX_TRACKABLE) {
+            value = MAX_TRACKABLE;
+        }
+        counts.incrementAndGet(bucketIndex(value));
+        totalCount.incrementAndGet();
+        long current = maxValue.get();
+        while ((value > current) && !maxValue.compareAndSet(current, value)) {
+            current = maxValue.get();
+        }
+    }
+
+    /**
+     * <p>Gives number of values recorded.</p>
+     * 
+     * @return total count.
+     */
+    public long getCount() {
+        return totalCount.get();
+    }
+
+    /**
+     * <p>Gives largest value recorded.</p>
+     * 
+     * @return maximum latency in nanoseconds or 0 if nothing has been recorded.
+     */
+    public long getMax() {
+        return maxValue.get();
+    }
+
+    /**
+     * <p>Gives value below or at which given percentage of recorded values fall.</p>
+     * 
+     * @param percentile percentage between 0 and 100.
+     * @return latency in nanoseconds, 0 if nothing has been recorded.
+     * @throws IllegalArgumentException if percentile is not between 0 and 100.
+     */
+    public long getValueAtPercentile(double percentile) {
+        if((percentile < 0) || (percentile > 100)) {
+            throw new IllegalArgumentException("Argument percentile must be between 0 and 100 !");
+        }
+        long total = totalCount.get();
+        if(total == 0) {
+            return 0;
+        }
+        long target = (long) Math.ceil((percentile / 100.0) * total);
+        if(target < 1) {
+            target = 1;
+        }
+        long max = maxValue.get();
+        long seen = 0;
+        for(int x = 0; x < NUM_BUCKETS; x++) {
+            seen += counts.get(x);
+            if(seen >= target) {
+                return Math.min(highestValueInBucket(x), max);
+            }
+        }
+        return max;
+    }
+
+    /**
+     * <p>Discards all recorded values.</p>
+     */
+    public void reset() {
+        for(int x = 0; x < NUM_BUCKETS; x++) {
+            counts.set(x, 0);
+        }
+        totalCount.set(0);
+        maxValue.set(0);
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * This file is part of SerialPundit.
+ * 
+ * Copyright (C) 2014-2016, Rishi Gupta. All rights reserved.
+ *
+ * The SerialPundit is DUAL LICENSED. It is made available under the terms of the GNU Affero 
+ * General Public License (AGPL) v3.0 for non-commercial use and under the terms of a commercial 
+ * license for commercial use of this software. 
+ * 
+ * The SerialPundit is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+
+package com.serialpundit.serial.internal;
+
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import com.serialpundit.serial.ISerialComSlowListenerHandler;
+
+/**
+ * <p>Periodically looks at loopers of all opened handles of a SerialComManager instance and reports 
+ * listener calls which are taking longer than threshold. Check is made every quarter of threshold, 
+ * so a call is caught at the latest 1.25 times threshold after it started.</p>
+ * 
+ * @author Rishi Gupta
+ */
+public final class SerialComListenerWatchdog {
+
+    private final Map<Long, SerialComPortMetrics> portMetrics;
+    private final long thresholdNanos;
+    private final ISerialComSlowListenerHandler handler;
+    private final Executor handOff;
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * <p>Allocates and starts a new SerialComListenerWatchdog object.</p>
+     * 
+     * @param portMetrics metrics of opened handles, through which loopers are found.
+     * @param thresholdMillis time in milliseconds after which listener call is considered slow.
+     * @param handler handler to be told about slow calls, may be null.
+     * @param handOff executor to move data delivery to when data listener is stuck, may be null.
+     */
+    public SerialComListenerWatchdog(Map<Long, SerialComPortMetrics> portMetrics, long thresholdMillis, 
+            ISerialComSlowListenerHandler handler, Executor handOff) {
+        this.portMetrics = portMetrics;
+        this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+        this.handler = handler;
+        this.handOff = handOff;
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "SerialPundit listener watchdog");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        long period = Math.max(1, thresholdMillis / 4);
+        scheduler.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                check();
+            }
+        }, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    private void check() {
+        long now = System.nanoTime();
+        for (SerialComPortMetrics metrics : portMetrics.values()) {
+            SerialComLooper looper = metrics.getLooper();
+            if(looper != null) {
+                try {
+                    looper.checkListeners(now, thresholdNanos, handler, handOff);
+                } catch (RuntimeException e) {
+                    // a misbehaving handler must not stop watchdog for other ports.
+                }
+            }
+        }
+    }
+
+    /**
+     * <p>Stops watchdog thread.</p>
+     */
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+}
@@ -13,15 +13,23 @@
 
 package com.serialpundit.serial.internal;
 
+import java.util.ArrayDeque;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
 
 import com.serialpundit.core.SerialComException;
 import com.serialpundit.serial.ISerialComDataListener;
 import com.serialpundit.serial.ISerialComEventListener;
+import com.serialpundit.serial.ISerialComSlowListenerHandler;
+import com.serialpundit.serial.ISerialComTraceListener;
 import com.serialpundit.serial.SerialComLineEvent;
 import com.serialpundit.serial.SerialComManager;
+import com.serialpundit.serial.capture.SerialComCaptureReader;
+import com.serialpundit.serial.capture.SerialComCaptureWriter;
 
 /**
  * <p>Encapsulates environment for data and event looper implementation. This runs in as a 
@@ -37,8 +45,21 @@ public final class SerialComLooper {
 
     private final int MAX_NUM_EVENTS = 5000;
     private SerialComPortJNIBridge mComPortJNIBridge;
+    private final SerialComPortMetrics mMetrics;
+    private long mHandle = -1;
 
-    private BlockingQueue<byte[]> mDataQueue = null;
+    // Start time of listener call in progress or 0, watched by SerialComListenerWatchdog.
+    private volatile long mDataCallStart = 0;
+    private volatile long mEventCallStart = 0;
+    private long mDataCallReported = 0;
+    private long mEventCallReported = 0;
+    private volatile Thread mDataConsumer = null;
+    private boolean mDataHandedOff = false;
+    // Held during every data listener call, so that a handed off DataLooper never overlaps a stuck call.
+    private final ReentrantLock mDeliveryLock = new ReentrantLock();
+    private static final long DRAIN_INTERVAL = 10;
+
+    private BlockingQueue<DataChunk> mDataQueue = null;
     private ISerialComDataListener mDataListener = null;
     private Object mDataLock = new Object();
     private Thread mDataLooperThread = null;
@@ -55,38 +76,100 @@ public final class SerialComLooper {
     private Thread mEventLooperThread = null;
     private AtomicBoolean exitEventThread = null;
 
-    private int appliedMask = SerialComManager.CTS | SerialComManager.DSR | SerialComManager.DCD | SerialComManager.RI;
+    private static final int ALL_LINES = SerialComManager.CTS | SerialComManager.DSR | SerialComManager.DCD | SerialComManager.RI;
+    private int appliedMask = ALL_LINES;
     private int oldLineState = 0;
     private int newLineState = 0;
+    private volatile int mLineState = -1;
+    private volatile int[] mLinesSnapshot = null;
+
+    /*
+     * Data read by native layer along with the time it was queued, so that time spent waiting in 
+     * queue can be measured.
+     */
+    private static final class DataChunk {
+        final byte[] data;
+        final long arrivalTime;
+
+        DataChunk(byte[] data, long arrivalTime) {
+            this.data = data;
+            this.arrivalTime = arrivalTime;
+        }
+    }
 
     /**
      * <p>This class runs in as a different thread context and keep looping over data queue, delivering 
      * data to the intended registered listener (data handler) one by one. The rate of delivery of
      * new data is directly proportional to how fast listener finishes his job and let us return.</p>
+     * 
+     * <p>Every listener call is made holding mDeliveryLock. If watchdog hands delivery off to another 
+     * DataLooper while this one is stuck in listener, the new one keeps draining data queue into its 
+     * own buffer until the stuck call returns and only then delivers buffered data in order, so listener 
+     * is never called concurrently. The stuck one leaves as soon as listener returns.</p>
+     * 
+     * <p>This buffer holds at most as many chunks as data queue (MAX_NUM_EVENTS). Once it is full, 
+     * oldest chunk is dropped and counted in port metrics, so a listener which never returns doubles 
+     * the amount of data kept in memory but does not exhaust it.</p>
      */
     class DataLooper implements Runnable {
         @Override
         public void run() {
             /* take() method blocks if there is no event to deliver. So we don't keep wasting 
              * CPU cycle in case queue is empty. */
-            while(true) {
-                synchronized(mDataLock) {
-                    try {
-                        mDataListener.onNewSerialDataAvailable(mDataQueue.take());
-                        if(deliverDataEvent.get() == false) {
-                            /* Causes the current thread to wait until another thread
-                             * invokes the notify method. */
-                            mDataLock.wait();
+            Thread self = Thread.currentThread();
+            ArrayDeque<DataChunk> pending = new ArrayDeque<DataChunk>();
+            mDataConsumer = self;
+            while(mDataConsumer == self) {
+                try {
+                    pending.add(mDataQueue.take());
+                    while(mDeliveryLock.tryLock(DRAIN_INTERVAL, TimeUnit.MILLISECONDS) == false) {
+                        mDataQueue.drainTo(pending);
+                        while(pending.size() > MAX_NUM_EVENTS) {
+                            pending.poll();
+                            mMetrics.recordDroppedDataChunk();
                         }
-                    } catch (InterruptedException e) {
-                        if(exitDataThread.get() == true) {
-                            break;
+                    }
+                    try {
+                        DataChunk chunk;
+                        while((chunk = pending.poll()) != null) {
+                            deliver(chunk, self);
                         }
+                    } finally {
+                        mDeliveryLock.unlock();
+                    }
+                } catch (InterruptedException e) {
+                    if(exitDataThread.get() == true) {
+                        break;
                     }
                 }
             }
-            exitDataThread.set(false); // Reset exit flag
-            mDataQueue = null;
+            if(mDataConsumer == self) {
+                exitDataThread.set(false); // Reset exit flag
+                mDataQueue = null;
+            }
+        }
+
+        /* Must be called holding mDeliveryLock. */
+        private void deliver(DataChunk chunk, Thread self) throws InterruptedException {
+            long start = System.nanoTime();
+            mDataCallStart = start;
+            mDataListener.onNewSerialDataAvailable(chunk.data);
+            long end = System.nanoTime();
+            if(mDataConsumer == self) {
+                mDataCallStart = 0;
+            }
+            mMetrics.recordListenerCall(start - chunk.arrivalTime, end - start);
+            ISerialComTraceListener tracer = SerialComTrace.getListener();
+            if(tracer != null) {
+                tracer.onDataListenerCalled(mHandle, chunk.data.length, end - start);
+            }
+            if(deliverDataEvent.get() == false) {
+                synchronized(mDataLock) {
+                    /* Causes the current thread to wait until another thread
+                     * invokes the notify method. */
+                    mDataLock.wait();
+                }
+            }
         }
     }
 
@@ -127,7 +210,15 @@ public final class SerialComLooper {
         public void run() {
             while(true) {
                 try {
-                    mEventListener.onNewSerialEvent(mEventQueue.take());
+                    SerialComLineEvent event = mEventQueue.take();
+                    long start = System.nanoTime();
+                    mEventCallStart = start;
+                    mEventListener.onNewSerialEvent(event);
+                    mEventCallStart = 0;
+                    ISerialComTraceListener tracer = SerialComTrace.getListener();
+                    if(tracer != null) {
+                        tracer.onEventListenerCalled(mHandle, event.getLineState(), System.nanoTime() - start);
+                    }
                 } catch (InterruptedException e) {
                     if(exitEventThread.get() == true) {
                         break;
@@ -143,9 +234,11 @@ public final class SerialComLooper {
      * <p>Allocates a new SerialComLooper object.</p>
      * 
      * @param mComPortJNIBridge interface used to invoke appropriate native function.
+     * @param metrics metrics of the handle this looper belongs to.
      */
-    public SerialComLooper(SerialComPortJNIBridge mComPortJNIBridge) { 
+    public SerialComLooper(SerialComPortJNIBridge mComPortJNIBridge, SerialComPortMetrics metrics) { 
         this.mComPortJNIBridge = mComPortJNIBridge;
+        this.mMetrics = metrics;
     }
 
     /**
@@ -153,12 +246,24 @@ public final class SerialComLooper {
      * @param newData byte array containing data read from serial port
      */
     public void insertInDataQueue(byte[] newData) {
+        long arrivalTime = System.nanoTime();
+        SerialComCaptureWriter capture = mMetrics.getCapture();
+        if(capture != null) {
+            capture.record(SerialComCaptureReader.RX, newData, 0, newData.length, arrivalTime);
+        }
         try {
             if(mDataQueue.remainingCapacity() == 0) {
-                mDataQueue.poll();
+                if(mDataQueue.poll() != null) {
+                    mMetrics.recordDroppedDataChunk();
+                }
+            }
+            if(mDataQueue.offer(new DataChunk(newData, arrivalTime))) {
+                mMetrics.recordListenerData(newData.length, mDataQueue.size());
+            }else {
+                mMetrics.recordDroppedDataChunk();
             }
-            mDataQueue.offer(newData);
         } catch (Exception e) {
+            mMetrics.recordDroppedDataChunk();
         }
     }
 
@@ -168,12 +273,15 @@ public final class SerialComLooper {
      * @param errorNum operating system specific error number to be sent to application.
      */
     public void insertInDataErrorQueue(int errorNum) {
-        if(mDataErrorQueue.remainingCapacity() == 0) {
-            mDataErrorQueue.poll();
-        }
         try {
-            mDataErrorQueue.offer(errorNum);
+            if(mDataErrorQueue.remainingCapacity() == 0) {
+                if(mDataErrorQueue.poll() != null) {
+                    mMetrics.recordListenerError(true);
+                }
+            }
+            mMetrics.recordListenerError(!mDataErrorQueue.offer(errorNum));
         } catch (Exception e) {
+            mMetrics.recordListenerError(true);
         }
     }
 
@@ -184,17 +292,33 @@ public final class SerialComLooper {
      * @param newEvent bit mask representing event on serial port control lines.
      */
     public void insertInEventQueue(int newEvent) {
+        mLineState = newEvent & ALL_LINES;
         newLineState = newEvent & appliedMask;
-        if(mEventQueue.remainingCapacity() == 0) {
-            mEventQueue.poll();
-        }
         try {
-            mEventQueue.offer(new SerialComLineEvent(oldLineState, newLineState));
+            if(mEventQueue.remainingCapacity() == 0) {
+                if(mEventQueue.poll() != null) {
+                    mMetrics.recordDroppedLineEvent();
+                }
+            }
+            if(!mEventQueue.offer(new SerialComLineEvent(oldLineState, newLineState))) {
+                mMetrics.recordDroppedLineEvent();
+            }
         } catch (Exception e) {
+            mMetrics.recordDroppedLineEvent();
         }
         oldLineState = newLineState;
     }
 
+    /**
+     * <p>Gives number of data chunks waiting to be delivered to data listener.</p>
+     * 
+     * @return depth of data queue or 0 if data looper is not running.
+     */
+    public int getDataQueueDepth() {
+        BlockingQueue<DataChunk> queue = mDataQueue;
+        return (queue == null) ? 0 : queue.size();
+    }
+
     /**
      * <p>Start the thread to loop over data queue. </p>
      * 
@@ -203,8 +327,11 @@ public final class SerialComLooper {
      * @param portName name of port represented by this handle.
      */
     public void startDataLooper(long handle, ISerialComDataListener dataListener, String portName) {
+        mHandle = handle;
         mDataListener = dataListener;
-        mDataQueue = new ArrayBlockingQueue<byte[]>(MAX_NUM_EVENTS);
+        mDataCallStart = 0;
+        mDataHandedOff = false;
+        mDataQueue = new ArrayBlockingQueue<DataChunk>(MAX_NUM_EVENTS);
         mDataErrorQueue = new ArrayBlockingQueue<Integer>(MAX_NUM_EVENTS);
         mDataLooperThread = new Thread(new DataLooper(), "SerialPundit DataLooper for handle " + handle + " and port " + portName);
         mDataErrorLooperThread = new Thread(new DataErrorLooper(), "SerialPundit DataErrorLooper for handle " + handle + " and port " + portName);
@@ -221,6 +348,55 @@ public final class SerialComLooper {
         exitDataErrorThread.set(true);
         mDataLooperThread.interrupt();
         mDataErrorLooperThread.interrupt();
+        Thread consumer = mDataConsumer;
+        if((consumer != null) && (consumer != mDataLooperThread)) {
+            consumer.interrupt();
+        }
+    }
+
+    /**
+     * <p>Called periodically by watchdog to find listener calls which have not returned within 
+     * threshold. Each such call is reported once. If a hand off executor is given and data listener 
+     * is stuck, draining of data queue is moved to a thread of that executor, which buffers data (at 
+     * most MAX_NUM_EVENTS chunks, oldest dropped beyond that) until the stuck call returns and then 
+     * delivers it in order; this is done at most once per registered data listener.</p>
+     * 
+     * @param now current value of System.nanoTime().
+     * @param thresholdNanos time after which listener call is considered slow.
+     * @param handler handler to be told about slow calls, may be null.
+     * @param handOff executor to move data delivery to, may be null.
+     */
+    void checkListeners(long now, long thresholdNanos, ISerialComSlowListenerHandler handler, Executor handOff) {
+        long start = mDataCallStart;
+        if((start != 0) && (start != mDataCallReported) && ((now - start) > thresholdNanos)) {
+            mDataCallReported = start;
+            mMetrics.recordSlowListenerCall();
+            boolean handedOff = false;
+            if((handOff != null) && (mDataHandedOff == false) && (mDataQueue != null)) {
+                mDataHandedOff = true;
+                mDataCallStart = 0;
+                mDataConsumer = null;
+                try {
+                    handOff.execute(new DataLooper());
+                    handedOff = true;
+                } catch (Exception e) {
+                    // executor refused, let stuck thread carry on once listener returns.
+                    mDataConsumer = mDataLooperThread;
+                }
+            }
+            if(handler != null) {
+                handler.onSlowDataListener(mHandle, now - start, handedOff);
+            }
+        }
+
+        start = mEventCallStart;
+        if((start != 0) && (start != mEventCallReported) && ((now - start) > thresholdNanos)) {
+            mEventCallReported = start;
+            mMetrics.recordSlowListenerCall();
+            if(handler != null) {
+                handler.onSlowEventListener(mHandle, now - start);
+            }
+        }
     }
 
     /**
@@ -243,9 +419,12 @@ public final class SerialComLooper {
         }
 
         // Bit mask CTS | DSR | DCD | RI
-        state = linestate[0] | linestate[1] | linestate[2] | linestate[3];
+        state = toLineState(linestate);
         oldLineState = state & appliedMask;
+        mLinesSnapshot = linestate;
+        mLineState = state;
 
+        mHandle = handle;
         mEventQueue = new ArrayBlockingQueue<SerialComLineEvent>(MAX_NUM_EVENTS);
         exitEventThread = new AtomicBoolean(false);
         mEventListener = eventListener;
@@ -261,10 +440,99 @@ public final class SerialComLooper {
      * @throws SerialComException if an error occurs.
      */
     public void stopEventLooper() throws SerialComException {
+        mLineState = -1;
+        mLinesSnapshot = null;
         exitEventThread.set(true);
         mEventLooperThread.interrupt();
     }
 
+    /**
+     * <p>Gives state of CTS, DSR, DCD and RI lines as last reported by native layer. It is kept up to 
+     * date for as long as event looper is running irrespective of event mask applied by application.</p>
+     * 
+     * @return bit mask of asserted lines or -1 if event looper is not running.
+     */
+    public int getLineState() {
+        return mLineState;
+    }
+
+    /**
+     * <p>Fills given array with status of lines in the order returned by native getLinesStatus, using 
+     * snapshot of last native read for LOOP, RTS and DTR and current state for CTS, DSR, DCD and RI.</p>
+     * 
+     * @param status array of at least as many elements as returned by native getLinesStatus.
+     * @return false if event looper is not running or snapshot has been invalidated, in which case given 
+     *          array is not modified.
+     */
+    public boolean getLinesStatus(int[] status) {
+        int state = mLineState;
+        int[] snapshot = mLinesSnapshot;
+        if((state < 0) || (snapshot == null)) {
+            return false;
+        }
+        System.arraycopy(snapshot, 0, status, 0, snapshot.length);
+        status[0] = ((state & SerialComManager.CTS) != 0) ? 1 : 0;
+        status[1] = ((state & SerialComManager.DSR) != 0) ? 1 : 0;
+        status[2] = ((state & SerialComManager.DCD) != 0) ? 1 : 0;
+        status[3] = ((state & SerialComManager.RI) != 0) ? 1 : 0;
+        return true;
+    }
+
+    /**
+     * <p>Gives status of lines in a new array, see getLinesStatus(int[]).</p>
+     * 
+     * @return status of lines or null if event looper is not running or snapshot has been invalidated.
+     */
+    public int[] getLinesStatus() {
+        int[] snapshot = mLinesSnapshot;
+        if(snapshot == null) {
+            return null;
+        }
+        int[] status = new int[snapshot.length];
+        return getLinesStatus(status) ? status : null;
+    }
+
+    /**
+     * <p>Takes new snapshot of lines status read from native layer, if event looper is running.</p>
+     * 
+     * @param status lines status read from native layer.
+     */
+    public void setLinesSnapshot(int[] status) {
+        if(mLineState >= 0) {
+            mLinesSnapshot = status.clone();
+        }
+    }
+
+    /**
+     * <p>Drops snapshot of lines status, called when RTS or DTR is changed.</p>
+     */
+    public void invalidateLinesSnapshot() {
+        mLinesSnapshot = null;
+    }
+
+    /**
+     * <p>Converts lines status returned by native layer into bit mask of asserted lines.</p>
+     * 
+     * @param status CTS, DSR, DCD, RI, ... as returned by native getLinesStatus.
+     * @return bit mask of CTS, DSR, DCD and RI.
+     */
+    public static int toLineState(int[] status) {
+        int state = 0;
+        if(status[0] != 0) {
+            state |= SerialComManager.CTS;
+        }
+        if(status[1] != 0) {
+            state |= SerialComManager.DSR;
+        }
+        if(status[2] != 0) {
+            state |= SerialComManager.DCD;
+        }
+        if(status[3] != 0) {
+            state |= SerialComManager.RI;
+        }
+        return state;
+    }
+
     /**
      * <p>Data looper thread refrains from sending new data to the data listener.</p>
      */
@@ -33,6 +33,9 @@ public final class SerialComPortHandleInfo {
     private ISerialComDataListener mDataListener = null;
     private SerialComInByteStream mSerialComInByteStream = null;
     private SerialComOutByteStream mSerialComOutByteStream = null;
+    private SerialComPortMetrics mMetrics = null;
+    private String[] mConfiguration = null;
+    private long mConfigurationVersion = 0;
 
     /**
      * <p>Allocates a new SerialComPortHandleInfo object.</p>
@@ -134,6 +137,26 @@ public final class SerialComPortHandleInfo {
      */
     public void setLooper(SerialComLooper looper) {
         this.mLooper = looper;
+        if(mMetrics != null) {
+            mMetrics.setLooper(looper);
+        }
+    }
+
+    /** 
+     * <p>Metrics collected for this port/handle.</p>
+     * 
+     * @return metrics object for this handle/port.
+     */
+    public SerialComPortMetrics getMetrics() {
+        return mMetrics;
+    }
+
+    /** <p>Set the metrics object that is associated with this handle.</p>
+     * 
+     * @param metrics metrics object that will be updated for this port/handle.
+     */
+    public void setMetrics(SerialComPortMetrics metrics) {
+        this.mMetrics = metrics;
     }
 
     /** 
@@ -219,4 +242,45 @@ public final class SerialComPortHandleInfo {
     public void setSerialComOutByteStream(SerialComOutByteStream serialComOutByteStream) {
         this.mSerialComOutByteStream  = serialComOutByteStream;
     }
+
+    /** 
+     * <p>Gives configuration of this port cached when it was last read from operating system.</p>
+     * 
+     * @return copy of cached configuration or null if it has to be read again.
+     */
+    public synchronized String[] getCachedConfiguration() {
+        return (mConfiguration == null) ? null : mConfiguration.clone();
+    }
+
+    /** 
+     * <p>Gives version of configuration which changes whenever cached configuration is invalidated. It 
+     * is taken before reading configuration from operating system and passed to cacheConfiguration so 
+     * that a configuration read while port was being reconfigured is not cached.</p>
+     * 
+     * @return current configuration version.
+     */
+    public synchronized long getConfigurationVersion() {
+        return mConfigurationVersion;
+    }
+
+    /** 
+     * <p>Caches configuration read from operating system if it has not been invalidated since given 
+     * version was taken.</p>
+     * 
+     * @param configuration configuration read from operating system.
+     * @param version configuration version taken before reading configuration.
+     */
+    public synchronized void cacheConfiguration(String[] configuration, long version) {
+        if(version == mConfigurationVersion) {
+            mConfiguration = configuration.clone();
+        }
+    }
+
+    /** 
+     * <p>Drops cached configuration, called whenever settings of this port are changed.</p>
+     */
+    public synchronized void invalidateConfiguration() {
+        mConfiguration = null;
+        mConfigurationVersion++;
+    }
 }
@@ -39,7 +39,7 @@ import com.serialpundit.serial.internal.SerialComLooper;
  * 
  * @author Rishi Gupta
  */
-public final class SerialComPortJNIBridge {
+public class SerialComPortJNIBridge {
 
     private static final Comparator<String> comparator = new Comparator<String>() {
 
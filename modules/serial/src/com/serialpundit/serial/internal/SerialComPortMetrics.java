@@ -0,0 +1,463 @@
+/*
+ * This file is part of SerialPundit.
+ * 
+ * Copyright (C) 2014-2016, Rishi Gupta. All rights reserved.
+ *
+ * The SerialPundit is DUAL LICENSED. It is made available under the terms of the GNU Affero 
+ * General Public License (AGPL) v3.0 for non-commercial use and under the terms of a commercial 
+ * license for commercial use of this software. 
+ * 
+ * The SerialPundit is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+
+package com.serialpundit.serial.internal;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import com.serialpundit.serial.ISerialComPortMetrics;
+import com.serialpundit.serial.SerialComLineErrors;
+import com.serialpundit.serial.capture.SerialComCaptureWriter;
+
+/**
+ * <p>Collects input/output metrics of an opened serial port handle. Counters are striped so that 
+ * application threads reading/writing and looper threads can update them concurrently without 
+ * contending. Methods of this class are called from hot input/output paths and therefore never 
+ * allocate or block.</p>
+ * 
+ * @author Rishi Gupta
+ */
+public final class SerialComPortMetrics implements ISerialComPortMetrics {
+
+    private final String portName;
+    private final long handle;
+    private ObjectName objectName;
+    private volatile SerialComLooper looper;
+    private volatile SerialComCaptureWriter capture;
+
+    private final SerialComStripedCounter bytesRead = new SerialComStripedCounter();
+    private final SerialComStripedCounter readCalls = new SerialComStripedCounter();
+    private final SerialComStripedCounter readNanos = new SerialComStripedCounter();
+    private final AtomicLong maxReadNanos = new AtomicLong();
+    private final SerialComStripedCounter bytesWritten = new SerialComStripedCounter();
+    private final SerialComStripedCounter writeCalls = new SerialComStripedCounter();
+    private final SerialComStripedCounter writeNanos = new SerialComStripedCounter();
+    private final AtomicLong maxWriteNanos = new AtomicLong();
+    private final SerialComStripedCounter ioErrors = new SerialComStripedCounter();
+
+    // updated only from native data worker thread through looper.
+    private final SerialComStripedCounter listenerBytes = new SerialComStripedCounter();
+    private final SerialComStripedCounter listenerChunks = new SerialComStripedCounter();
+    private final AtomicInteger maxDataQueueDepth = new AtomicInteger();
+    private final SerialComStripedCounter droppedDataChunks = new SerialComStripedCounter();
+    private final SerialComStripedCounter droppedLineEvents = new SerialComStripedCounter();
+    private final SerialComStripedCounter listenerErrors = new SerialComStripedCounter();
+    private final SerialComStripedCounter droppedListenerErrors = new SerialComStripedCounter();
+    private final SerialComStripedCounter slowListenerCalls = new SerialComStripedCounter();
+    private final SerialComLatencyHistogram deliveryLatency = new SerialComLatencyHistogram();
+    private final SerialComLatencyHistogram listenerServiceTime = new SerialComLatencyHistogram();
+
+    private final SerialComStripedCounter parityErrors = new SerialComStripedCounter();
+    private final SerialComStripedCounter framingErrors = new SerialComStripedCounter();
+    private final SerialComStripedCounter overrunErrors = new SerialComStripedCounter();
+    private final SerialComStripedCounter breaksReceived = new SerialComStripedCounter();
+
+    /**
+     * <p>Allocates a new SerialComPortMetrics object for given port and handle.</p>
+     * 
+     * @param portName name of the opened port.
+     * @param handle handle of the opened port.
+     */
+    public SerialComPortMetrics(String portName, long handle) {
+        this.portName = portName;
+        this.handle = handle;
+    }
+
+    /**
+     * <p>Registers this object with platform MBean server. Failure to register, for example because 
+     * security manager does not permit it, is not an error; metrics are still available through 
+     * SerialComManager.</p>
+     */
+    public void registerMBean() {
+        try {
+            ObjectName name = new ObjectName("com.serialpundit:type=SerialPort,name=" + ObjectName.quote(portName) + ",handle=" + handle);
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if(server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(this, name);
+            objectName = name;
+        } catch (Exception e) {
+            objectName = null;
+        }
+    }
+
+    /**
+     * <p>Removes this object from platform MBean server if it was registered.</p>
+     */
+    public void unregisterMBean() {
+        if(objectName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        } catch (Exception e) {
+        }
+        objectName = null;
+    }
+
+    /**
+     * <p>Sets looper whose data queue depth is reported.</p>
+     * 
+     * @param looper looper of this handle or null if it has been destroyed.
+     */
+    public void setLooper(SerialComLooper looper) {
+        this.looper = looper;
+    }
+
+    /**
+     * <p>Gives looper currently associated with this handle.</p>
+     * 
+     * @return looper or null if no listener is registered.
+     */
+    public SerialComLooper getLooper() {
+        return looper;
+    }
+
+    /**
+     * <p>Sets writer into which data read from and written to this handle is captured.</p>
+     * 
+     * @param capture capture writer or null to stop capturing.
+     */
+    public void setCapture(SerialComCaptureWriter capture) {
+        this.capture = capture;
+    }
+
+    /**
+     * <p>Gives writer into which data of this handle is captured.</p>
+     * 
+     * @return capture writer or null if data is not being captured.
+     */
+    public SerialComCaptureWriter getCapture() {
+        return capture;
+    }
+
+    private static void updateMax(AtomicLong max, long value) {
+        long current = max.get();
+        while ((value > current) && !max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+    }
+
+    /**
+     * <p>Records a native read call.</p>
+     * 
+     * @param numBytes number of bytes read, negative if read failed.
+     * @param nanos time taken by native call.
+     */
+    public void recordRead(int numBytes, long nanos) {
+        readCalls.increment();
+        readNanos.add(nanos);
+        updateMax(maxReadNanos, nanos);
+        if(numBytes > 0) {
+            bytesRead.add(numBytes);
+        }else if(numBytes < 0) {
+            ioErrors.increment();
+        }
+    }
+
+    /**
+     * <p>Records line errors reported by a read call.</p>
+     * 
+     * @param lineErr line errors filled by native layer, may be null.
+     */
+    public void recordLineErrors(SerialComLineErrors lineErr) {
+        if((lineErr == null) || (lineErr.hasAnyErrorOccurred() == false)) {
+            return;
+        }
+        if(lineErr.hasParityErrorOccurred()) {
+            parityErrors.increment();
+        }
+        if(lineErr.hasFramingErrorOccurred()) {
+            framingErrors.increment();
+        }
+        if(lineErr.hasOverrunErrorOccurred()) {
+            overrunErrors.increment();
+        }
+        if(lineErr.isBreakReceived()) {
+            breaksReceived.increment();
+        }
+    }
+
+    /**
+     * <p>Records a native write call.</p>
+     * 
+     * @param numBytes number of bytes written, negative if write failed.
+     * @param nanos time taken by native call.
+     */
+    public void recordWrite(int numBytes, long nanos) {
+        writeCalls.increment();
+        writeNanos.add(nanos);
+        updateMax(maxWriteNanos, nanos);
+        if(numBytes > 0) {
+            bytesWritten.add(numBytes);
+        }else if(numBytes < 0) {
+            ioErrors.increment();
+        }
+    }
+
+    /**
+     * <p>Records a data chunk queued for data listener.</p>
+     * 
+     * @param numBytes size of chunk.
+     * @param queueDepth depth of data queue after queuing this chunk.
+     */
+    public void recordListenerData(int numBytes, int queueDepth) {
+        listenerChunks.increment();
+        listenerBytes.add(numBytes);
+        int current = maxDataQueueDepth.get();
+        while ((queueDepth > current) && !maxDataQueueDepth.compareAndSet(current, queueDepth)) {
+            current = maxDataQueueDepth.get();
+        }
+    }
+
+    /**
+     * <p>Records delivery of a data chunk to data listener.</p>
+     * 
+     * @param queuedNanos time from data being queued by native layer to listener being called.
+     * @param serviceNanos time listener took to return.
+     */
+    public void recordListenerCall(long queuedNanos, long serviceNanos) {
+        deliveryLatency.record(queuedNanos);
+        listenerServiceTime.record(serviceNanos);
+    }
+
+    /**
+     * <p>Records a listener call found by watchdog to be taking longer than threshold.</p>
+     */
+    public void recordSlowListenerCall() {
+        slowListenerCalls.increment();
+    }
+
+    /**
+     * <p>Records a data chunk discarded by data looper.</p>
+     */
+    public void recordDroppedDataChunk() {
+        droppedDataChunks.increment();
+    }
+
+    /**
+     * <p>Records a line event discarded by event looper.</p>
+     */
+    public void recordDroppedLineEvent() {
+        droppedLineEvents.increment();
+    }
+
+    /**
+     * <p>Records an error reported to data listener.</p>
+     * 
+     * @param dropped true if error was discarded because error queue was full.
+     */
+    public void recordListenerError(boolean dropped) {
+        if(dropped) {
+            droppedListenerErrors.increment();
+        }else {
+            listenerErrors.increment();
+        }
+    }
+
+    @Override
+    public String getPortName() {
+        return portName;
+    }
+
+    @Override
+    public long getHandle() {
+        return handle;
+    }
+
+    @Override
+    public long getBytesRead() {
+        return bytesRead.sum();
+    }
+
+    @Override
+    public long getReadCalls() {
+        return readCalls.sum();
+    }
+
+    @Override
+    public long getAverageReadLatencyNanos() {
+        long calls = readCalls.sum();
+        return (calls == 0) ? 0 : readNanos.sum() / calls;
+    }
+
+    @Override
+    public long getMaxReadLatencyNanos() {
+        return maxReadNanos.get();
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return bytesWritten.sum();
+    }
+
+    @Override
+    public long getWriteCalls() {
+        return writeCalls.sum();
+    }
+
+    @Override
+    public long getAverageWriteLatencyNanos() {
+        long calls = writeCalls.sum();
+        return (calls == 0) ? 0 : writeNanos.sum() / calls;
+    }
+
+    @Override
+    public long getMaxWriteLatencyNanos() {
+        return maxWriteNanos.get();
+    }
+
+    @Override
+    public long getIOErrors() {
+        return ioErrors.sum();
+    }
+
+    @Override
+    public long getListenerBytes() {
+        return listenerBytes.sum();
+    }
+
+    @Override
+    public long getListenerChunks() {
+        return listenerChunks.sum();
+    }
+
+    @Override
+    public int getDataQueueDepth() {
+        SerialComLooper l = looper;
+        return (l == null) ? 0 : l.getDataQueueDepth();
+    }
+
+    @Override
+    public int getMaxDataQueueDepth() {
+        return maxDataQueueDepth.get();
+    }
+
+    @Override
+    public long getDroppedDataChunks() {
+        return droppedDataChunks.sum();
+    }
+
+    @Override
+    public long getDroppedLineEvents() {
+        return droppedLineEvents.sum();
+    }
+
+    @Override
+    public long getListenerErrors() {
+        return listenerErrors.sum();
+    }
+
+    @Override
+    public long getDroppedListenerErrors() {
+        return droppedListenerErrors.sum();
+    }
+
+    @Override
+    public long getSlowListenerCalls() {
+        return slowListenerCalls.sum();
+    }
+
+    @Override
+    public long getDeliveryLatencyNanos(double percentile) {
+        return deliveryLatency.getValueAtPercentile(percentile);
+    }
+
+    @Override
+    public long getMedianDeliveryLatencyNanos() {
+        return deliveryLatency.getValueAtPercentile(50);
+    }
+
+    @Override
+    public long getP99DeliveryLatencyNanos() {
+        return deliveryLatency.getValueAtPercentile(99);
+    }
+
+    @Override
+    public long getMaxDeliveryLatencyNanos() {
+        return deliveryLatency.getMax();
+    }
+
+    @Override
+    public long getListenerServiceNanos(double percentile) {
+        return listenerServiceTime.getValueAtPercentile(percentile);
+    }
+
+    @Override
+    public long getMedianListenerServiceNanos() {
+        return listenerServiceTime.getValueAtPercentile(50);
+    }
+
+    @Override
+    public long getP99ListenerServiceNanos() {
+        return listenerServiceTime.getValueAtPercentile(99);
+    }
+
+    @Override
+    public long getMaxListenerServiceNanos() {
+        return listenerServiceTime.getMax();
+    }
+
+    @Override
+    public long getParityErrors() {
+        return parityErrors.sum();
+    }
+
+    @Override
+    public long getFramingErrors() {
+        return framingErrors.sum();
+    }
+
+    @Override
+    public long getOverrunErrors() {
+        return overrunErrors.sum();
+    }
+
+    @Override
+    public long getBreaksReceived() {
+        return breaksReceived.sum();
+    }
+
+    @Override
+    public void reset() {
+        bytesRead.reset();
+        readCalls.reset();
+        readNanos.reset();
+        maxReadNanos.set(0);
+        bytesWritten.reset();
+        writeCalls.reset();
+        writeNanos.reset();
+        maxWriteNanos.set(0);
+        ioErrors.reset();
+        listenerBytes.reset();
+        listenerChunks.reset();
+        maxDataQueueDepth.set(0);
+        droppedDataChunks.reset();
+        droppedLineEvents.reset();
+        listenerErrors.reset();
+        droppedListenerErrors.reset();
+        slowListenerCalls.reset();
+        deliveryLatency.reset();
+        listenerServiceTime.reset();
+        parityErrors.reset();
+        framingErrors.reset();
+        overrunErrors.reset();
+        breaksReceived.reset();
+    }
+}
@@ -0,0 +1,682 @@
+/*
+ * This file is part of SerialPundit.
+ * 
+ * Copyright (C) 2014-2016, Rishi Gupta. All rights reserved.
+ *
+ * The SerialPundit is DUAL LICENSED. It is made available under the terms of the GNU Affero 
+ * General Public License (AGPL) v3.0 for non-commercial use and under the terms of a commercial 
+ * license for commercial use of this software. 
+ * 
+ * The SerialPundit is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+
+package com.serialpundit.serial.internal;
+
+import java.nio.ByteBuffer;
+
+import com.serialpundit.core.SerialComJNIProfiler;
+import com.serialpundit.serial.SerialComLineErrors;
+
+/**
+ * <p>Instrumented SerialComPortJNIBridge which accounts every native call with SerialComJNIProfiler. 
+ * Used instead of SerialComPortJNIBridge when JNI profiling is enabled.</p>
+ * 
+ * @author Rishi Gupta
+ */
+public final class SerialComProfiledPortJNIBridge extends SerialComPortJNIBridge {
+
+    private static final int INIT_NATIVE_LIB = SerialComJNIProfiler.register("SerialComPortJNIBridge.initNativeLib");
+    private static final int GET_NATIVE_LIBRARY_VERSION = SerialComJNIProfiler.register("SerialComPortJNIBridge.getNativeLibraryVersion");
+    private static final int LIST_AVAILABLE_COM_PORTS = SerialComJNIProfiler.register("SerialComPortJNIBridge.listAvailableComPorts");
+    private static final int SET_UP_DATA_LOOPER_THREAD = SerialComJNIProfiler.register("SerialComPortJNIBridge.setUpDataLooperThread");
+    private static final int SET_UP_EVENT_LOOPER_THREAD = SerialComJNIProfiler.register("SerialComPortJNIBridge.setUpEventLooperThread");
+    private static final int DESTROY_DATA_LOOPER_THREAD = SerialComJNIProfiler.register("SerialComPortJNIBridge.destroyDataLooperThread");
+    private static final int DESTROY_EVENT_LOOPER_THREAD = SerialComJNIProfiler.register("SerialComPortJNIBridge.destroyEventLooperThread");
+    private static final int PAUSE_LISTENING_EVENTS = SerialComJNIProfiler.register("SerialComPortJNIBridge.pauseListeningEvents");
+    private static final int RESUME_LISTENING_EVENTS = SerialComJNIProfiler.register("SerialComPortJNIBridge.resumeListeningEvents");
+    private static final int OPEN_COM_PORT = SerialComJNIProfiler.register("SerialComPortJNIBridge.openComPort");
+    private static final int CLOSE_COM_PORT = SerialComJNIProfiler.register("SerialComPortJNIBridge.closeComPort");
+    private static final int READ_BYTES = SerialComJNIProfiler.register("SerialComPortJNIBridge.readBytes");
+    private static final int READ_BYTES_P = SerialComJNIProfiler.register("SerialComPortJNIBridge.readBytesP");
+    private static final int READ_BYTES_BLOCKING = SerialComJNIProfiler.register("SerialComPortJNIBridge.readBytesBlocking");
+    private static final int READ_BYTES_DIRECT = SerialComJNIProfiler.register("SerialComPortJNIBridge.readBytesDirect");
+    private static final int WRITE_BYTES = SerialComJNIProfiler.register("SerialComPortJNIBridge.writeBytes");
+    private static final int WRITE_BYTES_DIRECT = SerialComJNIProfiler.register("SerialComPortJNIBridge.writeBytesDirect");
+    private static final int WRITE_SINGLE_BYTE = SerialComJNIProfiler.register("SerialComPortJNIBridge.writeSingleByte");
+    private static final int WRITE_BYTES_BLOCKING = SerialComJNIProfiler.register("SerialComPortJNIBridge.writeBytesBlocking");
+    private static final int CREATE_BLOCKING_IOCONTEXT = SerialComJNIProfiler.register("SerialComPortJNIBridge.createBlockingIOContext");
+    private static final int UNBLOCK_BLOCKING_IOOPERATION = SerialComJNIProfiler.register("SerialComPortJNIBridge.unblockBlockingIOOperation");
+    private static final int DESTROY_BLOCKING_IOCONTEXT = SerialComJNIProfiler.register("SerialComPortJNIBridge.destroyBlockingIOContext");
+    private static final int SET_RTS = SerialComJNIProfiler.register("SerialComPortJNIBridge.setRTS");
+    private static final int SET_DTR = SerialComJNIProfiler.register("SerialComPortJNIBridge.setDTR");
+    private static final int GET_LINES_STATUS = SerialComJNIProfiler.register("SerialComPortJNIBridge.getLinesStatus");
+    private static final int GET_INTERRUPT_COUNT = SerialComJNIProfiler.register("SerialComPortJNIBridge.getInterruptCount");
+    private static final int FIND_DRIVER_SERVING_COM_PORT = SerialComJNIProfiler.register("SerialComPortJNIBridge.findDriverServingComPort");
+    private static final int FIND_IRQNUMBER_FOR_COM_PORT = SerialComJNIProfiler.register("SerialComPortJNIBridge.findIRQnumberForComPort");
+    private static final int SEND_BREAK = SerialComJNIProfiler.register("SerialComPortJNIBridge.sendBreak");
+    private static final int GET_BYTE_COUNT = SerialComJNIProfiler.register("SerialComPortJNIBridge.getByteCount");
+    private static final int CLEAR_PORT_IOBUFFERS = SerialComJNIProfiler.register("SerialComPortJNIBridge.clearPortIOBuffers");
+    private static final int CONFIGURE_COM_PORT_DATA = SerialComJNIProfiler.register("SerialComPortJNIBridge.configureComPortData");
+    private static final int CONFIGURE_COM_PORT_CONTROL = SerialComJNIProfiler.register("SerialComPortJNIBridge.configureComPortControl");
+    private static final int GET_CURRENT_CONFIGURATION_U = SerialComJNIProfiler.register("SerialComPortJNIBridge.getCurrentConfigurationU");
+    private static final int GET_CURRENT_CONFIGURATION_W = SerialComJNIProfiler.register("SerialComPortJNIBridge.getCurrentConfigurationW");
+    private static final int FINE_TUNE_READ = SerialComJNIProfiler.register("SerialComPortJNIBridge.fineTuneRead");
+    private static final int SETUPTTY2COM = SerialComJNIProfiler.register("SerialComPortJNIBridge.setuptty2com");
+    private static final int UNSETUPTTY2COM = SerialComJNIProfiler.register("SerialComPortJNIBridge.unsetuptty2com");
+    private static final int LIST_NEXT_AVAILABLE_PORTS = SerialComJNIProfiler.register("SerialComPortJNIBridge.listNextAvailablePorts");
+    private static final int LIST_EXISTING_STANDARD_NULL_MODEM_PORTS = SerialComJNIProfiler.register("SerialComPortJNIBridge.listExistingStandardNullModemPorts");
+    private static final int LIST_EXISTING_CUSTOM_NULL_MODEM_PORTS = SerialComJNIProfiler.register("SerialComPortJNIBridge.listExistingCustomNullModemPorts");
+    private static final int LIST_EXISTING_STANDARD_LOOPBACK_PORTS = SerialComJNIProfiler.register("SerialComPortJNIBridge.listExistingStandardLoopbackPorts");
+    private static final int LIST_EXISTING_CUSTOM_LOOPBACK_PORTS = SerialComJNIProfiler.register("SerialComPortJNIBridge.listExistingCustomLoopbackPorts");
+    private static final int LIST_ALL_EXISTING_PORTS = SerialComJNIProfiler.register("SerialComPortJNIBridge.listAllExistingPorts");
+    private static final int LIST_ALL_EXISTING_PORTS_WITH_INFO = SerialComJNIProfiler.register("SerialComPortJNIBridge.listAllExistingPortsWithInfo");
+    private static final int CREATE_STANDARD_NULL_MODEM_PAIR = SerialComJNIProfiler.register("SerialComPortJNIBridge.createStandardNullModemPair");
+    private static final int CREATE_CUSTOM_NULL_MODEM_PAIR = SerialComJNIProfiler.register("SerialComPortJNIBridge.createCustomNullModemPair");
+    private static final int CREATE_STANDARD_LOOP_BACK_DEVICE = SerialComJNIProfiler.register("SerialComPortJNIBridge.createStandardLoopBackDevice");
+    private static final int CREATE_CUSTOM_LOOP_BACK_DEVICE = SerialComJNIProfiler.register("SerialComPortJNIBridge.createCustomLoopBackDevice");
+    private static final int DESTROY_ALL_CREATED_VIRTUAL_DEVICES = SerialComJNIProfiler.register("SerialComPortJNIBridge.destroyAllCreatedVirtualDevices");
+    private static final int DESTROY_ALL_CREATED_NULL_MODEM_PAIRS = SerialComJNIProfiler.register("SerialComPortJNIBridge.destroyAllCreatedNullModemPairs");
+    private static final int DESTROY_ALL_CREATED_LOOPBACK_DEVICES = SerialComJNIProfiler.register("SerialComPortJNIBridge.destroyAllCreatedLoopbackDevices");
+    private static final int DESTROY_GIVEN_VIRTUAL_DEVICE = SerialComJNIProfiler.register("SerialComPortJNIBridge.destroyGivenVirtualDevice");
+    private static final int GET_LAST_LOOP_BACK_DEVICE_NODE = SerialComJNIProfiler.register("SerialComPortJNIBridge.getLastLoopBackDeviceNode");
+    private static final int GET_LAST_NULL_MODEM_PAIR_NODES = SerialComJNIProfiler.register("SerialComPortJNIBridge.getLastNullModemPairNodes");
+    private static final int EMULATE_SERIAL_EVENT = SerialComJNIProfiler.register("SerialComPortJNIBridge.emulateSerialEvent");
+    private static final int EMULATE_LINE_RINGING_EVENT = SerialComJNIProfiler.register("SerialComPortJNIBridge.emulateLineRingingEvent");
+
+    /**
+     * <p>Allocates a new SerialComProfiledPortJNIBridge object.</p>
+     */
+    public SerialComProfiledPortJNIBridge() {
+    }
+
+    @Override
+    public int initNativeLib() {
+        long start = System.nanoTime();
+        try {
+            return super.initNativeLib();
+        } finally {
+            SerialComJNIProfiler.record(INIT_NATIVE_LIB, start);
+        }
+    }
+
+    @Override
+    public String getNativeLibraryVersion() {
+        long start = System.nanoTime();
+        try {
+            return super.getNativeLibraryVersion();
+        } finally {
+            SerialComJNIProfiler.record(GET_NATIVE_LIBRARY_VERSION, start);
+        }
+    }
+
+    @Override
+    public String[] listAvailableComPorts() {
+        long start = System.nanoTime();
+        try {
+            return super.listAvailableComPorts();
+        } finally {
+            SerialComJNIProfiler.record(LIST_AVAILABLE_COM_PORTS, start);
+        }
+    }
+
+    @Override
+    public int setUpDataLooperThread(long handle, SerialComLooper looper) {
+        long start = System.nanoTime();
+        try {
+            return super.setUpDataLooperThread(handle, looper);
+        } finally {
+            SerialComJNIProfiler.record(SET_UP_DATA_LOOPER_THREAD, start);
+        }
+    }
+
+    @Override
+    public int setUpEventLooperThread(long handle, SerialComLooper looper) {
+        long start = System.nanoTime();
+        try {
+            return super.setUpEventLooperThread(handle, looper);
+        } finally {
+            SerialComJNIProfiler.record(SET_UP_EVENT_LOOPER_THREAD, start);
+        }
+    }
+
+    @Override
+    public int destroyDataLooperThread(long handle) {
+        long start = System.nanoTime();
+        try {
+            return super.destroyDataLooperThread(handle);
+        } finally {
+            SerialComJNIProfiler.record(DESTROY_DATA_LOOPER_THREAD, start);
+        }
+    }
+
+    @Override
+    public int destroyEventLooperThread(long handle) {
+        long start = System.nanoTime();
+        try {
+            return super.destroyEventLooperThread(handle);
+        } finally {
+            SerialComJNIProfiler.record(DESTROY_EVENT_LOOPER_THREAD, start);
+        }
+    }
+
+    @Override
+    public int pauseListeningEvents(long handle) {
+        long start = System.nanoTime();
+        try {
+            return super.pauseListeningEvents(handle);
+        } finally {
+            SerialComJNIProfiler.record(PAUSE_LISTENING_EVENTS, start);
+        }
+    }
+
+    @Override
+    public int resumeListeningEvents(long handle) {
+        long start = System.nanoTime();
+        try {
+            return super.resumeListeningEvents(handle);
+        } finally {
+            SerialComJNIProfiler.record(RESUME_LISTENING_EVENTS, start);
+        }
+    }
+
+    @Override
+    public long openComPort(String portName, boolean enableRead, boolean enableWrite, boolean exclusiveOwner) {
+        long start = System.nanoTime();
+        try {
+            return super.openComPort(portName, enableRead, enableWrite, exclusiveOwner);
+        } finally {
+            SerialComJNIProfiler.record(OPEN_COM_PORT, start);
+        }
+    }
+
+    @Override
+    public int closeComPort(long handle) {
+        long start = System.nanoTime();
+        try {
+            return super.closeComPort(handle);
+        } finally {
+            SerialComJNIProfiler.record(CLOSE_COM_PORT, start);
+        }
+    }
+
+    @Override
+    public byte[] readBytes(long handle, int byteCount) {
+        long start = System.nanoTime();
+        byte[] ret = null;
+        int transferred = -1;
+        try {
+            ret = super.readBytes(handle, byteCount);
+            transferred = (ret != null) ? ret.length : 0;
+            return ret;
+        } finally {
+            SerialComJNIProfiler.record(READ_BYTES, start, byteCount, transferred);
+        }
+    }
+
+    @Override
+    public int readBytesP(long handle, byte[] buffer, int offset, int length, long context, SerialComLineErrors lineErr) {
+        long start = System.nanoTime();
+        int ret = -1;
+        try {
+            ret = super.readBytesP(handle, buffer, offset, length, context, lineErr);
+            return ret;
+        } finally {
+            SerialComJNIProfiler.record(READ_BYTES_P, start, length, ret);
+        }
+    }
+
+    @Override
+    public byte[] readBytesBlocking(long handle, int byteCount, long context) {
+        long start = System.nanoTime();
+        byte[] ret = null;
+        int transferred = -1;
+        try {
+            ret = super.readBytesBlocking(handle, byteCount, context);
+            transferred = (ret != null) ? ret.length : 0;
+            return ret;
+        } finally {
+            SerialComJNIProfiler.record(READ_BYTES_BLOCKING, start, byteCount, transferred);
+        }
+    }
+
+    @Override
+    public int readBytesDirect(long handle, ByteBuffer buffer, int offset, int length) {
+        long start = System.nanoTime();
+        int ret = -1;
+        try {
+            ret = super.readBytesDirect(handle, buffer, offset, length);
+            return ret;
+        } finally {
+            SerialComJNIProfiler.record(READ_BYTES_DIRECT, start, length, ret);
+        }
+    }
+
+    @Override
+    public int writeBytes(long handle, byte[] buffer, int delay) {
+        long start = System.nanoTime();
+        int ret = -1;
+        try {
+            ret = super.writeBytes(handle, buffer, delay);
+            return ret;
+        } finally {
+            SerialComJNIProfiler.record(WRITE_BYTES, start, buffer.length, ret);
+        }
+    }
+
+    @Override
+    public int writeBytesDirect(long handle, ByteBuffer buffer, int offset, int length) {
+        long start = System.nanoTime();
+        int ret = -1;
+        try {
+            ret = super.writeBytesDirect(handle, buffer, offset, length);
+            return ret;
+        } finally {
+            SerialComJNIProfiler.record(WRITE_BYTES_DIRECT, start, length, ret);
+        }
+    }
+
+    @Override
+    public int writeSingleByte(long handle, byte dataByte) {
+        long start = System.nanoTime();
+        int ret = -1;
+        try {
+            ret = super.writeSingleByte(handle, dataByte);
+            return ret;
+        } finally {
+            SerialComJNIProfiler.record(WRITE_SINGLE_BYTE, start, 1, ret);
+        }
+    }
+
+    @Override
+    public int writeBytesBlocking(long handle, byte[] buffer, long context) {
+        long start = System.nanoTime();
+        int ret = -1;
+        try {
+            ret = super.writeBytesBlocking(handle, buffer, context);
+            return ret;
+        } finally {
+            SerialComJNIProfiler.record(WRITE_BYTES_BLOCKING, start, buffer.length, ret);
+        }
+    }
+
+    @Override
+    public long createBlockingIOContext() {
+        long start = System.nanoTime();
+        try {
+            return super.createBlockingIOContext();
+        } finally {
+            SerialComJNIProfiler.record(CREATE_BLOCKING_IOCONTEXT, start);
+        }
+    }
+
+    @Override
+    public int unblockBlockingIOOperation(long context) {
+        long start = System.nanoTime();
+        try {
+            return super.unblockBlockingIOOperation(context);
+        } finally {
+            SerialComJNIProfiler.record(UNBLOCK_BLOCKING_IOOPERATION, start);
+        }
+    }
+
+    @Override
+    public int destroyBlockingIOContext(long context) {
+        long start = System.nanoTime();
+        try {
+            return super.destroyBlockingIOContext(context);
+        } finally {
+            SerialComJNIProfiler.record(DESTROY_BLOCKING_IOCONTEXT, start);
+        }
+    }
+
+    @Override
+    public int setRTS(long handle, boolean enabled) {
+        long start = System.nanoTime();
+        try {
+            return super.setRTS(handle, enabled);
+        } finally {
+            SerialComJNIProfiler.record(SET_RTS, start);
+        }
+    }
+
+    @Override
+    public int setDTR(long handle, boolean enabled) {
+        long start = System.nanoTime();
+        try {
+            return super.setDTR(handle, enabled);
+        } finally {
+            SerialComJNIProfiler.record(SET_DTR, start);
+        }
+    }
+
+    @Override
+    public int[] getLinesStatus(long handle) {
+        long start = System.nanoTime();
+        try {
+            return super.getLinesStatus(handle);
+        } finally {
+            SerialComJNIProfiler.record(GET_LINES_STATUS, start);
+        }
+    }
+
+    @Override
+    public int[] getInterruptCount(long handle) {
+        long start = System.nanoTime();
+        try {
+            return super.getInterruptCount(handle);
+        } finally {
+            SerialComJNIProfiler.record(GET_INTERRUPT_COUNT, start);
+        }
+    }
+
+    @Override
+    public String findDriverServingComPort(String comPortName) {
+        long start = System.nanoTime();
+        try {
+            return super.findDriverServingComPort(comPortName);
+        } finally {
+            SerialComJNIProfiler.record(FIND_DRIVER_SERVING_COM_PORT, start);
+        }
+    }
+
+    @Override
+    public String findIRQnumberForComPort(long handle) {
+        long start = System.nanoTime();
+        try {
+            return super.findIRQnumberForComPort(handle);
+        } finally {
+            SerialComJNIProfiler.record(FIND_IRQNUMBER_FOR_COM_PORT, start);
+        }
+    }
+
+    @Override
+    public int sendBreak(long handle, int duration) {
+        long start = System.nanoTime();
+        try {
+            return super.sendBreak(handle, duration);
+        } finally {
+            SerialComJNIProfiler.record(SEND_BREAK, start);
+        }
+    }
+
+    @Override
+    public int[] getByteCount(long handle) {
+        long start = System.nanoTime();
+        try {
+            return super.getByteCount(handle);
+        } finally {
+            SerialComJNIProfiler.record(GET_BYTE_COUNT, start);
+        }
+    }
+
+    @Override
+    public int clearPortIOBuffers(long handle, boolean rxPortbuf, boolean txPortbuf) {
+        long start = System.nanoTime();
+        try {
+            return super.clearPortIOBuffers(handle, rxPortbuf, txPortbuf);
+        } finally {
+            SerialComJNIProfiler.record(CLEAR_PORT_IOBUFFERS, start);
+        }
+    }
+
+    @Override
+    public int configureComPortData(long handle, int dataBits, int stopBits, int parity, int baudRateTranslated, int custBaudTranslated) {
+        long start = System.nanoTime();
+        try {
+            return super.configureComPortData(handle, dataBits, stopBits, parity, baudRateTranslated, custBaudTranslated);
+        } finally {
+            SerialComJNIProfiler.record(CONFIGURE_COM_PORT_DATA, start);
+        }
+    }
+
+    @Override
+    public int configureComPortControl(long handle, int flowctrl, byte xonCh, byte xoffCh, boolean ParFraError, boolean overFlowErr) {
+        long start = System.nanoTime();
+        try {
+            return super.configureComPortControl(handle, flowctrl, xonCh, xoffCh, ParFraError, overFlowErr);
+        } finally {
+            SerialComJNIProfiler.record(CONFIGURE_COM_PORT_CONTROL, start);
+        }
+    }
+
+    @Override
+    public int[] getCurrentConfigurationU(long handle) {
+        long start = System.nanoTime();
+        try {
+            return super.getCurrentConfigurationU(handle);
+        } finally {
+            SerialComJNIProfiler.record(GET_CURRENT_CONFIGURATION_U, start);
+        }
+    }
+
+    @Override
+    public String[] getCurrentConfigurationW(long handle) {
+        long start = System.nanoTime();
+        try {
+            return super.getCurrentConfigurationW(handle);
+        } finally {
+            SerialComJNIProfiler.record(GET_CURRENT_CONFIGURATION_W, start);
+        }
+    }
+
+    @Override
+    public int fineTuneRead(long handle, int vmin, int vtime, int rit, int rttm, int rttc) {
+        long start = System.nanoTime();
+        try {
+            return super.fineTuneRead(handle, vmin, vtime, rit, rttm, rttc);
+        } finally {
+            SerialComJNIProfiler.record(FINE_TUNE_READ, start);
+        }
+    }
+
+    @Override
+    public int setuptty2com() {
+        long start = System.nanoTime();
+        try {
+            return super.setuptty2com();
+        } finally {
+            SerialComJNIProfiler.record(SETUPTTY2COM, start);
+        }
+    }
+
+    @Override
+    public int unsetuptty2com() {
+        long start = System.nanoTime();
+        try {
+            return super.unsetuptty2com();
+        } finally {
+            SerialComJNIProfiler.record(UNSETUPTTY2COM, start);
+        }
+    }
+
+    @Override
+    public String[] listNextAvailablePorts() {
+        long start = System.nanoTime();
+        try {
+            return super.listNextAvailablePorts();
+        } finally {
+            SerialComJNIProfiler.record(LIST_NEXT_AVAILABLE_PORTS, start);
+        }
+    }
+
+    @Override
+    public String[] listExistingStandardNullModemPorts() {
+        long start = System.nanoTime();
+        try {
+            return super.listExistingStandardNullModemPorts();
+        } finally {
+            SerialComJNIProfiler.record(LIST_EXISTING_STANDARD_NULL_MODEM_PORTS, start);
+        }
+    }
+
+    @Override
+    public String[] listExistingCustomNullModemPorts() {
+        long start = System.nanoTime();
+        try {
+            return super.listExistingCustomNullModemPorts();
+        } finally {
+            SerialComJNIProfiler.record(LIST_EXISTING_CUSTOM_NULL_MODEM_PORTS, start);
+        }
+    }
+
+    @Override
+    public String[] listExistingStandardLoopbackPorts() {
+        long start = System.nanoTime();
+        try {
+            return super.listExistingStandardLoopbackPorts();
+        } finally {
+            SerialComJNIProfiler.record(LIST_EXISTING_STANDARD_LOOPBACK_PORTS, start);
+        }
+    }
+
+    @Override
+    public String[] listExistingCustomLoopbackPorts() {
+        long start = System.nanoTime();
+        try {
+            return super.listExistingCustomLoopbackPorts();
+        } finally {
+            SerialComJNIProfiler.record(LIST_EXISTING_CUSTOM_LOOPBACK_PORTS, start);
+        }
+    }
+
+    @Override
+    public String[] listAllExistingPorts() {
+        long start = System.nanoTime();
+        try {
+            return super.listAllExistingPorts();
+        } finally {
+            SerialComJNIProfiler.record(LIST_ALL_EXISTING_PORTS, start);
+        }
+    }
+
+    @Override
+    public String[] listAllExistingPortsWithInfo() {
+        long start = System.nanoTime();
+        try {
+            return super.listAllExistingPortsWithInfo();
+        } finally {
+            SerialComJNIProfiler.record(LIST_ALL_EXISTING_PORTS_WITH_INFO, start);
+        }
+    }
+
+    @Override
+    public String[] createStandardNullModemPair(int deviceIndex1, int deviceIndex2) {
+        long start = System.nanoTime();
+        try {
+            return super.createStandardNullModemPair(deviceIndex1, deviceIndex2);
+        } finally {
+            SerialComJNIProfiler.record(CREATE_STANDARD_NULL_MODEM_PAIR, start);
+        }
+    }
+
+    @Override
+    public String[] createCustomNullModemPair(int idx1, int rtsMap1, int dtrMap1, int idx2, int rtsMap2, int dtrMap2) {
+        long start = System.nanoTime();
+        try {
+            return super.createCustomNullModemPair(idx1, rtsMap1, dtrMap1, idx2, rtsMap2, dtrMap2);
+        } finally {
+            SerialComJNIProfiler.record(CREATE_CUSTOM_NULL_MODEM_PAIR, start);
+        }
+    }
+
+    @Override
+    public String[] createStandardLoopBackDevice(int deviceIndex) {
+        long start = System.nanoTime();
+        try {
+            return super.createStandardLoopBackDevice(deviceIndex);
+        } finally {
+            SerialComJNIProfiler.record(CREATE_STANDARD_LOOP_BACK_DEVICE, start);
+        }
+    }
+
+    @Override
+    public String[] createCustomLoopBackDevice(int deviceIndex, int rtsMap, int dtrMap) {
+        long start = System.nanoTime();
+        try {
+            return super.createCustomLoopBackDevice(deviceIndex, rtsMap, dtrMap);
+        } finally {
+            SerialComJNIProfiler.record(CREATE_CUSTOM_LOOP_BACK_DEVICE, start);
+        }
+    }
+
+    @Override
+    public int destroyAllCreatedVirtualDevices() {
+        long start = System.nanoTime();
+        try {
+            return super.destroyAllCreatedVirtualDevices();
+        } finally {
+            SerialComJNIProfiler.record(DESTROY_ALL_CREATED_VIRTUAL_DEVICES, start);
+        }
+    }
+
+    @Override
+    public int destroyAllCreatedNullModemPairs() {
+        long start = System.nanoTime();
+        try {
+            return super.destroyAllCreatedNullModemPairs();
+        } finally {
+            SerialComJNIProfiler.record(DESTROY_ALL_CREATED_NULL_MODEM_PAIRS, start);
+        }
+    }
+
+    @Override
+    public int destroyAllCreatedLoopbackDevices() {
+        long start = System.nanoTime();
+        try {
+            return super.destroyAllCreatedLoopbackDevices();
+        } finally {
+            SerialComJNIProfiler.record(DESTROY_ALL_CREATED_LOOPBACK_DEVICES, start);
+        }
+    }
+
+    @Override
+    public int destroyGivenVirtualDevice(String device) {
+        long start = System.nanoTime();
+        try {
+            return super.destroyGivenVirtualDevice(device);
+        } finally {
+            SerialComJNIProfiler.record(DESTROY_GIVEN_VIRTUAL_DEVICE, start);
+        }
+    }
+
+    @Override
+    public String[] getLastLoopBackDeviceNode() {
+        long start = System.nanoTime();
+        try {
+            return super.getLastLoopBackDeviceNode();
+        } finally {
+            SerialComJNIProfiler.record(GET_LAST_LOOP_BACK_DEVICE_NODE, start);
+        }
+    }
+
+    @Override
+    public String[] getLastNullModemPairNodes() {
+        long start = System.nanoTime();
+        try {
+            return super.getLastNullModemPairNodes();
+        } finally {
+            SerialComJNIProfiler.record(GET_LAST_NULL_MODEM_PAIR_NODES, start);
+        }
+    }
+
+    @Override
+    public int emulateSerialEvent(String devNode, int error) {
+        long start = System.nanoTime();
+        try {
+            return super.emulateSerialEvent(devNode, error);
+        } finally {
+            SerialComJNIProfiler.record(EMULATE_SERIAL_EVENT, start);
+        }
+    }
+
+    @Override
+    public int emulateLineRingingEvent(String devNode, boolean state) {
+        long start = System.nanoTime();
+        try {
+            return super.emulateLineRingingEvent(devNode, state);
+        } finally {
+            SerialComJNIProfiler.record(EMULATE_LINE_RINGING_EVENT, start);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * This file is part of SerialPundit.
+ * 
+ * Copyright (C) 2014-2016, Rishi Gupta. All rights reserved.
+ *
+ * The SerialPundit is DUAL LICENSED. It is made available under the terms of the GNU Affero 
+ * General Public License (AGPL) v3.0 for non-commercial use and under the terms of a commercial 
+ * license for commercial use of this software. 
+ * 
+ * The SerialPundit is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+
+package com.serialpundit.serial.internal;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <p>Counter which many threads can increment concurrently without contending on a single memory 
+ * location. Increments go to one of several cells chosen by calling thread and cells are summed up 
+ * when value is read. Cells are spaced a cache line apart so that threads updating different cells 
+ * do not invalidate each other's cache lines.</p>
+ * 
+ * <p>Reading is not atomic with respect to concurrent increments; sum is exact once updates stop.</p>
+ * 
+ * @author Rishi Gupta
+ */
+public final class SerialComStripedCounter {
+
+    // 8 longs make 64 bytes, the common cache line size.
+    private static final int PAD = 8;
+    private static final int STRIPES;
+    static {
+        int n = 1;
+        int cpus = Runtime.getRuntime().availableProcessors();
+        while ((n < cpus) && (n < 64)) {
+            n = n << 1;
+        }
+        STRIPES = n;
+    }
+
+    private final AtomicLongArray cells = new AtomicLongArray((STRIPES + 1) * PAD);
+
+    /**
+     * <p>Allocates a new SerialComStripedCounter object with value 0.</p>
+     */
+    public SerialComStripedCounter() {
+    }
+
+    private static int cellIndex() {
+        // spread thread ids so that threads created one after other use different cells.
+        int id = (int) Thread.currentThread().getId() * 0x9E3779B9;
+        return ((id >>> 16) & (STRIPES - 1)) * PAD + PAD;
+    }
+
+    /**
+     * <p>Adds given value to this counter.</p>
+     * 
+     * @param value amount to add.
+     */
+    public void add(long value) {
+        cells.getAndAdd(cellIndex(), value);
+    }
+
+    /**
+     * <p>Adds one to this counter.</p>
+     */
+    public void increment() {
+        cells.getAndIncrement(cellIndex());
+    }
+
+    /**
+     * <p>Gives current value of this counter.</p>
+     * 
+     * @return sum of all cells.
+     */
+    public long sum() {
+        long sum = 0;
+        for(int x = PAD; x < cells.length(); x += PAD) {
+            sum += cells.get(x);
+        }
+        return sum;
+    }
+
+    /**
+     * <p>Sets this counter to 0.</p>
+     */
+    public void reset() {
+        for(int x = PAD; x < cells.length(); x += PAD) {
+            cells.set(x, 0);
+        }
+    }
+}
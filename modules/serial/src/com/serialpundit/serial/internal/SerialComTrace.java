@@ -0,0 +1,48 @@
+/*
+ * This file is part of SerialPundit.
+ * 
+ * Copyright (C) 2014-2016, Rishi Gupta. All rights reserved.
+ *
+ * The SerialPundit is DUAL LICENSED. It is made available under the terms of the GNU Affero 
+ * General Public License (AGPL) v3.0 for non-commercial use and under the terms of a commercial 
+ * license for commercial use of this software. 
+ * 
+ * The SerialPundit is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+
+package com.serialpundit.serial.internal;
+
+import com.serialpundit.serial.ISerialComTraceListener;
+
+/**
+ * <p>Holds trace listener set by application. There is one listener for whole library, the same way 
+ * there is one flight recorder per JVM. Call sites read it once and skip tracing when it is null.</p>
+ * 
+ * @author Rishi Gupta
+ */
+public final class SerialComTrace {
+
+    private static volatile ISerialComTraceListener listener = null;
+
+    private SerialComTrace() {
+    }
+
+    /**
+     * <p>Sets listener which will be told about timing of serial port operations.</p>
+     * 
+     * @param traceListener listener or null to disable tracing.
+     */
+    public static void setListener(ISerialComTraceListener traceListener) {
+        listener = traceListener;
+    }
+
+    /**
+     * <p>Gives listener currently set.</p>
+     * 
+     * @return trace listener or null if tracing is disabled.
+     */
+    public static ISerialComTraceListener getListener() {
+        return listener;
+    }
+}
@@ -0,0 +1,34 @@
+/*
+ * This file is part of SerialPundit.
+ * 
+ * Copyright (C) 2014-2016, Rishi Gupta. All rights reserved.
+ *
+ * The SerialPundit is DUAL LICENSED. It is made available under the terms of the GNU Affero 
+ * General Public License (AGPL) v3.0 for non-commercial use and under the terms of a commercial 
+ * license for commercial use of this software. 
+ * 
+ * The SerialPundit is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+
+package com.serialpundit.serial.inventory;
+
+/**
+ * <p>The interface ISerialComPortInventoryListener should be implemented by class who wish to get 
+ * notified whenever serial ports are added to or removed from system.</p>
+ * 
+ * <p>Application should call addListener method in SerialComPortInventory class to register listener.</p>
+ * 
+ * @author Rishi Gupta
+ */
+public interface ISerialComPortInventoryListener {
+
+    /**
+     * <p>Called after inventory has found that set of serial ports present in system has changed. 
+     * It is called by the thread which refreshed inventory, typically the watcher thread of inventory, 
+     * so it should return quickly.</p>
+     * 
+     * @param changes ports added and removed between previous and current snapshot.
+     */
+    public abstract void onPortsChanged(SerialComPortChanges changes);
+}
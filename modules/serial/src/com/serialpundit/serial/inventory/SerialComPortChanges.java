@@ -0,0 +1,87 @@
+/*
+ * This file is part of SerialPundit.
+ * 
+ * Copyright (C) 2014-2016, Rishi Gupta. All rights reserved.
+ *
+ * The SerialPundit is DUAL LICENSED. It is made available under the terms of the GNU Affero 
+ * General Public License (AGPL) v3.0 for non-commercial use and under the terms of a commercial 
+ * license for commercial use of this software. 
+ * 
+ * The SerialPundit is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+
+package com.serialpundit.serial.inventory;
+
+/**
+ * <p>Difference between two snapshots of port inventory. Port names are in the same sorted order 
+ * as in the snapshots.</p>
+ * 
+ * @author Rishi Gupta
+ */
+public final class SerialComPortChanges {
+
+    private static final String[] NONE = new String[0];
+
+    private final long fromVersion;
+    private final long toVersion;
+    private final String[] added;
+    private final String[] removed;
+
+    SerialComPortChanges(long fromVersion, long toVersion, String[] added, String[] removed) {
+        this.fromVersion = fromVersion;
+        this.toVersion = toVersion;
+        this.added = (added.length == 0) ? NONE : added;
+        this.removed = (removed.length == 0) ? NONE : removed;
+    }
+
+    /**
+     * <p>Gives version of the older snapshot.</p>
+     * 
+     * @return version changes are relative to.
+     */
+    public long getFromVersion() {
+        return fromVersion;
+    }
+
+    /**
+     * <p>Gives version of the newer snapshot.</p>
+     * 
+     * @return version changes lead to.
+     */
+    public long getToVersion() {
+        return toVersion;
+    }
+
+    /**
+     * <p>Gives ports present in newer snapshot but not in older one.</p>
+     * 
+     * @return names of added ports or empty array.
+     */
+    public String[] getAdded() {
+        return added.clone();
+    }
+
+    /**
+     * <p>Gives ports present in older snapshot but not in newer one.</p>
+     * 
+     * @return names of removed ports or empty array.
+     */
+    public String[] getRemoved() {
+        return removed.clone();
+    }
+
+    /**
+     * <p>Tells whether any port was added or removed.</p>
+     * 
+     * @return true if no port was added or removed.
+     */
+    public boolean isEmpty() {
+        return (added.length == 0) && (removed.length == 0);
+    }
+
+    @Override
+    public String toString() {
+        return "version " + fromVersion + " -> " + toVersion + ", added " + added.length + ", removed " + removed.length;
+    }
+}
@@ -0,0 +1,345 @@
+/*
+ * This file is part of SerialPundit.
+ * 
+ * Copyright (C) 2014-2016, Rishi Gupta. All rights reserved.
+ *
+ * The SerialPundit is DUAL LICENSED. It is made available under the terms of the GNU Affero 
+ * General Public License (AGPL) v3.0 for non-commercial use and under the terms of a commercial 
+ * license for commercial use of this software. 
+ * 
+ * The SerialPundit is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+
+package com.serialpundit.serial.inventory;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import com.serialpundit.core.SerialComPlatform;
+import com.serialpundit.serial.internal.SerialComPortsList;
+
+/**
+ * <p>Keeps list of serial ports present in system and enumerates them again only when they may
+ * have changed, so applications which look for ports frequently, for example an inventory service
+ * polling every second, do not pay cost of native enumeration and sorting on every call.</p>
+ * 
+ * <p>On Linux and Solaris, device directory (/dev and /dev/term respectively) is watched for device
+ * nodes being created or deleted and snapshot is refreshed only after such an event. On Linux only
+ * nodes whose name begins with tty or rfcomm are considered. When listeners are registered, watcher
+ * thread refreshes inventory itself shortly after an event and notifies them.</p>
+ * 
+ * <p>On other platforms, and where watching can not be set up, snapshot is refreshed when it is
+ * older than refresh interval (1 second by default). Application may also call invalidate or refresh
+ * from its own notification, for example from ISerialComUSBHotPlugListener registered through
+ * SerialComUSB, and set refresh interval to 0 to enumerate only on such notifications.</p>
+ * 
+ * <p>This class is thread safe.</p>
+ * 
+ * @author Rishi Gupta
+ */
+public final class SerialComPortInventory {
+
+    private static final long DEFAULT_REFRESH_INTERVAL = 1000;
+
+    // Nodes of one device are created in a burst, wait for it to settle before enumerating.
+    private static final long SETTLE_TIME = 50;
+
+    private final SerialComPortsList mSerialComPortsList;
+    private final int osType;
+    private final Object lock = new Object();
+    private final CopyOnWriteArrayList<ISerialComPortInventoryListener> listeners = new CopyOnWriteArrayList<ISerialComPortInventoryListener>();
+    private final WatchService watchService;
+    private volatile SerialComPortSnapshot snapshot;
+    private volatile long lastRefresh;
+    private volatile long refreshInterval;
+    private volatile boolean dirty = true;
+    private volatile boolean watching;
+    private volatile boolean closed;
+    private long enumerations;
+
+    /**
+     * <p>Allocates a new SerialComPortInventory object and starts watching device directory where
+     * supported. Applications should use SerialComManager.getSerialComPortInventoryInstance().</p>
+     * 
+     * @param mSerialComPortsList enumerator of ports.
+     * @param osType operating system this library is running on.
+     */
+    public SerialComPortInventory(SerialComPortsList mSerialComPortsList, int osType) {
+        this.mSerialComPortsList = mSerialComPortsList;
+        this.osType = osType;
+
+        WatchService service = null;
+        String directory = null;
+        if(osType == SerialComPlatform.OS_LINUX) {
+            directory = "/dev";
+        }else if(osType == SerialComPlatform.OS_SOLARIS) {
+            directory = "/dev/term";
+        }
+        if(directory != null) {
+            try {
+                service = FileSystems.getDefault().newWatchService();
+                Paths.get(directory).register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE);
+            } catch (Exception e) {
+                // watching is an optimization, fall back to refresh interval.
+                if(service != null) {
+                    try {
+                        service.close();
+                    } catch (IOException e1) {
+                    }
+                }
+                service = null;
+            }
+        }
+        watchService = service;
+
+        if(watchService != null) {
+            watching = true;
+            refreshInterval = 0;
+            Thread watcher = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    watch();
+                }
+            }, "SerialPundit port inventory");
+            watcher.setDaemon(true);
+            watcher.start();
+        }else {
+            refreshInterval = DEFAULT_REFRESH_INTERVAL;
+        }
+    }
+
+    /**
+     * <p>Gives current snapshot of ports. Ports are enumerated only if a change has been noticed or
+     * invalidate has been called since last enumeration, or if snapshot is older than refresh
+     * interval. Otherwise the same snapshot object is returned again.</p>
+     * 
+     * @return current snapshot.
+     */
+    public SerialComPortSnapshot getSnapshot() {
+        SerialComPortSnapshot current = snapshot;
+        if((current != null) && !isStale()) {
+            return current;
+        }
+        synchronized(lock) {
+            // another thread may have refreshed while this one waited for lock.
+            if((snapshot != null) && !isStale()) {
+                return snapshot;
+            }
+            return enumerate();
+        }
+    }
+
+    /**
+     * <p>Enumerates ports now regardless of whether a change has been noticed and notifies listeners
+     * if set of ports has changed.</p>
+     * 
+     * @return current snapshot.
+     */
+    public SerialComPortSnapshot refresh() {
+        synchronized(lock) {
+            return enumerate();
+        }
+    }
+
+    /**
+     * <p>Marks snapshot out of date, so that next call to getSnapshot enumerates ports. This is cheap
+     * and can be called directly from hot plug notifications.</p>
+     */
+    public void invalidate() {
+        dirty = true;
+    }
+
+    /**
+     * <p>Gives ports added and removed since given snapshot. This is the same as getSnapshot().diff(since).</p>
+     * 
+     * @param since snapshot taken earlier from this inventory.
+     * @return changes leading from given snapshot to current snapshot.
+     * @throws IllegalArgumentException if since is null.
+     */
+    public SerialComPortChanges getChanges(SerialComPortSnapshot since) {
+        if(since == null) {
+            throw new IllegalArgumentException("Argument since can not be null !");
+        }
+        return getSnapshot().diff(since);
+    }
+
+    /**
+     * <p>Sets age after which snapshot is enumerated again even if no change has been noticed. Value 0
+     * means ports are enumerated only after a change is noticed or invalidate is called.</p>
+     * 
+     * @param millis refresh interval in milliseconds.
+     * @throws IllegalArgumentException if millis is negative.
+     */
+    public void setRefreshInterval(long millis) {
+        if(millis < 0) {
+            throw new IllegalArgumentException("Argument millis can not be negative !");
+        }
+        refreshInterval = millis;
+    }
+
+    /**
+     * <p>Gives refresh interval, 0 by default where device directory is watched and 1000 otherwise.</p>
+     * 
+     * @return refresh interval in milliseconds.
+     */
+    public long getRefreshInterval() {
+        return refreshInterval;
+    }
+
+    /**
+     * <p>Tells whether changes are noticed by watching device directory.</p>
+     * 
+     * @return true if device directory is being watched.
+     */
+    public boolean isWatching() {
+        return watching;
+    }
+
+    /**
+     * <p>Gives number of times ports have been enumerated by this inventory.</p>
+     * 
+     * @return number of enumerations.
+     */
+    public long getEnumerationCount() {
+        synchronized(lock) {
+            return enumerations;
+        }
+    }
+
+    /**
+     * <p>Registers listener to be notified whenever set of ports changes.</p>
+     * 
+     * @param listener object implementing ISerialComPortInventoryListener interface.
+     * @throws IllegalArgumentException if listener is null.
+     */
+    public void addListener(ISerialComPortInventoryListener listener) {
+        if(listener == null) {
+            throw new IllegalArgumentException("Argument listener can not be null !");
+        }
+        listeners.addIfAbsent(listener);
+    }
+
+    /**
+     * <p>Unregisters given listener.</p>
+     * 
+     * @param listener listener registered earlier.
+     * @return true if listener was registered.
+     */
+    public boolean removeListener(ISerialComPortInventoryListener listener) {
+        return listeners.remove(listener);
+    }
+
+    /**
+     * <p>Stops watching device directory. Inventory continues to work using refresh interval, which 
+     * is set to its default if it was 0.</p>
+     */
+    public void close() {
+        closed = true;
+        if(watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+            }
+            stopWatching();
+        }
+    }
+
+    /**
+     * <p>Tells whether close has been called.</p>
+     * 
+     * @return true if inventory has been closed.
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    private boolean isStale() {
+        if(dirty) {
+            return true;
+        }
+        long interval = refreshInterval;
+        return (interval > 0) && ((System.currentTimeMillis() - lastRefresh) >= interval);
+    }
+
+    /*
+     * Must be called holding lock. Listeners are notified under lock so that they see changes in order.
+     */
+    private SerialComPortSnapshot enumerate() {
+        // cleared before enumerating, so that a change noticed meanwhile is not lost.
+        dirty = false;
+        String[] ports = mSerialComPortsList.listAvailableComPorts();
+        if(ports == null) {
+            ports = new String[0];
+        }
+        long now = System.currentTimeMillis();
+        lastRefresh = now;
+        enumerations++;
+
+        SerialComPortSnapshot older = snapshot;
+        if((older != null) && older.hasPorts(ports)) {
+            return older;
+        }
+        SerialComPortSnapshot newer = new SerialComPortSnapshot((older == null) ? 1 : (older.getVersion() + 1), now, ports);
+        snapshot = newer;
+        if(older != null) {
+            SerialComPortChanges changes = newer.diff(older);
+            for(ISerialComPortInventoryListener listener : listeners) {
+                listener.onPortsChanged(changes);
+            }
+        }
+        return newer;
+    }
+
+    private boolean isPortNode(Path node) {
+        if(osType != SerialComPlatform.OS_LINUX) {
+            return true;
+        }
+        String name = node.toString();
+        return name.startsWith("tty") || name.startsWith("rfcomm");
+    }
+
+    private void watch() {
+        try {
+            while(closed == false) {
+                WatchKey key = watchService.take();
+                boolean changed = false;
+                for(WatchEvent<?> event : key.pollEvents()) {
+                    if((event.kind() == StandardWatchEventKinds.OVERFLOW) || isPortNode((Path) event.context())) {
+                        changed = true;
+                    }
+                }
+                if(key.reset() == false) {
+                    // directory is no longer accessible, fall back to refresh interval.
+                    break;
+                }
+                if(changed) {
+                    dirty = true;
+                    if(!listeners.isEmpty()) {
+                        Thread.sleep(SETTLE_TIME);
+                        getSnapshot();
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+        } catch (ClosedWatchServiceException e) {
+        }
+        stopWatching();
+    }
+
+    private void stopWatching() {
+        watching = false;
+        dirty = true;
+        if(refreshInterval == 0) {
+            refreshInterval = DEFAULT_REFRESH_INTERVAL;
+        }
+    }
+}
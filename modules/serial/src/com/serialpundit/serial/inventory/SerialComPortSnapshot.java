@@ -0,0 +1,127 @@
+/*
+ * This file is part of SerialPundit.
+ * 
+ * Copyright (C) 2014-2016, Rishi Gupta. All rights reserved.
+ *
+ * The SerialPundit is DUAL LICENSED. It is made available under the terms of the GNU Affero 
+ * General Public License (AGPL) v3.0 for non-commercial use and under the terms of a commercial 
+ * license for commercial use of this software. 
+ * 
+ * The SerialPundit is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+
+package com.serialpundit.serial.inventory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+
+/**
+ * <p>Immutable list of serial ports present in system at the time inventory was last refreshed. 
+ * Version is incremented by inventory only when set of ports changes, so comparing versions of two 
+ * snapshots tells whether anything changed without comparing port names.</p>
+ * 
+ * @author Rishi Gupta
+ */
+public final class SerialComPortSnapshot {
+
+    private final long version;
+    private final long timestamp;
+    private final String[] ports;
+    private final HashSet<String> portSet;
+
+    SerialComPortSnapshot(long version, long timestamp, String[] ports) {
+        this.version = version;
+        this.timestamp = timestamp;
+        this.ports = ports;
+        portSet = new HashSet<String>(ports.length * 2);
+        for(String port : ports) {
+            portSet.add(port);
+        }
+    }
+
+    /**
+     * <p>Gives version of this snapshot.</p>
+     * 
+     * @return version, incremented every time set of ports changes.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * <p>Gives time at which this set of ports was first enumerated. Snapshot is reused as long as 
+     * later enumerations find the same ports.</p>
+     * 
+     * @return time in milliseconds as given by System.currentTimeMillis().
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * <p>Gives ports in the same sorted order as SerialComManager.listAvailableComPorts().</p>
+     * 
+     * @return names of ports or empty array if there is no port.
+     */
+    public String[] getPorts() {
+        return ports.clone();
+    }
+
+    /**
+     * <p>Gives number of ports in this snapshot.</p>
+     * 
+     * @return number of ports.
+     */
+    public int size() {
+        return ports.length;
+    }
+
+    /**
+     * <p>Tells whether given port is present in this snapshot.</p>
+     * 
+     * @param portName name of port as given by getPorts().
+     * @return true if port is present.
+     */
+    public boolean contains(String portName) {
+        return portSet.contains(portName);
+    }
+
+    /**
+     * <p>Gives ports added and removed since given older snapshot. If both snapshots have the same 
+     * version, empty changes are returned without comparing port names.</p>
+     * 
+     * @param older snapshot taken earlier from the same inventory.
+     * @return changes leading from older snapshot to this snapshot.
+     * @throws IllegalArgumentException if older is null.
+     */
+    public SerialComPortChanges diff(SerialComPortSnapshot older) {
+        if(older == null) {
+            throw new IllegalArgumentException("Argument older can not be null !");
+        }
+        if(older.version == version) {
+            return new SerialComPortChanges(version, version, new String[0], new String[0]);
+        }
+        return new SerialComPortChanges(older.version, version, missingIn(older.portSet, ports), missingIn(portSet, older.ports));
+    }
+
+    boolean hasPorts(String[] others) {
+        return Arrays.equals(ports, others);
+    }
+
+    private static String[] missingIn(HashSet<String> set, String[] ports) {
+        ArrayList<String> missing = new ArrayList<String>();
+        for(String port : ports) {
+            if(!set.contains(port)) {
+                missing.add(port);
+            }
+        }
+        return missing.toArray(new String[missing.size()]);
+    }
+
+    @Override
+    public String toString() {
+        return "version " + version + ", " + ports.length + " ports";
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * This file is part of SerialPundit.
+ * 
+ * Copyright (C) 2014-2016, Rishi Gupta. All rights reserved.
+ *
+ * The SerialPundit is DUAL LICENSED. It is made available under the terms of the GNU Affero 
+ * General Public License (AGPL) v3.0 for non-commercial use and under the terms of a commercial 
+ * license for commercial use of this software. 
+ * 
+ * The SerialPundit is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+
+package com.serialpundit.serial.nmea;
+
+/**
+ * <p>The interface ISerialComNMEAListener should be implemented by class who wish to receive
+ * decoded NMEA 0183 sentences from SerialComNMEAParser.</p>
+ *
+ * <p>The sentence objects passed to these methods are owned by the parser and are re-used for
+ * every new sentence. They are valid only till the method returns. If the application wants
+ * to keep the values, it should copy them before returning.</p>
+ *
+ * @author Rishi Gupta
+ */
+public interface ISerialComNMEAListener {
+
+    /**
+     * <p>This method is called whenever a valid GGA (global positioning system fix data) sentence
+     * has been parsed.</p>
+     *
+     * @param gga re-usable object containing fields of this sentence.
+     */
+    public abstract void onGGASentence(SerialComNMEAGGA gga);
+
+    /**
+     * <p>This method is called whenever a valid RMC (recommended minimum specific GNSS data)
+     * sentence has been parsed.</p>
+     *
+     * @param rmc re-usable object containing fields of this sentence.
+     */
+    public abstract void onRMCSentence(SerialComNMEARMC rmc);
+
+    /**
+     * <p>This method is called whenever a valid VTG (course over ground and ground speed) sentence
+     * has been parsed.</p>
+     *
+     * @param vtg re-usable object containing fields of this sentence.
+     */
+    public abstract void onVTGSentence(SerialComNMEAVTG vtg);
+
+    /**
+     * <p>This method is called whenever a sentence is dropped because it was corrupted or could
+     * not be parsed.</p>
+     *
+     * @param errorCode one of the constants ERR_XXX defined in SerialComNMEAParser class.
+     */
+    public abstract void onNMEAError(int errorCode);
+}
@@ -0,0 +1,126 @@
+/*
+ * This file is part of SerialPundit.
+ * 
+ * Copyright (C) 2014-2016, Rishi Gupta. All rights reserved.
+ *
+ * The SerialPundit is DUAL LICENSED. It is made available under the terms of the GNU Affero 
+ * General Public License (AGPL) v3.0 for non-commercial use and under the terms of a commercial 
+ * license for commercial use of this software. 
+ * 
+ * The SerialPundit is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+
+package com.serialpundit.serial.nmea;
+
+/**
+ * <p>Represents fields of GGA (global positioning system fix data) sentence.</p>
+ *
+ * <p>$GPGGA,hhmmss.ss,llll.ll,a,yyyyy.yy,a,x,xx,x.x,x.x,M,x.x,M,x.x,xxxx*hh</p>
+ *
+ * @author Rishi Gupta
+ */
+public final class SerialComNMEAGGA extends SerialComNMEASentence {
+
+    int utcTime;
+    double latitude;
+    double longitude;
+    int fixQuality;
+    int numberOfSatellites;
+    double hdop;
+    double altitude;
+    double geoidSeparation;
+
+    /**
+     * <p>Allocates a new SerialComNMEAGGA object.</p>
+     */
+    SerialComNMEAGGA() {
+        reset();
+    }
+
+    @Override
+    void reset() {
+        talker = 0;
+        utcTime = -1;
+        latitude = Double.NaN;
+        longitude = Double.NaN;
+        fixQuality = -1;
+        numberOfSatellites = -1;
+        hdop = Double.NaN;
+        altitude = Double.NaN;
+        geoidSeparation = Double.NaN;
+    }
+
+    /**
+     * <p>Gives UTC time of position fix.</p>
+     *
+     * @return milliseconds since midnight UTC or -1 if field was empty.
+     */
+    public int getUTCTime() {
+        return utcTime;
+    }
+
+    /**
+     * <p>Gives latitude in decimal degrees. Southern hemisphere is negative.</p>
+     *
+     * @return latitude or Double.NaN if field was empty.
+     */
+    public double getLatitude() {
+        return latitude;
+    }
+
+    /**
+     * <p>Gives longitude in decimal degrees. Western hemisphere is negative.</p>
+     *
+     * @return longitude or Double.NaN if field was empty.
+     */
+    public double getLongitude() {
+        return longitude;
+    }
+
+    /**
+     * <p>Gives fix quality indicator; 0 invalid, 1 GPS fix, 2 DGPS fix, 4 RTK fixed, 5 RTK float,
+     * 6 dead reckoning etc.</p>
+     *
+     * @return fix quality or -1 if field was empty.
+     */
+    public int getFixQuality() {
+        return fixQuality;
+    }
+
+    /**
+     * <p>Gives number of satellites being tracked.</p>
+     *
+     * @return number of satellites or -1 if field was empty.
+     */
+    public int getNumberOfSatellites() {
+        return numberOfSatellites;
+    }
+
+    /**
+     * <p>Gives horizontal dilution of precision.</p>
+     *
+     * @return HDOP or Double.NaN if field was empty.
+     */
+    public double getHDOP() {
+        return hdop;
+    }
+
+    /**
+     * <p>Gives antenna altitude above mean sea level in meters.</p>
+     *
+     * @return altitude or Double.NaN if field was empty.
+     */
+    public double getAltitude() {
+        return altitude;
+    }
+
+    /**
+     * <p>Gives height of geoid (mean sea level) above WGS84 ellipsoid in meters.</p>
+     *
+     * @return geoid separation or Double.NaN if field was empty.
+     */
+    public double getGeoidSeparation() {
+        return geoidSeparation;
+    }
+}
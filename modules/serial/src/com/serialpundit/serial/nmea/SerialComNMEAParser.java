@@ -0,0 +1,511 @@
+/*
+ * This file is part of SerialPundit.
+ * 
+ * Copyright (C) 2014-2016, Rishi Gupta. All rights reserved.
+ *
+ * The SerialPundit is DUAL LICENSED. It is made available under the terms of the GNU Affero 
+ * General Public License (AGPL) v3.0 for non-commercial use and under the terms of a commercial 
+ * license for commercial use of this software. 
+ * 
+ * The SerialPundit is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+
+package com.serialpundit.serial.nmea;
+
+import java.nio.ByteBuffer;
+
+import com.serialpundit.serial.ISerialComDataListener;
+
+/**
+ * <p>Incremental NMEA 0183 sentence parser. Raw bytes as received from serial port are pushed into
+ * this parser in chunks of any size. Whenever a complete sentence is available its checksum is
+ * verified and fields are decoded into a re-usable sentence object which is then passed to the
+ * registered ISerialComNMEAListener. Currently GGA, RMC and VTG sentences are decoded, all other
+ * sentences are validated and silently skipped.</p>
+ *
+ * <p>The parser does not create any object while parsing. All the numeric fields are decoded directly
+ * from the received bytes without creating intermediate strings (no String.split), so a single host
+ * can ingest many GPS streams without putting pressure on garbage collector.</p>
+ *
+ * <p>This class implements ISerialComDataListener, so it can be registered directly as data listener
+ * for a serial port. Alternatively application can call parse() methods with data read using polling
+ * read methods or from a NIO channel.</p>
+ *
+ * <p>An instance of this class must be used for one serial port only and is not thread safe.</p>
+ *
+ * @author Rishi Gupta
+ */
+public final class SerialComNMEAParser implements ISerialComDataListener {
+
+    /** <p>The value indicating that the checksum received in sentence does not match with the checksum
+     * calculated. Integer constant with value 0x01. </p>*/
+    public static final int ERR_CHECKSUM = 0x01;
+
+    /** <p>The value indicating that the sentence is longer than maximum allowed length and therefore
+     * dropped. Integer constant with value 0x02. </p>*/
+    public static final int ERR_OVERFLOW = 0x02;
+
+    /** <p>The value indicating that a field in sentence could not be decoded. Integer constant with
+     * value 0x03. </p>*/
+    public static final int ERR_MALFORMED = 0x03;
+
+    /** <p>The value indicating that the sentence does not carry checksum while checksum is mandatory.
+     * Integer constant with value 0x04. </p>*/
+    public static final int ERR_NOCHECKSUM = 0x04;
+
+    /* NMEA 0183 limits a sentence to 82 characters. Some receivers emit longer proprietary sentences
+     * so little more space is kept. */
+    private static final int MAX_SENTENCE_LENGTH = 128;
+    private static final int MAX_FIELDS = 32;
+
+    // Parser states.
+    private static final int WAITSTART   = 0x00;
+    private static final int DATA        = 0x01;
+    private static final int CHECKSUMHI  = 0x02;
+    private static final int CHECKSUMLO  = 0x03;
+    private static final int WAITEND     = 0x04;
+
+    private static final double[] POW10 = { 1.0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9,
+        1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18 };
+
+    private final ISerialComNMEAListener listener;
+    private final byte[] sentence = new byte[MAX_SENTENCE_LENGTH];
+    private final int[] fieldStart = new int[MAX_FIELDS];
+    private final int[] fieldEnd = new int[MAX_FIELDS];
+    private final SerialComNMEAGGA gga = new SerialComNMEAGGA();
+    private final SerialComNMEARMC rmc = new SerialComNMEARMC();
+    private final SerialComNMEAVTG vtg = new SerialComNMEAVTG();
+
+    private int state = WAITSTART;
+    private int length;
+    private int calculatedChecksum;
+    private int receivedChecksum;
+    private int numFields;
+    private boolean checksumMandatory = true;
+    private boolean malformed;
+    private long numberOfSentences;
+    private long numberOfErrors;
+
+    /**
+     * <p>Allocates a new SerialComNMEAParser object which will deliver decoded sentences to the
+     * given listener.</p>
+     *
+     * @param listener instance of class which implements ISerialComNMEAListener interface.
+     * @throws IllegalArgumentException if listener is null.
+     */
+    public SerialComNMEAParser(ISerialComNMEAListener listener) {
+        if(listener == null) {
+            throw new IllegalArgumentException("Argument listener can not be null !");
+        }
+        this.listener = listener;
+    }
+
+    /**
+     * <p>Defines whether sentences without checksum should be dropped or accepted. By default checksum
+     * is mandatory. Some old receivers do not send checksum with sentences.</p>
+     *
+     * @param mandatory true if sentences without checksum should be dropped.
+     */
+    public void setChecksumMandatory(boolean mandatory) {
+        checksumMandatory = mandatory;
+    }
+
+    /**
+     * <p>Gives number of sentences successfully validated till now (including sentences whose
+     * type is not decoded by this parser).</p>
+     *
+     * @return number of valid sentences.
+     */
+    public long getNumberOfSentences() {
+        return numberOfSentences;
+    }
+
+    /**
+     * <p>Gives number of sentences dropped till now because of any error.</p>
+     *
+     * @return number of dropped sentences.
+     */
+    public long getNumberOfErrors() {
+        return numberOfErrors;
+    }
+
+    /**
+     * <p>Discards partially received sentence if any. Next sentence will be parsed when its start
+     * delimiter '$' is seen.</p>
+     */
+    public void reset() {
+        state = WAITSTART;
+        length = 0;
+    }
+
+    /**
+     * <p>Passes data bytes received by data looper to this parser.</p>
+     *
+     * @param data bytes read from serial port.
+     */
+    @Override
+    public void onNewSerialDataAvailable(byte[] data) {
+        parse(data, 0, data.length);
+    }
+
+    /**
+     * <p>As the byte stream may have been disrupted, partially received sentence is discarded.</p>
+     *
+     * @param errorNum operating system specific error number.
+     */
+    @Override
+    public void onDataListenerError(int errorNum) {
+        reset();
+    }
+
+    /**
+     * <p>Parses remaining bytes in the given byte buffer i.e. from its position till limit. The position
+     * of buffer will be equal to its limit when this method returns. Both heap and direct buffers are
+     * supported.</p>
+     *
+     * @param buffer byte buffer containing data read from serial port.
+     * @throws NullPointerException if buffer is null.
+     */
+    public void parse(ByteBuffer buffer) {
+        if(buffer.hasArray()) {
+            int pos = buffer.position();
+            parse(buffer.array(), buffer.arrayOffset() + pos, buffer.remaining());
+            buffer.position(buffer.limit());
+            return;
+        }
+        while(buffer.hasRemaining()) {
+            consume(buffer.get());
+        }
+    }
+
+    /**
+     * <p>Parses length number of bytes from the given byte array starting at given offset.</p>
+     *
+     * @param data byte array containing data read from serial port.
+     * @param offset index of first byte to parse.
+     * @param length number of bytes to parse.
+     * @throws NullPointerException if data is null.
+     * @throws IndexOutOfBoundsException if offset is negative, length is negative, or length is
+     *          greater than data.length - offset.
+     */
+    public void parse(byte[] data, int offset, int length) {
+        if(data == null) {
+            throw new NullPointerException("Argument data can not be null !");
+        }
+        if((offset < 0) || (length < 0) || (length > (data.length - offset))) {
+            throw new IndexOutOfBoundsException("Index violation detected !");
+        }
+        int end = offset + length;
+        for(int x = offset; x < end; x++) {
+            consume(data[x]);
+        }
+    }
+
+    /*
+     * Runs one step of the sentence state machine. Checksum is calculated on the fly so the
+     * sentence is never scanned twice.
+     */
+    private void consume(byte b) {
+        if(b == '$') {
+            if(state != WAITSTART) {
+                // new sentence started before previous one ended, receiver dropped bytes.
+                error(ERR_MALFORMED);
+            }
+            sentence[0] = b;
+            length = 1;
+            calculatedChecksum = 0;
+            receivedChecksum = 0;
+            state = DATA;
+            return;
+        }
+
+        switch(state) {
+        case WAITSTART:
+            break;
+
+        case DATA:
+            if(b == '*') {
+                state = CHECKSUMHI;
+            }else if((b == '\r') || (b == '\n')) {
+                if(checksumMandatory == true) {
+                    error(ERR_NOCHECKSUM);
+                    state = WAITSTART;
+                }else {
+                    state = WAITSTART;
+                    dispatch();
+                }
+            }else {
+                if(length >= MAX_SENTENCE_LENGTH) {
+                    error(ERR_OVERFLOW);
+                    state = WAITSTART;
+                    break;
+                }
+                sentence[length] = b;
+                length++;
+                calculatedChecksum ^= b;
+            }
+            break;
+
+        case CHECKSUMHI:
+        case CHECKSUMLO:
+            int nibble = hexValue(b);
+            if(nibble < 0) {
+                error(ERR_MALFORMED);
+                state = WAITSTART;
+                break;
+            }
+            receivedChecksum = (receivedChecksum << 4) | nibble;
+            state = (state == CHECKSUMHI) ? CHECKSUMLO : WAITEND;
+            break;
+
+        case WAITEND:
+            // sentence ends with CR LF; accept either of them so that LF only streams also work.
+            state = WAITSTART;
+            if((b == '\r') || (b == '\n')) {
+                if(receivedChecksum != (calculatedChecksum & 0xFF)) {
+                    error(ERR_CHECKSUM);
+                }else {
+                    dispatch();
+                }
+            }else {
+                error(ERR_MALFORMED);
+            }
+            break;
+
+        default:
+            break;
+        }
+    }
+
+    private void error(int errorCode) {
+        numberOfErrors++;
+        listener.onNMEAError(errorCode);
+    }
+
+    private static int hexValue(byte b) {
+        if((b >= '0') && (b <= '9')) {
+            return b - '0';
+        }
+        if((b >= 'A') && (b <= 'F')) {
+            return b - 'A' + 10;
+        }
+        if((b >= 'a') && (b <= 'f')) {
+            return b - 'a' + 10;
+        }
+        return -1;
+    }
+
+    /*
+     * Splits sentence into fields by recording start and end index of every field and then
+     * decodes it as per its type. Sentence is $ttsss,f1,f2,...; field 0 is address field.
+     */
+    private void dispatch() {
+        numberOfSentences++;
+
+        numFields = 0;
+        int start = 1;
+        for(int x = 1; x < length; x++) {
+            if(sentence[x] == ',') {
+                if(numFields < MAX_FIELDS) {
+                    fieldStart[numFields] = start;
+                    fieldEnd[numFields] = x;
+                    numFields++;
+                }
+                start = x + 1;
+            }
+        }
+        if(numFields < MAX_FIELDS) {
+            fieldStart[numFields] = start;
+            fieldEnd[numFields] = length;
+            numFields++;
+        }
+
+        // address field is 2 characters talker identifier followed by 3 characters sentence type.
+        if((fieldEnd[0] - fieldStart[0]) != 5) {
+            return;
+        }
+        int s = fieldStart[0];
+        int talker = ((sentence[s] & 0xFF) << 8) | (sentence[s + 1] & 0xFF);
+        byte t0 = sentence[s + 2];
+        byte t1 = sentence[s + 3];
+        byte t2 = sentence[s + 4];
+
+        malformed = false;
+        if((t0 == 'G') && (t1 == 'G') && (t2 == 'A')) {
+            decodeGGA(talker);
+            if(malformed == false) {
+                listener.onGGASentence(gga);
+            }
+        }else if((t0 == 'R') && (t1 == 'M') && (t2 == 'C')) {
+            decodeRMC(talker);
+            if(malformed == false) {
+                listener.onRMCSentence(rmc);
+            }
+        }else if((t0 == 'V') && (t1 == 'T') && (t2 == 'G')) {
+            decodeVTG(talker);
+            if(malformed == false) {
+                listener.onVTGSentence(vtg);
+            }
+        }else {
+            return;
+        }
+
+        if(malformed == true) {
+            numberOfSentences--;
+            error(ERR_MALFORMED);
+        }
+    }
+
+    private void decodeGGA(int talker) {
+        gga.reset();
+        gga.talker = talker;
+        gga.utcTime = parseTime(1);
+        gga.latitude = parseCoordinate(2, 3, 2);
+        gga.longitude = parseCoordinate(4, 5, 3);
+        gga.fixQuality = parseInt(6);
+        gga.numberOfSatellites = parseInt(7);
+        gga.hdop = parseDouble(8);
+        gga.altitude = parseDouble(9);
+        gga.geoidSeparation = parseDouble(11);
+    }
+
+    private void decodeRMC(int talker) {
+        rmc.reset();
+        rmc.talker = talker;
+        rmc.utcTime = parseTime(1);
+        rmc.valid = (parseChar(2) == 'A');
+        rmc.latitude = parseCoordinate(3, 4, 2);
+        rmc.longitude = parseCoordinate(5, 6, 3);
+        rmc.speedOverGround = parseDouble(7);
+        rmc.courseOverGround = parseDouble(8);
+        rmc.date = parseInt(9);
+        rmc.magneticVariation = parseDouble(10);
+        if((parseChar(11) == 'W') && (rmc.magneticVariation == rmc.magneticVariation)) {
+            rmc.magneticVariation = -rmc.magneticVariation;
+        }
+        rmc.modeIndicator = parseChar(12);
+    }
+
+    private void decodeVTG(int talker) {
+        vtg.reset();
+        vtg.talker = talker;
+        vtg.courseTrue = parseDouble(1);
+        vtg.courseMagnetic = parseDouble(3);
+        vtg.speedKnots = parseDouble(5);
+        vtg.speedKmph = parseDouble(7);
+        vtg.modeIndicator = parseChar(9);
+    }
+
+    private char parseChar(int field) {
+        if((field >= numFields) || (fieldStart[field] == fieldEnd[field])) {
+            return 0;
+        }
+        return (char) (sentence[fieldStart[field]] & 0xFF);
+    }
+
+    private int parseInt(int field) {
+        if((field >= numFields) || (fieldStart[field] == fieldEnd[field])) {
+            return -1;
+        }
+        int value = 0;
+        for(int x = fieldStart[field]; x < fieldEnd[field]; x++) {
+            byte b = sentence[x];
+            if((b < '0') || (b > '9')) {
+                malformed = true;
+                return -1;
+            }
+            value = (value * 10) + (b - '0');
+        }
+        return value;
+    }
+
+    /*
+     * Decodes [-]ddd[.ddd] without creating string. Digits beyond 18 significant digits are
+     * ignored as they are far beyond the precision of any GPS receiver.
+     */
+    private double parseDouble(int field) {
+        if((field >= numFields) || (fieldStart[field] == fieldEnd[field])) {
+            return Double.NaN;
+        }
+        int x = fieldStart[field];
+        int end = fieldEnd[field];
+        boolean negative = false;
+        if(sentence[x] == '-') {
+            negative = true;
+            x++;
+        }else if(sentence[x] == '+') {
+            x++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int scale = -1;
+        for(; x < end; x++) {
+            byte b = sentence[x];
+            if(b == '.') {
+                if(scale >= 0) {
+                    malformed = true;
+                    return Double.NaN;
+                }
+                scale = 0;
+            }else if((b >= '0') && (b <= '9')) {
+                if(digits < 18) {
+                    mantissa = (mantissa * 10) + (b - '0');
+                    digits++;
+                    if(scale >= 0) {
+                        scale++;
+                    }
+                }
+            }else {
+                malformed = true;
+                return Double.NaN;
+            }
+        }
+        if(digits == 0) {
+            malformed = true;
+            return Double.NaN;
+        }
+
+        double value = (scale > 0) ? (mantissa / POW10[scale]) : mantissa;
+        return negative ? -value : value;
+    }
+
+    /*
+     * Converts hhmmss.sss into milliseconds since midnight.
+     */
+    private int parseTime(int field) {
+        double t = parseDouble(field);
+        if(t != t) {
+            return -1;
+        }
+        int whole = (int) t;
+        int hh = whole / 10000;
+        int mm = (whole / 100) % 100;
+        int ss = whole % 100;
+        int ms = (int) Math.round((t - whole) * 1000);
+        return (hh * 3600000) + (mm * 60000) + (ss * 1000) + ms;
+    }
+
+    /*
+     * Converts (d)ddmm.mmmm and hemisphere into signed decimal degrees. degreeDigits is 2 for
+     * latitude and 3 for longitude.
+     */
+    private double parseCoordinate(int field, int hemisphereField, int degreeDigits) {
+        double raw = parseDouble(field);
+        if(raw != raw) {
+            return Double.NaN;
+        }
+        int degrees = (int) (raw / 100);
+        double value = degrees + ((raw - (degrees * 100)) / 60.0);
+        if(degrees > ((degreeDigits == 2) ? 90 : 180)) {
+            malformed = true;
+            return Double.NaN;
+        }
+        char hemisphere = parseChar(hemisphereField);
+        if((hemisphere == 'S') || (hemisphere == 'W')) {
+            value = -value;
+        }
+        return value;
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * This file is part of SerialPundit.
+ * 
+ * Copyright (C) 2014-2016, Rishi Gupta. All rights reserved.
+ *
+ * The SerialPundit is DUAL LICENSED. It is made available under the terms of the GNU Affero 
+ * General Public License (AGPL) v3.0 for non-commercial use and under the terms of a commercial 
+ * license for commercial use of this software. 
+ * 
+ * The SerialPundit is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+
+package com.serialpundit.serial.nmea;
+
+/**
+ * <p>Represents fields of RMC (recommended minimum specific GNSS data) sentence.</p>
+ *
+ * <p>$GPRMC,hhmmss.ss,A,llll.ll,a,yyyyy.yy,a,x.x,x.x,ddmmyy,x.x,a,m*hh</p>
+ *
+ * @author Rishi Gupta
+ */
+public final class SerialComNMEARMC extends SerialComNMEASentence {
+
+    int utcTime;
+    boolean valid;
+    double latitude;
+    double longitude;
+    double speedOverGround;
+    double courseOverGround;
+    int date;
+    double magneticVariation;
+    char modeIndicator;
+
+    /**
+     * <p>Allocates a new SerialComNMEARMC object.</p>
+     */
+    SerialComNMEARMC() {
+        reset();
+    }
+
+    @Override
+    void reset() {
+        talker = 0;
+        utcTime = -1;
+        valid = false;
+        latitude = Double.NaN;
+        longitude = Double.NaN;
+        speedOverGround = Double.NaN;
+        courseOverGround = Double.NaN;
+        date = -1;
+        magneticVariation = Double.NaN;
+        modeIndicator = 0;
+    }
+
+    /**
+     * <p>Gives UTC time of position fix.</p>
+     *
+     * @return milliseconds since midnight UTC or -1 if field was empty.
+     */
+    public int getUTCTime() {
+        return utcTime;
+    }
+
+    /**
+     * <p>Tells whether receiver reported this data as valid (status A) or as warning (status V).</p>
+     *
+     * @return true if status is A otherwise false.
+     */
+    public boolean isValid() {
+        return valid;
+    }
+
+    /**
+     * <p>Gives latitude in decimal degrees. Southern hemisphere is negative.</p>
+     *
+     * @return latitude or Double.NaN if field was empty.
+     */
+    public double getLatitude() {
+        return latitude;
+    }
+
+    /**
+     * <p>Gives longitude in decimal degrees. Western hemisphere is negative.</p>
+     *
+     * @return longitude or Double.NaN if field was empty.
+     */
+    public double getLongitude() {
+        return longitude;
+    }
+
+    /**
+     * <p>Gives speed over ground in knots.</p>
+     *
+     * @return speed or Double.NaN if field was empty.
+     */
+    public double getSpeedOverGround() {
+        return speedOverGround;
+    }
+
+    /**
+     * <p>Gives course over ground in degrees true.</p>
+     *
+     * @return course or Double.NaN if field was empty.
+     */
+    public double getCourseOverGround() {
+        return courseOverGround;
+    }
+
+    /**
+     * <p>Gives day of month from date field.</p>
+     *
+     * @return day (1 to 31) or -1 if field was empty.
+     */
+    public int getDay() {
+        return (date < 0) ? -1 : (date / 10000);
+    }
+
+    /**
+     * <p>Gives month from date field.</p>
+     *
+     * @return month (1 to 12) or -1 if field was empty.
+     */
+    public int getMonth() {
+        return (date < 0) ? -1 : ((date / 100) % 100);
+    }
+
+    /**
+     * <p>Gives two digit year from date field.</p>
+     *
+     * @return year (0 to 99) or -1 if field was empty.
+     */
+    public int getYear() {
+        return (date < 0) ? -1 : (date % 100);
+    }
+
+    /**
+     * <p>Gives magnetic variation in degrees. Westerly variation is negative.</p>
+     *
+     * @return magnetic variation or Double.NaN if field was empty.
+     */
+    public double getMagneticVariation() {
+        return magneticVariation;
+    }
+
+    /**
+     * <p>Gives mode indicator (NMEA 2.3 and later); A autonomous, D differential, E estimated,
+     * N not valid etc.</p>
+     *
+     * @return mode indicator character or 0 if field was not present.
+     */
+    public char getModeIndicator() {
+        return modeIndicator;
+    }
+}
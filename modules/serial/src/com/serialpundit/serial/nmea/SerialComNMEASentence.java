@@ -0,0 +1,83 @@
+/*
+ * This file is part of SerialPundit.
+ * 
+ * Copyright (C) 2014-2016, Rishi Gupta. All rights reserved.
+ *
+ * The SerialPundit is DUAL LICENSED. It is made available under the terms of the GNU Affero 
+ * General Public License (AGPL) v3.0 for non-commercial use and under the terms of a commercial 
+ * license for commercial use of this software. 
+ * 
+ * The SerialPundit is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+
+package com.serialpundit.serial.nmea;
+
+/**
+ * <p>Base class for all NMEA 0183 sentences decoded by SerialComNMEAParser. Objects of its
+ * sub classes are allocated once by the parser and then re-used for every sentence of same
+ * type (flyweight). Fields which were empty in the received sentence are reported as
+ * Double.NaN for real numbers and -1 for integer numbers.</p>
+ *
+ * @author Rishi Gupta
+ */
+public abstract class SerialComNMEASentence {
+
+    /** <p>Talker identifier for GPS receiver (GP). </p>*/
+    public static final int TALKER_GP = ('G' << 8) | 'P';
+
+    /** <p>Talker identifier for GLONASS receiver (GL). </p>*/
+    public static final int TALKER_GL = ('G' << 8) | 'L';
+
+    /** <p>Talker identifier for Galileo receiver (GA). </p>*/
+    public static final int TALKER_GA = ('G' << 8) | 'A';
+
+    /** <p>Talker identifier for BeiDou receiver (BD). </p>*/
+    public static final int TALKER_BD = ('B' << 8) | 'D';
+
+    /** <p>Talker identifier for combined multi GNSS receiver (GN). </p>*/
+    public static final int TALKER_GN = ('G' << 8) | 'N';
+
+    int talker;
+
+    /**
+     * <p>Allocates a new SerialComNMEASentence object.</p>
+     */
+    SerialComNMEASentence() {
+    }
+
+    /**
+     * <p>Gives the talker identifier of the device which sent this sentence. The two ASCII
+     * characters of identifier are packed as (first character << 8) | second character, so
+     * that it can be compared with TALKER_XX constants without creating any string.</p>
+     *
+     * @return packed talker identifier.
+     */
+    public int getTalkerID() {
+        return talker;
+    }
+
+    /**
+     * <p>Resets all the fields to value representing empty field before a new sentence is
+     * decoded into this object.</p>
+     */
+    abstract void reset();
+
+    /**
+     * <p>Converts UTC time given as milliseconds since midnight into hhmmss.sss representation
+     * used by NMEA 0183. This helps in logging without creating intermediate objects.</p>
+     *
+     * @param utcTime milliseconds since midnight.
+     * @return time in hhmmss.sss format as double, or Double.NaN if utcTime is negative.
+     */
+    public static double toNMEATime(int utcTime) {
+        if(utcTime < 0) {
+            return Double.NaN;
+        }
+        int hh = utcTime / 3600000;
+        int mm = (utcTime / 60000) % 60;
+        int ss = (utcTime / 1000) % 60;
+        int ms = utcTime % 1000;
+        return (hh * 10000) + (mm * 100) + ss + (ms / 1000.0);
+    }
+}
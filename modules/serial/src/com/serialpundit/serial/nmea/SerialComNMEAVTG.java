@@ -0,0 +1,93 @@
+/*
+ * This file is part of SerialPundit.
+ * 
+ * Copyright (C) 2014-2016, Rishi Gupta. All rights reserved.
+ *
+ * The SerialPundit is DUAL LICENSED. It is made available under the terms of the GNU Affero 
+ * General Public License (AGPL) v3.0 for non-commercial use and under the terms of a commercial 
+ * license for commercial use of this software. 
+ * 
+ * The SerialPundit is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+
+package com.serialpundit.serial.nmea;
+
+/**
+ * <p>Represents fields of VTG (course over ground and ground speed) sentence.</p>
+ *
+ * <p>$GPVTG,x.x,T,x.x,M,x.x,N,x.x,K,m*hh</p>
+ *
+ * @author Rishi Gupta
+ */
+public final class SerialComNMEAVTG extends SerialComNMEASentence {
+
+    double courseTrue;
+    double courseMagnetic;
+    double speedKnots;
+    double speedKmph;
+    char modeIndicator;
+
+    /**
+     * <p>Allocates a new SerialComNMEAVTG object.</p>
+     */
+    SerialComNMEAVTG() {
+        reset();
+    }
+
+    @Override
+    void reset() {
+        talker = 0;
+        courseTrue = Double.NaN;
+        courseMagnetic = Double.NaN;
+        speedKnots = Double.NaN;
+        speedKmph = Double.NaN;
+        modeIndicator = 0;
+    }
+
+    /**
+     * <p>Gives course over ground in degrees true.</p>
+     *
+     * @return course or Double.NaN if field was empty.
+     */
+    public double getCourseTrue() {
+        return courseTrue;
+    }
+
+    /**
+     * <p>Gives course over ground in degrees magnetic.</p>
+     *
+     * @return course or Double.NaN if field was empty.
+     */
+    public double getCourseMagnetic() {
+        return courseMagnetic;
+    }
+
+    /**
+     * <p>Gives speed over ground in knots.</p>
+     *
+     * @return speed or Double.NaN if field was empty.
+     */
+    public double getSpeedKnots() {
+        return speedKnots;
+    }
+
+    /**
+     * <p>Gives speed over ground in kilometers per hour.</p>
+     *
+     * @return speed or Double.NaN if field was empty.
+     */
+    public double getSpeedKmph() {
+        return speedKmph;
+    }
+
+    /**
+     * <p>Gives mode indicator (NMEA 2.3 and later); A autonomous, D differential, E estimated,
+     * N not valid etc.</p>
+     *
+     * @return mode indicator character or 0 if field was not present.
+     */
+    public char getModeIndicator() {
+        return modeIndicator;
+    }
+}
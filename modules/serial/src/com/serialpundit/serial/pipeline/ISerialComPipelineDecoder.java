@@ -0,0 +1,45 @@
+/*
+ * This file is part of SerialPundit.
+ * 
+ * Copyright (C) 2014-2016, Rishi Gupta. All rights reserved.
+ *
+ * The SerialPundit is DUAL LICENSED. It is made available under the terms of the GNU Affero 
+ * General Public License (AGPL) v3.0 for non-commercial use and under the terms of a commercial 
+ * license for commercial use of this software. 
+ * 
+ * The SerialPundit is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+
+package com.serialpundit.serial.pipeline;
+
+import java.nio.ByteBuffer;
+
+import com.serialpundit.core.SerialComException;
+
+/**
+ * <p>The interface ISerialComPipelineDecoder should be implemented by class who wish to convert 
+ * raw bytes received from serial port into protocol specific messages (frames).</p>
+ * 
+ * @author Rishi Gupta
+ */
+public interface ISerialComPipelineDecoder {
+
+    /**
+     * <p>Tries to decode one message from the given buffer. The buffer is in read mode i.e. bytes 
+     * between its position and limit are the bytes received but not yet consumed.</p>
+     * 
+     * <p>If a complete message is present, decoder should advance the position of buffer past the 
+     * message and return the message. If more bytes are needed, it should leave the position unchanged 
+     * and return null. It will be called again when more data arrives.</p>
+     * 
+     * <p>To avoid copying, the returned message may be a view (for example ByteBuffer.slice()) of the 
+     * given buffer. Such a view is valid only until the handler returns from onMessageReceived.</p>
+     * 
+     * @param in buffer containing received bytes.
+     * @return decoded message or null if more data is required.
+     * @throws SerialComException if data can not be decoded. The pipeline discards all the buffered 
+     *          data and reports ERR_DECODE to handler.
+     */
+    public abstract Object decode(ByteBuffer in) throws SerialComException;
+}
@@ -0,0 +1,38 @@
+/*
+ * This file is part of SerialPundit.
+ * 
+ * Copyright (C) 2014-2016, Rishi Gupta. All rights reserved.
+ *
+ * The SerialPundit is DUAL LICENSED. It is made available under the terms of the GNU Affero 
+ * General Public License (AGPL) v3.0 for non-commercial use and under the terms of a commercial 
+ * license for commercial use of this software. 
+ * 
+ * The SerialPundit is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+
+package com.serialpundit.serial.pipeline;
+
+import java.nio.ByteBuffer;
+
+import com.serialpundit.core.SerialComException;
+
+/**
+ * <p>The interface ISerialComPipelineEncoder should be implemented by class who wish to convert 
+ * protocol specific messages into raw bytes to be sent out of serial port.</p>
+ * 
+ * @author Rishi Gupta
+ */
+public interface ISerialComPipelineEncoder {
+
+    /**
+     * <p>Encodes the given message into the given buffer starting at its current position. The buffer 
+     * is taken from the pool of the pipeline and is already cleared.</p>
+     * 
+     * @param message message to be encoded.
+     * @param out buffer in which encoded bytes should be put.
+     * @throws SerialComException if message can not be encoded.
+     * @throws java.nio.BufferOverflowException if encoded message does not fit in the buffer.
+     */
+    public abstract void encode(Object message, ByteBuffer out) throws SerialComException;
+}
@@ -0,0 +1,47 @@
+/*
+ * This file is part of SerialPundit.
+ * 
+ * Copyright (C) 2014-2016, Rishi Gupta. All rights reserved.
+ *
+ * The SerialPundit is DUAL LICENSED. It is made available under the terms of the GNU Affero 
+ * General Public License (AGPL) v3.0 for non-commercial use and under the terms of a commercial 
+ * license for commercial use of this software. 
+ * 
+ * The SerialPundit is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+
+package com.serialpundit.serial.pipeline;
+
+/**
+ * <p>The interface ISerialComPipelineHandler should be implemented by class who wish to receive 
+ * messages decoded by a SerialComPipeline.</p>
+ * 
+ * @author Rishi Gupta
+ */
+public interface ISerialComPipelineHandler {
+
+    /**
+     * <p>This method is called whenever decoder has decoded a complete message. It gets called from 
+     * the looper thread associated with the data listener of the pipeline. Handler may reply by calling 
+     * write method of the given pipeline.</p>
+     * 
+     * <p>A message may be a view of the pipeline's receive buffer rather than a copy; for example 
+     * SerialComDelimiterDecoder gives a read only ByteBuffer slice of it. Such a message is valid only 
+     * until this method returns, as the receive buffer is compacted and refilled afterwards. Handler 
+     * must copy the bytes it wants to keep or use on another thread.</p>
+     * 
+     * @param pipeline pipeline which decoded this message.
+     * @param message message returned by decoder.
+     */
+    public abstract void onMessageReceived(SerialComPipeline pipeline, Object message);
+
+    /**
+     * <p>This method is called whenever an error occurs in pipeline.</p>
+     * 
+     * @param pipeline pipeline in which error occurred.
+     * @param errorCode one of the ERR_XXX constants defined in SerialComPipeline class.
+     * @param errorNum operating system specific error number if errorCode is ERR_PORT, otherwise 0.
+     */
+    public abstract void onPipelineError(SerialComPipeline pipeline, int errorCode, int errorNum);
+}
@@ -0,0 +1,35 @@
+/*
+ * This file is part of SerialPundit.
+ * 
+ * Copyright (C) 2014-2016, Rishi Gupta. All rights reserved.
+ *
+ * The SerialPundit is DUAL LICENSED. It is made available under the terms of the GNU Affero 
+ * General Public License (AGPL) v3.0 for non-commercial use and under the terms of a commercial 
+ * license for commercial use of this software. 
+ * 
+ * The SerialPundit is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+
+package com.serialpundit.serial.pipeline;
+
+/**
+ * <p>The interface ISerialComResponseMatcher should be implemented by class who wish to tell 
+ * SerialComRequestCorrelator which outstanding request a received message is response of.</p>
+ * 
+ * @author Rishi Gupta
+ */
+public interface ISerialComResponseMatcher {
+
+    /**
+     * <p>Tells whether the given message is response to the given request. Outstanding requests are 
+     * tried in the order in which they were sent, so a matcher that always returns true gives first in 
+     * first out matching. This suits only devices which answer every command with exactly one message 
+     * as framed by decoder; for example AT modems answer with several lines when a line decoder is used.</p>
+     * 
+     * @param request request object given to send method of correlator.
+     * @param response message decoded by decoder of the pipeline.
+     * @return true if response belongs to request otherwise false.
+     */
+    public abstract boolean matches(Object request, Object response);
+}
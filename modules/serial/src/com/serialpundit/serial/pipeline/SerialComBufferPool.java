@@ -0,0 +1,100 @@
+/*
+ * This file is part of SerialPundit.
+ * 
+ * Copyright (C) 2014-2016, Rishi Gupta. All rights reserved.
+ *
+ * The SerialPundit is DUAL LICENSED. It is made available under the terms of the GNU Affero 
+ * General Public License (AGPL) v3.0 for non-commercial use and under the terms of a commercial 
+ * license for commercial use of this software. 
+ * 
+ * The SerialPundit is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+
+package com.serialpundit.serial.pipeline;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * <p>Pool of pre-allocated direct byte buffers of same size. Buffers are allocated once when pool 
+ * is created, so no garbage is produced while data flows through pipeline. Direct buffers are used 
+ * so that they can be passed to native layer without an additional copy.</p>
+ * 
+ * <p>When all buffers are in use, acquire returns null instead of allocating more memory. This gives 
+ * natural back pressure to writers that produce data faster than serial port can send it.</p>
+ * 
+ * <p>This class is thread safe.</p>
+ * 
+ * @author Rishi Gupta
+ */
+public final class SerialComBufferPool {
+
+    private final int bufferSize;
+    private final ArrayBlockingQueue<ByteBuffer> freeBuffers;
+
+    /**
+     * <p>Allocates a new SerialComBufferPool object and all of its buffers.</p>
+     * 
+     * @param numBuffers number of buffers in this pool.
+     * @param bufferSize capacity in bytes of every buffer.
+     * @throws IllegalArgumentException if numBuffers or bufferSize is not positive.
+     */
+    public SerialComBufferPool(int numBuffers, int bufferSize) {
+        if((numBuffers <= 0) || (bufferSize <= 0)) {
+            throw new IllegalArgumentException("Argument numBuffers and bufferSize must be positive !");
+        }
+        this.bufferSize = bufferSize;
+        freeBuffers = new ArrayBlockingQueue<ByteBuffer>(numBuffers);
+        for (int x = 0; x < numBuffers; x++) {
+            freeBuffers.offer(ByteBuffer.allocateDirect(bufferSize));
+        }
+    }
+
+    /**
+     * <p>Takes a buffer out of this pool. The returned buffer is cleared i.e. its position is 0 and 
+     * limit is equal to its capacity.</p>
+     * 
+     * @return a free buffer or null if all buffers are in use.
+     */
+    public ByteBuffer acquire() {
+        ByteBuffer buffer = freeBuffers.poll();
+        if(buffer != null) {
+            buffer.clear();
+        }
+        return buffer;
+    }
+
+    /**
+     * <p>Gives the buffer back to this pool. Caller must not use the buffer after it has been released.</p>
+     * 
+     * @param buffer buffer previously obtained using acquire method.
+     * @throws IllegalArgumentException if buffer is null or was not allocated by this pool.
+     */
+    public void release(ByteBuffer buffer) {
+        if((buffer == null) || (buffer.capacity() != bufferSize) || !buffer.isDirect()) {
+            throw new IllegalArgumentException("Given buffer does not belong to this pool !");
+        }
+        if(!freeBuffers.offer(buffer)) {
+            throw new IllegalArgumentException("Given buffer does not belong to this pool !");
+        }
+    }
+
+    /**
+     * <p>Gives capacity of every buffer in this pool.</p>
+     * 
+     * @return size of buffers in bytes.
+     */
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * <p>Gives number of buffers currently available in this pool.</p>
+     * 
+     * @return number of free buffers.
+     */
+    public int getNumberOfFreeBuffers() {
+        return freeBuffers.size();
+    }
+}
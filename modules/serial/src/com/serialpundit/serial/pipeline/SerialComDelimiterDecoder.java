@@ -0,0 +1,78 @@
+/*
+ * This file is part of SerialPundit.
+ * 
+ * Copyright (C) 2014-2016, Rishi Gupta. All rights reserved.
+ *
+ * The SerialPundit is DUAL LICENSED. It is made available under the terms of the GNU Affero 
+ * General Public License (AGPL) v3.0 for non-commercial use and under the terms of a commercial 
+ * license for commercial use of this software. 
+ * 
+ * The SerialPundit is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+
+package com.serialpundit.serial.pipeline;
+
+import java.nio.ByteBuffer;
+
+import com.serialpundit.core.SerialComException;
+import com.serialpundit.core.util.SerialComUtil;
+
+/**
+ * <p>Decoder which splits received bytes into frames terminated by a delimiter byte, for example 
+ * line feed for text based protocols. Every frame is given to handler as a read only ByteBuffer 
+ * view of the pipeline's receive buffer, so no byte is copied. Frame is valid only till handler 
+ * returns.</p>
+ * 
+ * @author Rishi Gupta
+ */
+public final class SerialComDelimiterDecoder implements ISerialComPipelineDecoder {
+
+    private final byte delimiter;
+    private final boolean stripDelimiter;
+    private final int maxFrameLength;
+
+    /**
+     * <p>Allocates a new SerialComDelimiterDecoder object.</p>
+     * 
+     * @param delimiter byte which marks end of a frame.
+     * @param stripDelimiter true if delimiter should not be included in the frame.
+     * @param maxFrameLength maximum length of a frame including delimiter.
+     * @throws IllegalArgumentException if maxFrameLength is not positive.
+     */
+    public SerialComDelimiterDecoder(byte delimiter, boolean stripDelimiter, int maxFrameLength) {
+        if(maxFrameLength <= 0) {
+            throw new IllegalArgumentException("Argument maxFrameLength must be positive !");
+        }
+        this.delimiter = delimiter;
+        this.stripDelimiter = stripDelimiter;
+        this.maxFrameLength = maxFrameLength;
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @throws SerialComException if no delimiter is found within maxFrameLength bytes.
+     */
+    @Override
+    public Object decode(ByteBuffer in) throws SerialComException {
+        int start = in.position();
+        int index = SerialComUtil.indexOf(in, delimiter);
+        if(index < 0) {
+            if(in.remaining() >= maxFrameLength) {
+                throw new SerialComException("Frame length exceeds maximum permitted length !");
+            }
+            return null;
+        }
+        if((index - start + 1) > maxFrameLength) {
+            throw new SerialComException("Frame length exceeds maximum permitted length !");
+        }
+
+        int limit = in.limit();
+        in.limit(stripDelimiter ? index : (index + 1));
+        ByteBuffer frame = in.slice().asReadOnlyBuffer();
+        in.limit(limit);
+        in.position(index + 1);
+        return frame;
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * This file is part of SerialPundit.
+ * 
+ * Copyright (C) 2014-2016, Rishi Gupta. All rights reserved.
+ *
+ * The SerialPundit is DUAL LICENSED. It is made available under the terms of the GNU Affero 
+ * General Public License (AGPL) v3.0 for non-commercial use and under the terms of a commercial 
+ * license for commercial use of this software. 
+ * 
+ * The SerialPundit is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+
+package com.serialpundit.serial.pipeline;
+
+import java.nio.ByteBuffer;
+
+/**
+ * <p>Matches request and response by comparing a field (for example transaction ID or sequence 
+ * number) present at fixed offsets in both of them. Request and response may be byte arrays or byte 
+ * buffers; offsets are relative to the beginning of array or to the position of buffer.</p>
+ * 
+ * <p>When length is 0, every response matches the oldest outstanding request (first in first out).</p>
+ * 
+ * @author Rishi Gupta
+ */
+public final class SerialComFieldMatcher implements ISerialComResponseMatcher {
+
+    private final int requestOffset;
+    private final int responseOffset;
+    private final int length;
+
+    /**
+     * <p>Allocates a new SerialComFieldMatcher object.</p>
+     * 
+     * @param requestOffset offset of field in request.
+     * @param responseOffset offset of field in response.
+     * @param length length of field in bytes.
+     * @throws IllegalArgumentException if any argument is negative.
+     */
+    public SerialComFieldMatcher(int requestOffset, int responseOffset, int length) {
+        if((requestOffset < 0) || (responseOffset < 0) || (length < 0)) {
+            throw new IllegalArgumentException("Argument requestOffset, responseOffset and length can not be negative !");
+        }
+        this.requestOffset = requestOffset;
+        this.responseOffset = responseOffset;
+        this.length = length;
+    }
+
+    @Override
+    public boolean matches(Object request, Object response) {
+        if(length == 0) {
+            return true;
+        }
+        if((size(request) < (requestOffset + length)) || (size(response) < (responseOffset + length))) {
+            return false;
+        }
+        for (int x = 0; x < length; x++) {
+            if(byteAt(request, requestOffset + x) != byteAt(response, responseOffset + x)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int size(Object data) {
+        if(data instanceof byte[]) {
+            return ((byte[]) data).length;
+        }
+        if(data instanceof ByteBuffer) {
+            return ((ByteBuffer) data).remaining();
+        }
+        return -1;
+    }
+
+    private static byte byteAt(Object data, int index) {
+        if(data instanceof byte[]) {
+            return ((byte[]) data)[index];
+        }
+        ByteBuffer buffer = (ByteBuffer) data;
+        return buffer.get(buffer.position() + index);
+    }
+}
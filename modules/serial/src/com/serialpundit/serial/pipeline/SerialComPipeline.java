@@ -0,0 +1,362 @@
+/*
+ * This file is part of SerialPundit.
+ * 
+ * Copyright (C) 2014-2016, Rishi Gupta. All rights reserved.
+ *
+ * The SerialPundit is DUAL LICENSED. It is made available under the terms of the GNU Affero 
+ * General Public License (AGPL) v3.0 for non-commercial use and under the terms of a commercial 
+ * license for commercial use of this software. 
+ * 
+ * The SerialPundit is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+
+package com.serialpundit.serial.pipeline;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.serialpundit.core.SerialComException;
+import com.serialpundit.serial.ISerialComDataListener;
+import com.serialpundit.serial.SerialComManager;
+
+/**
+ * <p>Binds a decoder, a handler and an encoder to an opened serial port handle. Bytes delivered by 
+ * data looper are accumulated in a pooled receive buffer, decoder extracts messages from this buffer 
+ * in place and gives them to the handler. Messages written to the pipeline are encoded directly into 
+ * a pooled direct buffer which is then sent out of serial port without any further copy.</p>
+ * 
+ * <p>The pipeline is also the single place where back pressure is applied and traffic is counted. If 
+ * the receive buffer overflows, buffered bytes are discarded and ERR_OVERFLOW is reported. If all the 
+ * transmit buffers are in use, write fails instead of allocating more memory.</p>
+ * 
+ * <p>Typical usage:</p>
+ * <pre>
+ * SerialComBufferPool pool = new SerialComBufferPool(8, 1024);
+ * SerialComPipeline pipeline = new SerialComPipeline(scm, handle, pool, 
+ *         new SerialComDelimiterDecoder((byte)'\n', true, 512), myHandler, myEncoder);
+ * pipeline.start();
+ * pipeline.write(command);
+ * ...
+ * pipeline.stop();
+ * </pre>
+ * 
+ * @author Rishi Gupta
+ */
+public final class SerialComPipeline implements ISerialComDataListener {
+
+    /** <p>Integer constant with value 0x01 indicating receive buffer overflowed and data was dropped. </p>*/
+    public static final int ERR_OVERFLOW = 0x01;
+
+    /** <p>Integer constant with value 0x02 indicating decoder could not decode received data. </p>*/
+    public static final int ERR_DECODE = 0x02;
+
+    /** <p>Integer constant with value 0x03 indicating error reported by data listener mechanism. </p>*/
+    public static final int ERR_PORT = 0x03;
+
+    /** <p>Integer constant with value 0x04 indicating handler threw an exception while processing a 
+     * message. Decoding continues with the next message. </p>*/
+    public static final int ERR_HANDLER = 0x04;
+
+    private final SerialComManager scm;
+    private final long handle;
+    private final SerialComBufferPool pool;
+    private final ISerialComPipelineDecoder decoder;
+    private final ISerialComPipelineHandler handler;
+    private final ISerialComPipelineEncoder encoder;
+    private final Object lock = new Object();
+    private ByteBuffer inBuffer;
+    private boolean started;
+
+    private final AtomicLong bytesReceived = new AtomicLong();
+    private final AtomicLong messagesReceived = new AtomicLong();
+    private final AtomicLong bytesSent = new AtomicLong();
+    private final AtomicLong messagesSent = new AtomicLong();
+    private final AtomicLong bytesDropped = new AtomicLong();
+    private final AtomicLong numberOfErrors = new AtomicLong();
+
+    /**
+     * <p>Allocates a new SerialComPipeline object.</p>
+     * 
+     * @param scm instance of SerialComManager class with which port was opened.
+     * @param handle handle of the opened serial port.
+     * @param pool pool from which receive and transmit buffers are taken; its buffer size limits the 
+     *         maximum length of a received and of an encoded message.
+     * @param decoder decoder which extracts messages from received bytes.
+     * @param handler handler to which decoded messages are given.
+     * @param encoder encoder used by write method, may be null if pipeline is used only for receiving.
+     * @throws IllegalArgumentException if scm, pool, decoder or handler is null.
+     */
+    public SerialComPipeline(SerialComManager scm, long handle, SerialComBufferPool pool, 
+            ISerialComPipelineDecoder decoder, ISerialComPipelineHandler handler, ISerialComPipelineEncoder encoder) {
+        if(scm == null) {
+            throw new IllegalArgumentException("Argument scm can not be null !");
+        }
+        if(pool == null) {
+            throw new IllegalArgumentException("Argument pool can not be null !");
+        }
+        if(decoder == null) {
+            throw new IllegalArgumentException("Argument decoder can not be null !");
+        }
+        if(handler == null) {
+            throw new IllegalArgumentException("Argument handler can not be null !");
+        }
+        this.scm = scm;
+        this.handle = handle;
+        this.pool = pool;
+        this.decoder = decoder;
+        this.handler = handler;
+        this.encoder = encoder;
+    }
+
+    /**
+     * <p>Takes receive buffer from pool and registers this pipeline as data listener of the port. 
+     * Handler may start receiving messages even before this method returns.</p>
+     * 
+     * @throws SerialComException if pipeline is already started, pool has no free buffer or data 
+     *          listener can not be registered.
+     */
+    public void start() throws SerialComException {
+        synchronized(lock) {
+            if(started) {
+                throw new SerialComException("Pipeline has already been started !");
+            }
+            inBuffer = pool.acquire();
+            if(inBuffer == null) {
+                throw new SerialComException("No free buffer available in pool. Please retry !");
+            }
+            try {
+                scm.registerDataListener(handle, this);
+            } catch (SerialComException e) {
+                pool.release(inBuffer);
+                inBuffer = null;
+                throw e;
+            }
+            started = true;
+        }
+    }
+
+    /**
+     * <p>Unregisters this pipeline from the port and gives receive buffer back to pool. Any partially 
+     * received message is discarded.</p>
+     * 
+     * @throws SerialComException if data listener can not be unregistered.
+     */
+    public void stop() throws SerialComException {
+        synchronized(lock) {
+            if(!started) {
+                return;
+            }
+            scm.unregisterDataListener(handle, this);
+            started = false;
+        }
+        synchronized(this) {
+            pool.release(inBuffer);
+            inBuffer = null;
+        }
+    }
+
+    /**
+     * <p>Encodes the given message and sends it out of serial port. This method can be called from 
+     * any thread including from within the handler.</p>
+     * 
+     * @param message message to be sent.
+     * @return number of bytes sent to serial port, always the complete encoded message.
+     * @throws SerialComException if no transmit buffer is free, encoding fails or an I/O error occurs 
+     *          including when only a part of the message could be sent.
+     * @throws IllegalStateException if this pipeline has no encoder.
+     */
+    public int write(Object message) throws SerialComException {
+        if(encoder == null) {
+            throw new IllegalStateException("No encoder has been set for this pipeline !");
+        }
+        ByteBuffer out = pool.acquire();
+        if(out == null) {
+            numberOfErrors.incrementAndGet();
+            throw new SerialComException("No free buffer available in pool. Please retry !");
+        }
+        try {
+            encoder.encode(message, out);
+            int length = out.position();
+            int num = 0;
+            while(num < length) {
+                int ret = scm.writeBytesDirect(handle, out, num, length - num);
+                if(ret <= 0) {
+                    numberOfErrors.incrementAndGet();
+                    throw new SerialComException("Could not write complete message to serial port (" + num + " of " + length + " bytes sent) !");
+                }
+                num = num + ret;
+                bytesSent.addAndGet(ret);
+            }
+            messagesSent.incrementAndGet();
+            return num;
+        } finally {
+            pool.release(out);
+        }
+    }
+
+    /**
+     * <p>Sends the given bytes out of serial port bypassing the encoder.</p>
+     * 
+     * @param data bytes to be sent.
+     * @return number of bytes sent to serial port.
+     * @throws SerialComException if an I/O error occurs.
+     * @throws IllegalArgumentException if data is null or empty.
+     */
+    public int writeBytes(byte[] data) throws SerialComException {
+        int ret = scm.writeBytes(handle, data, 0);
+        bytesSent.addAndGet(ret);
+        return ret;
+    }
+
+    /**
+     * <p>Called by data looper. Appends new bytes to receive buffer and gives every complete message 
+     * to handler. Applications should not call this method directly.</p>
+     * 
+     * <p>Runtime exceptions thrown by decoder or handler do not propagate into data looper. They are 
+     * counted and reported to handler as ERR_DECODE and ERR_HANDLER respectively.</p>
+     * 
+     * @param data bytes read from serial port.
+     */
+    @Override
+    public synchronized void onNewSerialDataAvailable(byte[] data) {
+        Object message = null;
+
+        if(inBuffer == null) {
+            return;
+        }
+        bytesReceived.addAndGet(data.length);
+
+        if(data.length > inBuffer.remaining()) {
+            // no frame can be longer than receive buffer, so whatever is buffered is useless now.
+            bytesDropped.addAndGet(inBuffer.position());
+            inBuffer.clear();
+            if(data.length > inBuffer.capacity()) {
+                bytesDropped.addAndGet(data.length);
+                reportError(ERR_OVERFLOW, 0);
+                return;
+            }
+            reportError(ERR_OVERFLOW, 0);
+        }
+
+        inBuffer.put(data);
+        inBuffer.flip();
+        try {
+            while (inBuffer.hasRemaining()) {
+                try {
+                    message = decoder.decode(inBuffer);
+                } catch (SerialComException e) {
+                    discardReceived();
+                    break;
+                } catch (RuntimeException e) {
+                    discardReceived();
+                    break;
+                }
+                if(message == null) {
+                    break;
+                }
+                messagesReceived.incrementAndGet();
+                try {
+                    handler.onMessageReceived(this, message);
+                } catch (RuntimeException e) {
+                    reportError(ERR_HANDLER, 0);
+                }
+            }
+        } finally {
+            // receive buffer must be back in fill mode whatever happened above.
+            inBuffer.compact();
+        }
+    }
+
+    /*
+     * Decoder failed, position in receive buffer can not be trusted any more.
+     */
+    private void discardReceived() {
+        bytesDropped.addAndGet(inBuffer.remaining());
+        inBuffer.position(inBuffer.limit());
+        reportError(ERR_DECODE, 0);
+    }
+
+    /**
+     * <p>Called by data looper when native layer reports an error. The error is forwarded to 
+     * handler as ERR_PORT.</p>
+     * 
+     * @param errorNum operating system specific error number.
+     */
+    @Override
+    public void onDataListenerError(int errorNum) {
+        reportError(ERR_PORT, errorNum);
+    }
+
+    private void reportError(int errorCode, int errorNum) {
+        numberOfErrors.incrementAndGet();
+        try {
+            handler.onPipelineError(this, errorCode, errorNum);
+        } catch (RuntimeException e) {
+            // already counted, handler failing to take note of error must not stop data looper.
+        }
+    }
+
+    /**
+     * <p>Gives handle of the port to which this pipeline is bound.</p>
+     * 
+     * @return handle of the serial port.
+     */
+    public long getHandle() {
+        return handle;
+    }
+
+    /**
+     * <p>Gives total number of bytes received from serial port.</p>
+     * 
+     * @return number of bytes received.
+     */
+    public long getNumberOfBytesReceived() {
+        return bytesReceived.get();
+    }
+
+    /**
+     * <p>Gives total number of messages decoded and delivered to handler.</p>
+     * 
+     * @return number of messages received.
+     */
+    public long getNumberOfMessagesReceived() {
+        return messagesReceived.get();
+    }
+
+    /**
+     * <p>Gives total number of bytes sent out of serial port through this pipeline.</p>
+     * 
+     * @return number of bytes sent.
+     */
+    public long getNumberOfBytesSent() {
+        return bytesSent.get();
+    }
+
+    /**
+     * <p>Gives total number of messages encoded and sent through write method.</p>
+     * 
+     * @return number of messages sent.
+     */
+    public long getNumberOfMessagesSent() {
+        return messagesSent.get();
+    }
+
+    /**
+     * <p>Gives total number of received bytes discarded due to overflow or decode errors.</p>
+     * 
+     * @return number of bytes dropped.
+     */
+    public long getNumberOfBytesDropped() {
+        return bytesDropped.get();
+    }
+
+    /**
+     * <p>Gives total number of errors occurred in this pipeline including failed writes.</p>
+     * 
+     * @return number of errors.
+     */
+    public long getNumberOfErrors() {
+        return numberOfErrors.get();
+    }
+}
@@ -0,0 +1,342 @@
+/*
+ * This file is part of SerialPundit.
+ * 
+ * Copyright (C) 2014-2016, Rishi Gupta. All rights reserved.
+ *
+ * The SerialPundit is DUAL LICENSED. It is made available under the terms of the GNU Affero 
+ * General Public License (AGPL) v3.0 for non-commercial use and under the terms of a commercial 
+ * license for commercial use of this software. 
+ * 
+ * The SerialPundit is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+
+package com.serialpundit.serial.pipeline;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.serialpundit.core.SerialComException;
+import com.serialpundit.core.SerialComTimeOutException;
+import com.serialpundit.serial.SerialComManager;
+
+/**
+ * <p>Correlates requests sent to a command/response device (AT modems, SCPI instruments, Modbus 
+ * like protocols etc) with the responses received from it. Many requests may be outstanding at the 
+ * same time, each with its own timeout, so round trips are limited by serial link and device rather 
+ * than by a write, sleep and read loop.</p>
+ * 
+ * <p>Internally a SerialComPipeline is created for the given handle; the correlator acts as its 
+ * handler. Every decoded message is tried against outstanding requests in the order they were sent 
+ * using the given matcher. Messages which do not match any request (for example unsolicited result 
+ * codes from modem) are given to the optional unsolicited message handler.</p>
+ * 
+ * <p>Matcher must suit the way device frames its answers. An AT modem answers a command with several 
+ * lines (an information response, empty lines and a final result code like OK), so with a line decoder 
+ * first in first out matching would pair a request with whichever line comes first. Instead, the 
+ * example below matches a request with the information response line beginning with the name of the 
+ * command (AT+CSQ is answered by +CSQ: ...). Other lines, including final result codes, go to the 
+ * unsolicited message handler. Command echo is expected to have been turned off (ATE0).</p>
+ * 
+ * <pre>
+ * ISerialComResponseMatcher byName = new ISerialComResponseMatcher() {
+ *     public boolean matches(Object request, Object response) {
+ *         // "AT+CREG?\r" gives "+CREG"
+ *         String name = new String((byte[]) request).substring(2).split("[?=\r]")[0];
+ *         ByteBuffer line = ((ByteBuffer) response).duplicate();
+ *         byte[] text = new byte[line.remaining()];
+ *         line.get(text);
+ *         return new String(text).startsWith(name + ":");
+ *     }
+ * };
+ * SerialComRequestCorrelator correlator = new SerialComRequestCorrelator(scm, handle, pool, 
+ *         new SerialComDelimiterDecoder((byte)'\n', true, 256), null, byName, 16);
+ * correlator.start();
+ * SerialComResponseFuture f1 = correlator.send("AT+CSQ\r".getBytes(), 500);
+ * SerialComResponseFuture f2 = correlator.send("AT+CREG?\r".getBytes(), 500);
+ * byte[] signal = (byte[]) f1.get();
+ * </pre>
+ * 
+ * @author Rishi Gupta
+ */
+public final class SerialComRequestCorrelator implements ISerialComPipelineHandler {
+
+    private final SerialComPipeline pipeline;
+    private final ISerialComResponseMatcher matcher;
+    private final int maxOutstanding;
+    private final ArrayList<SerialComResponseFuture> outstanding;
+    private ISerialComPipelineHandler unsolicitedHandler;
+    private ScheduledThreadPoolExecutor timer;
+
+    private final AtomicLong numberOfResponses = new AtomicLong();
+    private final AtomicLong numberOfTimeouts = new AtomicLong();
+    private final AtomicLong numberOfUnsolicited = new AtomicLong();
+
+    /**
+     * <p>Allocates a new SerialComRequestCorrelator object.</p>
+     * 
+     * @param scm instance of SerialComManager class with which port was opened.
+     * @param handle handle of the opened serial port.
+     * @param pool pool from which receive and transmit buffers are taken.
+     * @param decoder decoder which extracts responses from received bytes.
+     * @param encoder encoder which converts requests into bytes; if null requests must be byte arrays.
+     * @param matcher matcher which tells which request a response belongs to.
+     * @param maxOutstanding maximum number of requests which can be awaiting response at a time.
+     * @throws IllegalArgumentException if scm, pool, decoder or matcher is null or maxOutstanding is 
+     *          not positive.
+     */
+    public SerialComRequestCorrelator(SerialComManager scm, long handle, SerialComBufferPool pool, 
+            ISerialComPipelineDecoder decoder, ISerialComPipelineEncoder encoder, 
+            ISerialComResponseMatcher matcher, int maxOutstanding) {
+        if(matcher == null) {
+            throw new IllegalArgumentException("Argument matcher can not be null !");
+        }
+        if(maxOutstanding <= 0) {
+            throw new IllegalArgumentException("Argument maxOutstanding must be positive !");
+        }
+        this.pipeline = new SerialComPipeline(scm, handle, pool, decoder, this, encoder);
+        this.matcher = matcher;
+        this.maxOutstanding = maxOutstanding;
+        this.outstanding = new ArrayList<SerialComResponseFuture>(maxOutstanding);
+    }
+
+    /**
+     * <p>Sets the handler which receives messages not matching any outstanding request and errors 
+     * reported by pipeline.</p>
+     * 
+     * @param handler handler for unsolicited messages, null to discard them.
+     */
+    public synchronized void setUnsolicitedMessageHandler(ISerialComPipelineHandler handler) {
+        unsolicitedHandler = handler;
+    }
+
+    /**
+     * <p>Starts timeout timer and underlying pipeline.</p>
+     * 
+     * @throws SerialComException if pipeline can not be started.
+     */
+    public void start() throws SerialComException {
+        synchronized(this) {
+            if(timer == null) {
+                timer = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread t = new Thread(r, "SerialComRequestCorrelator");
+                        t.setDaemon(true);
+                        return t;
+                    }
+                });
+                timer.setRemoveOnCancelPolicy(true);
+            }
+        }
+        pipeline.start();
+    }
+
+    /**
+     * <p>Stops underlying pipeline and timer. All outstanding requests are failed with SerialComException.</p>
+     * 
+     * @throws SerialComException if pipeline can not be stopped.
+     */
+    public void stop() throws SerialComException {
+        ArrayList<SerialComResponseFuture> pending;
+
+        pipeline.stop();
+        synchronized(this) {
+            pending = new ArrayList<SerialComResponseFuture>(outstanding);
+            outstanding.clear();
+            if(timer != null) {
+                timer.shutdownNow();
+                timer = null;
+            }
+        }
+        for (SerialComResponseFuture future : pending) {
+            future.fail(new SerialComException("Correlator has been stopped !"));
+        }
+    }
+
+    /**
+     * <p>Sends the given request and returns immediately with a future which will be completed when 
+     * matching response arrives. The request is registered as outstanding before it is written, so even 
+     * a very fast device can not answer before we are ready.</p>
+     * 
+     * @param request request to be sent; must be a byte array if no encoder was given.
+     * @param timeout time in milliseconds to wait for response after request has been written.
+     * @return future which will be completed with response or with SerialComTimeOutException.
+     * @throws SerialComException if correlator is not started, maxOutstanding requests are already 
+     *          pending or request can not be written.
+     * @throws IllegalArgumentException if request is null or timeout is not positive.
+     */
+    public SerialComResponseFuture send(Object request, long timeout) throws SerialComException {
+        if(request == null) {
+            throw new IllegalArgumentException("Argument request can not be null !");
+        }
+        if(timeout <= 0) {
+            throw new IllegalArgumentException("Argument timeout must be positive !");
+        }
+
+        final SerialComResponseFuture future = new SerialComResponseFuture(this, request);
+        synchronized(this) {
+            if(timer == null) {
+                throw new SerialComException("Correlator has not been started !");
+            }
+            if(outstanding.size() >= maxOutstanding) {
+                throw new SerialComException("Too many outstanding requests. Please retry !");
+            }
+            outstanding.add(future);
+        }
+
+        try {
+            if(request instanceof byte[]) {
+                pipeline.writeBytes((byte[]) request);
+            }else {
+                pipeline.write(request);
+            }
+        } catch (SerialComException e) {
+            remove(future);
+            throw e;
+        } catch (RuntimeException e) {
+            remove(future);
+            throw e;
+        }
+
+        synchronized(this) {
+            if(timer != null && !future.isDone()) {
+                future.timeoutTask = timer.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        if(remove(future) && future.fail(new SerialComTimeOutException("Response not received within timeout !"))) {
+                            numberOfTimeouts.incrementAndGet();
+                        }
+                    }
+                }, timeout, TimeUnit.MILLISECONDS);
+            }
+        }
+        return future;
+    }
+
+    /**
+     * <p>Called by pipeline when a message is decoded. Applications should not call this method directly.</p>
+     * 
+     * @param pipeline pipeline which decoded this message.
+     * @param message decoded message.
+     */
+    @Override
+    public void onMessageReceived(SerialComPipeline pipeline, Object message) {
+        SerialComResponseFuture matched = null;
+        ISerialComPipelineHandler handler = null;
+
+        synchronized(this) {
+            Iterator<SerialComResponseFuture> it = outstanding.iterator();
+            while (it.hasNext()) {
+                SerialComResponseFuture future = it.next();
+                if(matcher.matches(future.getRequest(), message)) {
+                    it.remove();
+                    matched = future;
+                    break;
+                }
+            }
+            if(matched == null) {
+                handler = unsolicitedHandler;
+            }else if(matched.timeoutTask != null) {
+                matched.timeoutTask.cancel(false);
+            }
+        }
+
+        if(matched != null) {
+            if(matched.complete(copyOf(message))) {
+                numberOfResponses.incrementAndGet();
+            }
+            return;
+        }
+
+        numberOfUnsolicited.incrementAndGet();
+        if(handler != null) {
+            handler.onMessageReceived(pipeline, message);
+        }
+    }
+
+    /**
+     * <p>Called by pipeline when an error occurs. Error is forwarded to unsolicited message handler if set.</p>
+     * 
+     * @param pipeline pipeline in which error occurred.
+     * @param errorCode one of the ERR_XXX constants defined in SerialComPipeline class.
+     * @param errorNum operating system specific error number.
+     */
+    @Override
+    public void onPipelineError(SerialComPipeline pipeline, int errorCode, int errorNum) {
+        ISerialComPipelineHandler handler;
+        synchronized(this) {
+            handler = unsolicitedHandler;
+        }
+        if(handler != null) {
+            handler.onPipelineError(pipeline, errorCode, errorNum);
+        }
+    }
+
+    synchronized boolean remove(SerialComResponseFuture future) {
+        if(future.timeoutTask != null) {
+            future.timeoutTask.cancel(false);
+        }
+        return outstanding.remove(future);
+    }
+
+    private static Object copyOf(Object message) {
+        if(message instanceof ByteBuffer) {
+            ByteBuffer view = (ByteBuffer) message;
+            byte[] data = new byte[view.remaining()];
+            view.get(data);
+            return data;
+        }
+        return message;
+    }
+
+    /**
+     * <p>Gives underlying pipeline, for example to read its traffic counters.</p>
+     * 
+     * @return pipeline used by this correlator.
+     */
+    public SerialComPipeline getPipeline() {
+        return pipeline;
+    }
+
+    /**
+     * <p>Gives number of requests currently awaiting response.</p>
+     * 
+     * @return number of outstanding requests.
+     */
+    public synchronized int getNumberOfOutstandingRequests() {
+        return outstanding.size();
+    }
+
+    /**
+     * <p>Gives total number of responses matched with requests.</p>
+     * 
+     * @return number of responses.
+     */
+    public long getNumberOfResponses() {
+        return numberOfResponses.get();
+    }
+
+    /**
+     * <p>Gives total number of requests which timed out.</p>
+     * 
+     * @return number of timeouts.
+     */
+    public long getNumberOfTimeouts() {
+        return numberOfTimeouts.get();
+    }
+
+    /**
+     * <p>Gives total number of messages which did not match any outstanding request.</p>
+     * 
+     * @return number of unsolicited messages.
+     */
+    public long getNumberOfUnsolicitedMessages() {
+        return numberOfUnsolicited.get();
+    }
+}
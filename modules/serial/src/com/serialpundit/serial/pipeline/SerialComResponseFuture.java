@@ -0,0 +1,154 @@
+/*
+ * This file is part of SerialPundit.
+ * 
+ * Copyright (C) 2014-2016, Rishi Gupta. All rights reserved.
+ *
+ * The SerialPundit is DUAL LICENSED. It is made available under the terms of the GNU Affero 
+ * General Public License (AGPL) v3.0 for non-commercial use and under the terms of a commercial 
+ * license for commercial use of this software. 
+ * 
+ * The SerialPundit is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+
+package com.serialpundit.serial.pipeline;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * <p>Represents the pending response of a request sent through SerialComRequestCorrelator. It is 
+ * completed by the looper thread when matching response arrives, or with SerialComTimeOutException 
+ * when timeout of this request expires.</p>
+ * 
+ * <p>Byte buffer responses are copied into a byte array before completing this future, because the 
+ * buffer given by decoder is valid only inside the handler.</p>
+ * 
+ * @author Rishi Gupta
+ */
+public final class SerialComResponseFuture implements Future<Object> {
+
+    private final SerialComRequestCorrelator correlator;
+    private final Object request;
+    private Object response;
+    private Throwable failure;
+    private boolean done;
+    private boolean cancelled;
+    ScheduledFuture<?> timeoutTask;
+
+    /**
+     * <p>Allocates a new SerialComResponseFuture object.</p>
+     * 
+     * @param correlator correlator which owns this future.
+     * @param request request for which response is awaited.
+     */
+    SerialComResponseFuture(SerialComRequestCorrelator correlator, Object request) {
+        this.correlator = correlator;
+        this.request = request;
+    }
+
+    /**
+     * <p>Gives the request for which this future was created.</p>
+     * 
+     * @return request object.
+     */
+    public Object getRequest() {
+        return request;
+    }
+
+    synchronized boolean complete(Object response) {
+        if(done) {
+            return false;
+        }
+        this.response = response;
+        done = true;
+        notifyAll();
+        return true;
+    }
+
+    synchronized boolean fail(Throwable failure) {
+        if(done) {
+            return false;
+        }
+        this.failure = failure;
+        done = true;
+        notifyAll();
+        return true;
+    }
+
+    /**
+     * <p>Cancels waiting for response. The request is removed from outstanding requests of correlator; 
+     * a response arriving later will be treated as unsolicited message.</p>
+     * 
+     * @param mayInterruptIfRunning ignored, there is no thread to interrupt.
+     * @return true if this future was cancelled, false if it had already completed.
+     */
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        synchronized(this) {
+            if(done) {
+                return false;
+            }
+            cancelled = true;
+            done = true;
+            notifyAll();
+        }
+        correlator.remove(this);
+        return true;
+    }
+
+    @Override
+    public synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    @Override
+    public synchronized boolean isDone() {
+        return done;
+    }
+
+    /**
+     * <p>Waits until response is received or request times out.</p>
+     * 
+     * @return response; byte array if decoder produced byte buffer, otherwise object produced by decoder.
+     * @throws ExecutionException wrapping SerialComTimeOutException if timeout expired or SerialComException 
+     *          if correlator was stopped.
+     * @throws CancellationException if this future was cancelled.
+     * @throws InterruptedException if current thread was interrupted while waiting.
+     */
+    @Override
+    public synchronized Object get() throws InterruptedException, ExecutionException {
+        while (!done) {
+            wait();
+        }
+        return result();
+    }
+
+    @Override
+    public synchronized Object get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        long remaining = unit.toNanos(timeout);
+        long deadline = System.nanoTime() + remaining;
+        while (!done) {
+            if(remaining <= 0) {
+                throw new TimeoutException();
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            remaining = deadline - System.nanoTime();
+        }
+        return result();
+    }
+
+    private Object result() throws ExecutionException {
+        if(cancelled) {
+            throw new CancellationException();
+        }
+        if(failure != null) {
+            throw new ExecutionException(failure);
+        }
+        return response;
+    }
+}
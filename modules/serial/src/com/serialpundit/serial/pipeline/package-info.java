@@ -0,0 +1,21 @@
+/*
+ * This file is part of SerialPundit.
+ * 
+ * Copyright (C) 2014-2016, Rishi Gupta. All rights reserved.
+ *
+ * The SerialPundit is DUAL LICENSED. It is made available under the terms of the GNU Affero 
+ * General Public License (AGPL) v3.0 for non-commercial use and under the terms of a commercial 
+ * license for commercial use of this software. 
+ * 
+ * The SerialPundit is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+
+/**
+ * <p>Provides a light weight pipeline (decoder, handler and encoder) which can be bound to an opened 
+ * serial port handle so that protocol stacks can be composed without writing read loops by hand. 
+ * It also provides a request/response correlator for command/response devices.</p>
+ *
+ * @author Rishi Gupta
+ */
+package com.serialpundit.serial.pipeline;
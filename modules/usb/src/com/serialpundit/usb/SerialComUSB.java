@@ -16,9 +16,11 @@ package com.serialpundit.usb;
 import java.io.IOException;
 
 import com.serialpundit.core.SerialComException;
+import com.serialpundit.core.SerialComJNIProfiler;
 import com.serialpundit.core.SerialComPlatform;
 import com.serialpundit.core.SerialComSystemProperty;
 import com.serialpundit.usb.ISerialComUSBHotPlugListener;
+import com.serialpundit.usb.internal.SerialComProfiledUSBJNIBridge;
 import com.serialpundit.usb.internal.SerialComUSBJNIBridge;
 
 /**
@@ -132,7 +134,7 @@ public final class SerialComUSB {
                 }
             }
             if(mUSBJNIBridge == null) {
-                mUSBJNIBridge = new SerialComUSBJNIBridge();
+                mUSBJNIBridge = SerialComJNIProfiler.isEnabled() ? new SerialComProfiledUSBJNIBridge() : new SerialComUSBJNIBridge();
                 SerialComUSBJNIBridge.loadNativeLibrary(libDirectory, loadedLibName, mSerialComSystemProperty, osType, cpuArch, abiType);
                 mUSBJNIBridge.initNativeLib();
             }
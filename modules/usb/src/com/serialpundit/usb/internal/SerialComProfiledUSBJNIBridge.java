@@ -0,0 +1,154 @@
+/*
+ * This file is part of SerialPundit.
+ * 
+ * Copyright (C) 2014-2016, Rishi Gupta. All rights reserved.
+ *
+ * The SerialPundit is DUAL LICENSED. It is made available under the terms of the GNU Affero 
+ * General Public License (AGPL) v3.0 for non-commercial use and under the terms of a commercial 
+ * license for commercial use of this software. 
+ * 
+ * The SerialPundit is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+
+package com.serialpundit.usb.internal;
+
+import com.serialpundit.core.SerialComJNIProfiler;
+import com.serialpundit.usb.ISerialComUSBHotPlugListener;
+
+/**
+ * <p>Instrumented SerialComUSBJNIBridge which accounts every native call with SerialComJNIProfiler. 
+ * Used instead of SerialComUSBJNIBridge when JNI profiling is enabled.</p>
+ * 
+ * @author Rishi Gupta
+ */
+public final class SerialComProfiledUSBJNIBridge extends SerialComUSBJNIBridge {
+
+    private static final int INIT_NATIVE_LIB = SerialComJNIProfiler.register("SerialComUSBJNIBridge.initNativeLib");
+    private static final int LIST_USBDEVICES_WITH_INFO = SerialComJNIProfiler.register("SerialComUSBJNIBridge.listUSBdevicesWithInfo");
+    private static final int GET_FIRMWARE_REVISION_NUMBER = SerialComJNIProfiler.register("SerialComUSBJNIBridge.getFirmwareRevisionNumber");
+    private static final int REGISTER_USBHOT_PLUG_EVENT_LISTENER = SerialComJNIProfiler.register("SerialComUSBJNIBridge.registerUSBHotPlugEventListener");
+    private static final int UNREGISTER_USBHOT_PLUG_EVENT_LISTENER = SerialComJNIProfiler.register("SerialComUSBJNIBridge.unregisterUSBHotPlugEventListener");
+    private static final int IS_USBDEV_CONNECTED = SerialComJNIProfiler.register("SerialComUSBJNIBridge.isUSBDevConnected");
+    private static final int FIND_COM_PORT_FROM_USBATTRIBUTES = SerialComJNIProfiler.register("SerialComUSBJNIBridge.findComPortFromUSBAttributes");
+    private static final int GET_CDCUSBDEV_POWER_INFO = SerialComJNIProfiler.register("SerialComUSBJNIBridge.getCDCUSBDevPowerInfo");
+    private static final int SET_LATENCY_TIMER = SerialComJNIProfiler.register("SerialComUSBJNIBridge.setLatencyTimer");
+    private static final int GET_LATENCY_TIMER = SerialComJNIProfiler.register("SerialComUSBJNIBridge.getLatencyTimer");
+    private static final int LIST_USBHIDDEVICES_WITH_INFO = SerialComJNIProfiler.register("SerialComUSBJNIBridge.listUSBHIDdevicesWithInfo");
+
+    /**
+     * <p>Allocates a new SerialComProfiledUSBJNIBridge object.</p>
+     */
+    public SerialComProfiledUSBJNIBridge() {
+    }
+
+    @Override
+    public void initNativeLib() {
+        long start = System.nanoTime();
+        try {
+            super.initNativeLib();
+        } finally {
+            SerialComJNIProfiler.record(INIT_NATIVE_LIB, start);
+        }
+    }
+
+    @Override
+    public String[] listUSBdevicesWithInfo(int vendorFilter) {
+        long start = System.nanoTime();
+        try {
+            return super.listUSBdevicesWithInfo(vendorFilter);
+        } finally {
+            SerialComJNIProfiler.record(LIST_USBDEVICES_WITH_INFO, start);
+        }
+    }
+
+    @Override
+    public String[] getFirmwareRevisionNumber(int vid, int pid, String serialNumber) {
+        long start = System.nanoTime();
+        try {
+            return super.getFirmwareRevisionNumber(vid, pid, serialNumber);
+        } finally {
+            SerialComJNIProfiler.record(GET_FIRMWARE_REVISION_NUMBER, start);
+        }
+    }
+
+    @Override
+    public int registerUSBHotPlugEventListener(ISerialComUSBHotPlugListener hotPlugListener, int filterVID, int filterPID, String serialNumber) {
+        long start = System.nanoTime();
+        try {
+            return super.registerUSBHotPlugEventListener(hotPlugListener, filterVID, filterPID, serialNumber);
+        } finally {
+            SerialComJNIProfiler.record(REGISTER_USBHOT_PLUG_EVENT_LISTENER, start);
+        }
+    }
+
+    @Override
+    public int unregisterUSBHotPlugEventListener(int index) {
+        long start = System.nanoTime();
+        try {
+            return super.unregisterUSBHotPlugEventListener(index);
+        } finally {
+            SerialComJNIProfiler.record(UNREGISTER_USBHOT_PLUG_EVENT_LISTENER, start);
+        }
+    }
+
+    @Override
+    public int isUSBDevConnected(int vendorID, int productID, String serialNumber) {
+        long start = System.nanoTime();
+        try {
+            return super.isUSBDevConnected(vendorID, productID, serialNumber);
+        } finally {
+            SerialComJNIProfiler.record(IS_USBDEV_CONNECTED, start);
+        }
+    }
+
+    @Override
+    public String[] findComPortFromUSBAttributes(int usbVidToMatch, int usbPidToMatch, String serialNumber) {
+        long start = System.nanoTime();
+        try {
+            return super.findComPortFromUSBAttributes(usbVidToMatch, usbPidToMatch, serialNumber);
+        } finally {
+            SerialComJNIProfiler.record(FIND_COM_PORT_FROM_USBATTRIBUTES, start);
+        }
+    }
+
+    @Override
+    public String[] getCDCUSBDevPowerInfo(String portNameVal) {
+        long start = System.nanoTime();
+        try {
+            return super.getCDCUSBDevPowerInfo(portNameVal);
+        } finally {
+            SerialComJNIProfiler.record(GET_CDCUSBDEV_POWER_INFO, start);
+        }
+    }
+
+    @Override
+    public int setLatencyTimer(String comPort, byte timerValue) {
+        long start = System.nanoTime();
+        try {
+            return super.setLatencyTimer(comPort, timerValue);
+        } finally {
+            SerialComJNIProfiler.record(SET_LATENCY_TIMER, start);
+        }
+    }
+
+    @Override
+    public int getLatencyTimer(String comPort) {
+        long start = System.nanoTime();
+        try {
+            return super.getLatencyTimer(comPort);
+        } finally {
+            SerialComJNIProfiler.record(GET_LATENCY_TIMER, start);
+        }
+    }
+
+    @Override
+    public String[] listUSBHIDdevicesWithInfo(int vendorFilter) {
+        long start = System.nanoTime();
+        try {
+            return super.listUSBHIDdevicesWithInfo(vendorFilter);
+        } finally {
+            SerialComJNIProfiler.record(LIST_USBHIDDEVICES_WITH_INFO, start);
+        }
+    }
+}
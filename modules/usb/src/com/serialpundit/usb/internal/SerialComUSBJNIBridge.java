@@ -33,7 +33,7 @@ import com.serialpundit.usb.ISerialComUSBHotPlugListener;
  * 
  * @author Rishi Gupta
  */
-public final class SerialComUSBJNIBridge {
+public class SerialComUSBJNIBridge {
 
     private static final Comparator<String> comparator = new Comparator<String>() {
 
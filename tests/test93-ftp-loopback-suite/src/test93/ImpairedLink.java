@@ -0,0 +1,135 @@
+/*
+ * This file is part of SerialPundit.
+ * 
+ * Copyright (C) 2014-2016, Rishi Gupta. All rights reserved.
+ *
+ * The SerialPundit is DUAL LICENSED. It is made available under the terms of the GNU Affero 
+ * General Public License (AGPL) v3.0 for non-commercial use and under the terms of a commercial 
+ * license for commercial use of this software. 
+ * 
+ * The SerialPundit is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+
+package test93;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Random;
+
+import com.serialpundit.serial.SerialComManager;
+
+/*
+ * Relays bytes in both directions between two opened ports, the far ends of two null modem pairs,
+ * and impairs them on the way. Each byte may be dropped or have one of its bits flipped, and each
+ * chunk may be held back for a random time. Random generators are seeded so that a failing case can
+ * be run again exactly the same way.
+ */
+final class ImpairedLink {
+
+	final String name;
+	private final double corruptRate;
+	private final double dropRate;
+	private final int maxDelay;
+
+	private SerialComManager scm;
+	private Forwarder forward;
+	private Forwarder backward;
+	private volatile boolean exit = false;
+
+	private final class Forwarder extends Thread {
+
+		private final long from;
+		private final long to;
+		private final Random random;
+		long corrupted = 0;
+		long dropped = 0;
+		volatile Exception error = null;
+
+		Forwarder(long from, long to, long seed) {
+			this.from = from;
+			this.to = to;
+			random = new Random(seed);
+			setDaemon(true);
+		}
+
+		@Override
+		public void run() {
+			byte[] data = null;
+			ByteArrayOutputStream out = new ByteArrayOutputStream(4096);
+			try {
+				while(exit == false) {
+					data = scm.readBytes(from, 4096);
+					if(data == null) {
+						Thread.sleep(1);
+						continue;
+					}
+					out.reset();
+					for(int x=0; x < data.length; x++) {
+						if((dropRate > 0) && (random.nextDouble() < dropRate)) {
+							dropped++;
+							continue;
+						}
+						if((corruptRate > 0) && (random.nextDouble() < corruptRate)) {
+							out.write(data[x] ^ (1 << random.nextInt(8)));
+							corrupted++;
+							continue;
+						}
+						out.write(data[x]);
+					}
+					if(maxDelay > 0) {
+						Thread.sleep(random.nextInt(maxDelay + 1));
+					}
+					if(out.size() > 0) {
+						scm.writeBytes(to, out.toByteArray());
+					}
+				}
+			} catch (InterruptedException e) {
+			} catch (Exception e) {
+				error = e;
+			}
+		}
+	}
+
+	/*
+	 * corruptRate and dropRate are probabilities per byte, maxDelay is in milliseconds per chunk.
+	 */
+	ImpairedLink(String name, double corruptRate, double dropRate, int maxDelay) {
+		this.name = name;
+		this.corruptRate = corruptRate;
+		this.dropRate = dropRate;
+		this.maxDelay = maxDelay;
+	}
+
+	boolean isImpaired() {
+		return (corruptRate > 0) || (dropRate > 0);
+	}
+
+	void start(SerialComManager scm, long handleA, long handleB, long seed) {
+		this.scm = scm;
+		exit = false;
+		forward = new Forwarder(handleA, handleB, seed);
+		backward = new Forwarder(handleB, handleA, ~seed);
+		forward.start();
+		backward.start();
+	}
+
+	void stop() throws Exception {
+		exit = true;
+		forward.join();
+		backward.join();
+		if(forward.error != null) {
+			throw forward.error;
+		}
+		if(backward.error != null) {
+			throw backward.error;
+		}
+	}
+
+	long getCorruptedCount() {
+		return forward.corrupted + backward.corrupted;
+	}
+
+	long getDroppedCount() {
+		return forward.dropped + backward.dropped;
+	}
+}
@@ -0,0 +1,544 @@
+/*
+ * This file is part of SerialPundit.
+ * 
+ * Copyright (C) 2014-2016, Rishi Gupta. All rights reserved.
+ *
+ * The SerialPundit is DUAL LICENSED. It is made available under the terms of the GNU Affero 
+ * General Public License (AGPL) v3.0 for non-commercial use and under the terms of a commercial 
+ * license for commercial use of this software. 
+ * 
+ * The SerialPundit is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+
+package test93;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import com.serialpundit.core.SerialComPlatform;
+import com.serialpundit.core.SerialComSystemProperty;
+import com.serialpundit.serial.SerialComManager;
+import com.serialpundit.serial.SerialComManager.BAUDRATE;
+import com.serialpundit.serial.SerialComManager.DATABITS;
+import com.serialpundit.serial.SerialComManager.FLOWCONTROL;
+import com.serialpundit.serial.SerialComManager.PARITY;
+import com.serialpundit.serial.SerialComManager.STOPBITS;
+import com.serialpundit.serial.ftp.ISerialComFTPStatusListener;
+import com.serialpundit.serial.ftp.SerialComFTPCMDAbort;
+import com.serialpundit.serial.ftp.SerialComFTPProgressMonitor;
+import com.serialpundit.serial.ftp.SerialComFTPTransferStatus;
+import com.serialpundit.serial.ftp.SerialComXModem;
+import com.serialpundit.serial.ftp.SerialComXModem1K;
+import com.serialpundit.serial.ftp.SerialComXModemCRC;
+import com.serialpundit.serial.ftp.SerialComYModem1K;
+import com.serialpundit.serial.ftp.SerialComYModemCRC;
+import com.serialpundit.serial.ftp.SerialComYModemG;
+import com.serialpundit.serial.ftp.SerialComZModem;
+import com.serialpundit.serial.nullmodem.SerialComNullModem;
+
+/*
+ * Automated conformance and throughput suite for all file transfer protocols. Unlike test55, test64,
+ * test89 and test91 it needs neither physical ports nor a human watching output.
+ *
+ * Two virtual null modem pairs are created using tty2comKm driver (or four existing ports are given
+ * on command line). Sender uses first port, receiver last port and the two ports in middle are joined
+ * by ImpairedLink which injects noise, drops and delays. Every protocol variant is run for every file
+ * size over every link. XMODEM/YMODEM variants must recover from noise and drops; YMODEM-G is expected
+ * to cancel cleanly as it has no error recovery, and ZMODEM must recover by repositioning.
+ *
+ * Acknowledged variants wait for every block to be acknowledged, so by default they are run only up to
+ * 1024 blocks; -large runs them for 1 MB as well and adds 100 MB for streaming variants (YMODEM-G and
+ * ZMODEM). -eventdriven makes XMODEM/YMODEM receivers use data listener instead of polling.
+ *
+ * For every case time taken, data blocks per second, retries and NAKs are recorded in a CSV file. If a
+ * previous CSV file is given as baseline, clean cases of 64 KB or more whose blocks per second dropped
+ * more than tolerance are reported as regression. Exit status is 0 only if all cases passed.
+ *
+ * $ insmod ./tty2comKm.ko
+ * $ java -cp .:sp-tty.jar:sp-core.jar test93.Test93 [-ports p1 p2 p3 p4] [-variants X-CRC,Y-G,..] [-large]
+ *        [-eventdriven] [-work dir] [-results file.csv] [-baseline file.csv] [-tolerance 0.2]
+ */
+public final class Test93 {
+
+	static final String[] VARIANTS  = { "X-CHKSUM", "X-CRC", "X-1K", "Y-CRC", "Y-1K", "Y-G", "Z" };
+	static final int[]    BLOCKSIZE = { 128, 128, 1024, 128, 1024, 1024, 1024 };
+	static final boolean[] STREAMING = { false, false, false, false, false, true, true };
+	static final long[]   SIZES     = { 0, 1, 127, 128, 129, 1023, 1024, 1025, 65536, 1048576 };
+	static final long     LARGESIZE = 100L * 1024 * 1024;
+
+	static final ImpairedLink[] LINKS = {
+		new ImpairedLink("clean",  0,      0,      0),
+		new ImpairedLink("noise",  0.0001, 0,      0),
+		new ImpairedLink("drops",  0,      0.0001, 0),
+		new ImpairedLink("delays", 0,      0,      20),
+	};
+
+	static SerialComManager scm = null;
+	static SerialComNullModem scnm = null;
+	static int osType = 0;
+	static long sender = -1;
+	static long relayA = -1;
+	static long relayB = -1;
+	static long receiver = -1;
+	static boolean eventDriven = false;
+	static final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+	/* Result of one protocol / size / link combination. */
+	static final class Result {
+		String variant;
+		long size;
+		String link;
+		String status;
+		long millis;
+		long blocksPerSecond;
+		long retries = -1;
+		long naks = -1;
+		String note = "";
+
+		String key() {
+			return variant + "," + size + "," + link;
+		}
+
+		String toCSV() {
+			return key() + "," + status + "," + millis + "," + blocksPerSecond + "," + retries + "," + naks + "," + note;
+		}
+	}
+
+	/* Keeps last status reported by progress monitor of sending side. */
+	static final class StatusHolder implements ISerialComFTPStatusListener {
+		private SerialComFTPTransferStatus last = null;
+
+		@Override
+		public synchronized void onTransferStatusUpdate(SerialComFTPTransferStatus status) {
+			last = status;
+			notifyAll();
+		}
+
+		synchronized SerialComFTPTransferStatus awaitFinal(long waitTime) throws InterruptedException {
+			long deadline = System.currentTimeMillis() + waitTime;
+			while(((last == null) || (last.isFinished() == false)) && (System.currentTimeMillis() < deadline)) {
+				wait(50);
+			}
+			return last;
+		}
+	}
+
+	public static void main(String[] args) {
+		String[] ports = null;
+		String variants = null;
+		boolean large = false;
+		File workDir = new File(System.getProperty("java.io.tmpdir"), "sp-ftpsuite");
+		File resultsFile = null;
+		File baselineFile = null;
+		double tolerance = 0.2;
+		int failures = 0;
+
+		for(int x=0; x < args.length; x++) {
+			if(args[x].equals("-ports")) {
+				ports = new String[] { args[x+1], args[x+2], args[x+3], args[x+4] };
+				x = x + 4;
+			}else if(args[x].equals("-variants")) {
+				variants = "," + args[++x] + ",";
+			}else if(args[x].equals("-large")) {
+				large = true;
+			}else if(args[x].equals("-eventdriven")) {
+				eventDriven = true;
+			}else if(args[x].equals("-work")) {
+				workDir = new File(args[++x]);
+			}else if(args[x].equals("-results")) {
+				resultsFile = new File(args[++x]);
+			}else if(args[x].equals("-baseline")) {
+				baselineFile = new File(args[++x]);
+			}else if(args[x].equals("-tolerance")) {
+				tolerance = Double.parseDouble(args[++x]);
+			}else {
+				System.out.println("Unknown option : " + args[x]);
+				System.exit(2);
+			}
+		}
+		if(resultsFile == null) {
+			resultsFile = new File(workDir, "ftpsuite-results.csv");
+		}
+
+		try {
+			scm = new SerialComManager();
+			osType = new SerialComPlatform(new SerialComSystemProperty()).getOSType();
+			workDir.mkdirs();
+
+			if(ports == null) {
+				scnm = scm.getSerialComNullModemInstance();
+				scnm.initialize();
+				String[] pair1 = scnm.createStandardNullModemPair(-1, -1);
+				String[] pair2 = scnm.createStandardNullModemPair(-1, -1);
+				Thread.sleep(100);
+				ports = new String[] { pair1[0], pair1[3], pair2[0], pair2[3] };
+			}
+			sender = openPort(ports[0]);
+			relayA = openPort(ports[1]);
+			relayB = openPort(ports[2]);
+			receiver = openPort(ports[3]);
+
+			List<Result> results = new ArrayList<Result>();
+			for(int v=0; v < VARIANTS.length; v++) {
+				if((variants != null) && !variants.contains("," + VARIANTS[v] + ",")) {
+					continue;
+				}
+				for(int s=0; s <= SIZES.length; s++) {
+					long size = (s < SIZES.length) ? SIZES[s] : LARGESIZE;
+					if((large == false) && (STREAMING[v] == false) && (((size + BLOCKSIZE[v] - 1) / BLOCKSIZE[v]) > 1024)) {
+						continue;
+					}
+					if((size == LARGESIZE) && ((large == false) || (STREAMING[v] == false))) {
+						continue;
+					}
+					for(int l=0; l < LINKS.length; l++) {
+						// 100 MB is about throughput, so it is run over clean link only.
+						if((size == LARGESIZE) && (l != 0)) {
+							break;
+						}
+						Result r = runCase(v, size, LINKS[l], workDir);
+						results.add(r);
+						System.out.println(r.toCSV());
+					}
+				}
+			}
+
+			if((baselineFile != null) && baselineFile.exists()) {
+				compareWithBaseline(results, baselineFile, tolerance);
+			}
+
+			PrintWriter pw = new PrintWriter(resultsFile);
+			pw.println("variant,size,link,status,millis,blocksPerSecond,retries,naks,note");
+			for(Result r : results) {
+				pw.println(r.toCSV());
+				if(!r.status.equals("PASS")) {
+					failures++;
+				}
+			}
+			pw.close();
+
+			System.out.println("\n" + results.size() + " cases, " + failures + " failed, results in " + resultsFile.getAbsolutePath());
+		} catch (Exception e) {
+			e.printStackTrace();
+			failures++;
+		} finally {
+			closePort(sender);
+			closePort(relayA);
+			closePort(relayB);
+			closePort(receiver);
+			if(scnm != null) {
+				try {
+					scnm.destroyAllCreatedVirtualDevices();
+					scnm.deinitialize();
+				} catch (Exception e) {
+					e.printStackTrace();
+				}
+			}
+			executor.shutdownNow();
+		}
+
+		System.exit((failures == 0) ? 0 : 1);
+	}
+
+	static long openPort(String port) throws Exception {
+		long handle = scm.openComPort(port, true, true, true);
+		scm.configureComPortData(handle, DATABITS.DB_8, STOPBITS.SB_1, PARITY.P_NONE, BAUDRATE.B921600, 0);
+		scm.configureComPortControl(handle, FLOWCONTROL.NONE, 'x', 'x', false, false);
+		return handle;
+	}
+
+	static void closePort(long handle) {
+		if(handle != -1) {
+			try {
+				scm.closeComPort(handle);
+			} catch (Exception e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	static Result runCase(final int v, long size, ImpairedLink link, File workDir) throws Exception {
+		final File src = sourceFile(workDir, size);
+		final File rcvDir = new File(workDir, "rcv");
+		rcvDir.mkdirs();
+		File[] old = rcvDir.listFiles();
+		for(int x=0; x < old.length; x++) {
+			old[x].delete();
+		}
+		final File rcvFile = new File(rcvDir, src.getName());
+		final SerialComFTPCMDAbort abort = new SerialComFTPCMDAbort();
+		final StatusHolder status = new StatusHolder();
+		final SerialComFTPProgressMonitor monitor = new SerialComFTPProgressMonitor(status, 250);
+		boolean isX = VARIANTS[v].startsWith("X");
+		boolean hasMonitor = VARIANTS[v].startsWith("X") || VARIANTS[v].equals("Y-CRC") || VARIANTS[v].equals("Y-1K");
+
+		Result r = new Result();
+		r.variant = VARIANTS[v];
+		r.size = size;
+		r.link = link.name;
+
+		scm.clearPortIOBuffers(sender, true, true);
+		scm.clearPortIOBuffers(relayA, true, true);
+		scm.clearPortIOBuffers(relayB, true, true);
+		scm.clearPortIOBuffers(receiver, true, true);
+		link.start(scm, relayA, relayB, (size * 31) + v);
+
+		long start = System.currentTimeMillis();
+		Future<Boolean> rx = executor.submit(new Callable<Boolean>() {
+			@Override
+			public Boolean call() throws Exception {
+				return receive(v, VARIANTS[v].startsWith("X") ? rcvFile : rcvDir, abort);
+			}
+		});
+		Future<Boolean> tx = executor.submit(new Callable<Boolean>() {
+			@Override
+			public Boolean call() throws Exception {
+				return send(v, src, abort, monitor);
+			}
+		});
+
+		// allow 400 ms per block, retries included, plus protocol timeouts
+		long blocks = (size + BLOCKSIZE[v] - 1) / BLOCKSIZE[v];
+		long deadline = start + 120000 + (blocks * 400);
+		boolean hang = false;
+		Boolean sent = null;
+		Boolean received = null;
+		Throwable error = null;
+		try {
+			sent = tx.get(Math.max(1, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+		} catch (ExecutionException e) {
+			error = e.getCause();
+		} catch (TimeoutException e) {
+			hang = true;
+		}
+		try {
+			received = rx.get(Math.max(1, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+		} catch (ExecutionException e) {
+			if(error == null) {
+				error = e.getCause();
+			}
+		} catch (TimeoutException e) {
+			hang = true;
+		}
+		if(hang == true) {
+			abort.abortTransfer();
+			try {
+				tx.get(30, TimeUnit.SECONDS);
+			} catch (Exception e) {
+			}
+			try {
+				rx.get(30, TimeUnit.SECONDS);
+			} catch (Exception e) {
+			}
+		}
+		r.millis = System.currentTimeMillis() - start;
+		link.stop();
+
+		r.blocksPerSecond = (r.millis > 0) ? ((blocks * 1000) / r.millis) : 0;
+		if(hasMonitor == true) {
+			SerialComFTPTransferStatus last = status.awaitFinal(2000);
+			if(last != null) {
+				r.retries = last.getRetryCount();
+				r.naks = last.getNakCount();
+			}
+		}
+
+		boolean completed = Boolean.TRUE.equals(sent) && Boolean.TRUE.equals(received) && (error == null);
+		boolean intact = rcvFile.exists() && sameContent(src, rcvFile, isX ? BLOCKSIZE[v] : 0);
+		boolean mustRecover = !(VARIANTS[v].equals("Y-G") && link.isImpaired());
+
+		if(hang == true) {
+			r.status = "FAIL";
+			r.note = "hang";
+		}else if(completed && intact) {
+			r.status = "PASS";
+		}else if(completed) {
+			r.status = "FAIL";
+			r.note = "reported success but data differs";
+		}else if(mustRecover == false) {
+			r.status = "PASS";
+			r.note = "cancelled as expected";
+		}else {
+			r.status = "FAIL";
+			r.note = (error != null) ? error.toString().replace(',', ';') : "transfer returned false";
+		}
+		if(link.isImpaired()) {
+			r.note = (r.note + " corrupted=" + link.getCorruptedCount() + " dropped=" + link.getDroppedCount()).trim();
+		}
+		return r;
+	}
+
+	static boolean send(int v, File src, SerialComFTPCMDAbort abort, SerialComFTPProgressMonitor monitor) throws Exception {
+		File[] files = new File[] { src };
+		switch(v) {
+		case 0:
+			SerialComXModem x = new SerialComXModem(scm, sender, src, false, null, abort, osType);
+			x.setProgressMonitor(monitor);
+			return x.sendFileX();
+		case 1:
+			SerialComXModemCRC xc = new SerialComXModemCRC(scm, sender, src, false, null, abort, osType);
+			xc.setProgressMonitor(monitor);
+			return xc.sendFileX();
+		case 2:
+			SerialComXModem1K xk = new SerialComXModem1K(scm, sender, src, false, null, abort, osType);
+			xk.setProgressMonitor(monitor);
+			return xk.sendFileX();
+		case 3:
+			SerialComYModemCRC yc = new SerialComYModemCRC(scm, sender, files, false, null, abort, osType);
+			yc.setProgressMonitor(monitor);
+			return yc.sendFileY();
+		case 4:
+			SerialComYModem1K yk = new SerialComYModem1K(scm, sender, files, false, null, abort, osType);
+			yk.setProgressMonitor(monitor);
+			return yk.sendFileY();
+		case 5:
+			return new SerialComYModemG(scm, sender, files, false, null, abort, osType).sendFileY();
+		default:
+			return new SerialComZModem(scm, sender, files, false, null, abort, osType).sendFileZ();
+		}
+	}
+
+	static boolean receive(int v, File dst, SerialComFTPCMDAbort abort) throws Exception {
+		switch(v) {
+		case 0:
+			SerialComXModem x = new SerialComXModem(scm, receiver, dst, false, null, abort, osType);
+			x.setEventDrivenReception(eventDriven);
+			return x.receiveFileX();
+		case 1:
+			SerialComXModemCRC xc = new SerialComXModemCRC(scm, receiver, dst, false, null, abort, osType);
+			xc.setEventDrivenReception(eventDriven);
+			return xc.receiveFileX();
+		case 2:
+			SerialComXModem1K xk = new SerialComXModem1K(scm, receiver, dst, false, null, abort, osType);
+			xk.setEventDrivenReception(eventDriven);
+			return xk.receiveFileX();
+		case 3:
+			SerialComYModemCRC yc = new SerialComYModemCRC(scm, receiver, dst, false, null, abort, osType);
+			yc.setEventDrivenReception(eventDriven);
+			return yc.receiveFileY();
+		case 4:
+			SerialComYModem1K yk = new SerialComYModem1K(scm, receiver, dst, false, null, abort, osType);
+			yk.setEventDrivenReception(eventDriven);
+			return yk.receiveFileY();
+		case 5:
+			return new SerialComYModemG(scm, receiver, dst, false, null, abort, osType).receiveFileY();
+		default:
+			return new SerialComZModem(scm, receiver, dst, false, null, abort, osType).receiveFileZ();
+		}
+	}
+
+	/* Creates file of given size with reproducible random content, once per work directory. */
+	static File sourceFile(File workDir, long size) throws Exception {
+		File src = new File(workDir, "src" + size + ".bin");
+		if(src.exists() && (src.length() == size)) {
+			return src;
+		}
+		Random random = new Random(size);
+		byte[] buffer = new byte[65536];
+		OutputStream out = new FileOutputStream(src);
+		try {
+			long remaining = size;
+			while(remaining > 0) {
+				random.nextBytes(buffer);
+				int num = (int) Math.min(remaining, buffer.length);
+				out.write(buffer, 0, num);
+				remaining = remaining - num;
+			}
+		} finally {
+			out.close();
+		}
+		return src;
+	}
+
+	/*
+	 * XMODEM carries no file length, so received file may be longer than sent file by less than one
+	 * block of padding.
+	 */
+	static boolean sameContent(File sent, File received, int padding) throws Exception {
+		if((received.length() < sent.length()) || (received.length() > (sent.length() + padding))) {
+			return false;
+		}
+		if((padding == 0) && (received.length() != sent.length())) {
+			return false;
+		}
+		byte[] a = new byte[65536];
+		byte[] b = new byte[65536];
+		InputStream in1 = new FileInputStream(sent);
+		InputStream in2 = new FileInputStream(received);
+		try {
+			long remaining = sent.length();
+			while(remaining > 0) {
+				int num = (int) Math.min(remaining, a.length);
+				readFully(in1, a, num);
+				readFully(in2, b, num);
+				for(int x=0; x < num; x++) {
+					if(a[x] != b[x]) {
+						return false;
+					}
+				}
+				remaining = remaining - num;
+			}
+		} finally {
+			in1.close();
+			in2.close();
+		}
+		return true;
+	}
+
+	static void readFully(InputStream in, byte[] buffer, int length) throws Exception {
+		int num = 0;
+		while(num < length) {
+			int ret = in.read(buffer, num, length - num);
+			if(ret < 0) {
+				throw new Exception("Unexpected end of file !");
+			}
+			num = num + ret;
+		}
+	}
+
+	static void compareWithBaseline(List<Result> results, File baselineFile, double tolerance) throws Exception {
+		Map<String, Long> baseline = new HashMap<String, Long>();
+		BufferedReader br = new BufferedReader(new FileReader(baselineFile));
+		try {
+			String line = br.readLine(); // header
+			while((line = br.readLine()) != null) {
+				String[] f = line.split(",");
+				if((f.length >= 6) && f[3].equals("PASS")) {
+					baseline.put(f[0] + "," + f[1] + "," + f[2], Long.valueOf(f[5]));
+				}
+			}
+		} finally {
+			br.close();
+		}
+
+		for(Result r : results) {
+			Long before = baseline.get(r.key());
+			if((before == null) || !r.link.equals("clean") || (r.size < 65536) || !r.status.equals("PASS")) {
+				continue;
+			}
+			if(r.blocksPerSecond < (before.longValue() * (1.0 - tolerance))) {
+				r.status = "REGRESSION";
+				r.note = (r.note + " baseline=" + before + " blocks/s").trim();
+			}
+		}
+	}
+}
@@ -0,0 +1,192 @@
+/*
+ * This file is part of SerialPundit.
+ * 
+ * Copyright (C) 2014-2016, Rishi Gupta. All rights reserved.
+ *
+ * The SerialPundit is DUAL LICENSED. It is made available under the terms of the GNU Affero 
+ * General Public License (AGPL) v3.0 for non-commercial use and under the terms of a commercial 
+ * license for commercial use of this software. 
+ * 
+ * The SerialPundit is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+
+package test94;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Random;
+
+import com.serialpundit.core.util.SerialComUtil;
+
+/*
+ * Checks allocation free hex conversion and word at a time delimiter search of SerialComUtil. Needs no
+ * port. Every hex round trip must give back original bytes and every search must agree with a plain
+ * byte by byte search, for delimiters at unaligned positions and at both ends of the searched region.
+ *
+ * $ java -cp .:sp-core.jar test94.Test94
+ */
+public class Test94 {
+
+	private static int failures = 0;
+
+	public static void main(String[] args) {
+		try {
+			hexRoundTrip();
+			indexOfPositions();
+			indexOfRandom();
+		}catch (Exception e) {
+			e.printStackTrace();
+			failures++;
+		}
+		System.out.println((failures == 0) ? "PASS" : ("FAIL : " + failures));
+		System.exit((failures == 0) ? 0 : 1);
+	}
+
+	private static void check(boolean ok, String what) {
+		if(!ok) {
+			failures++;
+			System.out.println("failed : " + what);
+		}
+	}
+
+	private static void hexRoundTrip() {
+		// output 48454C4C4F20574F524C44
+		byte[] hello = "HELLO WORLD".getBytes();
+		char[] chars = new char[2 * hello.length];
+		SerialComUtil.byteArrayToHexChars(hello, 0, hello.length, chars, 0);
+		System.out.println(new String(chars));
+		check("48454C4C4F20574F524C44".equals(new String(chars)), "hex of HELLO WORLD");
+
+		// every byte value, at offsets in source and destination.
+		byte[] all = new byte[256];
+		for(int x = 0; x < 256; x++) {
+			all[x] = (byte) x;
+		}
+		char[] hex = new char[3 + 512];
+		check(SerialComUtil.byteArrayToHexChars(all, 0, 256, hex, 3) == 512, "number of hex characters");
+		byte[] back = new byte[5 + 256];
+		check(SerialComUtil.hexToByteArray(new String(hex), 3, 512, back, 5) == 256, "number of decoded bytes");
+		check(Arrays.equals(all, Arrays.copyOfRange(back, 5, 5 + 256)), "round trip of all byte values");
+
+		// lower case digits are accepted too.
+		byte[] one = new byte[2];
+		SerialComUtil.hexToByteArray(new StringBuilder("aB0f"), 0, 4, one, 0);
+		check((one[0] == (byte) 0xAB) && (one[1] == (byte) 0x0F), "lower case hex digits");
+
+		// random lengths and offsets.
+		Random random = new Random(94);
+		for(int n = 0; n < 1000; n++) {
+			byte[] data = new byte[random.nextInt(64)];
+			random.nextBytes(data);
+			int offset = (data.length == 0) ? 0 : random.nextInt(data.length);
+			int length = data.length - offset;
+			char[] c = new char[2 * length];
+			SerialComUtil.byteArrayToHexChars(data, offset, length, c, 0);
+			byte[] d = new byte[length];
+			SerialComUtil.hexToByteArray(new String(c), 0, c.length, d, 0);
+			check(Arrays.equals(Arrays.copyOfRange(data, offset, data.length), d), "random round trip " + n);
+		}
+
+		try {
+			SerialComUtil.hexToByteArray("0G", 0, 2, one, 0);
+			check(false, "invalid hex digit not detected");
+		}catch (IllegalArgumentException e) {
+		}
+		try {
+			SerialComUtil.hexToByteArray("ABC", 0, 3, one, 0);
+			check(false, "odd number of hex digits not detected");
+		}catch (IllegalArgumentException e) {
+		}
+	}
+
+	private static int plainIndexOf(ByteBuffer data, byte delimiter) {
+		for(int x = data.position(); x < data.limit(); x++) {
+			if(data.get(x) == delimiter) {
+				return x;
+			}
+		}
+		return -1;
+	}
+
+	private static void search(ByteBuffer buffer, int position, int limit, byte delimiter, String what) {
+		buffer.limit(limit);
+		buffer.position(position);
+		ByteOrder order = buffer.order();
+		int expected = plainIndexOf(buffer, delimiter);
+		int found = SerialComUtil.indexOf(buffer, delimiter);
+		check(found == expected, what + " expected " + expected + " found " + found);
+		check((buffer.position() == position) && (buffer.limit() == limit) && (buffer.order() == order), 
+				what + " buffer modified");
+		buffer.clear();
+	}
+
+	/*
+	 * Delimiter placed at every position of regions starting at every alignment, including first and last
+	 * byte of region and the tail shorter than a word; bytes just outside region must not be found.
+	 */
+	private static void indexOfPositions() {
+		byte delimiter = '\n';
+		for(int direct = 0; direct < 2; direct++) {
+			ByteBuffer buffer = (direct == 1) ? ByteBuffer.allocateDirect(64) : ByteBuffer.allocate(64);
+			buffer.order(ByteOrder.BIG_ENDIAN);
+			for(int start = 0; start < 8; start++) {
+				for(int length = 0; length <= 40; length++) {
+					int end = start + length;
+					for(int x = 0; x < 64; x++) {
+						buffer.put(x, (byte) 'A');
+					}
+					search(buffer, start, end, delimiter, "none start " + start + " length " + length);
+					buffer.put(end, delimiter);
+					search(buffer, start, end, delimiter, "after limit start " + start + " length " + length);
+					buffer.put(end, (byte) 'A');
+					if(start > 0) {
+						buffer.put(start - 1, delimiter);
+						search(buffer, start, end, delimiter, "before position start " + start + " length " + length);
+						buffer.put(start - 1, (byte) 'A');
+					}
+					for(int at = start; at < end; at++) {
+						buffer.put(at, delimiter);
+						search(buffer, start, end, delimiter, "start " + start + " length " + length + " at " + at);
+						// a second delimiter later must not hide the first one.
+						if((at + 1) < end) {
+							buffer.put(end - 1, delimiter);
+							search(buffer, start, end, delimiter, "two start " + start + " length " + length + " at " + at);
+							buffer.put(end - 1, (byte) 'A');
+						}
+						buffer.put(at, (byte) 'A');
+					}
+				}
+			}
+		}
+
+		// bytes which differ from delimiter only in high bit or are next to it must not match.
+		ByteBuffer buffer = ByteBuffer.allocate(16);
+		for(int x = 0; x < 16; x++) {
+			buffer.put(x, (byte) ((x % 2 == 0) ? 0x8A : 0x09));
+		}
+		buffer.put(13, (byte) 0x0A);
+		search(buffer, 0, 16, (byte) 0x0A, "near miss bytes");
+		buffer.put(13, (byte) 0x00);
+		search(buffer, 0, 16, (byte) 0x00, "zero delimiter");
+		search(buffer, 0, 16, (byte) 0xFF, "all ones delimiter");
+	}
+
+	private static void indexOfRandom() {
+		Random random = new Random(4);
+		ByteBuffer heap = ByteBuffer.allocate(4096);
+		ByteBuffer direct = ByteBuffer.allocateDirect(4096);
+		byte[] data = new byte[4096];
+		for(int n = 0; n < 2000; n++) {
+			random.nextBytes(data);
+			ByteBuffer buffer = (n % 2 == 0) ? heap : direct;
+			buffer.clear();
+			buffer.put(data);
+			int position = random.nextInt(4096);
+			int limit = position + random.nextInt(4096 - position + 1);
+			search(buffer, position, limit, (byte) random.nextInt(256), "random " + n);
+			search(buffer.asReadOnlyBuffer(), position, limit, (byte) random.nextInt(256), "read only random " + n);
+		}
+	}
+}